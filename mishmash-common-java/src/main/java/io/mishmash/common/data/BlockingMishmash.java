@@ -0,0 +1,202 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.data;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A synchronous view of a {@link Mishmash}, for plain loops.
+ *
+ * Calls block until the future of the underlying mishmash completes.
+ * Waiting on a future parks the calling thread without holding a
+ * monitor, so virtual threads release their carrier while they wait.
+ *
+ * Failures are thrown as {@link CompletionException}s wrapping the
+ * cause. Like the mishmash it wraps, an instance is meant to be used
+ * by one thread at a time.
+ *
+ * @param <K> - the {@link DataPoint} key type
+ * @param <V> - the {@link DataPoint} value type
+ */
+public class BlockingMishmash<K, V>
+        implements Iterable<BaseDataPoint<K, V>>, AutoCloseable {
+
+    /**
+     * The default number of puts of {@link #putAll(Iterable)} waiting
+     * to be saved.
+     */
+    public static final int DEFAULT_MAX_PENDING_PUTS = 64;
+
+    /**
+     * The wrapped mishmash.
+     */
+    private final Mishmash<K, V> mishmash;
+
+    /**
+     * Create a new BlockingMishmash.
+     *
+     * @param source - the mishmash to wrap
+     */
+    public BlockingMishmash(final Mishmash<K, V> source) {
+        this.mishmash = source;
+    }
+
+    /**
+     * Get the wrapped mishmash.
+     *
+     * @return - the mishmash
+     */
+    public Mishmash<K, V> getMishmash() {
+        return mishmash;
+    }
+
+    /**
+     * Open the mishmash and wait until it is open.
+     *
+     * @return - this instance
+     */
+    public BlockingMishmash<K, V> open() {
+        mishmash.open().join();
+        return this;
+    }
+
+    /**
+     * Wait for the next {@link DataPoint}.
+     *
+     * @return - the data point or null when there are no more
+     */
+    public BaseDataPoint<K, V> next() {
+        return mishmash.get().join();
+    }
+
+    /**
+     * Put a {@link DataPoint} and wait until it is saved.
+     *
+     * @param dataPoint - the data point
+     */
+    public void put(final BaseDataPoint<K, V> dataPoint) {
+        mishmash.put(dataPoint).join();
+    }
+
+    /**
+     * Put many data points, keeping up to
+     * {@link #DEFAULT_MAX_PENDING_PUTS} of them waiting to be saved,
+     * and wait until all are saved.
+     *
+     * @param dataPoints - the data points
+     * @return - the number of data points saved
+     */
+    public long putAll(final Iterable<? extends BaseDataPoint<K, V>>
+                dataPoints) {
+        return putAll(dataPoints, DEFAULT_MAX_PENDING_PUTS);
+    }
+
+    /**
+     * Put many data points, keeping up to a number of them waiting to
+     * be saved, and wait until all are saved.
+     *
+     * @param dataPoints - the data points
+     * @param maxPending - the most puts waiting to be saved, at least 1
+     * @return - the number of data points saved
+     */
+    public long putAll(final Iterable<? extends BaseDataPoint<K, V>>
+                dataPoints,
+            final int maxPending) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException(
+                    "At least one put must be pending");
+        }
+
+        Queue<CompletableFuture<Void>> pending = new ArrayDeque<>();
+        long count = 0;
+
+        for (BaseDataPoint<K, V> dp : dataPoints) {
+            if (pending.size() >= maxPending) {
+                pending.poll().join();
+            }
+
+            pending.add(mishmash.put(dp));
+            count++;
+        }
+
+        for (CompletableFuture<Void> f : pending) {
+            f.join();
+        }
+
+        return count;
+    }
+
+    /**
+     * Iterate over the remaining data points. Each call to
+     * {@link Iterator#hasNext()} may block until the next data point
+     * arrives.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<BaseDataPoint<K, V>> iterator() {
+        return new Iterator<>() {
+
+            /**
+             * The next data point, if already taken.
+             */
+            private BaseDataPoint<K, V> nextDataPoint;
+
+            /**
+             * If the mishmash has no more data points.
+             */
+            private boolean isDone;
+
+            @Override
+            public boolean hasNext() {
+                if (nextDataPoint == null && !isDone) {
+                    nextDataPoint = BlockingMishmash.this.next();
+                    isDone = nextDataPoint == null;
+                }
+
+                return nextDataPoint != null;
+            }
+
+            @Override
+            public BaseDataPoint<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                BaseDataPoint<K, V> res = nextDataPoint;
+                nextDataPoint = null;
+
+                return res;
+            }
+        };
+    }
+
+    /**
+     * Close the wrapped mishmash.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        mishmash.close();
+    }
+}
@@ -16,18 +16,69 @@
  */
 package io.mishmash.common.data;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * A base implementation of a {@link Key},{@link Value} {@link DataPoint}.
  */
 public class DataPoint implements BaseDataPoint<Key, Value> {
 
+    /**
+     * The key hierarchy.
+     */
+    private final List<Key> keyHierarchy;
+
+    /**
+     * The value.
+     */
+    private final Value pointValue;
+
+    /**
+     * Create an empty DataPoint, without keys and value.
+     */
+    public DataPoint() {
+        this(Collections.emptyList(), null);
+    }
+
+    /**
+     * Create a DataPoint.
+     *
+     * @param keys - the key hierarchy
+     * @param value - the value
+     */
+    public DataPoint(final List<Key> keys, final Value value) {
+        this.keyHierarchy = keys;
+        this.pointValue = value;
+    }
+
+    /**
+     * Get a DataPoint with the keys of another data point, copying
+     * them if needed.
+     *
+     * @param other - the data point to copy
+     * @return - a new DataPoint
+     */
+    public static DataPoint copyOf(final BaseDataPoint<Key, Value> other) {
+        if (other instanceof DataPoint) {
+            return (DataPoint) other;
+        }
+
+        List<Key> keys = new ArrayList<>();
+        for (Key k : other.keys()) {
+            keys.add(k);
+        }
+
+        return new DataPoint(keys, other.value());
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Iterable<Key> keys() {
-        // TODO Auto-generated method stub
-        return null;
+        return keyHierarchy;
     }
 
     /**
@@ -35,8 +86,7 @@ public class DataPoint implements BaseDataPoint<Key, Value> {
      */
     @Override
     public Value value() {
-        // TODO Auto-generated method stub
-        return null;
+        return pointValue;
     }
 
 }
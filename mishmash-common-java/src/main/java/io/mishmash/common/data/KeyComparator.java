@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.data;
+
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Orders {@link Key} hierarchies.
+ *
+ * Hierarchies are compared key by key. Index keys sort before member
+ * keys, indexes are compared as unsigned numbers and member names
+ * lexicographically. When one hierarchy is a prefix of the other,
+ * the shorter one sorts first. Instance IDs are not compared.
+ */
+public final class KeyComparator implements Comparator<Iterable<Key>> {
+
+    /**
+     * The shared comparator instance.
+     */
+    public static final KeyComparator INSTANCE = new KeyComparator();
+
+    /**
+     * Use {@link #INSTANCE}.
+     */
+    private KeyComparator() {
+        // Hide the constructor
+    }
+
+    /**
+     * Compare two single {@link Key}s.
+     *
+     * @param a - the first key
+     * @param b - the second key
+     * @return - negative, zero or positive as a is less than, equal to or
+     *          greater than b
+     */
+    public static int compareKeys(final Key a, final Key b) {
+        if (a.isIndex()) {
+            return b.isIndex()
+                    ? Long.compareUnsigned(a.getIndex(), b.getIndex())
+                    : -1;
+        }
+
+        return b.isIndex() ? 1 : a.getMember().compareTo(b.getMember());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compare(final Iterable<Key> a, final Iterable<Key> b) {
+        Iterator<Key> ia = a.iterator();
+        Iterator<Key> ib = b.iterator();
+
+        while (ia.hasNext() && ib.hasNext()) {
+            int res = compareKeys(ia.next(), ib.next());
+            if (res != 0) {
+                return res;
+            }
+        }
+
+        if (ia.hasNext()) {
+            return 1;
+        }
+
+        return ib.hasNext() ? -1 : 0;
+    }
+
+    /**
+     * Check if a hierarchy starts with the given prefix.
+     *
+     * @param keys - the hierarchy
+     * @param prefix - the prefix
+     * @return - true if all keys of prefix match the first keys of keys
+     */
+    public static boolean startsWith(final Iterable<Key> keys,
+            final Iterable<Key> prefix) {
+        Iterator<Key> ik = keys.iterator();
+
+        for (Key p : prefix) {
+            if (!ik.hasNext() || compareKeys(ik.next(), p) != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -36,8 +36,12 @@ public interface Mishmash<K, V> extends AutoCloseable {
     /**
      * Get the next {@link DataPoint} from this Mishmash.
      *
+     * Callers should wait for the returned future to complete before
+     * calling get() again.
+     *
      * @return - a future that completes with the next
-     *          {@link DataPoint} or error
+     *          {@link DataPoint}, with null when there are no more
+     *          data points, or error
      */
     CompletableFuture<? extends BaseDataPoint<K, V>> get();
 
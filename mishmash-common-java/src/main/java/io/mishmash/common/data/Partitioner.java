@@ -0,0 +1,36 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.data;
+
+/**
+ * Assigns {@link Key} hierarchies to partitions.
+ *
+ * See {@link Partitioners} for partitioning by hash or by range.
+ */
+@FunctionalInterface
+public interface Partitioner {
+
+    /**
+     * Get the partition of a hierarchy.
+     *
+     * @param keys - the hierarchy
+     * @param partitions - the number of partitions
+     * @return - the partition, from 0 to partitions - 1
+     */
+    int partition(Iterable<Key> keys, int partitions);
+
+}
@@ -0,0 +1,172 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link Partitioner}s over a prefix of the {@link Key} hierarchy.
+ *
+ * Only the first keys of a hierarchy are considered, so that all data
+ * points under the same prefix go to the same partition. Like
+ * {@link KeyComparator}, instance IDs are ignored.
+ */
+public final class Partitioners {
+
+    /**
+     * Hide the constructor.
+     */
+    private Partitioners() {
+        // Utility class
+    }
+
+    /**
+     * FNV-1a 64-bit offset basis.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Partition by a hash of the first keys.
+     *
+     * The hash is portable, so that servers and clients in other
+     * languages agree on it: FNV-1a 64 over, for each key, the byte 0
+     * followed by the index as 8 big-endian bytes, or the byte 1
+     * followed by the UTF-8 bytes of the member name and the byte 0xff.
+     * The partition is the unsigned hash modulo the partitions.
+     *
+     * @param prefixLength - the number of keys hashed
+     * @return - the partitioner
+     */
+    public static Partitioner hash(final int prefixLength) {
+        return (keys, partitions) -> (int) Long.remainderUnsigned(
+                hash(keys, prefixLength), partitions);
+    }
+
+    /**
+     * Hash the first keys of a hierarchy, see {@link #hash(int)}.
+     *
+     * @param keys - the hierarchy
+     * @param prefixLength - the number of keys hashed
+     * @return - the hash
+     */
+    public static long hash(final Iterable<Key> keys, final int prefixLength) {
+        long h = FNV_OFFSET;
+        Iterator<Key> it = keys.iterator();
+
+        for (int i = 0; i < prefixLength && it.hasNext(); i++) {
+            Key k = it.next();
+
+            if (k.isIndex()) {
+                h = fnv(h, 0);
+                long index = k.getIndex();
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    h = fnv(h, (int) (index >>> shift));
+                }
+            } else {
+                h = fnv(h, 1);
+                for (byte b : k.getMember()
+                        .getBytes(StandardCharsets.UTF_8)) {
+                    h = fnv(h, b);
+                }
+                h = fnv(h, 0xff);
+            }
+        }
+
+        return h;
+    }
+
+    /**
+     * Partition by ranges of the first keys. A hierarchy goes to the
+     * partition of the number of split points that are not greater
+     * than its prefix, so n split points make n + 1 ranges. Extra
+     * ranges go to the last partition.
+     *
+     * Split points longer than the prefix are truncated to it, as
+     * only the prefix of a hierarchy is compared.
+     *
+     * @param prefixLength - the number of keys compared
+     * @param splitPoints - the first hierarchy of each range but the
+     *          first one, sorted by {@link KeyComparator}
+     * @return - the partitioner
+     */
+    public static Partitioner range(
+            final int prefixLength,
+            final List<? extends Iterable<Key>> splitPoints) {
+        List<List<Key>> splits = new ArrayList<>(splitPoints.size());
+
+        for (Iterable<Key> split : splitPoints) {
+            splits.add(prefix(split, prefixLength));
+        }
+
+        return (keys, partitions) -> {
+            List<Key> prefix = prefix(keys, prefixLength);
+            int lo = 0;
+            int hi = splits.size();
+
+            // the number of split points <= prefix
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (KeyComparator.INSTANCE.compare(
+                        splits.get(mid), prefix) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            return Math.min(lo, partitions - 1);
+        };
+    }
+
+    /**
+     * Take the first keys of a hierarchy.
+     *
+     * @param keys - the hierarchy
+     * @param length - the number of keys
+     * @return - the first keys
+     */
+    private static List<Key> prefix(final Iterable<Key> keys,
+            final int length) {
+        List<Key> res = new ArrayList<>(length);
+        Iterator<Key> it = keys.iterator();
+
+        while (res.size() < length && it.hasNext()) {
+            res.add(it.next());
+        }
+
+        return res;
+    }
+
+    /**
+     * Add a byte to an FNV-1a hash.
+     *
+     * @param h - the hash so far
+     * @param b - the byte, in the low 8 bits
+     * @return - the new hash
+     */
+    private static long fnv(final long h, final int b) {
+        return (h ^ (b & 0xff)) * FNV_PRIME;
+    }
+}
@@ -46,19 +46,19 @@ public final class Value extends Instance {
     private ZonedDateTime dateValue;
 
     /**
-     * The 32bit value if decimal.
+     * The precise numeric subtype, if decimal.
      */
-    private Integer intValue;
+    private DecimalType decimalType;
 
     /**
-     * The 64bit value if decimal.
+     * The bits of a 32 or 64 bit whole decimal (signed or unsigned).
      */
-    private Long longValue;
+    private long bits;
 
     /**
      * The 64bit fractional value if decimal.
      */
-    private Double doubleValue;
+    private double doubleValue;
 
     /**
      * The value if decimal, fractional and big.
@@ -122,6 +122,7 @@ public final class Value extends Instance {
      */
     private Value(final BigDecimal d, final String instanceId) {
         this(ValueType.decimalValue, instanceId);
+        this.decimalType = DecimalType.bigDecimal;
         this.bigDecimalValue = d;
     }
 
@@ -133,18 +134,22 @@ public final class Value extends Instance {
      */
     private Value(final BigInteger d, final String instanceId) {
         this(ValueType.decimalValue, instanceId);
+        this.decimalType = DecimalType.bigInteger;
         this.bigIntegerValue = d;
     }
 
     /**
-     * Create a new Decimal Value.
+     * Create a new whole Decimal Value of up to 64 bits.
      *
-     * @param d - the decimal
+     * @param dt - the precise decimal type
+     * @param d - the decimal bits
      * @param instanceId - the instance ID
      */
-    private Value(final int d, final String instanceId) {
+    private Value(final DecimalType dt, final long d,
+            final String instanceId) {
         this(ValueType.decimalValue, instanceId);
-        this.intValue = d;
+        this.decimalType = dt;
+        this.bits = d;
     }
 
     /**
@@ -153,20 +158,19 @@ public final class Value extends Instance {
      * @param d - the decimal
      * @param instanceId - the instance ID
      */
-    private Value(final long d, final String instanceId) {
+    private Value(final double d, final String instanceId) {
         this(ValueType.decimalValue, instanceId);
-        this.longValue = d;
+        this.decimalType = DecimalType.float64;
+        this.doubleValue = d;
     }
 
     /**
-     * Create a new Decimal Value.
+     * Get the type of this value.
      *
-     * @param d - the decimal
-     * @param instanceId - the instance ID
+     * @return - the {@link ValueType}
      */
-    private Value(final double d, final String instanceId) {
-        this(ValueType.decimalValue, instanceId);
-        this.doubleValue = d;
+    public ValueType getType() {
+        return type;
     }
 
     /**
@@ -205,13 +209,23 @@ public final class Value extends Instance {
         return ValueType.decimalValue == type;
     }
 
+    /**
+     * Get the precise numeric subtype of this decimal.
+     *
+     * @return - the decimal type or null if this is not a decimal
+     */
+    public DecimalType getDecimalType() {
+        return decimalType;
+    }
+
     /**
      * Check if this decimal is Not-A-Number value.
      *
      * @return - true if NaN
      */
     public boolean isNaN() {
-        return doubleValue != null && doubleValue.isNaN();
+        return decimalType == DecimalType.float64
+                && Double.isNaN(doubleValue);
     }
 
     /**
@@ -220,8 +234,8 @@ public final class Value extends Instance {
      * @return - true if +Infinity
      */
     public boolean isPlusInf() {
-        return doubleValue != null
-                && doubleValue.equals(Double.POSITIVE_INFINITY);
+        return decimalType == DecimalType.float64
+                && doubleValue == Double.POSITIVE_INFINITY;
     }
 
     /**
@@ -230,8 +244,8 @@ public final class Value extends Instance {
      * @return - true if -Infinity
      */
     public boolean isMinusInf() {
-        return doubleValue != null
-                && doubleValue.equals(Double.NEGATIVE_INFINITY);
+        return decimalType == DecimalType.float64
+                && doubleValue == Double.NEGATIVE_INFINITY;
     }
 
     /**
@@ -240,9 +254,7 @@ public final class Value extends Instance {
      * @return - true if decimal is signed
      */
     public boolean hasSign() {
-        return (intValue != null && Integer.signum(intValue) < 0)
-                || (longValue != null && Long.signum(longValue) < 0)
-                || isDecimal();
+        return decimalType != null && !decimalType.isUnsigned();
     }
 
     /**
@@ -251,7 +263,8 @@ public final class Value extends Instance {
      * @return - true if decimal is fractional
      */
     public boolean hasFraction() {
-        return doubleValue != null || bigDecimalValue != null;
+        return decimalType == DecimalType.float64
+                || decimalType == DecimalType.bigDecimal;
     }
 
     /**
@@ -260,7 +273,8 @@ public final class Value extends Instance {
      * @return - true if decimal fits into 32 bits.
      */
     public boolean fits32Bits() {
-        return intValue != null;
+        return decimalType == DecimalType.int32
+                || decimalType == DecimalType.uint32;
     }
 
     /**
@@ -269,34 +283,41 @@ public final class Value extends Instance {
      * @return - true if decimal fits into 64 bits.
      */
     public boolean fits64Bits() {
-        return longValue != null || doubleValue != null;
+        return fits32Bits()
+                || decimalType == DecimalType.int64
+                || decimalType == DecimalType.uint64
+                || decimalType == DecimalType.float64;
     }
 
     /**
-     * Get the 32 bit decimal value.
+     * Get the 32 bit decimal value. Unsigned values are returned
+     * with the same bits, use {@link Integer#toUnsignedLong(int)}
+     * to widen them.
      *
      * @return - the value
      */
     public int getInt() {
-        return intValue;
+        return (int) bits;
     }
 
     /**
-     * Get the 64 bit decimal value.
+     * Get the 64 bit decimal value. Unsigned 64 bit values are returned
+     * with the same bits, use {@link Long#toUnsignedString(long)} or
+     * similar to interpret them.
      *
      * @return - the value
      */
     public long getLong() {
-        return longValue;
+        return bits;
     }
 
     /**
      * Get the 64 bit fractional decimal.
      *
-     * @return - the value
+     * @return - the value or null if not a 64 bit fractional decimal
      */
     public Double getDouble() {
-        return doubleValue;
+        return decimalType == DecimalType.float64 ? doubleValue : null;
     }
 
     /**
@@ -438,7 +459,19 @@ public final class Value extends Instance {
      */
     public static Value ofInt(final int i,
             final String instanceId) {
-        return new Value(i, instanceId);
+        return new Value(DecimalType.int32, i, instanceId);
+    }
+
+    /**
+     * Compose a new unsigned 32 bit Decimal Value with the given instance ID.
+     *
+     * @param i - the value bits
+     * @param instanceId - the instance id
+     * @return - a new Value
+     */
+    public static Value ofUnsignedInt(final int i,
+            final String instanceId) {
+        return new Value(DecimalType.uint32, i, instanceId);
     }
 
     /**
@@ -450,7 +483,19 @@ public final class Value extends Instance {
      */
     public static Value ofLong(final long l,
             final String instanceId) {
-        return new Value(l, instanceId);
+        return new Value(DecimalType.int64, l, instanceId);
+    }
+
+    /**
+     * Compose a new unsigned 64 bit Decimal Value with the given instance ID.
+     *
+     * @param l - the value bits
+     * @param instanceId - the instance id
+     * @return - a new Value
+     */
+    public static Value ofUnsignedLong(final long l,
+            final String instanceId) {
+        return new Value(DecimalType.uint64, l, instanceId);
     }
 
     /**
@@ -511,4 +556,67 @@ public final class Value extends Instance {
          */
         bufferValue
     }
+
+    /**
+     * Represents the precise numeric subtype of a decimal Value.
+     */
+    public enum DecimalType {
+        /**
+         * Signed 32 bit whole decimal.
+         */
+        int32(false),
+
+        /**
+         * Unsigned 32 bit whole decimal.
+         */
+        uint32(true),
+
+        /**
+         * Signed 64 bit whole decimal.
+         */
+        int64(false),
+
+        /**
+         * Unsigned 64 bit whole decimal.
+         */
+        uint64(true),
+
+        /**
+         * 64 bit floating point decimal, including NaN and infinities.
+         */
+        float64(false),
+
+        /**
+         * Arbitrary precision whole decimal.
+         */
+        bigInteger(false),
+
+        /**
+         * Arbitrary precision fractional decimal.
+         */
+        bigDecimal(false);
+
+        /**
+         * True for unsigned types.
+         */
+        private final boolean unsigned;
+
+        /**
+         * Create a DecimalType.
+         *
+         * @param isUnsigned - if the type is unsigned
+         */
+        DecimalType(final boolean isUnsigned) {
+            this.unsigned = isUnsigned;
+        }
+
+        /**
+         * Check if this type holds unsigned values.
+         *
+         * @return - true if unsigned
+         */
+        public boolean isUnsigned() {
+            return unsigned;
+        }
+    }
 }
@@ -0,0 +1,241 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.grpc.stub.StreamObserver;
+
+/**
+ * A GRPC session multiplexing many logical streams and mutations, each
+ * on its own {@link SessionChannel}, over one long-lived GRPC call.
+ *
+ * @param <I> - the session input message type
+ * @param <O> - the session output message type
+ */
+public abstract class BaseSession<I, O> implements StreamObserver<I> {
+
+    /**
+     * The GRPC connection peer.
+     */
+    private StreamObserver<O> peer;
+
+    /**
+     * Serializes the messages sent to the peer, GRPC observers are not
+     * thread-safe.
+     */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    /**
+     * The open channels by id.
+     */
+    private final Map<Integer, SessionChannel<?, ?>> channels =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Set when the session ended.
+     */
+    private volatile boolean isClosed;
+
+    /**
+     * Get the remote GRPC peer.
+     *
+     * @return - the remote peer
+     */
+    public StreamObserver<O> getRemotePeer() {
+        return peer;
+    }
+
+    /**
+     * Set the remote GRPC peer.
+     *
+     * @param remotePeer - the remote peer
+     */
+    public void setRemotePeer(final StreamObserver<O> remotePeer) {
+        this.peer = remotePeer;
+    }
+
+    /**
+     * Get the number of open channels.
+     *
+     * @return - the number of channels
+     */
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * Check if the session ended.
+     *
+     * @return - true if no more channels can be opened
+     */
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Send a message to the remote peer.
+     *
+     * @param message - the message
+     */
+    protected void send(final O message) {
+        sendLock.lock();
+        try {
+            if (!isClosed) {
+                peer.onNext(message);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Add a new channel.
+     *
+     * @param channel - the channel
+     * @return - false if the session ended or the channel id is in use
+     */
+    protected boolean register(final SessionChannel<?, ?> channel) {
+        sendLock.lock();
+        try {
+            return !isClosed
+                    && channels.putIfAbsent(
+                            channel.getChannelId(), channel) == null;
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a channel.
+     *
+     * @param channel - the channel
+     */
+    protected void release(final SessionChannel<?, ?> channel) {
+        channels.remove(channel.getChannelId(), channel);
+    }
+
+    /**
+     * Get an open channel.
+     *
+     * @param channelId - the channel id
+     * @return - the channel or null if there is no such channel
+     */
+    protected SessionChannel<?, ?> getChannel(final int channelId) {
+        return channels.get(channelId);
+    }
+
+    /**
+     * Handle a ChannelWindow received for a channel.
+     *
+     * @param channelId - the channel id
+     * @param credits - the credits granted
+     */
+    protected void window(final int channelId, final int credits) {
+        SessionChannel<?, ?> channel = channels.get(channelId);
+
+        // the channel may have been released already
+        if (channel != null) {
+            channel.grant(credits);
+        }
+    }
+
+    /**
+     * Handle a ChannelClose received for a channel.
+     *
+     * @param channelId - the channel id
+     * @param failed - if the channel failed on the other side
+     */
+    protected void close(final int channelId, final boolean failed) {
+        SessionChannel<?, ?> channel = channels.get(channelId);
+
+        if (channel != null) {
+            channel.remoteClosed(failed);
+        }
+    }
+
+    /**
+     * End the session because of a local error, failing all channels.
+     *
+     * @param t - the error
+     */
+    protected void closeWithError(final Throwable t) {
+        sendLock.lock();
+        try {
+            if (!isClosed) {
+                peer.onError(t);
+            }
+        } finally {
+            sendLock.unlock();
+        }
+
+        closeChannels(t);
+    }
+
+    /**
+     * Handle an error from the network, failing all channels.
+     *
+     * @param t - the error thrown
+     */
+    @Override
+    public void onError(final Throwable t) {
+        closeChannels(t);
+    }
+
+    /**
+     * Handle the end of the session, failing channels still open.
+     */
+    @Override
+    public void onCompleted() {
+        sendLock.lock();
+        try {
+            if (!isClosed) {
+                peer.onCompleted();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+
+        closeChannels(null);
+    }
+
+    /**
+     * Mark the session as ended and fail all channels.
+     *
+     * @param t - the error that ended the session or null
+     */
+    private void closeChannels(final Throwable t) {
+        List<SessionChannel<?, ?>> open;
+
+        sendLock.lock();
+        try {
+            isClosed = true;
+            open = new ArrayList<>(channels.values());
+            channels.clear();
+        } finally {
+            sendLock.unlock();
+        }
+
+        for (SessionChannel<?, ?> channel : open) {
+            channel.sessionClosed(t);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A local observer of a {@link SessionChannel} that buffers the
+ * messages it receives and reports when the application consumes them.
+ *
+ * The channel grants credits back to the other side only for consumed
+ * messages, so the observer never buffers more than the channel window.
+ * Observers that do not implement this interface are assumed to consume
+ * each message as it is delivered.
+ */
+public interface FlowControlledObserver {
+
+    /**
+     * Set the listener to call with the number of messages consumed.
+     *
+     * @param listener - the listener, called from any thread
+     */
+    void setConsumedListener(IntConsumer listener);
+}
@@ -0,0 +1,392 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A timer for many short timeouts that are usually cancelled before
+ * they expire, such as protocol timeouts of GRPC streams.
+ *
+ * Timeouts are kept in a wheel of buckets, one per tick. A single
+ * thread advances the wheel every tick and runs the tasks of the
+ * timeouts that expired, so they fire up to a tick late. Scheduling
+ * adds to a lock-free queue and cancelling only flips a flag, the
+ * cancelled timeout is dropped when its bucket is visited.
+ *
+ * Tasks run on the timer thread and must be short, they should only
+ * complete futures or hand work over to another executor.
+ */
+public class HashedWheelTimer implements AutoCloseable {
+
+    /**
+     * Default duration of a tick, in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MSEC = 10;
+
+    /**
+     * Default number of buckets of the wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * The most newly scheduled timeouts put into the wheel per tick.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    /**
+     * The name of the timer thread.
+     */
+    private final String name;
+
+    /**
+     * The duration of a tick, in nanoseconds.
+     */
+    private final long tickNanos;
+
+    /**
+     * The buckets of the wheel, only used by the timer thread.
+     */
+    private final Queue<Timeout>[] wheel;
+
+    /**
+     * Masks a tick into a bucket index.
+     */
+    private final int mask;
+
+    /**
+     * Timeouts scheduled and not put into the wheel yet.
+     */
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Guards starting and stopping the timer thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The timer thread, once started.
+     */
+    private Thread worker;
+
+    /**
+     * If the timer was closed.
+     */
+    private volatile boolean isClosed;
+
+    /**
+     * The time the timer thread started at.
+     */
+    private long startNanos;
+
+    /**
+     * The number of ticks since the timer thread started.
+     */
+    private long tick;
+
+    /**
+     * Holds the shared timer, created on first use.
+     */
+    private static final class Shared {
+
+        /**
+         * The shared timer.
+         */
+        private static final HashedWheelTimer INSTANCE =
+                new HashedWheelTimer("mishmash-timer",
+                        DEFAULT_TICK_MSEC,
+                        DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Create a new HashedWheelTimer. Its thread is started on the
+     * first timeout scheduled.
+     *
+     * @param threadName - the name of the timer thread
+     * @param tickMsec - the duration of a tick, in milliseconds
+     * @param wheelSize - the number of buckets, rounded up to a power
+     *          of two
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelTimer(
+            final String threadName,
+            final long tickMsec,
+            final int wheelSize) {
+        if (tickMsec < 1 || wheelSize < 1 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Invalid timer wheel");
+        }
+
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.name = threadName;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMsec);
+        this.wheel = new Queue[size];
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Get the timer shared by all streams of this process. It is never
+     * closed.
+     *
+     * @return - the shared timer
+     */
+    public static HashedWheelTimer shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Run a task after a delay, unless cancelled.
+     *
+     * @param task - the task
+     * @param delay - the delay
+     * @param unit - the unit of the delay
+     * @return - the timeout, to cancel it
+     */
+    public Timeout schedule(
+            final Runnable task,
+            final long delay,
+            final TimeUnit unit) {
+        Timeout res = new Timeout(task,
+                System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+
+        ensureStarted();
+        added.add(res);
+
+        return res;
+    }
+
+    /**
+     * Start the timer thread if it is not running.
+     */
+    private void ensureStarted() {
+        lock.lock();
+        try {
+            if (isClosed) {
+                throw new IllegalStateException("Timer closed");
+            }
+
+            if (worker == null) {
+                worker = Thread.ofPlatform()
+                        .name(name)
+                        .daemon()
+                        .unstarted(this::run);
+                startNanos = System.nanoTime();
+                worker.start();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advance the wheel every tick until closed.
+     */
+    private void run() {
+        while (!isClosed) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleep = deadline - System.nanoTime();
+
+            while (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if (isClosed) {
+                    return;
+                }
+
+                sleep = deadline - System.nanoTime();
+            }
+
+            transferAdded();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * Put newly scheduled timeouts into their buckets.
+     */
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout t = added.poll();
+            if (t == null) {
+                return;
+            } else if (t.isCancelled()) {
+                continue;
+            }
+
+            long ticks = Math.max(tick,
+                    (t.deadlineNanos - startNanos + tickNanos - 1)
+                        / tickNanos - 1);
+
+            t.rounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(t);
+        }
+    }
+
+    /**
+     * Run the expired timeouts of a bucket and drop the cancelled ones.
+     *
+     * @param bucket - the bucket of the current tick
+     */
+    private void expire(final Queue<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+
+        while (it.hasNext()) {
+            Timeout t = it.next();
+
+            if (t.isCancelled()) {
+                it.remove();
+            } else if (t.rounds <= 0) {
+                it.remove();
+                t.expire();
+            } else {
+                t.rounds--;
+            }
+        }
+    }
+
+    /**
+     * Stop the timer thread. Timeouts not expired yet never run.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        Thread w;
+
+        lock.lock();
+        try {
+            isClosed = true;
+            w = worker;
+        } finally {
+            lock.unlock();
+        }
+
+        added.clear();
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    /**
+     * A task scheduled on a {@link HashedWheelTimer}.
+     */
+    public static final class Timeout {
+
+        /**
+         * The timeout is waiting.
+         */
+        private static final int WAITING = 0;
+
+        /**
+         * The timeout was cancelled.
+         */
+        private static final int CANCELLED = 1;
+
+        /**
+         * The timeout expired and its task ran.
+         */
+        private static final int EXPIRED = 2;
+
+        /**
+         * The task to run.
+         */
+        private final Runnable task;
+
+        /**
+         * When the task should run, as {@link System#nanoTime()}.
+         */
+        private final long deadlineNanos;
+
+        /**
+         * The state of the timeout.
+         */
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        /**
+         * The full turns of the wheel left, only used by the timer
+         * thread.
+         */
+        private long rounds;
+
+        /**
+         * Create a new Timeout.
+         *
+         * @param timeoutTask - the task
+         * @param deadline - when to run it
+         */
+        private Timeout(final Runnable timeoutTask, final long deadline) {
+            this.task = timeoutTask;
+            this.deadlineNanos = deadline;
+        }
+
+        /**
+         * Cancel the timeout, if it did not expire yet.
+         *
+         * @return - true if cancelled by this call
+         */
+        public boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        /**
+         * Check if the timeout was cancelled.
+         *
+         * @return - true if cancelled
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * Check if the timeout expired.
+         *
+         * @return - true if the task ran or is running
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        /**
+         * Run the task, unless cancelled meanwhile.
+         */
+        private void expire() {
+            if (!state.compareAndSet(WAITING, EXPIRED)) {
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // a failing task does not stop the timer
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timeouts of the mishmash GRPC protocol and the timer they are
+ * scheduled on.
+ *
+ * Instances are immutable, the with* methods return modified copies.
+ */
+public final class ProtocolTimeouts {
+
+    /**
+     * Default number of milliseconds a server waits for the SETUP.
+     */
+    public static final int DEFAULT_SETUP_MSEC = 1500;
+
+    /**
+     * Default number of milliseconds a client waits for the SetupAck.
+     */
+    public static final int DEFAULT_SETUP_ACK_MSEC = 1500;
+
+    /**
+     * The default timeouts, on the shared timer, without an idle
+     * timeout.
+     */
+    public static final ProtocolTimeouts DEFAULT =
+            new ProtocolTimeouts(null,
+                    DEFAULT_SETUP_MSEC,
+                    DEFAULT_SETUP_ACK_MSEC,
+                    0);
+
+    /**
+     * The timer, null for the shared one.
+     */
+    private final HashedWheelTimer timer;
+
+    /**
+     * Milliseconds a server waits for the SETUP.
+     */
+    private final long setupMsec;
+
+    /**
+     * Milliseconds a client waits for the SetupAck.
+     */
+    private final long setupAckMsec;
+
+    /**
+     * Milliseconds a stream may go without messages, 0 for no limit.
+     */
+    private final long idleMsec;
+
+    /**
+     * Create new ProtocolTimeouts.
+     *
+     * @param wheelTimer - the timer, null for the shared one
+     * @param setup - milliseconds to wait for the SETUP
+     * @param setupAck - milliseconds to wait for the SetupAck
+     * @param idle - milliseconds without messages, 0 for no limit
+     */
+    private ProtocolTimeouts(
+            final HashedWheelTimer wheelTimer,
+            final long setup,
+            final long setupAck,
+            final long idle) {
+        if (setup < 1 || setupAck < 1 || idle < 0) {
+            throw new IllegalArgumentException("Invalid timeout");
+        }
+
+        this.timer = wheelTimer;
+        this.setupMsec = setup;
+        this.setupAckMsec = setupAck;
+        this.idleMsec = idle;
+    }
+
+    /**
+     * Get the timer timeouts are scheduled on.
+     *
+     * @return - the timer
+     */
+    public HashedWheelTimer getTimer() {
+        return timer == null ? HashedWheelTimer.shared() : timer;
+    }
+
+    /**
+     * Use another timer.
+     *
+     * @param wheelTimer - the timer, null for the shared one
+     * @return - the modified timeouts
+     */
+    public ProtocolTimeouts withTimer(final HashedWheelTimer wheelTimer) {
+        return new ProtocolTimeouts(wheelTimer,
+                setupMsec, setupAckMsec, idleMsec);
+    }
+
+    /**
+     * Get the milliseconds a server waits for the SETUP.
+     *
+     * @return - the timeout
+     */
+    public long getSetupMsec() {
+        return setupMsec;
+    }
+
+    /**
+     * Change the milliseconds a server waits for the SETUP.
+     *
+     * @param msec - the timeout, at least 1
+     * @return - the modified timeouts
+     */
+    public ProtocolTimeouts withSetupMsec(final long msec) {
+        return new ProtocolTimeouts(timer, msec, setupAckMsec, idleMsec);
+    }
+
+    /**
+     * Get the milliseconds a client waits for the SetupAck.
+     *
+     * @return - the timeout
+     */
+    public long getSetupAckMsec() {
+        return setupAckMsec;
+    }
+
+    /**
+     * Change the milliseconds a client waits for the SetupAck.
+     *
+     * @param msec - the timeout, at least 1
+     * @return - the modified timeouts
+     */
+    public ProtocolTimeouts withSetupAckMsec(final long msec) {
+        return new ProtocolTimeouts(timer, setupMsec, msec, idleMsec);
+    }
+
+    /**
+     * Get the milliseconds a stream may go without messages in either
+     * direction before it is closed.
+     *
+     * @return - the timeout, 0 for no limit
+     */
+    public long getIdleMsec() {
+        return idleMsec;
+    }
+
+    /**
+     * Change the milliseconds a stream may go without messages.
+     *
+     * @param msec - the timeout, 0 for no limit
+     * @return - the modified timeouts
+     */
+    public ProtocolTimeouts withIdleMsec(final long msec) {
+        return new ProtocolTimeouts(timer, setupMsec, setupAckMsec, msec);
+    }
+
+    /**
+     * Schedule a task on the timer.
+     *
+     * @param task - the task
+     * @param msec - the delay in milliseconds
+     * @return - the timeout, to cancel it
+     */
+    public HashedWheelTimer.Timeout schedule(
+            final Runnable task,
+            final long msec) {
+        return getTimer().schedule(task, msec, TimeUnit.MILLISECONDS);
+    }
+}
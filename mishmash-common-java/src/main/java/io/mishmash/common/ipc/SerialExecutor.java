@@ -0,0 +1,140 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link Executor} that runs tasks one at a time, in the order
+ * submitted, on another executor.
+ *
+ * Tasks submitted while one is running are queued and run by the same
+ * delegate task once it is done, so a stream's state transitions never
+ * run concurrently nor nest on the stack.
+ *
+ * A task that throws does not stop the following ones, its failure is
+ * passed to the uncaught exception handler of the running thread.
+ */
+public class SerialExecutor implements Executor {
+
+    /**
+     * The executor the tasks run on.
+     */
+    private final Executor delegate;
+
+    /**
+     * Guards the queue of tasks.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Tasks waiting to run.
+     */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    /**
+     * If a delegate task is running or scheduled to run the queue.
+     */
+    private boolean isScheduled;
+
+    /**
+     * Create a new SerialExecutor.
+     *
+     * @param executor - the executor tasks run on
+     */
+    public SerialExecutor(final Executor executor) {
+        this.delegate = executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(final Runnable task) {
+        lock.lock();
+        try {
+            tasks.add(task);
+            if (isScheduled) {
+                return;
+            }
+
+            isScheduled = true;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            delegate.execute(this::drain);
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                tasks.clear();
+                isScheduled = false;
+            } finally {
+                lock.unlock();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Run queued tasks until there are none left.
+     */
+    private void drain() {
+        while (true) {
+            Runnable task;
+
+            lock.lock();
+            try {
+                task = tasks.poll();
+                if (task == null) {
+                    isScheduled = false;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // a failed task does not stop the following ones
+                reportFailure(e);
+            }
+        }
+    }
+
+    /**
+     * Pass the failure of a task to the uncaught exception handler of
+     * the current thread.
+     *
+     * @param e - the failure
+     */
+    private static void reportFailure(final RuntimeException e) {
+        Thread t = Thread.currentThread();
+
+        try {
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        } catch (RuntimeException handlerFailure) {
+            // a failing handler must not leave the queue scheduled forever
+        }
+    }
+}
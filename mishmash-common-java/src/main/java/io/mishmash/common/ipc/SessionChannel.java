@@ -0,0 +1,410 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.grpc.stub.StreamObserver;
+import io.mishmash.common.exception.MishmashProtocolException;
+
+/**
+ * A logical stream or mutation multiplexed over a session.
+ *
+ * The channel is the remote peer of a local {@link StreamObserver},
+ * usually a {@link StatefulGrpcStreamObserver}, so the same states
+ * work over a session and over a dedicated GRPC call.
+ *
+ * Messages are sent while the other side has granted credits for them
+ * and queued otherwise, so that a slow channel does not hold up the
+ * others. Credits are granted back to the other side as the received
+ * messages are consumed: on delivery to the local observer, or when a
+ * {@link FlowControlledObserver} reports them consumed. A channel fails
+ * when the other side sends more messages than it was granted.
+ *
+ * @param <I> - the message type delivered to the local observer
+ * @param <O> - the message type sent by the local observer
+ */
+public abstract class SessionChannel<I, O> implements StreamObserver<O> {
+
+    /**
+     * The number of messages each side may send on a new channel
+     * before it is granted more.
+     */
+    public static final int INITIAL_WINDOW = 64;
+
+    /**
+     * The id of the channel within its session.
+     */
+    private final int channelId;
+
+    /**
+     * The local observer receiving the messages of this channel.
+     */
+    private StreamObserver<I> observer;
+
+    /**
+     * Guards the credits, the queued messages and the close flags.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Messages waiting for credits.
+     */
+    private final Queue<O> pending = new ArrayDeque<>();
+
+    /**
+     * The number of messages that can be sent now.
+     */
+    private int credits = INITIAL_WINDOW;
+
+    /**
+     * The number of messages consumed and not granted back yet.
+     */
+    private int consumed;
+
+    /**
+     * The number of messages the other side can still send.
+     */
+    private int received = INITIAL_WINDOW;
+
+    /**
+     * Set when the local observer reports consumed messages itself.
+     */
+    private volatile boolean isConsumerPaced;
+
+    /**
+     * Set when the local observer completed.
+     */
+    private boolean isLocalClosed;
+
+    /**
+     * Set when a ChannelClose was sent.
+     */
+    private boolean isCloseSent;
+
+    /**
+     * Set when a ChannelClose was received.
+     */
+    private boolean isRemoteClosed;
+
+    /**
+     * Set when the channel failed on either side.
+     */
+    private boolean isFailed;
+
+    /**
+     * Create a SessionChannel.
+     *
+     * @param id - the id of the channel within its session
+     */
+    protected SessionChannel(final int id) {
+        this.channelId = id;
+    }
+
+    /**
+     * Send a message of this channel.
+     *
+     * @param message - the message
+     */
+    protected abstract void send(O message);
+
+    /**
+     * Send a ChannelWindow for this channel.
+     *
+     * @param granted - the number of additional messages granted
+     */
+    protected abstract void sendWindow(int granted);
+
+    /**
+     * Send a ChannelClose for this channel.
+     *
+     * @param failed - if the channel failed
+     */
+    protected abstract void sendClose(boolean failed);
+
+    /**
+     * Remove this channel from its session, it will not send or
+     * receive more messages.
+     */
+    protected abstract void release();
+
+    /**
+     * Get the id of the channel within its session.
+     *
+     * @return - the channel id
+     */
+    public int getChannelId() {
+        return channelId;
+    }
+
+    /**
+     * Get the local observer receiving the messages of this channel.
+     *
+     * @return - the observer
+     */
+    public StreamObserver<I> getObserver() {
+        return observer;
+    }
+
+    /**
+     * Set the local observer receiving the messages of this channel.
+     * It must be set before the first message is delivered.
+     *
+     * @param localObserver - the observer
+     */
+    public void setObserver(final StreamObserver<I> localObserver) {
+        this.observer = localObserver;
+
+        if (localObserver instanceof FlowControlledObserver f) {
+            isConsumerPaced = true;
+            f.setConsumedListener(this::consumed);
+        }
+    }
+
+    /**
+     * Send a message, or queue it until credits are granted.
+     *
+     * Messages sent after the channel failed are dropped.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNext(final O value) {
+        lock.lock();
+        try {
+            if (isFailed) {
+                return;
+            } else if (isLocalClosed) {
+                throw new IllegalStateException("Channel already closed");
+            }
+
+            pending.add(value);
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fail the channel, dropping queued messages.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void onError(final Throwable t) {
+        lock.lock();
+        try {
+            if (isFailed || isCloseSent) {
+                return;
+            }
+
+            fail();
+            sendClose(true);
+        } finally {
+            lock.unlock();
+        }
+
+        release();
+    }
+
+    /**
+     * Close the channel once queued messages are sent.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCompleted() {
+        lock.lock();
+        try {
+            if (isLocalClosed) {
+                return;
+            }
+
+            isLocalClosed = true;
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handle a ChannelWindow from the other side.
+     *
+     * @param granted - the number of additional messages granted
+     */
+    public void grant(final int granted) {
+        lock.lock();
+        try {
+            // saturate instead of overflowing on a misbehaving peer
+            credits = (int) Math.min(Integer.MAX_VALUE,
+                    (long) credits + Integer.toUnsignedLong(granted));
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deliver a message received from the other side to the local
+     * observer.
+     *
+     * Unless the observer is a {@link FlowControlledObserver} the
+     * message counts as consumed once delivered. A message sent over
+     * the granted window fails the channel instead.
+     *
+     * @param message - the message
+     */
+    public void deliver(final I message) {
+        boolean isOverrun = false;
+
+        lock.lock();
+        try {
+            if (!isFailed && !isRemoteClosed) {
+                isOverrun = received == 0;
+                received = Math.max(0, received - 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (isOverrun) {
+            MishmashProtocolException e = new MishmashProtocolException();
+
+            onError(e);
+            observer.onError(e);
+
+            return;
+        }
+
+        observer.onNext(message);
+
+        if (!isConsumerPaced) {
+            consumed(1);
+        }
+    }
+
+    /**
+     * Record consumed messages and grant credits back to the other side
+     * when enough were consumed.
+     *
+     * @param count - the number of messages consumed
+     */
+    public void consumed(final int count) {
+        lock.lock();
+        try {
+            if (isRemoteClosed || isFailed) {
+                return;
+            }
+
+            consumed += count;
+            if (consumed >= INITIAL_WINDOW / 2) {
+                sendWindow(consumed);
+                received += consumed;
+                consumed = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handle a ChannelClose from the other side.
+     *
+     * @param failed - if the channel failed on the other side
+     */
+    public void remoteClosed(final boolean failed) {
+        boolean isReleased;
+
+        lock.lock();
+        try {
+            if (isRemoteClosed || isFailed) {
+                return;
+            }
+
+            isRemoteClosed = true;
+            if (failed) {
+                fail();
+            }
+
+            isReleased = failed || isCloseSent;
+        } finally {
+            lock.unlock();
+        }
+
+        if (failed) {
+            observer.onError(new MishmashProtocolException());
+        } else {
+            observer.onCompleted();
+        }
+
+        if (isReleased) {
+            release();
+        }
+    }
+
+    /**
+     * Fail the channel because its session ended.
+     *
+     * @param t - the error that ended the session or null
+     */
+    public void sessionClosed(final Throwable t) {
+        lock.lock();
+        try {
+            if (isFailed || (isRemoteClosed && isCloseSent)) {
+                return;
+            }
+
+            fail();
+        } finally {
+            lock.unlock();
+        }
+
+        observer.onError(t == null ? new MishmashProtocolException() : t);
+    }
+
+    /**
+     * Mark the channel as failed. The lock must be held.
+     */
+    private void fail() {
+        isFailed = true;
+        isLocalClosed = true;
+        isCloseSent = true;
+        pending.clear();
+    }
+
+    /**
+     * Send queued messages while there are credits and the ChannelClose
+     * once all were sent. The lock must be held.
+     */
+    private void drain() {
+        while (credits > 0 && !pending.isEmpty()) {
+            credits--;
+            send(pending.poll());
+        }
+
+        if (isLocalClosed && !isCloseSent && pending.isEmpty()) {
+            isCloseSent = true;
+            sendClose(false);
+
+            if (isRemoteClosed) {
+                release();
+            }
+        }
+    }
+}
@@ -17,13 +17,25 @@
 package io.mishmash.common.ipc;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.grpc.stub.StreamObserver;
+import io.mishmash.common.exception.MishmashTimeoutException;
 
 /**
  * A GRPC Stream Observer with states.
  *
+ * State transitions and outputs run on the {@link Executor} set with
+ * {@link #setExecutor(Executor)}, see {@link StreamExecutors}. Without
+ * one, states are entered on the common fork-join pool and outputs are
+ * sent on the thread that completes them.
+ *
+ * If the {@link ProtocolTimeouts} set have an idle timeout, the stream
+ * is closed with an error once no message was sent or received for
+ * that long.
+ *
  * @param <I> - The input message type
  * @param <O> - The output message type
  */
@@ -49,6 +61,31 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
      */
     private AtomicInteger localSeqNo = new AtomicInteger(0);
 
+    /**
+     * The executor of state transitions and outputs, if any.
+     */
+    private Executor executor;
+
+    /**
+     * The protocol timeouts.
+     */
+    private ProtocolTimeouts timeouts = ProtocolTimeouts.DEFAULT;
+
+    /**
+     * When the last message was sent or received.
+     */
+    private volatile long lastActivityNanos;
+
+    /**
+     * The pending check of the idle timeout, if any.
+     */
+    private volatile HashedWheelTimer.Timeout idleTimeout;
+
+    /**
+     * If the stream was closed.
+     */
+    private volatile boolean isClosed;
+
     /**
      * Create a StatefulStreamObserver.
      *
@@ -84,6 +121,96 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
         this.peer = remotePeer;
     }
 
+    /**
+     * Get the executor of state transitions and outputs.
+     *
+     * @return - the executor or null if the default is used
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor of state transitions and outputs. It should be
+     * set before the first state is entered and not be shared between
+     * streams if it runs tasks serially.
+     *
+     * @param stateExecutor - the executor or null to use the default
+     */
+    public void setExecutor(final Executor stateExecutor) {
+        this.executor = stateExecutor;
+    }
+
+    /**
+     * Get the protocol timeouts.
+     *
+     * @return - the timeouts
+     */
+    public ProtocolTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Set the protocol timeouts. They should be set before the first
+     * state is entered.
+     *
+     * @param protocolTimeouts - the timeouts
+     */
+    public void setTimeouts(final ProtocolTimeouts protocolTimeouts) {
+        this.timeouts = protocolTimeouts;
+    }
+
+    /**
+     * Record that a message was sent or received.
+     */
+    private void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    /**
+     * Start checking the idle timeout, if there is one.
+     */
+    private void startIdleTimeout() {
+        if (idleTimeout == null && timeouts.getIdleMsec() > 0) {
+            touch();
+            scheduleIdleCheck(timeouts.getIdleMsec());
+        }
+    }
+
+    /**
+     * Schedule the next check of the idle timeout.
+     *
+     * @param msec - the delay in milliseconds
+     */
+    private void scheduleIdleCheck(final long msec) {
+        HashedWheelTimer.Timeout t = timeouts.schedule(this::checkIdle, msec);
+
+        idleTimeout = t;
+        if (isClosed) {
+            t.cancel();
+        }
+    }
+
+    /**
+     * Close the stream if it was idle for too long, or check again
+     * when it could be.
+     */
+    private void checkIdle() {
+        if (isClosed) {
+            return;
+        }
+
+        long idleMsec = timeouts.getIdleMsec();
+        long elapsedMsec = TimeUnit.NANOSECONDS.toMillis(
+                System.nanoTime() - lastActivityNanos);
+
+        if (elapsedMsec >= idleMsec) {
+            closeWithError(new MishmashTimeoutException());
+        } else {
+            scheduleIdleCheck(idleMsec - elapsedMsec);
+        }
+    }
+
     /**
      * Set the given state as current state and begin work with it.
      *
@@ -99,8 +226,12 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
         }
 
         currentState = state;
-        currentState.enter()
-            .thenAcceptAsync(this::asyncOutput)
+        startIdleTimeout();
+
+        CompletableFuture<Void> entered = currentState.enter();
+        (executor == null
+                ? entered.thenAcceptAsync(this::asyncOutput)
+                : entered.thenAcceptAsync(this::asyncOutput, executor))
             .exceptionally(this::closeWithError);
     }
 
@@ -111,6 +242,8 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
      */
     @Override
     public void onNext(final I value) {
+        touch();
+
         try {
             currentState.validateInput(value);
 
@@ -153,7 +286,10 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
     protected Void closeWithError(final Throwable t) {
         peer.onError(t);
 
-        currentState.error(t);
+        GrpcStreamState<I, O> state = currentState;
+        if (state != null) {
+            state.error(t);
+        }
 
         handleClose();
 
@@ -166,8 +302,11 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
      * @param v - null
      */
     protected void asyncOutput(final Void v) {
-        outputFuture = currentState.output(localSeqNo)
-                .thenAccept(this::output)
+        CompletableFuture<O> next = currentState.output(localSeqNo);
+
+        outputFuture = (executor == null
+                    ? next.thenAccept(this::output)
+                    : next.thenAcceptAsync(this::output, executor))
                 .exceptionally(this::closeWithError);
     }
 
@@ -189,6 +328,7 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
                 initState(nextState);
             }
         } else {
+            touch();
             peer.onNext(output);
             // wait for next output
             asyncOutput(null);
@@ -199,6 +339,13 @@ public class StatefulGrpcStreamObserver<I, O> implements StreamObserver<I> {
      * Releases any resources held.
      */
     protected void handleClose() {
+        isClosed = true;
+
+        HashedWheelTimer.Timeout t = idleTimeout;
+        if (t != null) {
+            t.cancel();
+        }
+
         if (currentState != null) {
             try {
                 currentState.close();
@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Executors for the state transitions of a
+ * {@link StatefulGrpcStreamObserver}.
+ *
+ * Each call returns a new executor, meant for a single stream, so that
+ * they can be passed as a {@code Supplier<Executor>} to builders.
+ */
+public final class StreamExecutors {
+
+    /**
+     * Hide the constructor.
+     */
+    private StreamExecutors() {
+        // Utility class
+    }
+
+    /**
+     * Run state transitions on the calling thread - the one completing
+     * a state's future, usually a GRPC callback thread. It adds no
+     * latency, but states must not block.
+     *
+     * @return - the executor
+     */
+    public static Executor direct() {
+        return Runnable::run;
+    }
+
+    /**
+     * Run state transitions on the common fork-join pool, as done by
+     * default.
+     *
+     * @return - the executor
+     */
+    public static Executor commonPool() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Run state transitions one at a time, in order, on the given
+     * executor - for example the executor of the GRPC channel or
+     * server, so that a stream stays on its event loop.
+     *
+     * @param executor - the executor to run on
+     * @return - the executor
+     */
+    public static Executor serial(final Executor executor) {
+        return new SerialExecutor(executor);
+    }
+
+    /**
+     * Run state transitions one at a time, in order, on virtual threads.
+     * States may block without holding up a platform thread.
+     *
+     * @return - the executor
+     */
+    public static Executor virtualThread() {
+        return serial(task -> Thread.ofVirtual()
+                .name("mishmash-stream")
+                .start(task));
+    }
+}
@@ -16,13 +16,18 @@
  */
 package io.mishmash.common.ipc.client;
 
+import java.util.Iterator;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.mishmash.common.data.BaseDataPoint;
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Value;
 import io.mishmash.common.ipc.StatefulGrpcStreamObserver;
+import io.mishmash.common.ipc.proto.SetupCanonicalizer;
+import io.mishmash.common.ipc.proto.SetupChunker;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
 
 /**
  * A base implementation for a mishmash io client.
@@ -34,6 +39,22 @@ public abstract class BaseClient<I, O>
         extends StatefulGrpcStreamObserver<I, O>
         implements AutoCloseable {
 
+    /**
+     * The Setup GRPC message to send on open.
+     */
+    private O setupMessage;
+
+    /**
+     * The Setup GRPC message with only a fingerprint, if it should be
+     * sent first.
+     */
+    private O fingerprintMessage;
+
+    /**
+     * The continuations of a chunked setup still to be sent, if any.
+     */
+    private Iterator<MishmashSetupContinuation.Builder> continuations;
+
     /**
      * Open the client.
      *
@@ -49,6 +70,88 @@ public abstract class BaseClient<I, O>
      */
     public abstract O getSetupMessage(MishmashSetup.Builder setup);
 
+    /**
+     * Build a Setup continuation GRPC message.
+     *
+     * @param clientSeqNo - the client sequence number
+     * @param continuation - the next chunk of the setup
+     * @return - the proper GRPC Setup continuation message
+     */
+    public abstract O getSetupContinuationMessage(int clientSeqNo,
+            MishmashSetupContinuation.Builder continuation);
+
+    /**
+     * Get the Setup GRPC message that will be sent on open.
+     *
+     * @return - the Setup GRPC message
+     */
+    public O getSetup() {
+        return setupMessage;
+    }
+
+    /**
+     * Set the Setup GRPC message that will be sent on open.
+     *
+     * @param setup - the Setup GRPC message
+     */
+    public void setSetup(final O setup) {
+        this.setupMessage = setup;
+    }
+
+    /**
+     * Get the Setup GRPC message that carries only a fingerprint.
+     *
+     * @return - the Setup GRPC message or null if the full setup
+     *          is sent right away
+     */
+    public O getFingerprintSetup() {
+        return fingerprintMessage;
+    }
+
+    /**
+     * Send only the fingerprint of a setup on open, letting the server
+     * reuse a plan it built for an identical setup. The full setup is
+     * sent if the server asks for it.
+     *
+     * @param setup - the full setup or null to send it right away
+     */
+    public void useFingerprint(final MishmashSetup setup) {
+        fingerprintMessage = setup == null
+                ? null
+                : getSetupMessage(MishmashSetup.newBuilder()
+                        .setFingerprint(SetupCanonicalizer.hash(setup)));
+    }
+
+    /**
+     * Send a setup in chunks of limited size on open, the first one in
+     * the Setup GRPC message and the rest in continuations.
+     *
+     * @param setup - the full setup
+     * @param maxChunkBytes - the maximum serialized size of a chunk
+     */
+    public void useChunks(final MishmashSetup setup,
+            final int maxChunkBytes) {
+        SetupChunker chunker = new SetupChunker(setup, maxChunkBytes);
+
+        setSetup(getSetupMessage(chunker.getSetup()));
+        continuations = chunker;
+    }
+
+    /**
+     * Get the next Setup continuation GRPC message to send.
+     *
+     * @param currentSeqNo - the client sequence number
+     * @return - the message or null if there are no more
+     */
+    public O nextSetupContinuation(final AtomicInteger currentSeqNo) {
+        if (continuations == null || !continuations.hasNext()) {
+            return null;
+        }
+
+        return getSetupContinuationMessage(currentSeqNo.getAndIncrement(),
+                continuations.next());
+    }
+
     /**
      * Accepts and stores a {@link BaseDataPoint}.
      *
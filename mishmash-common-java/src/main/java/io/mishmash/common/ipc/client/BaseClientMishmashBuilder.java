@@ -149,6 +149,23 @@ public abstract class BaseClientMishmashBuilder<
         return this;
     }
 
+    /**
+     * Add a named placeholder, to be bound later by a
+     * {@link PreparedSetup}.
+     *
+     * A setup that still contains placeholders cannot be sent.
+     *
+     * @param name - the placeholder name
+     * @return - this builder
+     * @throws MishmashException - if an error occurs
+     */
+    public BaseClientMishmashBuilder<I, O, CT, MT>
+            addPlaceholder(final String name)
+                    throws MishmashException {
+        merge(Literal.newBuilder().setPlaceholder(name));
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
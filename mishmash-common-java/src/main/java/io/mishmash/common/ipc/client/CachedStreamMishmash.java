@@ -0,0 +1,199 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.google.protobuf.ByteString;
+
+import io.grpc.stub.StreamObserver;
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
+import io.mishmash.common.rpc.MishmashServiceGrpc.MishmashServiceStub;
+
+/**
+ * A {@link StreamMishmash} that serves its data points from a
+ * {@link ResultCache} when possible.
+ *
+ * On a cache miss the stream is opened as usual and the data points read
+ * are recorded. If the stream is read to the end the result is stored
+ * in the cache.
+ */
+public class CachedStreamMishmash extends StreamMishmash {
+
+    /**
+     * The cache.
+     */
+    private final ResultCache cache;
+
+    /**
+     * The target set of the setup.
+     */
+    private final MishmashSetDescriptorList target;
+
+    /**
+     * The cache key of the target set.
+     */
+    private final ByteString key;
+
+    /**
+     * The cached data points not returned yet, on a cache hit.
+     */
+    private Iterator<DataPoint> cached;
+
+    /**
+     * The data points read so far, on a cache miss, or null if the
+     * result will not be cached.
+     */
+    private List<DataPoint> recorded;
+
+    /**
+     * The cache generation when the stream was opened.
+     */
+    private long generation;
+
+    /**
+     * Create a cached stream.
+     *
+     * @param stub - the GRPC service stub to use
+     * @param setup - the GRPC MishmashSetup message
+     * @param client - the {@link StreamClient}
+     * @param resultCache - the cache
+     */
+    public CachedStreamMishmash(
+            final MishmashServiceStub stub,
+            final MishmashSetup.Builder setup,
+            final StreamClient client,
+            final ResultCache resultCache) {
+        this(stub::stream, setup, client, resultCache);
+    }
+
+    /**
+     * Create a cached stream opened by a function, for example on a
+     * {@link ClientSession}.
+     *
+     * @param remotePeer - opens the stream for a client
+     * @param setup - the GRPC MishmashSetup message
+     * @param client - the {@link StreamClient}
+     * @param resultCache - the cache
+     */
+    public CachedStreamMishmash(
+            final Function<StreamClient, StreamObserver<StreamClientMessage>>
+                remotePeer,
+            final MishmashSetup.Builder setup,
+            final StreamClient client,
+            final ResultCache resultCache) {
+        super(remotePeer, setup, client);
+
+        this.cache = resultCache;
+        this.target = setup.getTargetSet();
+        this.key = ResultCache.keyOf(target);
+    }
+
+    /**
+     * Check if the data points are served from the cache.
+     *
+     * @return - true on a cache hit
+     */
+    public boolean isCached() {
+        return cached != null;
+    }
+
+    /**
+     * Open the stream, unless the result is cached.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        generation = cache.generation();
+
+        List<DataPoint> hit = cache.get(key);
+        if (hit != null) {
+            cached = hit.iterator();
+
+            return CompletableFuture.completedFuture(null);
+        }
+
+        recorded = new ArrayList<>();
+
+        return super.open();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
+        if (cached != null) {
+            return CompletableFuture.completedFuture(
+                    cached.hasNext() ? cached.next() : null);
+        }
+
+        return getClient().next().thenApply(this::record);
+    }
+
+    /**
+     * Record a data point read from the stream.
+     *
+     * @param dataPoint - the data point or null at the end
+     * @return - the data point
+     */
+    private BaseDataPoint<Key, Value> record(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        if (recorded == null) {
+            return dataPoint;
+        } else if (dataPoint == null) {
+            cache.put(key, target, recorded, generation);
+            recorded = null;
+
+            return null;
+        }
+
+        DataPoint dp = DataPoint.copyOf(dataPoint);
+        recorded.add(dp);
+        if (recorded.size() > cache.getMaxDataPoints()) {
+            // too large to be cached
+            recorded = null;
+        }
+
+        return dp;
+    }
+
+    /**
+     * Close the stream, if it was opened.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        recorded = null;
+
+        if (cached == null) {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,614 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * A pool of GRPC connections to one target, used as a single
+ * {@link Channel}.
+ *
+ * A single HTTP/2 connection carries a limited number of concurrent
+ * streams. The pool keeps several {@link ManagedChannel}s and places
+ * each new call - a stream, a mutation or a session - on the one with
+ * the lowest load when the call starts. The load of a connection is
+ * its number of active calls weighted by a moving average of the time
+ * its calls took to receive their first message. Calls that fail
+ * before any message raise the average instead of adding their short
+ * time to it, and connections in TRANSIENT_FAILURE are used only when
+ * no other connection is available.
+ *
+ * Pass the pool to a {@link StreamBuilder}, a {@link MutationBuilder}
+ * or a GRPC stub like any other channel.
+ */
+public class ChannelPool extends Channel implements AutoCloseable {
+
+    /**
+     * Default number of connections of a pool.
+     */
+    public static final int DEFAULT_SIZE = 4;
+
+    /**
+     * Default number of milliseconds closing waits for active calls.
+     */
+    public static final long DEFAULT_DRAIN_MSEC = 5000;
+
+    /**
+     * The weight of a new latency sample in the moving average.
+     */
+    static final double EWMA_WEIGHT = 0.2;
+
+    /**
+     * The least average latency, in nanoseconds, of a connection that
+     * had a call fail before its first message.
+     */
+    static final long FAILURE_PENALTY_NANOS = 1_000_000_000L;
+
+    /**
+     * The connections of the pool.
+     */
+    private final List<PooledChannel> channels;
+
+    /**
+     * Spreads ties between equally loaded connections.
+     */
+    private final AtomicInteger nextStart = new AtomicInteger();
+
+    /**
+     * If the pool was shut down.
+     */
+    private volatile boolean isShutdown;
+
+    /**
+     * Create a new pool.
+     *
+     * @param channelFactory - creates a connection to the target
+     * @param size - the number of connections
+     */
+    public ChannelPool(
+            final Supplier<ManagedChannel> channelFactory,
+            final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "A pool needs at least one channel");
+        }
+
+        List<PooledChannel> res = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            res.add(new PooledChannel(channelFactory.get()));
+        }
+
+        this.channels = Collections.unmodifiableList(res);
+    }
+
+    /**
+     * Get the connections of the pool.
+     *
+     * @return - the connections
+     */
+    public List<PooledChannel> getChannels() {
+        return channels;
+    }
+
+    /**
+     * Pick the connection for a new call.
+     *
+     * Connections that are shut down are skipped, the others are
+     * ordered by {@link PooledChannel#getLoad()}. Connections in
+     * TRANSIENT_FAILURE are picked only if all others are shut down.
+     *
+     * @return - the connection
+     */
+    protected PooledChannel pick() {
+        int size = channels.size();
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        PooledChannel best = null;
+        double bestLoad = Double.MAX_VALUE;
+        PooledChannel failing = null;
+        double failingLoad = Double.MAX_VALUE;
+
+        for (int i = 0; i < size; i++) {
+            PooledChannel c = channels.get((start + i) % size);
+            if (c.getChannel().isShutdown()) {
+                continue;
+            }
+
+            double load = c.getLoad();
+            if (c.getChannel().getState(false)
+                    == ConnectivityState.TRANSIENT_FAILURE) {
+                if (failing == null || load < failingLoad) {
+                    failing = c;
+                    failingLoad = load;
+                }
+            } else if (best == null || load < bestLoad) {
+                best = c;
+                bestLoad = load;
+            }
+        }
+
+        return best == null ? failing : best;
+    }
+
+    /**
+     * Start a call on the least loaded connection.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public <I, O> ClientCall<I, O> newCall(
+            final MethodDescriptor<I, O> method,
+            final CallOptions callOptions) {
+        PooledChannel c = isShutdown ? null : pick();
+
+        if (c == null) {
+            return new FailedCall<>(Status.UNAVAILABLE
+                    .withDescription("Channel pool shut down"));
+        }
+
+        return c.newCall(method, callOptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String authority() {
+        return channels.get(0).getChannel().authority();
+    }
+
+    /**
+     * Connect all channels of the pool.
+     *
+     * @return - a future that completes once all channels are ready,
+     *          or fails if one of them is shut down first
+     */
+    public CompletableFuture<Void> warmUp() {
+        List<CompletableFuture<Void>> ready = new ArrayList<>();
+
+        for (PooledChannel c : channels) {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            awaitReady(c.getChannel(), f);
+            ready.add(f);
+        }
+
+        return CompletableFuture.allOf(
+                ready.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Connect a channel and complete a future once it is ready.
+     *
+     * @param channel - the channel
+     * @param ready - the future
+     */
+    private static void awaitReady(
+            final ManagedChannel channel,
+            final CompletableFuture<Void> ready) {
+        ConnectivityState state = channel.getState(true);
+
+        if (state == ConnectivityState.READY) {
+            ready.complete(null);
+        } else if (state == ConnectivityState.SHUTDOWN) {
+            ready.completeExceptionally(Status.UNAVAILABLE
+                    .withDescription("Channel shut down")
+                    .asRuntimeException());
+        } else {
+            channel.notifyWhenStateChanged(state,
+                    () -> awaitReady(channel, ready));
+        }
+    }
+
+    /**
+     * Stop placing new calls and shut the channels down. Active calls
+     * continue until they end.
+     */
+    public void shutdown() {
+        isShutdown = true;
+
+        for (PooledChannel c : channels) {
+            c.getChannel().shutdown();
+        }
+    }
+
+    /**
+     * Wait for the channels to terminate after {@link #shutdown()}.
+     *
+     * @param timeout - the most time to wait
+     * @param unit - the unit of the timeout
+     * @return - true if all channels terminated
+     * @throws InterruptedException - if interrupted while waiting
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        for (PooledChannel c : channels) {
+            long left = deadline - System.nanoTime();
+            if (!c.getChannel().awaitTermination(
+                    Math.max(0, left), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Shut the channels down right away, cancelling active calls.
+     */
+    public void shutdownNow() {
+        isShutdown = true;
+
+        for (PooledChannel c : channels) {
+            c.getChannel().shutdownNow();
+        }
+    }
+
+    /**
+     * Drain the pool: stop placing new calls, wait up to
+     * {@link #DEFAULT_DRAIN_MSEC} for the active ones, then cancel
+     * those left.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws InterruptedException {
+        isShutdown = true;
+
+        drain(channels, DEFAULT_DRAIN_MSEC);
+    }
+
+    /**
+     * Shut connections down, wait for their active calls and cancel
+     * those left after a while.
+     *
+     * @param pooled - the connections
+     * @param msec - the most milliseconds to wait
+     * @throws InterruptedException - if interrupted while waiting, the
+     *          calls left are cancelled
+     */
+    static void drain(
+            final List<? extends PooledChannel> pooled,
+            final long msec) throws InterruptedException {
+        for (PooledChannel c : pooled) {
+            c.getChannel().shutdown();
+        }
+
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(msec);
+
+        try {
+            for (PooledChannel c : pooled) {
+                long left = deadline - System.nanoTime();
+                if (!c.getChannel().awaitTermination(
+                        Math.max(0, left), TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            }
+        } finally {
+            for (PooledChannel c : pooled) {
+                c.getChannel().shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * A connection of a {@link ChannelPool} and its load.
+     */
+    public static class PooledChannel extends Channel {
+
+        /**
+         * The connection.
+         */
+        private final ManagedChannel channel;
+
+        /**
+         * The number of active calls.
+         */
+        private final AtomicInteger activeCalls = new AtomicInteger();
+
+        /**
+         * The moving average of the nanoseconds to the first message
+         * of a call, as double bits. 0 until the first sample.
+         */
+        private final AtomicLong latencyBits = new AtomicLong();
+
+        /**
+         * Create a new PooledChannel.
+         *
+         * @param managedChannel - the connection
+         */
+        public PooledChannel(final ManagedChannel managedChannel) {
+            this.channel = managedChannel;
+        }
+
+        /**
+         * Get the connection.
+         *
+         * @return - the connection
+         */
+        public ManagedChannel getChannel() {
+            return channel;
+        }
+
+        /**
+         * Get the number of active calls.
+         *
+         * @return - the number of calls started and not closed
+         */
+        public int getActiveCalls() {
+            return activeCalls.get();
+        }
+
+        /**
+         * Get the moving average of the time calls take to receive
+         * their first message.
+         *
+         * @return - the average in nanoseconds, 0 if not known yet
+         */
+        public double getLatencyNanos() {
+            return Double.longBitsToDouble(latencyBits.get());
+        }
+
+        /**
+         * Get the load of the connection: the active calls, plus the
+         * new one, times the latency. An unknown latency counts as
+         * the lowest possible one.
+         *
+         * @return - the load
+         */
+        public double getLoad() {
+            return (activeCalls.get() + 1)
+                    * Math.max(1.0, getLatencyNanos());
+        }
+
+        /**
+         * Add a latency sample to the moving average.
+         *
+         * @param nanos - the sample
+         */
+        void sample(final long nanos) {
+            long prev;
+            long next;
+
+            do {
+                prev = latencyBits.get();
+                double avg = Double.longBitsToDouble(prev);
+                next = Double.doubleToLongBits(avg == 0
+                        ? nanos
+                        : avg + EWMA_WEIGHT * (nanos - avg));
+            } while (!latencyBits.compareAndSet(prev, next));
+        }
+
+        /**
+         * Raise the moving average after a call failed without a
+         * reply: double it, to at least {@link #FAILURE_PENALTY_NANOS}.
+         */
+        void penalize() {
+            long prev;
+            long next;
+
+            do {
+                prev = latencyBits.get();
+                double avg = Double.longBitsToDouble(prev);
+                next = Double.doubleToLongBits(
+                        Math.max(FAILURE_PENALTY_NANOS, 2 * avg));
+            } while (!latencyBits.compareAndSet(prev, next));
+        }
+
+        /**
+         * Handle the first message received by a call on this
+         * connection. The default implementation counts every reply.
+         *
+         * @param message - the message
+         * @return - true if the latency of the reply is sampled
+         */
+        protected boolean firstMessage(final Object message) {
+            return true;
+        }
+
+        /**
+         * Handle the end of a call on this connection. The default
+         * implementation does nothing.
+         *
+         * @param status - the status the call closed with
+         */
+        protected void callClosed(final Status status) {
+            // nothing to do
+        }
+
+        /**
+         * Start a call counted in the load of this connection.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public <I, O> ClientCall<I, O> newCall(
+                final MethodDescriptor<I, O> method,
+                final CallOptions callOptions) {
+            return new TrackedCall<>(this,
+                    channel.newCall(method, callOptions));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String authority() {
+            return channel.authority();
+        }
+    }
+
+    /**
+     * A call that updates the load of its connection.
+     *
+     * @param <I> - the request type
+     * @param <O> - the response type
+     */
+    private static final class TrackedCall<I, O>
+            extends ForwardingClientCall.SimpleForwardingClientCall<I, O> {
+
+        /**
+         * The connection of the call.
+         */
+        private final PooledChannel pooled;
+
+        /**
+         * Create a new TrackedCall.
+         *
+         * @param channel - the connection of the call
+         * @param call - the call
+         */
+        TrackedCall(final PooledChannel channel, final ClientCall<I, O> call) {
+            super(call);
+            this.pooled = channel;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start(final Listener<O> listener, final Metadata headers) {
+            long startNanos = System.nanoTime();
+            AtomicInteger state = new AtomicInteger();
+
+            pooled.activeCalls.incrementAndGet();
+
+            try {
+                super.start(new ForwardingClientCallListener
+                        .SimpleForwardingClientCallListener<O>(listener) {
+
+                    @Override
+                    public void onMessage(final O message) {
+                        if (state.compareAndSet(0, 1)) {
+                            long nanos = System.nanoTime() - startNanos;
+
+                            if (pooled.firstMessage(message)) {
+                                pooled.sample(nanos);
+                            }
+                        }
+
+                        super.onMessage(message);
+                    }
+
+                    @Override
+                    public void onClose(
+                            final Status status,
+                            final Metadata trailers) {
+                        boolean isFirst = state.getAndSet(2) == 0;
+
+                        if (isFirst && status.isOk()) {
+                            // closed before any message
+                            pooled.sample(System.nanoTime() - startNanos);
+                        } else if (isFirst) {
+                            // a fast failure is not a fast connection
+                            pooled.penalize();
+                        }
+
+                        pooled.activeCalls.decrementAndGet();
+                        pooled.callClosed(status);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            } catch (RuntimeException e) {
+                pooled.activeCalls.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A call that fails right away.
+     *
+     * @param <I> - the request type
+     * @param <O> - the response type
+     */
+    static final class FailedCall<I, O> extends ClientCall<I, O> {
+
+        /**
+         * The status to fail with.
+         */
+        private final Status status;
+
+        /**
+         * Create a new FailedCall.
+         *
+         * @param failure - the status to fail with
+         */
+        FailedCall(final Status failure) {
+            this.status = failure;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start(final Listener<O> listener, final Metadata headers) {
+            listener.onClose(status, new Metadata());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void request(final int numMessages) {
+            // nothing to deliver
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void cancel(final String message, final Throwable cause) {
+            // already closed
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void halfClose() {
+            // already closed
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void sendMessage(final I message) {
+            // dropped, the call failed
+        }
+    }
+}
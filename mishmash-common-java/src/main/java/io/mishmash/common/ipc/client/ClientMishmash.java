@@ -54,6 +54,8 @@ public abstract class ClientMishmash<I, O, CT extends BaseClient<I, O>>
             final Function<CT, StreamObserver<O>> remotePeer) {
         this.grpcClient = client;
         this.remotePeerGetter = remotePeer;
+
+        grpcClient.setSetup(setup);
     }
 
     /**
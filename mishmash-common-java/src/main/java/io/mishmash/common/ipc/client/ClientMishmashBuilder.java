@@ -16,8 +16,12 @@
  */
 package io.mishmash.common.ipc.client;
 
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
 import io.mishmash.common.exception.MishmashException;
 import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.ipc.ProtocolTimeouts;
 import io.mishmash.common.rpc.MishmashRpc.Intersection;
 import io.mishmash.common.rpc.MishmashRpc.LambdaFunction;
 import io.mishmash.common.rpc.MishmashRpc.Literal;
@@ -51,6 +55,16 @@ public abstract class ClientMishmashBuilder<
      */
     private MishmashSetup.Builder setupBuilder;
 
+    /**
+     * Creates the executor of each stream or mutation built, if set.
+     */
+    private Supplier<? extends Executor> executorFactory;
+
+    /**
+     * The protocol timeouts of each stream or mutation built.
+     */
+    private ProtocolTimeouts timeouts = ProtocolTimeouts.DEFAULT;
+
     /**
      * Create the 'top-level' base client mishmash builder.
      */
@@ -91,6 +105,65 @@ public abstract class ClientMishmashBuilder<
         return setupBuilder;
     }
 
+    /**
+     * Run the state transitions of each stream or mutation built on
+     * its own executor, for example {@code StreamExecutors::direct}
+     * or {@code StreamExecutors::virtualThread}.
+     *
+     * @param factory - creates an executor per stream or mutation,
+     *          null to use the default
+     * @return - this builder
+     */
+    public ClientMishmashBuilder<I, O, CT, MT> setExecutorFactory(
+            final Supplier<? extends Executor> factory) {
+        this.executorFactory = factory;
+        return this;
+    }
+
+    /**
+     * Set the protocol timeouts of each stream or mutation built.
+     *
+     * @param protocolTimeouts - the timeouts
+     * @return - this builder
+     */
+    public ClientMishmashBuilder<I, O, CT, MT> setTimeouts(
+            final ProtocolTimeouts protocolTimeouts) {
+        this.timeouts = protocolTimeouts;
+        return this;
+    }
+
+    /**
+     * Set the executor and the timeouts of this builder on a new client.
+     *
+     * @param client - the new client
+     * @return - the client
+     */
+    protected CT configure(final CT client) {
+        if (executorFactory != null) {
+            client.setExecutor(executorFactory.get());
+        }
+
+        client.setTimeouts(timeouts);
+
+        return client;
+    }
+
+    /**
+     * Start from an already built setup, for example one bound by a
+     * {@link PreparedSetup}, instead of adding elements.
+     *
+     * Client options and the mutation type of this builder are applied
+     * on top of the given setup.
+     *
+     * @param setup - the setup
+     * @return - this builder
+     */
+    public ClientMishmashBuilder<I, O, CT, MT> fromSetup(
+            final MishmashSetup setup) {
+        setupBuilder = setup.toBuilder();
+        return this;
+    }
+
     /**
      * Merging of literals is not allowed.
      *
@@ -0,0 +1,264 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.grpc.stub.StreamObserver;
+import io.mishmash.common.exception.MishmashProtocolException;
+import io.mishmash.common.ipc.BaseSession;
+import io.mishmash.common.ipc.SessionChannel;
+import io.mishmash.common.ipc.proto.SessionMessages;
+import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.SessionClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.SessionServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
+import io.mishmash.common.rpc.MishmashServiceGrpc.MishmashServiceStub;
+
+/**
+ * The client end of a GRPC session.
+ *
+ * {@link #stream(StreamObserver)} and {@link #mutate(StreamObserver)}
+ * open logical channels the same way the GRPC service stub opens calls,
+ * so that {@link StreamMishmash}es and {@link MutationMishmash}es can
+ * share one session instead of opening a call each.
+ */
+public class ClientSession
+        extends BaseSession<SessionServerMessage, SessionClientMessage>
+        implements AutoCloseable {
+
+    /**
+     * The id of the next channel to open.
+     */
+    private final AtomicInteger nextChannelId = new AtomicInteger(1);
+
+    /**
+     * Open a session.
+     *
+     * @param stub - the GRPC service stub to use
+     */
+    public ClientSession(final MishmashServiceStub stub) {
+        setRemotePeer(stub.session(this));
+    }
+
+    /**
+     * Open a logical stream.
+     *
+     * @param responseObserver - receives the server messages
+     * @return - the observer to send client messages to
+     * @throws IllegalStateException - if the session ended
+     */
+    public StreamObserver<StreamClientMessage> stream(
+            final StreamObserver<StreamServerMessage> responseObserver) {
+        return open(new StreamChannel(nextChannelId.getAndIncrement()),
+                responseObserver);
+    }
+
+    /**
+     * Open a logical mutation.
+     *
+     * @param responseObserver - receives the server messages
+     * @return - the observer to send client messages to
+     * @throws IllegalStateException - if the session ended
+     */
+    public StreamObserver<MutationClientMessage> mutate(
+            final StreamObserver<MutationServerMessage> responseObserver) {
+        return open(new MutationChannel(nextChannelId.getAndIncrement()),
+                responseObserver);
+    }
+
+    /**
+     * Register a new channel.
+     *
+     * @param <I> - the message type delivered to the observer
+     * @param <O> - the message type sent on the channel
+     * @param channel - the channel
+     * @param responseObserver - receives the server messages
+     * @return - the channel
+     * @throws IllegalStateException - if the session ended
+     */
+    private <I, O> SessionChannel<I, O> open(
+            final SessionChannel<I, O> channel,
+            final StreamObserver<I> responseObserver) {
+        channel.setObserver(responseObserver);
+
+        if (!register(channel)) {
+            throw new IllegalStateException("Session already closed");
+        }
+
+        return channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNext(final SessionServerMessage value) {
+        int channelId = value.getChannelId();
+        SessionChannel<?, ?> channel;
+
+        switch (value.getAltCase()) {
+        case STREAM:
+            channel = getChannel(channelId);
+            if (channel instanceof StreamChannel s) {
+                s.deliver(value.getStream());
+            } else if (channel != null) {
+                channel.onError(new MishmashProtocolException());
+            }
+            break;
+        case MUTATION:
+            channel = getChannel(channelId);
+            if (channel instanceof MutationChannel m) {
+                m.deliver(value.getMutation());
+            } else if (channel != null) {
+                channel.onError(new MishmashProtocolException());
+            }
+            break;
+        case WINDOW:
+            window(channelId, value.getWindow().getCredits());
+            break;
+        case CLOSE:
+            close(channelId, value.getClose().getFailed());
+            break;
+        default:
+            closeWithError(new MishmashProtocolException());
+            break;
+        }
+    }
+
+    /**
+     * End the session, failing channels still open.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        onCompleted();
+    }
+
+    /**
+     * A logical stream.
+     */
+    private final class StreamChannel
+            extends SessionChannel<StreamServerMessage, StreamClientMessage> {
+
+        /**
+         * Create a StreamChannel.
+         *
+         * @param id - the channel id
+         */
+        private StreamChannel(final int id) {
+            super(id);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void send(final StreamClientMessage message) {
+            ClientSession.this.send(SessionMessages
+                    .clientStream(getChannelId(), message)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendWindow(final int granted) {
+            ClientSession.this.send(SessionMessages
+                    .clientWindow(getChannelId(), granted)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendClose(final boolean failed) {
+            ClientSession.this.send(SessionMessages
+                    .clientClose(getChannelId(), failed)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void release() {
+            ClientSession.this.release(this);
+        }
+    }
+
+    /**
+     * A logical mutation.
+     */
+    private final class MutationChannel
+            extends SessionChannel<
+                MutationServerMessage,
+                MutationClientMessage> {
+
+        /**
+         * Create a MutationChannel.
+         *
+         * @param id - the channel id
+         */
+        private MutationChannel(final int id) {
+            super(id);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void send(final MutationClientMessage message) {
+            ClientSession.this.send(SessionMessages
+                    .clientMutation(getChannelId(), message)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendWindow(final int granted) {
+            ClientSession.this.send(SessionMessages
+                    .clientWindow(getChannelId(), granted)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendClose(final boolean failed) {
+            ClientSession.this.send(SessionMessages
+                    .clientClose(getChannelId(), failed)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void release() {
+            ClientSession.this.release(this);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+
+/**
+ * A stream that shares the underlying stream with identical streams
+ * opened at the same time, through a {@link StreamCoalescer}.
+ *
+ * No GRPC client is created for the coalesced stream itself, only for
+ * the underlying streams the coalescer opens.
+ */
+public class CoalescedStreamMishmash implements Mishmash<Key, Value> {
+
+    /**
+     * The coalescer.
+     */
+    private final StreamCoalescer coalescer;
+
+    /**
+     * The setup.
+     */
+    private final MishmashSetup setup;
+
+    /**
+     * Creates the underlying stream, if a new one is needed.
+     */
+    private final Supplier<? extends Mishmash<Key, Value>> source;
+
+    /**
+     * The subscription to the shared stream, once opened.
+     */
+    private StreamCoalescer.Subscription subscription;
+
+    /**
+     * Create a coalesced stream.
+     *
+     * @param streamCoalescer - the coalescer
+     * @param streamSetup - the GRPC MishmashSetup message
+     * @param sourceStream - creates the underlying stream
+     */
+    public CoalescedStreamMishmash(
+            final StreamCoalescer streamCoalescer,
+            final MishmashSetup streamSetup,
+            final Supplier<? extends Mishmash<Key, Value>> sourceStream) {
+        this.coalescer = streamCoalescer;
+        this.setup = streamSetup;
+        this.source = sourceStream;
+    }
+
+    /**
+     * Join a shared stream, opening it if needed.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        if (subscription != null) {
+            throw new IllegalStateException("Mishmash client already open");
+        }
+
+        subscription = coalescer.subscribe(setup, source);
+
+        return subscription.open();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
+        if (subscription == null) {
+            return CompletableFuture.failedFuture(
+                    new MishmashInvalidStateException());
+        }
+
+        return subscription.get();
+    }
+
+    /**
+     * Returns a future that was completed with an error.
+     * A CoalescedStreamMishmash does not implement this method.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        return CompletableFuture
+                .failedFuture(new MishmashInvalidStateException());
+    }
+
+    /**
+     * Leave the shared stream.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+}
@@ -16,9 +16,14 @@
  */
 package io.mishmash.common.ipc.client;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import io.mishmash.common.ipc.proto.LiteralSets;
 import io.mishmash.common.rpc.MishmashRpc.Intersection;
 import io.mishmash.common.rpc.MishmashRpc.LambdaFunction;
 import io.mishmash.common.rpc.MishmashRpc.Literal;
+import io.mishmash.common.rpc.MishmashRpc.LiteralSet;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
 import io.mishmash.common.rpc.MishmashRpc.PredefinedFunction;
@@ -29,6 +34,9 @@ import io.mishmash.common.rpc.MishmashRpc.Union;
 /**
  * Build a GRPC MishmashSetDecriptorList.
  *
+ * Runs of at least {@link LiteralSets#MIN_PACKED} consecutive literals
+ * of the same type are packed into LiteralSet descriptors.
+ *
  * @param <I> - the GRPC input message type
  * @param <O> - the GRPC output message type
  * @param <CT> - the GRPC {@link BaseClient} type
@@ -45,6 +53,17 @@ public abstract class DescriptorListBuilder<
      */
     private MishmashSetDescriptorList.Builder builder;
 
+    /**
+     * The current run of literals of the same packed type, not yet
+     * added to the list.
+     */
+    private final List<Literal> run = new ArrayList<>();
+
+    /**
+     * The packed type of the current run.
+     */
+    private LiteralSet.AltCase runType = LiteralSet.AltCase.ALT_NOT_SET;
+
     /**
      * Create a DescriptorListBuilder.
      *
@@ -62,18 +81,55 @@ public abstract class DescriptorListBuilder<
      * @return - the GRPC MishmashSetDescriptorList builder
      */
     public MishmashSetDescriptorList.Builder getDescriptorList() {
+        flushRun();
+
         return builder;
     }
 
+    /**
+     * Add the current run of literals to the list, packed if it is
+     * long enough.
+     */
+    private void flushRun() {
+        if (run.size() >= LiteralSets.MIN_PACKED) {
+            builder.addEntries(
+                    MishmashSetDescriptor
+                        .newBuilder()
+                        .setLiteralSet(LiteralSets.pack(run)));
+        } else {
+            for (Literal literal : run) {
+                builder.addEntries(
+                        MishmashSetDescriptor
+                            .newBuilder()
+                            .setLiteral(literal));
+            }
+        }
+
+        run.clear();
+        runType = LiteralSet.AltCase.ALT_NOT_SET;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void merge(final Literal.Builder literal) {
-        builder.addEntries(
-                MishmashSetDescriptor
-                    .newBuilder()
-                    .setLiteral(literal));
+        Literal l = literal.build();
+        LiteralSet.AltCase type = LiteralSets.packedType(l);
+
+        if (type != runType || run.size() == LiteralSets.MAX_PACKED) {
+            flushRun();
+        }
+
+        if (type == LiteralSet.AltCase.ALT_NOT_SET) {
+            builder.addEntries(
+                    MishmashSetDescriptor
+                        .newBuilder()
+                        .setLiteral(l));
+        } else {
+            runType = type;
+            run.add(l);
+        }
     }
 
     /**
@@ -81,6 +137,7 @@ public abstract class DescriptorListBuilder<
      */
     @Override
     public void merge(final PredefinedSet.Builder predefinedSet) {
+        flushRun();
         builder.addEntries(
                 MishmashSetDescriptor
                     .newBuilder()
@@ -92,6 +149,7 @@ public abstract class DescriptorListBuilder<
      */
     @Override
     public void merge(final Intersection.Builder intersection) {
+        flushRun();
         builder.addEntries(
                 MishmashSetDescriptor
                     .newBuilder()
@@ -103,6 +161,7 @@ public abstract class DescriptorListBuilder<
      */
     @Override
     public void merge(final Union.Builder union) {
+        flushRun();
         builder.addEntries(
                 MishmashSetDescriptor
                     .newBuilder()
@@ -114,6 +173,7 @@ public abstract class DescriptorListBuilder<
      */
     @Override
     public void merge(final LambdaFunction.Builder lambda) {
+        flushRun();
         builder.addEntries(
                 MishmashSetDescriptor
                     .newBuilder()
@@ -125,6 +185,7 @@ public abstract class DescriptorListBuilder<
      */
     @Override
     public void merge(final PredefinedFunction.Builder predefinedFunction) {
+        flushRun();
         builder.addEntries(
                 MishmashSetDescriptor
                     .newBuilder()
@@ -136,6 +197,7 @@ public abstract class DescriptorListBuilder<
      */
     @Override
     public void merge(final Transformation.Builder transform) {
+        flushRun();
         builder.addEntries(
                 MishmashSetDescriptor
                     .newBuilder()
@@ -0,0 +1,571 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.mishmash.common.ipc.HashedWheelTimer;
+import io.mishmash.common.rpc.MishmashRpc;
+import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.SessionServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
+
+/**
+ * A GRPC {@link Channel} that balances calls over several mishmash
+ * servers.
+ *
+ * The servers are given as a fixed list of targets or resolved by a
+ * callback, on {@link #refresh()} and optionally at a fixed interval.
+ *
+ * Each new call - a stream, a mutation or a session - goes to the less
+ * loaded of two endpoints picked at random (power of two choices). The
+ * load of an endpoint is its number of active calls weighted by a
+ * moving average of the time its calls took to get their first reply,
+ * the SetupAck.
+ *
+ * An endpoint that fails {@link #DEFAULT_MAX_FAILURES} calls in a row
+ * is ejected for a while, longer each time it is ejected again. A call
+ * fails when it closes with one of the failure statuses, or when it is
+ * answered with an Error whose code matches the failure predicate. By
+ * default no code matches: mishmash Error codes do not tell a failing
+ * server from a rejected request. Error replies are never counted as a
+ * success, and their latency is not sampled, so a server answering
+ * with Errors does not look fast.
+ * When all endpoints are ejected, they are all used again.
+ */
+public class EndpointBalancer extends Channel implements AutoCloseable {
+
+    /**
+     * Default number of failed calls in a row that eject an endpoint.
+     */
+    public static final int DEFAULT_MAX_FAILURES = 5;
+
+    /**
+     * Default number of milliseconds of the first ejection.
+     */
+    public static final long DEFAULT_EJECT_MSEC = 10_000;
+
+    /**
+     * The longest ejection, in milliseconds.
+     */
+    public static final long MAX_EJECT_MSEC = 300_000;
+
+    /**
+     * GRPC statuses that count as a failure of the endpoint.
+     */
+    public static final Set<Status.Code> DEFAULT_FAILURE_STATUSES =
+            EnumSet.of(
+                    Status.Code.UNAVAILABLE,
+                    Status.Code.UNKNOWN,
+                    Status.Code.INTERNAL,
+                    Status.Code.RESOURCE_EXHAUSTED,
+                    Status.Code.DEADLINE_EXCEEDED);
+
+    /**
+     * Creates a connection to a target.
+     */
+    private final Function<String, ManagedChannel> channelFactory;
+
+    /**
+     * Resolves the current targets.
+     */
+    private final Supplier<? extends Collection<String>> resolver;
+
+    /**
+     * Guards changes of the endpoints.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The current endpoints, replaced as a whole on changes.
+     */
+    private volatile List<Endpoint> endpoints = List.of();
+
+    /**
+     * Failed calls in a row that eject an endpoint.
+     */
+    private volatile int maxFailures = DEFAULT_MAX_FAILURES;
+
+    /**
+     * Milliseconds of the first ejection.
+     */
+    private volatile long ejectMsec = DEFAULT_EJECT_MSEC;
+
+    /**
+     * GRPC statuses that count as a failure.
+     */
+    private volatile Set<Status.Code> failureStatuses =
+            DEFAULT_FAILURE_STATUSES;
+
+    /**
+     * Error codes that count as a failure.
+     */
+    private volatile IntPredicate failureErrorCodes = code -> false;
+
+    /**
+     * The milliseconds between refreshes, 0 if not refreshed.
+     */
+    private long refreshMsec;
+
+    /**
+     * The next refresh, if scheduled.
+     */
+    private HashedWheelTimer.Timeout refreshTimeout;
+
+    /**
+     * If the balancer was closed.
+     */
+    private volatile boolean isClosed;
+
+    /**
+     * Create a balancer over a fixed list of targets.
+     *
+     * @param factory - creates a connection to a target
+     * @param targets - the targets
+     */
+    public EndpointBalancer(
+            final Function<String, ManagedChannel> factory,
+            final Collection<String> targets) {
+        this(factory, () -> targets);
+    }
+
+    /**
+     * Create a balancer over resolved targets.
+     *
+     * @param factory - creates a connection to a target
+     * @param targetResolver - returns the current targets
+     */
+    public EndpointBalancer(
+            final Function<String, ManagedChannel> factory,
+            final Supplier<? extends Collection<String>> targetResolver) {
+        this.channelFactory = factory;
+        this.resolver = targetResolver;
+
+        refresh();
+    }
+
+    /**
+     * Set the number of failed calls in a row that eject an endpoint.
+     *
+     * @param max - the number, at least 1
+     * @return - this balancer
+     */
+    public EndpointBalancer setMaxFailures(final int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException(
+                    "At least one failure must eject");
+        }
+
+        this.maxFailures = max;
+        return this;
+    }
+
+    /**
+     * Set the duration of the first ejection. Each following ejection
+     * of the same endpoint lasts as much longer, up to
+     * {@link #MAX_EJECT_MSEC}.
+     *
+     * @param msec - the duration in milliseconds
+     * @return - this balancer
+     */
+    public EndpointBalancer setEjectMsec(final long msec) {
+        this.ejectMsec = msec;
+        return this;
+    }
+
+    /**
+     * Set the GRPC statuses that count as a failure of the endpoint.
+     *
+     * @param codes - the status codes
+     * @return - this balancer
+     */
+    public EndpointBalancer setFailureStatuses(
+            final Set<Status.Code> codes) {
+        this.failureStatuses = Set.copyOf(codes);
+        return this;
+    }
+
+    /**
+     * Set the codes of Error replies that count as a failure of the
+     * endpoint. By default, Error replies do not.
+     *
+     * @param codes - matches the failure codes
+     * @return - this balancer
+     */
+    public EndpointBalancer setFailureErrorCodes(final IntPredicate codes) {
+        this.failureErrorCodes = codes;
+        return this;
+    }
+
+    /**
+     * Resolve the targets again at a fixed interval, on the shared
+     * {@link HashedWheelTimer}.
+     *
+     * @param msec - the interval in milliseconds, 0 to stop
+     * @return - this balancer
+     */
+    public EndpointBalancer setRefreshMsec(final long msec) {
+        lock.lock();
+        try {
+            refreshMsec = msec;
+            if (refreshTimeout != null) {
+                refreshTimeout.cancel();
+                refreshTimeout = null;
+            }
+
+            scheduleRefresh();
+        } finally {
+            lock.unlock();
+        }
+
+        return this;
+    }
+
+    /**
+     * Schedule the next refresh, if enabled. The lock must be held.
+     */
+    private void scheduleRefresh() {
+        if (refreshMsec > 0 && !isClosed) {
+            refreshTimeout = HashedWheelTimer.shared().schedule(
+                    () -> Thread.ofVirtual().start(this::periodicRefresh),
+                    refreshMsec,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Refresh and schedule the next refresh.
+     */
+    private void periodicRefresh() {
+        try {
+            refresh();
+        } finally {
+            lock.lock();
+            try {
+                scheduleRefresh();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Resolve the targets and update the endpoints. New targets are
+     * connected, the endpoints of removed ones are shut down after
+     * their active calls end.
+     */
+    public void refresh() {
+        Collection<String> targets = resolver.get();
+        List<Endpoint> removed = new ArrayList<>();
+
+        lock.lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+
+            Map<String, Endpoint> current = new LinkedHashMap<>();
+            for (Endpoint e : endpoints) {
+                current.put(e.getTarget(), e);
+            }
+
+            List<Endpoint> next = new ArrayList<>(targets.size());
+            for (String target : targets) {
+                Endpoint e = current.remove(target);
+                next.add(e == null
+                        ? new Endpoint(target,
+                                channelFactory.apply(target))
+                        : e);
+            }
+
+            removed.addAll(current.values());
+            endpoints = List.copyOf(next);
+        } finally {
+            lock.unlock();
+        }
+
+        for (Endpoint e : removed) {
+            e.getChannel().shutdown();
+        }
+    }
+
+    /**
+     * Get the current endpoints.
+     *
+     * @return - the endpoints
+     */
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Pick the endpoint of a new call: the less loaded of two random
+     * endpoints that are not ejected.
+     *
+     * @return - the endpoint or null if there is none
+     */
+    protected Endpoint pick() {
+        List<Endpoint> all = endpoints;
+        List<Endpoint> healthy = new ArrayList<>(all.size());
+
+        for (Endpoint e : all) {
+            if (!e.isEjected() && !e.getChannel().isShutdown()) {
+                healthy.add(e);
+            }
+        }
+
+        if (healthy.isEmpty()) {
+            // better a likely failing endpoint than none
+            healthy = all;
+        }
+
+        int size = healthy.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return healthy.get(0);
+        }
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int a = rnd.nextInt(size);
+        int b = rnd.nextInt(size - 1);
+        if (b >= a) {
+            b++;
+        }
+
+        Endpoint ea = healthy.get(a);
+        Endpoint eb = healthy.get(b);
+
+        return ea.getLoad() <= eb.getLoad() ? ea : eb;
+    }
+
+    /**
+     * Start a call on the picked endpoint.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public <I, O> ClientCall<I, O> newCall(
+            final MethodDescriptor<I, O> method,
+            final CallOptions callOptions) {
+        Endpoint e = isClosed ? null : pick();
+
+        if (e == null) {
+            return new ChannelPool.FailedCall<>(Status.UNAVAILABLE
+                    .withDescription("No mishmash endpoint available"));
+        }
+
+        return e.newCall(method, callOptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String authority() {
+        List<Endpoint> all = endpoints;
+
+        return all.isEmpty() ? "" : all.get(0).authority();
+    }
+
+    /**
+     * Stop placing calls and shut all endpoints down, waiting up to
+     * {@link ChannelPool#DEFAULT_DRAIN_MSEC} for active calls.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws InterruptedException {
+        List<Endpoint> all;
+
+        lock.lock();
+        try {
+            isClosed = true;
+            if (refreshTimeout != null) {
+                refreshTimeout.cancel();
+            }
+
+            all = endpoints;
+        } finally {
+            lock.unlock();
+        }
+
+        ChannelPool.drain(all, ChannelPool.DEFAULT_DRAIN_MSEC);
+    }
+
+    /**
+     * Get the Error a message replies with, if any.
+     *
+     * @param message - a server message
+     * @return - the Error or null
+     */
+    static MishmashRpc.Error getError(final Object message) {
+        if (message instanceof StreamServerMessage m && m.hasError()) {
+            return m.getError();
+        } else if (message instanceof MutationServerMessage m
+                && m.hasError()) {
+            return m.getError();
+        } else if (message instanceof SessionServerMessage m) {
+            if (m.hasStream()) {
+                return getError(m.getStream());
+            } else if (m.hasMutation()) {
+                return getError(m.getMutation());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * A server endpoint with its load and health.
+     */
+    public final class Endpoint extends ChannelPool.PooledChannel {
+
+        /**
+         * The target of the endpoint.
+         */
+        private final String target;
+
+        /**
+         * Failed calls in a row.
+         */
+        private final AtomicInteger failures = new AtomicInteger();
+
+        /**
+         * Ejections since the last successful call.
+         */
+        private final AtomicInteger ejections = new AtomicInteger();
+
+        /**
+         * The end of the current ejection, as
+         * {@link System#nanoTime()}.
+         */
+        private volatile long ejectedUntilNanos;
+
+        /**
+         * If the endpoint is ejected.
+         */
+        private volatile boolean isEjected;
+
+        /**
+         * Create a new Endpoint.
+         *
+         * @param endpointTarget - the target
+         * @param channel - the connection
+         */
+        Endpoint(final String endpointTarget, final ManagedChannel channel) {
+            super(channel);
+            this.target = endpointTarget;
+        }
+
+        /**
+         * Get the target of the endpoint.
+         *
+         * @return - the target
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * Check if the endpoint is ejected.
+         *
+         * @return - true if ejected now
+         */
+        public boolean isEjected() {
+            if (isEjected && System.nanoTime() - ejectedUntilNanos >= 0) {
+                isEjected = false;
+            }
+
+            return isEjected;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean firstMessage(final Object message) {
+            MishmashRpc.Error err = getError(message);
+
+            if (err == null) {
+                succeeded();
+            } else if (failureErrorCodes.test(err.getErrorCode())) {
+                failed();
+                penalize();
+            }
+
+            return err == null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void callClosed(final Status status) {
+            if (failureStatuses.contains(status.getCode())) {
+                failed();
+            }
+        }
+
+        /**
+         * Record a successful call.
+         */
+        private void succeeded() {
+            failures.set(0);
+            if (!isEjected()) {
+                ejections.set(0);
+            }
+        }
+
+        /**
+         * Record a failed call, ejecting the endpoint after too many
+         * in a row.
+         */
+        private void failed() {
+            if (failures.incrementAndGet() < maxFailures || isEjected()) {
+                return;
+            }
+
+            failures.set(0);
+
+            long msec = Math.min(MAX_EJECT_MSEC,
+                    ejectMsec * ejections.incrementAndGet());
+            ejectedUntilNanos = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(msec);
+            isEjected = true;
+        }
+    }
+}
@@ -0,0 +1,647 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.google.protobuf.ByteString;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.ipc.HashedWheelTimer;
+import io.mishmash.common.ipc.proto.Yields;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+
+/**
+ * A mutation that survives transient errors by sending unacknowledged
+ * data points again on a new mutation.
+ *
+ * All mutations opened carry the same producer ID and every data point
+ * its own sequence number within the producer, so a server that
+ * already applied a data point sent again acknowledges it without
+ * applying it twice, see
+ * {@link io.mishmash.common.ipc.server.ProducerSequences}. This gives
+ * at-least-once delivery without duplicates, also for APPEND
+ * mutations. Servers confirm it by echoing the producer ID in their
+ * SetupAck, a mutation without the echo fails to open.
+ *
+ * Data points are held until acknowledged, up to a memory budget
+ * measured in serialized bytes. Data points put over the budget wait,
+ * in order, until acknowledgements make room, up to another budget of
+ * waiting bytes. Past it, puts fail with a
+ * {@link MishmashInvalidStateException} until the waiting data points
+ * are admitted, callers can wait for earlier puts or
+ * {@link #flush()} instead. Each data point is serialized once, when
+ * put, and sent as is on every attempt. When a mutation fails
+ * with an error its {@link ReconnectPolicy} retries, a new one is
+ * opened after a delay and the held data points are sent again, in
+ * their original order. Data points the server rejects fail on their
+ * own. Once the policy gives up, all held data points fail.
+ */
+public class IdempotentMutationMishmash implements Mishmash<Key, Value> {
+
+    /**
+     * The default memory budget of held data points, in bytes.
+     */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 16L << 20;
+
+    /**
+     * Opens a mutation with the producer ID.
+     */
+    private final Supplier<MutationMishmash> mutations;
+
+    /**
+     * The producer ID of all mutations.
+     */
+    private final ByteString producerId;
+
+    /**
+     * When to open a new mutation.
+     */
+    private final ReconnectPolicy policy;
+
+    /**
+     * The memory budget of held data points.
+     */
+    private final long maxBufferedBytes;
+
+    /**
+     * Guards the mutation and the held data points.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Completes when the first mutation is open.
+     */
+    private final CompletableFuture<Void> openFuture =
+            new CompletableFuture<>();
+
+    /**
+     * Data points admitted and not acknowledged, by sequence number,
+     * in order.
+     */
+    private final Map<Long, Buffered> unacked = new LinkedHashMap<>();
+
+    /**
+     * Data points admitted and not sent on the current mutation yet.
+     */
+    private final Queue<Buffered> unsent = new ArrayDeque<>();
+
+    /**
+     * Data points waiting for room in the budget.
+     */
+    private final Queue<Buffered> admission = new ArrayDeque<>();
+
+    /**
+     * The open mutation, null while connecting.
+     */
+    private MutationMishmash current;
+
+    /**
+     * Counts mutations, to tell errors of replaced ones apart.
+     */
+    private int generation;
+
+    /**
+     * The serialized bytes of the admitted data points.
+     */
+    private long bufferedBytes;
+
+    /**
+     * The serialized bytes of the data points waiting for admission.
+     */
+    private long waitingBytes;
+
+    /**
+     * The sequence number of the next data point.
+     */
+    private long nextSeqNo = 1;
+
+    /**
+     * The number of failed attempts since the last acknowledgement.
+     */
+    private int failedAttempts;
+
+    /**
+     * If a thread is sending unsent data points.
+     */
+    private boolean isDraining;
+
+    /**
+     * Set when this mutation was closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * The error the policy gave up on, if any.
+     */
+    private Throwable failure;
+
+    /**
+     * A data point held until acknowledged.
+     */
+    private static final class Buffered {
+
+        /**
+         * The sequence number within the producer.
+         */
+        private final long seqNo;
+
+        /**
+         * The data point, with its sequence number set.
+         */
+        private final YieldData yield;
+
+        /**
+         * The serialized size of the data point.
+         */
+        private final long bytes;
+
+        /**
+         * Completes when the data point is acknowledged.
+         */
+        private final CompletableFuture<Void> done =
+                new CompletableFuture<>();
+
+        /**
+         * Create a new Buffered.
+         *
+         * @param sequenceNo - the sequence number
+         * @param data - the data point, with the sequence number set
+         */
+        Buffered(final long sequenceNo, final YieldData data) {
+            this.seqNo = sequenceNo;
+            this.yield = data;
+            this.bytes = data.getSerializedSize();
+        }
+    }
+
+    /**
+     * Create a new IdempotentMutationMishmash.
+     *
+     * @param mutationFactory - opens a mutation, not open yet, with the
+     *          producer ID set on its client
+     * @param producer - the producer ID
+     * @param reconnectPolicy - when to open a new mutation
+     * @param maxBytes - the memory budget of held data points
+     */
+    public IdempotentMutationMishmash(
+            final Supplier<MutationMishmash> mutationFactory,
+            final ByteString producer,
+            final ReconnectPolicy reconnectPolicy,
+            final long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Invalid memory budget");
+        }
+
+        this.mutations = mutationFactory;
+        this.producerId = producer;
+        this.policy = reconnectPolicy;
+        this.maxBufferedBytes = maxBytes;
+    }
+
+    /**
+     * Get the producer ID of the mutations.
+     *
+     * @return - the producer ID
+     */
+    public ByteString getProducerId() {
+        return producerId;
+    }
+
+    /**
+     * Get the serialized bytes of the data points held.
+     *
+     * @return - the bytes held, waiting data points not included
+     */
+    public long getBufferedBytes() {
+        lock.lock();
+        try {
+            return bufferedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Open the first mutation, retrying according to the policy.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        connect();
+
+        return openFuture;
+    }
+
+    /**
+     * Hold a data point and send it once the budget allows.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        YieldData.Builder yield;
+
+        try {
+            yield = Yields.yield(dataPoint);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Buffered b;
+
+        lock.lock();
+        try {
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            } else if (isClosed) {
+                return CompletableFuture.failedFuture(
+                        new MishmashInvalidStateException());
+            }
+
+            b = new Buffered(nextSeqNo,
+                    yield.setProducerSeqNo(nextSeqNo).build());
+            if (!admission.isEmpty()
+                    && waitingBytes + b.bytes > maxBufferedBytes) {
+                return CompletableFuture.failedFuture(
+                        new MishmashInvalidStateException());
+            }
+
+            nextSeqNo++;
+            admission.add(b);
+            waitingBytes += b.bytes;
+            admit();
+        } finally {
+            lock.unlock();
+        }
+
+        drain();
+
+        return b.done;
+    }
+
+    /**
+     * Wait for all data points put so far.
+     *
+     * @return - a future that completes when all of them are
+     *          acknowledged, or fails if one of them failed
+     */
+    public CompletableFuture<Void> flush() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        lock.lock();
+        try {
+            for (Buffered b : unacked.values()) {
+                pending.add(b.done);
+            }
+
+            for (Buffered b : admission) {
+                pending.add(b.done);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return CompletableFuture.allOf(
+                pending.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Move waiting data points into the budget. The lock must be held.
+     */
+    private void admit() {
+        while (!admission.isEmpty()) {
+            Buffered b = admission.peek();
+
+            if (!unacked.isEmpty()
+                    && bufferedBytes + b.bytes > maxBufferedBytes) {
+                return;
+            }
+
+            admission.poll();
+            waitingBytes -= b.bytes;
+            unacked.put(b.seqNo, b);
+            unsent.add(b);
+            bufferedBytes += b.bytes;
+        }
+    }
+
+    /**
+     * Drop an admitted data point. The lock must be held.
+     *
+     * @param b - the data point
+     */
+    private void remove(final Buffered b) {
+        if (unacked.remove(b.seqNo) != null) {
+            bufferedBytes -= b.bytes;
+            admit();
+        }
+    }
+
+    /**
+     * Send the unsent data points on the current mutation, in order,
+     * unless another thread is doing so.
+     */
+    private void drain() {
+        lock.lock();
+        try {
+            if (isDraining) {
+                return;
+            }
+
+            isDraining = true;
+        } finally {
+            lock.unlock();
+        }
+
+        while (true) {
+            MutationMishmash m;
+            Buffered b;
+            int gen;
+
+            lock.lock();
+            try {
+                m = current;
+                b = m == null ? null : unsent.poll();
+                gen = generation;
+
+                if (b == null) {
+                    isDraining = false;
+
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            m.put(b.yield).whenComplete((v, t) -> {
+                if (t == null) {
+                    acked(b);
+                } else {
+                    failed(b, t, gen);
+                }
+            });
+        }
+    }
+
+    /**
+     * Release an acknowledged data point, whichever mutation it was
+     * sent on.
+     *
+     * @param b - the data point
+     */
+    private void acked(final Buffered b) {
+        lock.lock();
+        try {
+            remove(b);
+            failedAttempts = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        b.done.complete(null);
+        drain();
+    }
+
+    /**
+     * Handle a data point that failed on a mutation.
+     *
+     * @param b - the data point
+     * @param t - the error
+     * @param gen - the generation of the mutation
+     */
+    private void failed(final Buffered b, final Throwable t, final int gen) {
+        MutationMishmash m;
+
+        lock.lock();
+        try {
+            if (isClosed
+                    || gen != generation
+                    || !unacked.containsKey(b.seqNo)) {
+                // sent again on a newer mutation, or already released
+                return;
+            }
+
+            m = current;
+
+            if (!policy.isRetryable(t)) {
+                // rejected, sending it again would not help
+                remove(b);
+                m = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (m == null) {
+            b.done.completeExceptionally(t);
+            drain();
+        } else {
+            broken(m, t, gen);
+        }
+    }
+
+    /**
+     * Open a new mutation and send it all unacknowledged data points.
+     */
+    private void connect() {
+        int gen;
+
+        lock.lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+
+            gen = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        MutationMishmash m = mutations.get();
+
+        m.open().whenComplete((v, t) -> {
+            if (t != null) {
+                broken(m, t, gen);
+
+                return;
+            }
+
+            boolean isStale;
+
+            lock.lock();
+            try {
+                isStale = isClosed || gen != generation;
+                if (!isStale) {
+                    current = m;
+                    unsent.clear();
+                    unsent.addAll(unacked.values());
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (isStale) {
+                closeQuietly(m);
+            } else {
+                openFuture.complete(null);
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Replace a broken mutation after a delay, or fail all held data
+     * points if the policy gives up.
+     *
+     * @param m - the broken mutation
+     * @param t - the error
+     * @param gen - the generation of the mutation
+     */
+    private void broken(
+            final MutationMishmash m,
+            final Throwable t,
+            final int gen) {
+        List<Buffered> dropped = new ArrayList<>();
+        long delay = -1;
+
+        lock.lock();
+        try {
+            if (isClosed || gen != generation) {
+                return;
+            }
+
+            if (current == m) {
+                current = null;
+            }
+
+            generation++;
+
+            if (policy.isRetryable(t) && policy.canRetry(failedAttempts)) {
+                delay = policy.delayMsec(failedAttempts++);
+            } else {
+                failure = t;
+                dropped.addAll(unacked.values());
+                dropped.addAll(admission);
+                unacked.clear();
+                unsent.clear();
+                admission.clear();
+                bufferedBytes = 0;
+                waitingBytes = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        closeQuietly(m);
+
+        if (delay >= 0) {
+            HashedWheelTimer.shared().schedule(
+                    () -> Thread.ofVirtual().start(this::connect),
+                    delay,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            openFuture.completeExceptionally(t);
+
+            for (Buffered b : dropped) {
+                b.done.completeExceptionally(t);
+            }
+        }
+    }
+
+    /**
+     * Close a mutation that is no longer used.
+     *
+     * @param m - the mutation
+     */
+    private static void closeQuietly(final MutationMishmash m) {
+        try {
+            m.close();
+        } catch (Exception e) {
+            // the mutation is replaced or given up on
+        }
+    }
+
+    /**
+     * Returns a future that was completed with an error.
+     * An IdempotentMutationMishmash does not implement this method.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
+        return CompletableFuture
+                .failedFuture(new MishmashInvalidStateException());
+    }
+
+    /**
+     * Close the current mutation. Data points not acknowledged yet
+     * fail, {@link #flush()} first to wait for them.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        List<Buffered> dropped = new ArrayList<>();
+        MutationMishmash m;
+
+        lock.lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+            m = current;
+            current = null;
+            dropped.addAll(unacked.values());
+            dropped.addAll(admission);
+            unacked.clear();
+            unsent.clear();
+            admission.clear();
+            bufferedBytes = 0;
+            waitingBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        openFuture.completeExceptionally(new MishmashInvalidStateException());
+
+        for (Buffered b : dropped) {
+            b.done.completeExceptionally(new MishmashInvalidStateException());
+        }
+
+        if (m != null) {
+            m.close();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.KeyComparator;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.ipc.proto.Members;
+import io.mishmash.common.ipc.proto.YieldDataPoint;
+import io.mishmash.common.rpc.MishmashRpc.YieldMember;
+
+/**
+ * Merges several streams, each ordered by {@link KeyComparator}, into
+ * one ordered stream.
+ *
+ * The head data point of every stream is kept in a heap. Hierarchies
+ * received over GRPC are compared as they arrived, with
+ * {@link Members#compare(List, List)}, without converting them to
+ * {@link Key}s. Only one data point is read ahead on each stream, the
+ * next one is requested when its head is returned, so a slow consumer
+ * holds back every stream instead of buffering them.
+ *
+ * Data points with equal hierarchies are returned in the order of
+ * their streams.
+ */
+public class MergedStreamMishmash implements Mishmash<Key, Value> {
+
+    /**
+     * Orders heads by hierarchy, then by stream.
+     */
+    private static final Comparator<Head> HEAD_ORDER = (a, b) -> {
+        int res = Members.compare(a.hierarchy, b.hierarchy);
+
+        return res != 0 ? res : Integer.compare(a.source, b.source);
+    };
+
+    /**
+     * The ordered streams.
+     */
+    private final List<Mishmash<Key, Value>> sources;
+
+    /**
+     * Guards the heads and the pending reads.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The head data points, one per stream at most.
+     */
+    private final PriorityQueue<Head> heads;
+
+    /**
+     * Per stream, the read ahead in progress, if any.
+     */
+    private final List<CompletableFuture<? extends BaseDataPoint<Key, Value>>>
+            pending;
+
+    /**
+     * Per stream, if its head is in the heap.
+     */
+    private final boolean[] hasHead;
+
+    /**
+     * Per stream, if it has no more data points.
+     */
+    private final boolean[] isExhausted;
+
+    /**
+     * The error of a stream, once one failed.
+     */
+    private Throwable failure;
+
+    /**
+     * Create a new MergedStreamMishmash.
+     *
+     * @param orderedStreams - the streams to merge, each ordered by
+     *          {@link KeyComparator}
+     */
+    public MergedStreamMishmash(
+            final List<? extends Mishmash<Key, Value>> orderedStreams) {
+        this.sources = List.copyOf(orderedStreams);
+        this.heads = new PriorityQueue<>(
+                Math.max(1, sources.size()), HEAD_ORDER);
+        this.pending = new ArrayList<>(sources.size());
+        this.hasHead = new boolean[sources.size()];
+        this.isExhausted = new boolean[sources.size()];
+
+        for (int i = 0; i < sources.size(); i++) {
+            pending.add(null);
+        }
+    }
+
+    /**
+     * Open all streams.
+     *
+     * @return - a future that completes when all streams are open or
+     *          fails if one of them fails
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        CompletableFuture<?>[] opened =
+                new CompletableFuture<?>[sources.size()];
+
+        for (int i = 0; i < opened.length; i++) {
+            opened[i] = sources.get(i).open();
+        }
+
+        return CompletableFuture.allOf(opened);
+    }
+
+    /**
+     * Get the lowest of the head data points, once every stream that
+     * is not exhausted has one.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
+        CompletableFuture<BaseDataPoint<Key, Value>> res =
+                new CompletableFuture<>();
+
+        poll(res);
+
+        return res;
+    }
+
+    /**
+     * Move arrived data points to the heap and complete a read with the
+     * lowest head, or wait for the missing heads to arrive.
+     *
+     * @param res - the read
+     */
+    private void poll(final CompletableFuture<BaseDataPoint<Key, Value>> res) {
+        List<CompletableFuture<?>> waiting = new ArrayList<>();
+        Throwable error;
+        Head next = null;
+
+        lock.lock();
+        try {
+            for (int i = 0; i < sources.size() && failure == null; i++) {
+                if (isExhausted[i] || hasHead[i]) {
+                    continue;
+                }
+
+                CompletableFuture<? extends BaseDataPoint<Key, Value>> f =
+                        pending.get(i);
+                if (f == null) {
+                    f = sources.get(i).get();
+                    pending.set(i, f);
+                }
+
+                if (!f.isDone()) {
+                    waiting.add(f);
+                    continue;
+                }
+
+                pending.set(i, null);
+
+                if (f.isCompletedExceptionally()) {
+                    failure = f.handle((dp, t) -> t).join();
+                } else {
+                    BaseDataPoint<Key, Value> dp = f.getNow(null);
+
+                    if (dp == null) {
+                        isExhausted[i] = true;
+                    } else {
+                        heads.add(new Head(i, dp));
+                        hasHead[i] = true;
+                    }
+                }
+            }
+
+            error = failure;
+
+            if (error == null && waiting.isEmpty()) {
+                next = heads.poll();
+
+                if (next != null) {
+                    hasHead[next.source] = false;
+                    // read ahead on the stream of the returned head
+                    pending.set(next.source, sources.get(next.source).get());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (error != null) {
+            res.completeExceptionally(error);
+        } else if (!waiting.isEmpty()) {
+            CompletableFuture
+                .anyOf(waiting.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((v, t) -> poll(res));
+        } else {
+            // null when all streams are exhausted
+            res.complete(next == null ? null : next.dataPoint);
+        }
+    }
+
+    /**
+     * Returns a future that was completed with an error.
+     * A MergedStreamMishmash does not implement this method.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        return CompletableFuture
+                .failedFuture(new MishmashInvalidStateException());
+    }
+
+    /**
+     * Close all streams.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        Exception closeFailure = null;
+
+        for (Mishmash<Key, Value> source : sources) {
+            try {
+                source.close();
+            } catch (Exception e) {
+                if (closeFailure == null) {
+                    closeFailure = e;
+                } else {
+                    closeFailure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (closeFailure != null) {
+            throw closeFailure;
+        }
+    }
+
+    /**
+     * The head data point of a stream.
+     */
+    private static final class Head {
+
+        /**
+         * The index of the stream.
+         */
+        private final int source;
+
+        /**
+         * The data point.
+         */
+        private final BaseDataPoint<Key, Value> dataPoint;
+
+        /**
+         * The hierarchy of the data point, as GRPC members.
+         */
+        private final List<YieldMember> hierarchy;
+
+        /**
+         * Create a new Head. The hierarchy of data points received over
+         * GRPC is used as is, others are encoded once.
+         *
+         * @param sourceIndex - the index of the stream
+         * @param dp - the data point
+         */
+        Head(final int sourceIndex, final BaseDataPoint<Key, Value> dp) {
+            this.source = sourceIndex;
+            this.dataPoint = dp;
+            this.hierarchy = dp instanceof YieldDataPoint ydp
+                    ? ydp.getYieldData().getHierarchyList()
+                    : Members.toMembers(dp.keys()).getHierarchyList();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import io.grpc.ManagedChannel;
+import io.mishmash.common.rpc.MishmashServiceGrpc;
+
+/**
+ * Creates client mishmashes on pooled GRPC connections.
+ *
+ * A {@link ChannelPool} is kept per target, created on first use, and
+ * every stream, mutation or session is placed on the least loaded
+ * connection of its target's pool. Closing the factory drains all
+ * pools.
+ */
+public class MishmashClientFactory implements AutoCloseable {
+
+    /**
+     * Creates a connection to a target.
+     */
+    private final Function<String, ManagedChannel> channelFactory;
+
+    /**
+     * The number of connections per target.
+     */
+    private final int poolSize;
+
+    /**
+     * The pools, by target.
+     */
+    private final Map<String, ChannelPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * If the factory was closed.
+     */
+    private volatile boolean isClosed;
+
+    /**
+     * Create a new factory with {@link ChannelPool#DEFAULT_SIZE}
+     * connections per target.
+     *
+     * @param factory - creates a connection to a target, for example
+     *          with {@code ManagedChannelBuilder.forTarget(target)}
+     */
+    public MishmashClientFactory(
+            final Function<String, ManagedChannel> factory) {
+        this(factory, ChannelPool.DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a new factory.
+     *
+     * @param factory - creates a connection to a target
+     * @param size - the number of connections per target
+     */
+    public MishmashClientFactory(
+            final Function<String, ManagedChannel> factory,
+            final int size) {
+        this.channelFactory = factory;
+        this.poolSize = size;
+    }
+
+    /**
+     * Get the pool of a target, creating it if needed.
+     *
+     * @param target - the target
+     * @return - the pool
+     */
+    public ChannelPool getPool(final String target) {
+        if (isClosed) {
+            throw new IllegalStateException("Client factory closed");
+        }
+
+        return pools.computeIfAbsent(target, t -> new ChannelPool(
+                () -> channelFactory.apply(t),
+                poolSize));
+    }
+
+    /**
+     * Start building a stream on a target.
+     *
+     * @param target - the target
+     * @return - the builder
+     */
+    public StreamBuilder stream(final String target) {
+        return new StreamBuilder(getPool(target));
+    }
+
+    /**
+     * Start building a mutation on a target.
+     *
+     * @param target - the target
+     * @return - the builder
+     */
+    public MutationBuilder mutation(final String target) {
+        return new MutationBuilder(getPool(target));
+    }
+
+    /**
+     * Open a session on a target.
+     *
+     * @param target - the target
+     * @return - the session
+     */
+    public ClientSession session(final String target) {
+        return new ClientSession(
+                MishmashServiceGrpc.newStub(getPool(target)));
+    }
+
+    /**
+     * Drain and close all pools.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws InterruptedException {
+        isClosed = true;
+
+        List<ChannelPool> closing = new ArrayList<>(pools.values());
+        pools.clear();
+
+        for (ChannelPool pool : closing) {
+            pool.shutdown();
+        }
+
+        InterruptedException interrupted = null;
+        for (ChannelPool pool : closing) {
+            try {
+                pool.close();
+            } catch (InterruptedException e) {
+                interrupted = e;
+            }
+        }
+
+        if (interrupted != null) {
+            throw interrupted;
+        }
+    }
+}
@@ -16,8 +16,16 @@
  */
 package io.mishmash.common.ipc.client;
 
-import io.grpc.ManagedChannel;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.google.protobuf.ByteString;
+
+import io.grpc.Channel;
+import io.grpc.stub.StreamObserver;
 import io.mishmash.common.exception.MishmashException;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
 import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
 import io.mishmash.common.rpc.MishmashServiceGrpc;
@@ -34,26 +42,213 @@ public class MutationBuilder extends ClientMishmashBuilder<
     /**
      * The GRPC communications channel.
      */
-    private ManagedChannel grpcChannel;
+    private Channel grpcChannel;
+
+    /**
+     * The session mutations are opened on, if any.
+     */
+    private ClientSession session;
+
+    /**
+     * The result cache to invalidate on writes, if any.
+     */
+    private ResultCache resultCache;
+
+    /**
+     * If only the setup fingerprint is sent first.
+     */
+    private boolean isUseFingerprint;
+
+    /**
+     * The maximum serialized size of a setup chunk, 0 to never chunk.
+     */
+    private int maxSetupChunkBytes;
+
+    /**
+     * The maximum number of data points sent before the SetupAck.
+     */
+    private int maxPipelined;
+
+    /**
+     * The maximum number of data points waiting for a YieldAck.
+     */
+    private int maxInFlight = MutationClient.DEFAULT_MAX_IN_FLIGHT;
 
     /**
      * Create a new MutationBuilder.
      *
-     * @param chan - the GRPC network channel
+     * @param chan - the GRPC network channel, or a {@link ChannelPool}
      */
-    public MutationBuilder(final ManagedChannel chan) {
+    public MutationBuilder(final Channel chan) {
         this.grpcChannel = chan;
     }
 
+    /**
+     * Open the built mutation as a channel of a session instead of on
+     * its own GRPC call.
+     *
+     * @param clientSession - the session or null to open a GRPC call
+     * @return - this builder
+     */
+    public MutationBuilder setSession(final ClientSession clientSession) {
+        this.session = clientSession;
+        return this;
+    }
+
+    /**
+     * Invalidate overlapping results of a cache on every write.
+     *
+     * @param cache - the cache or null
+     * @return - this builder
+     */
+    public MutationBuilder setResultCache(final ResultCache cache) {
+        this.resultCache = cache;
+        return this;
+    }
+
+    /**
+     * Send only the fingerprint of the setup first, the server asks for
+     * the full setup if it has no plan cached for it.
+     *
+     * @param useFingerprint - true to send the fingerprint first
+     * @return - this builder
+     */
+    public MutationBuilder setUseFingerprint(final boolean useFingerprint) {
+        this.isUseFingerprint = useFingerprint;
+        return this;
+    }
+
+    /**
+     * Send setups larger than a limit in chunks, as a SETUP followed by
+     * continuations. A chunked setup is always sent in full, without
+     * a fingerprint.
+     *
+     * @param maxChunkBytes - the maximum serialized size of a chunk
+     *          or 0 to never chunk
+     * @return - this builder
+     */
+    public MutationBuilder setMaxSetupChunkBytes(final int maxChunkBytes) {
+        this.maxSetupChunkBytes = maxChunkBytes;
+        return this;
+    }
+
+    /**
+     * Send up to a number of data points right after the setup, without
+     * waiting for the SetupAck. They are dropped by the server if the
+     * setup fails. Not used together with fingerprints. At most
+     * {@link io.mishmash.common.ipc.proto.MutationMessages#MAX_PIPELINED}
+     * are sent, the server limit.
+     *
+     * @param max - the maximum or 0 to wait for the SetupAck
+     * @return - this builder
+     */
+    public MutationBuilder setPipelined(final int max) {
+        this.maxPipelined = max;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of data points sent and waiting for their
+     * YieldAck.
+     *
+     * @param max - the maximum, at least 1
+     * @return - this builder
+     */
+    public MutationBuilder setMaxInFlight(final int max) {
+        this.maxInFlight = max;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public MutationMishmash build() throws MishmashException {
-        return new MutationMishmash(
-                MishmashServiceGrpc.newStub(grpcChannel),
-                getBuilder(),
-                new MutationClient());
+        return newMutation(getBuilder(), null);
+    }
+
+    /**
+     * Builds a mutation that sends unacknowledged data points again on
+     * a new mutation after transient errors. A random producer ID is
+     * generated for it, so that servers apply each data point once.
+     * Opening fails with a
+     * {@link io.mishmash.common.exception.MishmashNotSupportedException}
+     * on servers that do not echo the producer ID in their SetupAck.
+     *
+     * @param policy - when to open a new mutation
+     * @param maxBufferedBytes - the memory budget of data points held
+     *          until acknowledged, see
+     *          {@link IdempotentMutationMishmash#DEFAULT_MAX_BUFFERED_BYTES}
+     * @return - the mutation
+     * @throws MishmashException - thrown on failure
+     */
+    public IdempotentMutationMishmash buildIdempotent(
+            final ReconnectPolicy policy,
+            final long maxBufferedBytes) throws MishmashException {
+        MishmashSetup.Builder setup = getBuilder();
+        UUID uuid = UUID.randomUUID();
+        ByteString producerId = ByteString.copyFrom(ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .flip());
+
+        return new IdempotentMutationMishmash(
+                () -> newMutation(setup.clone(), producerId),
+                producerId,
+                policy,
+                maxBufferedBytes);
+    }
+
+    /**
+     * Create a mutation.
+     *
+     * @param setup - the GRPC MishmashSetup message
+     * @param producerId - the producer ID or null
+     * @return - the mutation
+     */
+    private MutationMishmash newMutation(
+            final MishmashSetup.Builder setup,
+            final ByteString producerId) {
+        MutationClient client = configure(new MutationClient());
+        MishmashSetup full = setup.build();
+        boolean isChunked = maxSetupChunkBytes > 0
+                && full.getSerializedSize() > maxSetupChunkBytes;
+
+        client.setMaxInFlight(maxInFlight);
+        client.setProducerId(producerId);
+        if (isChunked || !isUseFingerprint) {
+            // the server may ask for the full setup after a fingerprint
+            client.setMaxPipelined(maxPipelined);
+        }
+
+        MutationMishmash res = new MutationMishmash(
+                remotePeer(),
+                setup,
+                client,
+                resultCache);
+
+        if (isChunked) {
+            client.useChunks(full, maxSetupChunkBytes);
+        } else if (isUseFingerprint) {
+            client.useFingerprint(full);
+        }
+
+        return res;
+    }
+
+    /**
+     * Get the function that opens mutations, on the session if one
+     * was set.
+     *
+     * @return - the function
+     */
+    private Function<MutationClient, StreamObserver<MutationClientMessage>>
+            remotePeer() {
+        if (session != null) {
+            return session::mutate;
+        }
+
+        return MishmashServiceGrpc.newStub(grpcChannel)::mutate;
     }
 
 }
@@ -16,26 +16,61 @@
  */
 package io.mishmash.common.ipc.client;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.protobuf.ByteString;
 
 import io.mishmash.common.data.BaseDataPoint;
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.exception.MishmashNotSupportedException;
+import io.mishmash.common.exception.MishmashProtocolException;
 import io.mishmash.common.ipc.GrpcStreamState;
+import io.mishmash.common.ipc.ProtocolTimeouts;
 import io.mishmash.common.ipc.proto.MutationMessages;
+import io.mishmash.common.ipc.proto.Proto;
 import io.mishmash.common.ipc.proto.Yields;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
 import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
 
 /**
  * A {@link BaseClient} for a GRPC mutation.
+ *
+ * Data points accepted are queued and sent in order, with up to
+ * {@link #getMaxInFlight()} of them waiting for their YieldAck at any
+ * time. Each data point's future completes on its YieldAck, or fails on
+ * an Error in reply to it.
+ *
+ * When pipelining is enabled, the first data points are sent right
+ * after the setup instead of after the SetupAck. If the setup fails,
+ * the server drops them and their futures fail.
+ *
+ * With a producer ID set, each data point carries its sequence number
+ * within the producer, so that a server applies data points sent again
+ * on a new mutation only once, see {@link IdempotentMutationMishmash}.
  */
 public class MutationClient extends BaseClient<
             MutationServerMessage,
             MutationClientMessage> {
 
+    /**
+     * The default maximum number of data points waiting for a YieldAck.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
     /**
      * A future that completes on SetupAck or failure
      * to open the mutation.
@@ -43,14 +78,156 @@ public class MutationClient extends BaseClient<
     private CompletableFuture<Void> openFuture;
 
     /**
-     * A future that completes when next {@link BaseDataPoint} is available.
+     * Guards the queued and in-flight data points and the output.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Data points accepted and not sent yet.
+     */
+    private final Queue<Pending> queued = new ArrayDeque<>();
+
+    /**
+     * The YieldAck futures of data points sent, by client sequence
+     * number, in the order sent.
+     */
+    private final Map<Integer, CompletableFuture<Void>> inFlight =
+            new LinkedHashMap<>();
+
+    /**
+     * The maximum number of data points waiting for a YieldAck.
+     */
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * The maximum number of data points sent before the SetupAck.
+     */
+    private int maxPipelined;
+
+    /**
+     * The number of data points sent before the SetupAck.
+     */
+    private int pipelinedSent;
+
+    /**
+     * The producer ID sent in the setup, or null.
+     */
+    private ByteString producerId;
+
+    /**
+     * A future waiting to send the next data point, once accepted.
+     */
+    private CompletableFuture<MutationClientMessage> outputFuture;
+
+    /**
+     * The sequence number counter of the waiting output.
+     */
+    private AtomicInteger outputSeqNo;
+
+    /**
+     * The state waiting for the SetupAck, if any.
+     */
+    private WaitSetupAck waitingAck;
+
+    /**
+     * The error that ended the mutation, if any.
+     */
+    private Throwable failure;
+
+    /**
+     * A data point accepted and not sent yet.
+     *
+     * @param dataPoint - the data point, null if built already
+     * @param yield - the data point built already, or null
+     * @param ack - completes on YieldAck
+     */
+    private record Pending(
+            BaseDataPoint<Key, Value> dataPoint,
+            YieldData yield,
+            CompletableFuture<Void> ack) {
+    }
+
+    /**
+     * Get the maximum number of data points waiting for a YieldAck.
+     *
+     * @return - the maximum
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Set the maximum number of data points waiting for a YieldAck.
+     *
+     * @param max - the maximum, at least 1
+     */
+    public void setMaxInFlight(final int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException(
+                    "At least one data point must be in flight");
+        }
+
+        lock.lock();
+        try {
+            maxInFlight = max;
+        } finally {
+            lock.unlock();
+        }
+
+        wake();
+    }
+
+    /**
+     * Get the maximum number of data points sent before the SetupAck.
+     *
+     * @return - the maximum, 0 if pipelining is disabled
+     */
+    public int getMaxPipelined() {
+        return maxPipelined;
+    }
+
+    /**
+     * Send up to a number of data points right after the setup, before
+     * the SetupAck. It must be set before the setup message is built.
+     *
+     * Servers accept at most {@link MutationMessages#MAX_PIPELINED}
+     * and fail the mutation on more, larger values are reduced to it.
+     *
+     * @param max - the maximum or 0 to wait for the SetupAck
+     */
+    public void setMaxPipelined(final int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException(
+                    "Pipelined data points cannot be negative");
+        }
+
+        this.maxPipelined = Math.min(max, MutationMessages.MAX_PIPELINED);
+    }
+
+    /**
+     * Get the producer ID sent in the setup.
+     *
+     * @return - the producer ID or null
      */
-    private CompletableFuture<BaseDataPoint<Key, Value>> yieldFuture;
+    public ByteString getProducerId() {
+        return producerId;
+    }
 
     /**
-     * A future that completes on YieldAck from the server.
+     * Set the producer ID of the data points, kept by mutations that
+     * replace this one after an error. It must be set before the setup
+     * message is built.
+     *
+     * The mutation fails to open with a
+     * {@link MishmashNotSupportedException} if the server does not echo
+     * the producer ID in its SetupAck, it would apply data points sent
+     * again twice.
+     *
+     * @param id - the producer ID or null
      */
-    private CompletableFuture<Void> yieldAckFuture;
+    public void setProducerId(final ByteString id) {
+        this.producerId = id;
+    }
 
     /**
      * {@inheritDoc}
@@ -58,7 +235,26 @@ public class MutationClient extends BaseClient<
     @Override
     public MutationClientMessage
             getSetupMessage(final MishmashSetup.Builder setup) {
-        return MutationMessages.clientSetup(0, setup).build();
+        setup.setPipelined(maxPipelined);
+        if (producerId != null) {
+            setup.setProducerId(producerId);
+        }
+
+        return MutationMessages
+                .clientSetup(0, setup)
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MutationClientMessage getSetupContinuationMessage(
+            final int clientSeqNo,
+            final MishmashSetupContinuation.Builder continuation) {
+        return MutationMessages
+                .clientSetupContinuation(clientSeqNo, continuation)
+                .build();
     }
 
     /**
@@ -71,25 +267,207 @@ public class MutationClient extends BaseClient<
         }
 
         openFuture = new CompletableFuture<>();
-        yieldFuture = new CompletableFuture<>();
-        initState(new MutationSetup());
+        initState(new MutationSetup(getFingerprintSetup() != null));
 
         return openFuture;
     }
 
     /**
+     * Queue a data point to be sent.
+     *
      * {@inheritDoc}
      */
     @Override
     public CompletableFuture<Void>
             accept(final BaseDataPoint<Key, Value> dataPoint) {
-        if (yieldFuture.isDone()) {
-            throw new IllegalStateException();
+        return queue(new Pending(dataPoint, null, new CompletableFuture<>()));
+    }
+
+    /**
+     * Queue a data point built already to be sent as is, for example
+     * with its producer_seq_no set, see {@link #setProducerId}.
+     *
+     * @param yield - the data point
+     * @return - a future that completes on the YieldAck of the data point
+     */
+    public CompletableFuture<Void> accept(final YieldData yield) {
+        return queue(new Pending(null, yield, new CompletableFuture<>()));
+    }
+
+    /**
+     * Queue a data point to be sent.
+     *
+     * @param p - the data point
+     * @return - a future that completes on the YieldAck of the data point
+     */
+    private CompletableFuture<Void> queue(final Pending p) {
+
+        lock.lock();
+        try {
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+
+            queued.add(p);
+        } finally {
+            lock.unlock();
         }
 
-        yieldAckFuture = new CompletableFuture<>();
-        yieldFuture.complete(dataPoint);
-        return yieldAckFuture;
+        wake();
+
+        return p.ack();
+    }
+
+    /**
+     * Take the next queued data point, if the window allows it. The
+     * lock must be held.
+     *
+     * @param currentSeqNo - the local-end sequence number
+     * @return - the YieldData message or null
+     */
+    private MutationClientMessage pollNext(final AtomicInteger currentSeqNo) {
+        while (inFlight.size() < maxInFlight && !queued.isEmpty()) {
+            Pending p = queued.poll();
+            YieldData yield = p.yield();
+
+            if (yield == null) {
+                try {
+                    yield = Yields.yield(p.dataPoint()).build();
+                } catch (Exception e) {
+                    p.ack().completeExceptionally(e);
+                    continue;
+                }
+            }
+
+            int clientSeqNo = currentSeqNo.getAndIncrement();
+            inFlight.put(clientSeqNo, p.ack());
+
+            return MutationMessages.clientYield(clientSeqNo, yield).build();
+        }
+
+        return null;
+    }
+
+    /**
+     * Send the next queued data point if an output is waiting for it.
+     */
+    private void wake() {
+        CompletableFuture<MutationClientMessage> f = null;
+        MutationClientMessage msg = null;
+        WaitSetupAck w;
+
+        lock.lock();
+        try {
+            if (outputFuture != null) {
+                msg = pollNext(outputSeqNo);
+                if (msg != null) {
+                    f = outputFuture;
+                    outputFuture = null;
+                }
+            }
+
+            w = waitingAck;
+        } finally {
+            lock.unlock();
+        }
+
+        if (f != null) {
+            f.complete(msg);
+        } else if (w != null) {
+            w.pipelinedAvailable();
+        }
+    }
+
+    /**
+     * Complete the future of an acknowledged data point.
+     *
+     * @param ackSeqNo - the client sequence number acknowledged, 0 if
+     *          not known
+     */
+    private void acked(final int ackSeqNo) {
+        CompletableFuture<Void> f;
+
+        lock.lock();
+        try {
+            f = inFlight.remove(ackSeqNo);
+            if (f == null && !inFlight.isEmpty()) {
+                // the server did not say which, acks come in order
+                Iterator<CompletableFuture<Void>> it =
+                        inFlight.values().iterator();
+                f = it.next();
+                it.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (f != null) {
+            f.complete(null);
+        }
+
+        wake();
+    }
+
+    /**
+     * Fail the future of a data point the server replied to with an
+     * Error, or all of them if the Error is not in reply to one.
+     *
+     * @param inReplyToSeqNo - the client sequence number replied to
+     */
+    private void rejected(final int inReplyToSeqNo) {
+        CompletableFuture<Void> f;
+
+        lock.lock();
+        try {
+            f = inFlight.remove(inReplyToSeqNo);
+        } finally {
+            lock.unlock();
+        }
+
+        if (f == null) {
+            fail(new MishmashProtocolException());
+        } else {
+            f.completeExceptionally(new MishmashProtocolException());
+            wake();
+        }
+    }
+
+    /**
+     * Fail all data points not acknowledged yet and refuse new ones.
+     *
+     * @param t - the error
+     */
+    private void fail(final Throwable t) {
+        List<CompletableFuture<Void>> failed = new ArrayList<>();
+        CompletableFuture<MutationClientMessage> f;
+
+        lock.lock();
+        try {
+            if (failure == null) {
+                failure = t;
+            }
+
+            failed.addAll(inFlight.values());
+            inFlight.clear();
+            for (Pending p : queued) {
+                failed.add(p.ack());
+            }
+            queued.clear();
+
+            f = outputFuture;
+            outputFuture = null;
+            waitingAck = null;
+        } finally {
+            lock.unlock();
+        }
+
+        for (CompletableFuture<Void> ack : failed) {
+            ack.completeExceptionally(t);
+        }
+
+        if (f != null) {
+            f.completeExceptionally(t);
+        }
     }
 
     /**
@@ -97,14 +475,37 @@ public class MutationClient extends BaseClient<
      */
     public class MutationSetup extends SendMutateSetupState<MutationMishmash> {
 
+        /**
+         * If only the fingerprint of the setup should be sent.
+         */
+        private final boolean isFingerprintOnly;
+
+        /**
+         * Create a new MutationSetup.
+         *
+         * @param fingerprintOnly - send only the fingerprint of the setup
+         */
+        public MutationSetup(final boolean fingerprintOnly) {
+            this.isFingerprintOnly = fingerprintOnly;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public MutationClientMessage getSetupMessage() {
-            return MutationMessages
-                    .clientSetup(0, MishmashSetup.newBuilder())
-                    .build();
+            return isFingerprintOnly ? getFingerprintSetup() : getSetup();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public MutationClientMessage getContinuationMessage(
+                final AtomicInteger currentSeqNo) {
+            return isFingerprintOnly
+                    ? null
+                    : nextSetupContinuation(currentSeqNo);
         }
 
         /**
@@ -114,6 +515,7 @@ public class MutationClient extends BaseClient<
         public void error(final Throwable t) {
             super.error(t);
             openFuture.completeExceptionally(t);
+            fail(t);
         }
 
         /**
@@ -122,25 +524,108 @@ public class MutationClient extends BaseClient<
         @Override
         public GrpcStreamState<MutationServerMessage, MutationClientMessage>
                 prepareNext() {
-            return new WaitSetupAck();
+            return new WaitSetupAck(getTimeouts());
         }
     }
 
     /**
      * Waits for the SetupAck and resolves the open() future, so that
      * users of this mutation can know when it's okay to start yielding
-     * data.
+     * data. Sends pipelined data points meanwhile.
      */
     public class WaitSetupAck
             extends WaitMutateSetupAckState<MutationMishmash> {
 
         /**
+         * Create a new WaitSetupAck.
+         *
+         * @param timeouts - the timeouts of the stream
+         */
+        public WaitSetupAck(final ProtocolTimeouts timeouts) {
+            super(timeouts);
+        }
+
+        /**
+         * Also ensure the server confirmed the producer ID, if set.
+         *
          * {@inheritDoc}
          */
         @Override
-        public void input(final MutationServerMessage input)
+        public void validateInput(final MutationServerMessage input)
                 throws Exception {
-            super.input(input);
+            super.validateInput(input);
+
+            if (producerId != null
+                    && !isSendFullSetup(input)
+                    && !producerId.equals(
+                            input.getSetupAck().getProducerId())) {
+                throw new MishmashNotSupportedException();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletableFuture<Void> enter() {
+            lock.lock();
+            try {
+                waitingAck = this;
+            } finally {
+                lock.unlock();
+            }
+
+            return super.enter();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected MutationClientMessage pollPipelined(
+                final AtomicInteger currentSeqNo) {
+            lock.lock();
+            try {
+                if (pipelinedSent >= maxPipelined) {
+                    return null;
+                }
+
+                MutationClientMessage msg = pollNext(currentSeqNo);
+                if (msg != null) {
+                    pipelinedSent++;
+                }
+
+                return msg;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public GrpcStreamState<MutationServerMessage, MutationClientMessage>
+                leave() {
+            lock.lock();
+            try {
+                if (waitingAck == this) {
+                    waitingAck = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            return super.leave();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public GrpcStreamState<MutationServerMessage, MutationClientMessage>
+                prepareFullSetup() {
+            return new MutationSetup(false);
         }
 
         /**
@@ -150,6 +635,7 @@ public class MutationClient extends BaseClient<
         public void error(final Throwable t) {
             super.error(t);
             openFuture.completeExceptionally(t);
+            fail(t);
         }
 
         /**
@@ -185,8 +671,13 @@ public class MutationClient extends BaseClient<
         @Override
         public void validateInput(final MutationServerMessage input)
                 throws Exception {
-            // TODO Auto-generated method stub
-
+            switch (Proto.ensureCase(input)) {
+            case ACK:
+            case ERROR:
+                break;
+            default:
+                Proto.unexpectedAltCase(input.getAltCase());
+            }
         }
 
         /**
@@ -195,9 +686,11 @@ public class MutationClient extends BaseClient<
         @Override
         public void input(final MutationServerMessage input)
                 throws Exception {
-            // TODO Auto-generated method stub
-            // must be acks
-            yieldAckFuture.complete(null);
+            if (input.getAltCase() == MutationServerMessage.AltCase.ERROR) {
+                rejected(input.getError().getInReplyToSeqNo());
+            } else {
+                acked(input.getAck().getAckSeqNo());
+            }
         }
 
         /**
@@ -206,7 +699,6 @@ public class MutationClient extends BaseClient<
         @Override
         public GrpcStreamState<MutationServerMessage, MutationClientMessage>
                 leave() {
-            // TODO Auto-generated method stub
             return null;
         }
 
@@ -216,28 +708,24 @@ public class MutationClient extends BaseClient<
         @Override
         public CompletableFuture<MutationClientMessage>
                 output(final AtomicInteger currentSeqNo) {
-            CompletableFuture<MutationClientMessage> res =
-                    new CompletableFuture<>();
-
-            yieldFuture.whenComplete((dp, t) -> {
-                if (t != null) {
-                    res.completeExceptionally(t);
-                } else {
-                    try {
-                        res.complete(
-                                MutationMessages
-                                    .clientYield(
-                                            currentSeqNo.getAndIncrement(),
-                                            Yields.yield(dp))
-                                    .build());
-                        yieldFuture = new CompletableFuture<>();
-                    } catch (Exception e) {
-                        res.completeExceptionally(e);
-                    }
+            lock.lock();
+            try {
+                if (failure != null) {
+                    return CompletableFuture.failedFuture(failure);
+                }
+
+                MutationClientMessage msg = pollNext(currentSeqNo);
+                if (msg != null) {
+                    return CompletableFuture.completedFuture(msg);
                 }
-            });
 
-            return res;
+                outputSeqNo = currentSeqNo;
+                outputFuture = new CompletableFuture<>();
+
+                return outputFuture;
+            } finally {
+                lock.unlock();
+            }
         }
 
         /**
@@ -245,7 +733,7 @@ public class MutationClient extends BaseClient<
          */
         @Override
         public void error(final Throwable t) {
-            yieldAckFuture.completeExceptionally(t);
+            fail(t);
         }
 
         /**
@@ -253,8 +741,7 @@ public class MutationClient extends BaseClient<
          */
         @Override
         public void close() throws Exception {
-            // TODO Auto-generated method stub
-
+            fail(new MishmashInvalidStateException());
         }
     }
 }
@@ -17,13 +17,19 @@
 package io.mishmash.common.ipc.client;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.grpc.stub.StreamObserver;
 import io.mishmash.common.data.BaseDataPoint;
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Value;
 import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
 import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
 import io.mishmash.common.rpc.MishmashServiceGrpc.MishmashServiceStub;
 
 /**
@@ -36,6 +42,16 @@ public class MutationMishmash extends
             MutationClientMessage,
             MutationClient> {
 
+    /**
+     * The result cache to invalidate on writes, or null.
+     */
+    private final ResultCache resultCache;
+
+    /**
+     * The target set of the mutation.
+     */
+    private final MishmashSetDescriptorList target;
+
     /**
      * Create a new {@link ClientMishmash} for a mutation.
      *
@@ -47,7 +63,46 @@ public class MutationMishmash extends
             final MishmashServiceStub stub,
             final MishmashSetup.Builder setup,
             final MutationClient client) {
-        super(client.getSetupMessage(setup), client, stub::mutate);
+        this(stub, setup, client, null);
+    }
+
+    /**
+     * Create a new {@link ClientMishmash} for a mutation that invalidates
+     * cached results it may change.
+     *
+     * @param stub - the GRPC service stub to use
+     * @param setup - the GRPC MishmashSetup message
+     * @param client - the {@link MutationClient}
+     * @param cache - the {@link ResultCache} or null
+     */
+    public MutationMishmash(
+            final MishmashServiceStub stub,
+            final MishmashSetup.Builder setup,
+            final MutationClient client,
+            final ResultCache cache) {
+        this(stub::mutate, setup, client, cache);
+    }
+
+    /**
+     * Create a new {@link ClientMishmash} for a mutation opened by a
+     * function, for example on a {@link ClientSession}.
+     *
+     * @param remotePeer - opens the mutation for a client
+     * @param setup - the GRPC MishmashSetup message
+     * @param client - the {@link MutationClient}
+     * @param cache - the {@link ResultCache} or null
+     */
+    public MutationMishmash(
+            final Function<
+                MutationClient,
+                StreamObserver<MutationClientMessage>> remotePeer,
+            final MishmashSetup.Builder setup,
+            final MutationClient client,
+            final ResultCache cache) {
+        super(client.getSetupMessage(setup), client, remotePeer);
+
+        this.resultCache = cache;
+        this.target = setup.getTargetSet();
     }
 
     /**
@@ -68,7 +123,40 @@ public class MutationMishmash extends
     @Override
     public CompletableFuture<Void> put(
             final BaseDataPoint<Key, Value> dataPoint) {
-        return getClient().accept(dataPoint);
+        return invalidating(() -> getClient().accept(dataPoint));
+    }
+
+    /**
+     * Put a data point built already, for example with its sequence
+     * number within the producer set on the client, see
+     * {@link MutationClient#setProducerId}.
+     *
+     * @param yield - the data point
+     * @return - a future that completes when the data point is saved
+     *          or on error
+     */
+    public CompletableFuture<Void> put(final YieldData yield) {
+        return invalidating(() -> getClient().accept(yield));
+    }
+
+    /**
+     * Make a write, invalidating the cached results it overlaps.
+     *
+     * @param write - makes the write
+     * @return - the future of the write
+     */
+    private CompletableFuture<Void> invalidating(
+            final Supplier<CompletableFuture<Void>> write) {
+        if (resultCache == null) {
+            return write.get();
+        }
+
+        resultCache.invalidateOverlapping(target);
+
+        // also drop results read while the write was in flight
+        return write.get()
+                .whenComplete((v, t) ->
+                    resultCache.invalidateOverlapping(target));
     }
 
 }
@@ -0,0 +1,332 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+
+/**
+ * A read split over several streams, each reading one disjoint
+ * partition of the same setup, see
+ * {@link io.mishmash.common.ipc.proto.ReadPartitions}.
+ *
+ * The partitions can be read as independent cursors with
+ * {@link #getPartitions()}, together through {@link #get()}, which
+ * returns whichever data point arrives first, or as a parallel
+ * {@link Stream} that reads partitions on separate threads. Data points
+ * of different partitions are not ordered.
+ */
+public class PartitionedStreamMishmash implements Mishmash<Key, Value> {
+
+    /**
+     * The streams of the partitions.
+     */
+    private final List<Mishmash<Key, Value>> partitions;
+
+    /**
+     * Guards the pending reads.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Per partition, the read in progress of {@link #get()}, if any.
+     */
+    private final List<CompletableFuture<? extends BaseDataPoint<Key, Value>>>
+            pending;
+
+    /**
+     * Per partition, if it has no more data points.
+     */
+    private final boolean[] isExhausted;
+
+    /**
+     * Create a new PartitionedStreamMishmash.
+     *
+     * @param partitionStreams - the streams of the partitions, not
+     *          open yet
+     */
+    public PartitionedStreamMishmash(
+            final List<? extends Mishmash<Key, Value>> partitionStreams) {
+        this.partitions = List.copyOf(partitionStreams);
+        this.pending = new ArrayList<>(partitions.size());
+        this.isExhausted = new boolean[partitions.size()];
+
+        for (int i = 0; i < partitions.size(); i++) {
+            pending.add(null);
+        }
+    }
+
+    /**
+     * Get the streams of the partitions, to read them as independent
+     * cursors. They should not be read through this instance too.
+     *
+     * @return - the partitions
+     */
+    public List<Mishmash<Key, Value>> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Get a {@link MergedStreamMishmash} over the partitions, that
+     * returns data points in {@link io.mishmash.common.data.KeyComparator}
+     * order. Each partition must be ordered, as range partitions of an
+     * ordered read are. The partitions should not be read through this
+     * instance too.
+     *
+     * @return - the merged partitions
+     */
+    public MergedStreamMishmash merged() {
+        return new MergedStreamMishmash(partitions);
+    }
+
+    /**
+     * Open all partitions.
+     *
+     * @return - a future that completes when all partitions are open or
+     *          fails if one of them fails, also when a server did not
+     *          confirm streaming only its partition
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        CompletableFuture<?>[] opened =
+                new CompletableFuture<?>[partitions.size()];
+
+        for (int i = 0; i < opened.length; i++) {
+            opened[i] = partitions.get(i).open();
+        }
+
+        return CompletableFuture.allOf(opened);
+    }
+
+    /**
+     * Get the next data point of any partition, whichever arrives
+     * first. A read is kept in progress on every partition.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
+        CompletableFuture<BaseDataPoint<Key, Value>> res =
+                new CompletableFuture<>();
+
+        poll(res);
+
+        return res;
+    }
+
+    /**
+     * Complete a read with a data point that arrived, or wait for the
+     * first one to arrive.
+     *
+     * @param res - the read
+     */
+    private void poll(final CompletableFuture<BaseDataPoint<Key, Value>> res) {
+        List<CompletableFuture<?>> waiting = new ArrayList<>();
+        CompletableFuture<? extends BaseDataPoint<Key, Value>> arrived = null;
+
+        lock.lock();
+        try {
+            for (int i = 0; i < partitions.size() && arrived == null; i++) {
+                if (isExhausted[i]) {
+                    continue;
+                }
+
+                CompletableFuture<? extends BaseDataPoint<Key, Value>> f =
+                        pending.get(i);
+                if (f == null) {
+                    f = partitions.get(i).get();
+                    pending.set(i, f);
+                }
+
+                if (!f.isDone()) {
+                    waiting.add(f);
+                } else if (f.isCompletedExceptionally()
+                        || f.getNow(null) != null) {
+                    pending.set(i, null);
+                    isExhausted[i] = f.isCompletedExceptionally();
+                    arrived = f;
+                } else {
+                    // the end of this partition
+                    pending.set(i, null);
+                    isExhausted[i] = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (arrived != null) {
+            arrived.whenComplete((dp, t) -> {
+                if (t != null) {
+                    res.completeExceptionally(t);
+                } else {
+                    res.complete(dp);
+                }
+            });
+        } else if (waiting.isEmpty()) {
+            // all partitions are exhausted
+            res.complete(null);
+        } else {
+            CompletableFuture
+                .anyOf(waiting.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((v, t) -> poll(res));
+        }
+    }
+
+    /**
+     * Returns a future that was completed with an error.
+     * A PartitionedStreamMishmash does not implement this method.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        return CompletableFuture
+                .failedFuture(new MishmashInvalidStateException());
+    }
+
+    /**
+     * Get a {@link Spliterator} over the partitions, that splits into
+     * groups of partitions. Each group reads its partitions one after
+     * the other, blocking until data points arrive.
+     *
+     * @return - the spliterator
+     */
+    public Spliterator<BaseDataPoint<Key, Value>> spliterator() {
+        return new PartitionSpliterator(0, partitions.size());
+    }
+
+    /**
+     * Get a parallel {@link Stream} over all partitions. The partitions
+     * must be open and not read otherwise.
+     *
+     * @return - the stream
+     */
+    public Stream<BaseDataPoint<Key, Value>> stream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Close all partitions.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        Exception failure = null;
+
+        for (Mishmash<Key, Value> partition : partitions) {
+            try {
+                partition.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Reads a range of partitions.
+     */
+    private final class PartitionSpliterator
+            implements Spliterator<BaseDataPoint<Key, Value>> {
+
+        /**
+         * The partition being read.
+         */
+        private int current;
+
+        /**
+         * The end of the range, exclusive.
+         */
+        private final int end;
+
+        /**
+         * Create a new PartitionSpliterator.
+         *
+         * @param from - the first partition
+         * @param to - the end of the range, exclusive
+         */
+        PartitionSpliterator(final int from, final int to) {
+            this.current = from;
+            this.end = to;
+        }
+
+        @Override
+        public boolean tryAdvance(
+                final Consumer<? super BaseDataPoint<Key, Value>> action) {
+            while (current < end) {
+                BaseDataPoint<Key, Value> dp =
+                        partitions.get(current).get().join();
+
+                if (dp != null) {
+                    action.accept(dp);
+                    return true;
+                }
+
+                current++;
+            }
+
+            return false;
+        }
+
+        @Override
+        public Spliterator<BaseDataPoint<Key, Value>> trySplit() {
+            int size = end - current;
+            if (size < 2) {
+                return null;
+            }
+
+            int mid = current + size / 2;
+            Spliterator<BaseDataPoint<Key, Value>> res =
+                    new PartitionSpliterator(current, mid);
+            current = mid;
+
+            return res;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end > current ? Long.MAX_VALUE : 0;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+}
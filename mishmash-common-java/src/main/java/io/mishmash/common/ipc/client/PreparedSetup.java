@@ -0,0 +1,370 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import io.mishmash.common.exception.MishmashException;
+import io.mishmash.common.exception.MishmashInvalidArgumentException;
+import io.mishmash.common.rpc.MishmashRpc.Intersection;
+import io.mishmash.common.rpc.MishmashRpc.Literal;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.PredefinedFunction;
+import io.mishmash.common.rpc.MishmashRpc.Transformation;
+import io.mishmash.common.rpc.MishmashRpc.Union;
+
+/**
+ * A MishmashSetup template with named placeholders (see
+ * {@link BaseClientMishmashBuilder#addPlaceholder(String)}), prepared
+ * once and bound to different literals many times.
+ *
+ * Preparing records the path to every placeholder. Binding rebuilds
+ * only the descriptors along these paths and reuses all other
+ * descriptors of the template as they are. Protobuf messages are
+ * immutable and memoize their serialized size, so the invariant
+ * descriptors are neither copied nor sized again. Each descriptor list
+ * along a path is still rebuilt as a whole, so the cost of a bind also
+ * grows with the lengths of these lists: one reference is copied per
+ * sibling entry.
+ *
+ * Placeholders within lambda function scopes are not bound.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public class PreparedSetup {
+
+    /**
+     * A descriptor on the path to a placeholder.
+     */
+    private static final class Spine {
+
+        /**
+         * The position of the descriptor in its parent.
+         */
+        private final int index;
+
+        /**
+         * The placeholder name, if the descriptor is a placeholder.
+         */
+        private final String placeholder;
+
+        /**
+         * The spines of the nested descriptors (the left axis
+         * of a transformation).
+         */
+        private final List<Spine> children;
+
+        /**
+         * The spines of the right axis of a transformation.
+         */
+        private final List<Spine> right;
+
+        /**
+         * Create a new Spine.
+         *
+         * @param at - the position of the descriptor in its parent
+         * @param name - the placeholder name or null
+         * @param nested - the nested spines
+         * @param rightAxis - the spines of the right axis
+         */
+        private Spine(
+                final int at,
+                final String name,
+                final List<Spine> nested,
+                final List<Spine> rightAxis) {
+            this.index = at;
+            this.placeholder = name;
+            this.children = nested;
+            this.right = rightAxis;
+        }
+    }
+
+    /**
+     * The template.
+     */
+    private final MishmashSetup template;
+
+    /**
+     * The spines of the target set.
+     */
+    private final List<Spine> target;
+
+    /**
+     * The placeholder names.
+     */
+    private final Set<String> placeholders;
+
+    /**
+     * Prepare a template.
+     *
+     * @param setup - the template setup
+     */
+    public PreparedSetup(final MishmashSetup setup) {
+        this.template = setup;
+
+        Set<String> names = new TreeSet<>();
+        this.target = prepareList(setup.getTargetSet(), names);
+        this.placeholders = Collections.unmodifiableSet(names);
+
+        // memoize the sizes of all invariant descriptors
+        setup.getSerializedSize();
+    }
+
+    /**
+     * Prepare the template built by a builder.
+     *
+     * @param builder - the builder
+     * @return - the prepared setup
+     * @throws MishmashException - thrown on failure
+     */
+    public static PreparedSetup prepare(
+            final ClientMishmashBuilder<?, ?, ?, ?> builder)
+                    throws MishmashException {
+        return new PreparedSetup(builder.getBuilder().build());
+    }
+
+    /**
+     * Get the template.
+     *
+     * @return - the template setup
+     */
+    public MishmashSetup getTemplate() {
+        return template;
+    }
+
+    /**
+     * Get the names of all placeholders.
+     *
+     * @return - a sorted, unmodifiable set of names
+     */
+    public Set<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Bind all placeholders.
+     *
+     * @param literals - the literal for each placeholder name
+     * @return - the bound setup
+     * @throws MishmashException - thrown if a placeholder is not bound
+     *          to an id or a value
+     */
+    public MishmashSetup bind(final Map<String, Literal> literals)
+            throws MishmashException {
+        if (target.isEmpty()) {
+            return template;
+        }
+
+        return template.toBuilder()
+                .setTargetSet(bindList(template.getTargetSet(), target,
+                        literals))
+                .build();
+    }
+
+    /**
+     * Record the spines of a descriptor list.
+     *
+     * @param list - the descriptor list
+     * @param names - collects the placeholder names
+     * @return - the spines, empty if there are no placeholders
+     */
+    private static List<Spine> prepareList(
+            final MishmashSetDescriptorList list,
+            final Set<String> names) {
+        List<Spine> res = null;
+
+        for (int i = 0; i < list.getEntriesCount(); i++) {
+            Spine s = prepare(i, list.getEntries(i), names);
+
+            if (s != null) {
+                if (res == null) {
+                    res = new ArrayList<>();
+                }
+
+                res.add(s);
+            }
+        }
+
+        return res == null ? Collections.emptyList() : res;
+    }
+
+    /**
+     * Record the spine of a descriptor.
+     *
+     * @param index - the position of the descriptor in its parent
+     * @param descriptor - the descriptor
+     * @param names - collects the placeholder names
+     * @return - the spine or null if there are no placeholders
+     */
+    private static Spine prepare(
+            final int index,
+            final MishmashSetDescriptor descriptor,
+            final Set<String> names) {
+        List<Spine> nested;
+
+        switch (descriptor.getAltCase()) {
+        case LITERAL:
+            Literal literal = descriptor.getLiteral();
+            if (literal.getAltCase() != Literal.AltCase.PLACEHOLDER) {
+                return null;
+            }
+
+            names.add(literal.getPlaceholder());
+
+            return new Spine(index, literal.getPlaceholder(), null, null);
+        case UNION:
+            nested = prepareList(descriptor.getUnion().getSets(), names);
+            break;
+        case INTERSECTION:
+            nested = prepareList(
+                    descriptor.getIntersection().getSets(),
+                    names);
+            break;
+        case TRANSFORMATION:
+            Transformation.Axis axis =
+                    descriptor.getTransformation().getAxis();
+            nested = prepareList(axis.getLeft(), names);
+            List<Spine> right = prepareList(axis.getRight(), names);
+
+            return nested.isEmpty() && right.isEmpty()
+                    ? null
+                    : new Spine(index, null, nested, right);
+        case PREDEFINED_FUNCTION:
+            nested = new ArrayList<>();
+            PredefinedFunction function = descriptor.getPredefinedFunction();
+
+            for (int i = 0; i < function.getArgumentsCount(); i++) {
+                Spine s = prepare(i, function.getArguments(i), names);
+
+                if (s != null) {
+                    nested.add(s);
+                }
+            }
+            break;
+        default:
+            return null;
+        }
+
+        return nested.isEmpty() ? null : new Spine(index, null, nested, null);
+    }
+
+    /**
+     * Rebuild a descriptor list along its spines. Entries off the
+     * spines are shared with the template, but the list itself is
+     * copied.
+     *
+     * @param list - the template list
+     * @param spines - the spines of the list
+     * @param literals - the bound literals
+     * @return - the bound list
+     * @throws MishmashException - thrown if a placeholder is not bound
+     */
+    private static MishmashSetDescriptorList bindList(
+            final MishmashSetDescriptorList list,
+            final List<Spine> spines,
+            final Map<String, Literal> literals)
+                    throws MishmashException {
+        if (spines.isEmpty()) {
+            return list;
+        }
+
+        MishmashSetDescriptorList.Builder res = list.toBuilder();
+
+        for (Spine s : spines) {
+            res.setEntries(s.index,
+                    bind(list.getEntries(s.index), s, literals));
+        }
+
+        return res.build();
+    }
+
+    /**
+     * Rebuild a descriptor along its spine.
+     *
+     * @param descriptor - the template descriptor
+     * @param spine - the spine of the descriptor
+     * @param literals - the bound literals
+     * @return - the bound descriptor
+     * @throws MishmashException - thrown if a placeholder is not bound
+     */
+    private static MishmashSetDescriptor bind(
+            final MishmashSetDescriptor descriptor,
+            final Spine spine,
+            final Map<String, Literal> literals)
+                    throws MishmashException {
+        MishmashSetDescriptor.Builder res = MishmashSetDescriptor.newBuilder();
+
+        switch (descriptor.getAltCase()) {
+        case LITERAL:
+            Literal literal = literals.get(spine.placeholder);
+            if (literal == null
+                    || literal.getAltCase() == Literal.AltCase.PLACEHOLDER
+                    || literal.getAltCase()
+                        == Literal.AltCase.ALT_NOT_SET) {
+                throw new MishmashInvalidArgumentException();
+            }
+
+            return res.setLiteral(literal).build();
+        case UNION:
+            return res.setUnion(Union.newBuilder()
+                        .setSets(bindList(
+                                descriptor.getUnion().getSets(),
+                                spine.children,
+                                literals)))
+                    .build();
+        case INTERSECTION:
+            return res.setIntersection(Intersection.newBuilder()
+                        .setSets(bindList(
+                                descriptor.getIntersection().getSets(),
+                                spine.children,
+                                literals)))
+                    .build();
+        case TRANSFORMATION:
+            Transformation.Axis axis =
+                    descriptor.getTransformation().getAxis();
+
+            return res.setTransformation(
+                    descriptor.getTransformation().toBuilder()
+                        .setAxis(Transformation.Axis.newBuilder()
+                                .setLeft(bindList(axis.getLeft(),
+                                        spine.children, literals))
+                                .setRight(bindList(axis.getRight(),
+                                        spine.right, literals))))
+                    .build();
+        case PREDEFINED_FUNCTION:
+            PredefinedFunction function = descriptor.getPredefinedFunction();
+            PredefinedFunction.Builder fb = function.toBuilder();
+
+            for (Spine s : spine.children) {
+                fb.setArguments(s.index,
+                        bind(function.getArguments(s.index), s, literals));
+            }
+
+            return res.setPredefinedFunction(fb).build();
+        default:
+            // spines are only recorded for the cases above
+            return descriptor;
+        }
+    }
+}
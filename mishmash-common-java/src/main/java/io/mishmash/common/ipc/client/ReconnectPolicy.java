@@ -0,0 +1,220 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.collect.Sets;
+
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.StatusRuntimeException;
+import io.mishmash.common.exception.MishmashTimeoutException;
+
+/**
+ * Decides if and when a client opens a broken stream or mutation
+ * again.
+ *
+ * Errors with one of the retry GRPC statuses and protocol timeouts are
+ * retried, up to a number of attempts in a row, each after an
+ * exponentially growing delay with random jitter. Errors reported by
+ * the server in the mishmash protocol are not retried.
+ *
+ * Instances are immutable, the with* methods return modified copies.
+ */
+public final class ReconnectPolicy {
+
+    /**
+     * Default number of attempts in a row.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    /**
+     * Default delay before the first attempt, in milliseconds.
+     */
+    public static final long DEFAULT_INITIAL_MSEC = 100;
+
+    /**
+     * Default longest delay before an attempt, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_MSEC = 30_000;
+
+    /**
+     * GRPC statuses that are retried by default.
+     */
+    public static final Set<Status.Code> DEFAULT_RETRY_STATUSES =
+            Sets.immutableEnumSet(
+                    Status.Code.UNAVAILABLE,
+                    Status.Code.UNKNOWN,
+                    Status.Code.ABORTED,
+                    Status.Code.RESOURCE_EXHAUSTED,
+                    Status.Code.DEADLINE_EXCEEDED);
+
+    /**
+     * The default policy.
+     */
+    public static final ReconnectPolicy DEFAULT =
+            new ReconnectPolicy(
+                    DEFAULT_MAX_ATTEMPTS,
+                    DEFAULT_INITIAL_MSEC,
+                    DEFAULT_MAX_MSEC,
+                    DEFAULT_RETRY_STATUSES);
+
+    /**
+     * A policy that never retries.
+     */
+    public static final ReconnectPolicy NEVER = DEFAULT.withMaxAttempts(0);
+
+    /**
+     * The number of attempts in a row.
+     */
+    private final int maxAttempts;
+
+    /**
+     * The delay before the first attempt.
+     */
+    private final long initialMsec;
+
+    /**
+     * The longest delay before an attempt.
+     */
+    private final long maxMsec;
+
+    /**
+     * The GRPC statuses that are retried.
+     */
+    private final Set<Status.Code> retryStatuses;
+
+    /**
+     * Create a new ReconnectPolicy.
+     *
+     * @param attempts - the number of attempts in a row
+     * @param initial - the delay before the first attempt
+     * @param max - the longest delay before an attempt
+     * @param statuses - the GRPC statuses that are retried
+     */
+    private ReconnectPolicy(
+            final int attempts,
+            final long initial,
+            final long max,
+            final Set<Status.Code> statuses) {
+        if (attempts < 0 || initial < 1 || max < initial) {
+            throw new IllegalArgumentException("Invalid reconnect policy");
+        }
+
+        this.maxAttempts = attempts;
+        this.initialMsec = initial;
+        this.maxMsec = max;
+        this.retryStatuses = Sets.immutableEnumSet(statuses);
+    }
+
+    /**
+     * Get the number of attempts in a row.
+     *
+     * @return - the number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Change the number of attempts in a row. Attempts are counted
+     * again once a stream makes progress.
+     *
+     * @param attempts - the number of attempts, 0 to never retry
+     * @return - the modified policy
+     */
+    public ReconnectPolicy withMaxAttempts(final int attempts) {
+        return new ReconnectPolicy(attempts, initialMsec, maxMsec,
+                retryStatuses);
+    }
+
+    /**
+     * Change the delays before attempts.
+     *
+     * @param initial - milliseconds before the first attempt
+     * @param max - the longest delay in milliseconds
+     * @return - the modified policy
+     */
+    public ReconnectPolicy withDelayMsec(final long initial, final long max) {
+        return new ReconnectPolicy(maxAttempts, initial, max, retryStatuses);
+    }
+
+    /**
+     * Change the GRPC statuses that are retried.
+     *
+     * @param statuses - the statuses
+     * @return - the modified policy
+     */
+    public ReconnectPolicy withRetryStatuses(
+            final Set<Status.Code> statuses) {
+        return new ReconnectPolicy(maxAttempts, initialMsec, maxMsec,
+                statuses);
+    }
+
+    /**
+     * Check if an attempt may follow a number of failed ones.
+     *
+     * @param failed - the number of failed attempts in a row
+     * @return - true if one more attempt is allowed
+     */
+    public boolean canRetry(final int failed) {
+        return failed < maxAttempts;
+    }
+
+    /**
+     * Get the delay before an attempt: the initial delay doubled for
+     * each failed attempt, up to the longest delay, of which a random
+     * half is taken off.
+     *
+     * @param failed - the number of failed attempts in a row, from 0
+     * @return - the delay in milliseconds
+     */
+    public long delayMsec(final int failed) {
+        long delay = failed >= Long.numberOfLeadingZeros(initialMsec) - 1
+                ? maxMsec
+                : Math.min(maxMsec, initialMsec << failed);
+
+        return delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Check if an error is transient and can be retried.
+     *
+     * @param t - the error
+     * @return - true if it can be retried
+     */
+    public boolean isRetryable(final Throwable t) {
+        Throwable cause = t;
+        while (cause instanceof CompletionException
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        if (cause instanceof MishmashTimeoutException) {
+            return true;
+        } else if (cause instanceof StatusRuntimeException
+                || cause instanceof StatusException) {
+            return retryStatuses.contains(
+                    Status.fromThrowable(cause).getCode());
+        }
+
+        return false;
+    }
+}
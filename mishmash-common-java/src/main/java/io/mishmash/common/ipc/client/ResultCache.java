@@ -0,0 +1,396 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.protobuf.ByteString;
+
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.ipc.proto.LiteralSets;
+import io.mishmash.common.ipc.proto.SetupCanonicalizer;
+import io.mishmash.common.rpc.MishmashRpc.Literal;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
+
+/**
+ * An opt-in cache of fully read {@link StreamMishmash} results, keyed by
+ * the structural hash of the target set of the MishmashSetup, so
+ * equivalent target sets share results.
+ *
+ * The cache is bounded by the total number of data points it holds and
+ * evicts the least recently used results first. Results also expire
+ * after a time to live.
+ *
+ * A {@link MutationMishmash} that shares the cache invalidates all
+ * results with an overlapping target set when it writes. Two target sets
+ * are known not to overlap only when their first descriptors are
+ * literals (or unions of literals) without a common value.
+ *
+ * Instances are thread-safe.
+ */
+public class ResultCache {
+
+    /**
+     * The initial capacity of the entries map.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The load factor of the entries map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * A cached result.
+     */
+    private static final class Entry {
+
+        /**
+         * The target set of the result.
+         */
+        private final MishmashSetDescriptorList target;
+
+        /**
+         * The data points.
+         */
+        private final List<DataPoint> points;
+
+        /**
+         * When the entry expires, in {@link System#nanoTime()} units.
+         */
+        private final long expiresAt;
+
+        /**
+         * Create an entry.
+         *
+         * @param targetSet - the target set
+         * @param dataPoints - the data points
+         * @param expires - the expiry time
+         */
+        Entry(final MishmashSetDescriptorList targetSet,
+                final List<DataPoint> dataPoints, final long expires) {
+            this.target = targetSet;
+            this.points = dataPoints;
+            this.expiresAt = expires;
+        }
+    }
+
+    /**
+     * The maximum number of data points held.
+     */
+    private final long maxDataPoints;
+
+    /**
+     * The time to live of results, in nanoseconds.
+     */
+    private final long ttlNanos;
+
+    /**
+     * Guards the cache state.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The cached results in access order.
+     */
+    private final LinkedHashMap<ByteString, Entry> entries =
+            new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    /**
+     * The number of data points held.
+     */
+    private long weight;
+
+    /**
+     * Incremented on every invalidation.
+     */
+    private long generation;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxPoints - the maximum number of data points to hold
+     * @param ttl - how long results stay valid
+     */
+    public ResultCache(final long maxPoints, final Duration ttl) {
+        this.maxDataPoints = maxPoints;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Get the cache key of a target set, its structural hash.
+     *
+     * @param target - the target set
+     * @return - the key
+     */
+    public static ByteString keyOf(final MishmashSetDescriptorList target) {
+        return SetupCanonicalizer.hash(target);
+    }
+
+    /**
+     * Get the maximum number of data points held.
+     *
+     * @return - the maximum number of data points
+     */
+    public long getMaxDataPoints() {
+        return maxDataPoints;
+    }
+
+    /**
+     * Get the number of data points held.
+     *
+     * @return - the number of data points
+     */
+    public long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the current invalidation generation. Results read after this
+     * call can be stored with {@link #put} only if nothing was
+     * invalidated in the meantime.
+     *
+     * @return - the generation
+     */
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get a cached result.
+     *
+     * @param key - the key
+     * @return - the data points or null if not cached
+     */
+    public List<DataPoint> get(final ByteString key) {
+        lock.lock();
+        try {
+            Entry e = entries.get(key);
+            if (e == null) {
+                return null;
+            } else if (System.nanoTime() - e.expiresAt >= 0) {
+                remove(key);
+
+                return null;
+            }
+
+            return e.points;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a result.
+     *
+     * @param key - the key
+     * @param target - the target set of the result
+     * @param points - the data points
+     * @param sinceGeneration - the {@link #generation()} when reading the
+     *          result began
+     * @return - true if stored, false if the result is too large or
+     *          stale
+     */
+    public boolean put(final ByteString key,
+            final MishmashSetDescriptorList target,
+            final List<DataPoint> points, final long sinceGeneration) {
+        if (points.size() > maxDataPoints) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            if (generation != sinceGeneration) {
+                return false;
+            }
+
+            remove(key);
+            entries.put(key, new Entry(target,
+                    Collections.unmodifiableList(points),
+                    System.nanoTime() + ttlNanos));
+            weight += points.size();
+
+            Iterator<Map.Entry<ByteString, Entry>> it =
+                    entries.entrySet().iterator();
+            while (weight > maxDataPoints && it.hasNext()) {
+                weight -= it.next().getValue().points.size();
+                it.remove();
+            }
+
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a result.
+     *
+     * @param key - the key
+     */
+    public void invalidate(final ByteString key) {
+        lock.lock();
+        try {
+            generation++;
+            remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all results whose target set may overlap with the given one.
+     *
+     * @param target - the target set
+     */
+    public void invalidateOverlapping(
+            final MishmashSetDescriptorList target) {
+        Set<Literal> first = firstLiterals(target);
+
+        lock.lock();
+        try {
+            generation++;
+
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+
+                if (overlaps(first, firstLiterals(e.target))) {
+                    weight -= e.points.size();
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all results.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove an entry, must be called with the lock held.
+     *
+     * @param key - the key
+     */
+    private void remove(final ByteString key) {
+        Entry e = entries.remove(key);
+        if (e != null) {
+            weight -= e.points.size();
+        }
+    }
+
+    /**
+     * Check if the first descriptors of two target sets may overlap.
+     *
+     * @param a - the literals of the first set, null for any
+     * @param b - the literals of the second set, null for any
+     * @return - false if the sets cannot overlap
+     */
+    private static boolean overlaps(final Set<Literal> a,
+            final Set<Literal> b) {
+        return a == null || b == null || !Collections.disjoint(a, b);
+    }
+
+    /**
+     * Get the literals that the first descriptor of a target set
+     * can match.
+     *
+     * @param target - the target set
+     * @return - the literals or null if the descriptor can match anything
+     */
+    private static Set<Literal> firstLiterals(
+            final MishmashSetDescriptorList target) {
+        if (target.getEntriesCount() == 0) {
+            return null;
+        }
+
+        MishmashSetDescriptor first = target.getEntries(0);
+        Set<Literal> res = new HashSet<>();
+
+        if (first.hasLiteralSet()) {
+            // only the first literal of a packed run starts the target
+            if (LiteralSets.size(first.getLiteralSet()) == 0) {
+                return null;
+            }
+
+            res.add(LiteralSets.get(first.getLiteralSet(), 0));
+            return res;
+        }
+
+        return addLiterals(first, res) ? res : null;
+    }
+
+    /**
+     * Add the literals a descriptor can match.
+     *
+     * @param descriptor - the descriptor
+     * @param res - the set to add to
+     * @return - false if the descriptor can match anything else
+     */
+    private static boolean addLiterals(
+            final MishmashSetDescriptor descriptor, final Set<Literal> res) {
+        switch (descriptor.getAltCase()) {
+        case LITERAL:
+            res.add(descriptor.getLiteral());
+            return true;
+        case LITERAL_SET:
+            res.addAll(LiteralSets.unpack(descriptor.getLiteralSet()));
+            return true;
+        case UNION:
+            for (MishmashSetDescriptor d
+                    : descriptor.getUnion().getSets().getEntriesList()) {
+                if (!addLiterals(d, res)) {
+                    return false;
+                }
+            }
+            return true;
+        default:
+            return false;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.ipc.HashedWheelTimer;
+import io.mishmash.common.ipc.proto.Members;
+import io.mishmash.common.ipc.proto.ResumePositions;
+import io.mishmash.common.ipc.proto.YieldDataPoint;
+import io.mishmash.common.rpc.MishmashRpc.ResumePosition;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+
+/**
+ * A stream that is opened again when it breaks, resuming after the
+ * data points already taken.
+ *
+ * Every data point taken is counted and, for ordered results, the
+ * last one is kept. When the stream fails with an error its
+ * {@link ReconnectPolicy} retries, a new stream is opened after a
+ * delay with a GRPC ResumePosition in its setup, so that the server
+ * skips what was taken. Data points received but not taken before
+ * the break are sent again. A server that does not echo the position
+ * in its SetupAck would send everything again, the new stream then
+ * fails with a
+ * {@link io.mishmash.common.exception.MishmashNotSupportedException}
+ * and is not retried.
+ *
+ * A break is retried once, however many reads were outstanding on the
+ * broken stream, and reads made while a new stream is being opened
+ * wait for it.
+ */
+public class ResumableStreamMishmash implements Mishmash<Key, Value> {
+
+    /**
+     * Opens a stream, resuming at a position if not null.
+     */
+    private final Function<ResumePosition, StreamMishmash> streams;
+
+    /**
+     * When to open the stream again.
+     */
+    private final ReconnectPolicy policy;
+
+    /**
+     * If the results are ordered and resumed after the last key.
+     */
+    private final boolean isResumeByKey;
+
+    /**
+     * Guards the current stream and the position.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Completes with the current stream once it is open, replaced by a
+     * new future when the stream breaks. Null until opened.
+     */
+    private CompletableFuture<StreamMishmash> current;
+
+    /**
+     * The number of data points taken over all streams.
+     */
+    private long received;
+
+    /**
+     * The last data point taken, if resuming by key.
+     */
+    private YieldData last;
+
+    /**
+     * The number of data points taken with a hierarchy equal to the
+     * last one, if resuming by key.
+     */
+    private long receivedAtLast;
+
+    /**
+     * The number of failed attempts since the last progress.
+     */
+    private int failedAttempts;
+
+    /**
+     * Set when this stream was closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Create a new ResumableStreamMishmash.
+     *
+     * @param streamFactory - opens a stream, resuming at a position if
+     *          not null
+     * @param reconnectPolicy - when to open the stream again
+     * @param resumeByKey - true if the results are ordered by
+     *          {@link io.mishmash.common.data.KeyComparator}, to resume
+     *          after the last key taken instead of by count
+     */
+    public ResumableStreamMishmash(
+            final Function<ResumePosition, StreamMishmash> streamFactory,
+            final ReconnectPolicy reconnectPolicy,
+            final boolean resumeByKey) {
+        this.streams = streamFactory;
+        this.policy = reconnectPolicy;
+        this.isResumeByKey = resumeByKey;
+    }
+
+    /**
+     * Get the number of data points taken so far.
+     *
+     * @return - the number of data points
+     */
+    public long getReceived() {
+        lock.lock();
+        try {
+            return received;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Open the stream, retrying according to the policy.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        CompletableFuture<StreamMishmash> opening = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            if (current != null) {
+                return CompletableFuture.failedFuture(
+                        new MishmashInvalidStateException());
+            }
+
+            current = opening;
+        } finally {
+            lock.unlock();
+        }
+
+        connect(opening);
+
+        return opening.thenApply(stream -> null);
+    }
+
+    /**
+     * Open a new stream at the current position.
+     *
+     * @param opening - completes with the stream once it is open
+     */
+    private void connect(final CompletableFuture<StreamMishmash> opening) {
+        StreamMishmash stream;
+
+        lock.lock();
+        try {
+            if (isClosed) {
+                opening.completeExceptionally(
+                        new MishmashInvalidStateException());
+
+                return;
+            }
+
+            stream = streams.apply(received == 0
+                    ? null
+                    : ResumePositions.position(received, last,
+                            receivedAtLast).build());
+        } finally {
+            lock.unlock();
+        }
+
+        stream.open().whenComplete((v, t) -> {
+            if (t == null) {
+                opening.complete(stream);
+            } else {
+                retry(stream, t, opening);
+            }
+        });
+    }
+
+    /**
+     * Take the next data point, opening the stream again if it breaks.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
+        CompletableFuture<BaseDataPoint<Key, Value>> res =
+                new CompletableFuture<>();
+
+        read(res);
+
+        return res;
+    }
+
+    /**
+     * Take the next data point of the current stream, once it is open.
+     *
+     * @param res - completes with the data point
+     */
+    private void read(final CompletableFuture<BaseDataPoint<Key, Value>> res) {
+        CompletableFuture<StreamMishmash> opened;
+
+        lock.lock();
+        try {
+            opened = current;
+        } finally {
+            lock.unlock();
+        }
+
+        if (opened == null) {
+            res.completeExceptionally(new MishmashInvalidStateException());
+
+            return;
+        }
+
+        opened.whenComplete((stream, err) -> {
+            if (err != null) {
+                res.completeExceptionally(err);
+
+                return;
+            }
+
+            stream.get().whenComplete((dp, t) -> {
+                if (t != null) {
+                    broken(opened, stream, t);
+                    read(res);
+
+                    return;
+                }
+
+                if (dp != null) {
+                    taken(dp);
+                }
+
+                res.complete(dp);
+            });
+        });
+    }
+
+    /**
+     * Replace a stream that broke with a new attempt, unless another
+     * read already did.
+     *
+     * @param opened - the future the broken stream came from
+     * @param stream - the broken stream
+     * @param t - the error
+     */
+    private void broken(
+            final CompletableFuture<StreamMishmash> opened,
+            final StreamMishmash stream,
+            final Throwable t) {
+        CompletableFuture<StreamMishmash> next = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            if (current != opened) {
+                return;
+            }
+
+            current = next;
+        } finally {
+            lock.unlock();
+        }
+
+        retry(stream, t, next);
+    }
+
+    /**
+     * Move the position past a data point that was taken.
+     *
+     * @param dp - the data point
+     */
+    private void taken(final BaseDataPoint<Key, Value> dp) {
+        YieldData yield = null;
+
+        if (isResumeByKey) {
+            yield = dp instanceof YieldDataPoint ydp
+                    ? ydp.getYieldData()
+                    : Members.toMembers(dp.keys()).build();
+        }
+
+        lock.lock();
+        try {
+            if (yield != null && last != null
+                    && Members.compare(yield.getHierarchyList(),
+                            last.getHierarchyList()) == 0) {
+                receivedAtLast++;
+            } else {
+                receivedAtLast = 1;
+            }
+
+            received++;
+            last = yield;
+            failedAttempts = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close a broken stream and schedule another attempt, or fail if
+     * the error cannot be retried.
+     *
+     * @param broken - the broken stream
+     * @param t - the error
+     * @param opening - completes with the next stream, fails if there
+     *          is no other attempt
+     */
+    private void retry(
+            final StreamMishmash broken,
+            final Throwable t,
+            final CompletableFuture<StreamMishmash> opening) {
+        long delay = -1;
+
+        lock.lock();
+        try {
+            if (!isClosed
+                    && policy.isRetryable(t)
+                    && policy.canRetry(failedAttempts)) {
+                delay = policy.delayMsec(failedAttempts++);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            broken.close();
+        } catch (Exception e) {
+            t.addSuppressed(e);
+        }
+
+        if (delay < 0) {
+            opening.completeExceptionally(t);
+        } else {
+            HashedWheelTimer.shared().schedule(
+                    () -> Thread.ofVirtual().start(() -> connect(opening)),
+                    delay,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns a future that was completed with an error.
+     * A ResumableStreamMishmash does not implement this method.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        return CompletableFuture
+                .failedFuture(new MishmashInvalidStateException());
+    }
+
+    /**
+     * Close the current stream, a pending attempt fails and a stream
+     * still being opened is closed once open.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        CompletableFuture<StreamMishmash> opened;
+
+        lock.lock();
+        try {
+            isClosed = true;
+            opened = current;
+        } finally {
+            lock.unlock();
+        }
+
+        if (opened == null) {
+            return;
+        } else if (opened.isDone()) {
+            if (!opened.isCompletedExceptionally()) {
+                opened.join().close();
+            }
+        } else {
+            opened.thenAccept(stream -> {
+                try {
+                    stream.close();
+                } catch (Exception e) {
+                    // closed before anyone could use it
+                }
+            });
+        }
+    }
+}
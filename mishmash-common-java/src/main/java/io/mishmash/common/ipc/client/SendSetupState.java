@@ -46,6 +46,18 @@ public abstract class SendSetupState<I, O, MT extends Mishmash<Key, Value>>
      */
     public abstract O getSetupMessage();
 
+    /**
+     * Prepare and return the next message that continues the Setup.
+     *
+     * The default implementation does not send continuations.
+     *
+     * @param currentSeqNo - the local-end sequence number
+     * @return - the next message or null when the Setup is complete
+     */
+    public O getContinuationMessage(final AtomicInteger currentSeqNo) {
+        return null;
+    }
+
     /**
      * Return the next State that should be entered.
      *
@@ -91,7 +103,8 @@ public abstract class SendSetupState<I, O, MT extends Mishmash<Key, Value>>
     @Override
     public CompletableFuture<O> output(final AtomicInteger currentSeqNo) {
         if (isSent) {
-            return CompletableFuture.completedFuture(null);
+            return CompletableFuture.completedFuture(
+                    getContinuationMessage(currentSeqNo));
         } else {
             isSent = true;
             return CompletableFuture.completedFuture(getSetupMessage());
@@ -0,0 +1,230 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Partitioner;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+
+/**
+ * A mutation spread over several shard mutations.
+ *
+ * Each data point put goes to the shard picked by a
+ * {@link Partitioner} from its {@link Key} hierarchy. Data points of
+ * the same shard are sent in order over the shard's own stream, with
+ * its own window of writes in flight, while shards write in parallel.
+ * Shards are usually {@link MutationMishmash}es built with the same
+ * setup, possibly on different channels or servers.
+ *
+ * {@link #flush()} waits for all writes so far, across shards, and
+ * reports the failures of the writes put since the previous flush.
+ */
+public class ShardedMutationMishmash implements Mishmash<Key, Value> {
+
+    /**
+     * The shard mutations.
+     */
+    private final List<Mishmash<Key, Value>> shards;
+
+    /**
+     * Picks the shard of a data point.
+     */
+    private final Partitioner partitioner;
+
+    /**
+     * Per shard, guards the tail of the shard.
+     */
+    private final List<ReentrantLock> locks;
+
+    /**
+     * Per shard, a future that completes once all writes so far are
+     * done, failed if one put since the last flush failed.
+     */
+    private final List<CompletableFuture<Void>> tails;
+
+    /**
+     * Create a new ShardedMutationMishmash.
+     *
+     * @param shardMutations - the shard mutations, not open yet
+     * @param shardPartitioner - picks the shard of a data point
+     */
+    public ShardedMutationMishmash(
+            final List<? extends Mishmash<Key, Value>> shardMutations,
+            final Partitioner shardPartitioner) {
+        if (shardMutations.isEmpty()) {
+            throw new IllegalArgumentException("No shards given");
+        }
+
+        this.shards = List.copyOf(shardMutations);
+        this.partitioner = shardPartitioner;
+        this.tails = new ArrayList<>(shards.size());
+        this.locks = new ArrayList<>(shards.size());
+
+        for (int i = 0; i < shards.size(); i++) {
+            tails.add(CompletableFuture.completedFuture(null));
+            locks.add(new ReentrantLock());
+        }
+    }
+
+    /**
+     * Get the shard mutations.
+     *
+     * @return - the shards
+     */
+    public List<Mishmash<Key, Value>> getShards() {
+        return shards;
+    }
+
+    /**
+     * Open all shards.
+     *
+     * @return - a future that completes when all shards are open or
+     *          fails if one of them fails
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        CompletableFuture<?>[] opened =
+                new CompletableFuture<?>[shards.size()];
+
+        for (int i = 0; i < opened.length; i++) {
+            opened[i] = shards.get(i).open();
+        }
+
+        return CompletableFuture.allOf(opened);
+    }
+
+    /**
+     * Returns a future that was completed with an error.
+     * A ShardedMutationMishmash does not implement this method.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
+        return CompletableFuture
+                .failedFuture(new MishmashInvalidStateException());
+    }
+
+    /**
+     * Put a data point on its shard.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        int shard = partitioner.partition(dataPoint.keys(), shards.size());
+        ReentrantLock lock = locks.get(shard);
+        CompletableFuture<Void> res;
+
+        lock.lock();
+        try {
+            // keep the order of the shard's writes
+            res = shards.get(shard).put(dataPoint);
+            if (!res.isDone() || res.isCompletedExceptionally()) {
+                tails.set(shard,
+                        CompletableFuture.allOf(tails.get(shard), res));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return res;
+    }
+
+    /**
+     * Put many data points.
+     *
+     * @param dataPoints - the data points
+     * @return - a future that completes when they and all earlier
+     *          writes are saved, or fails if one of them failed
+     */
+    public CompletableFuture<Void> putAll(
+            final Iterable<? extends BaseDataPoint<Key, Value>>
+                dataPoints) {
+        for (BaseDataPoint<Key, Value> dp : dataPoints) {
+            put(dp);
+        }
+
+        return flush();
+    }
+
+    /**
+     * Wait for all writes so far.
+     *
+     * A flush covers the writes put since the previous flush: it
+     * fails with the first of them that failed, while earlier writes
+     * are only waited for, their failures were reported by the earlier
+     * flush or by their own futures.
+     *
+     * @return - a future that completes when all writes put before are
+     *          done, or fails if one put since the previous flush failed
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<?>[] pending =
+                new CompletableFuture<?>[shards.size()];
+
+        for (int i = 0; i < pending.length; i++) {
+            ReentrantLock lock = locks.get(i);
+
+            lock.lock();
+            try {
+                pending[i] = tails.get(i);
+                // the next flush waits for these writes, ignoring failures
+                tails.set(i, pending[i].handle((v, t) -> null));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        return CompletableFuture.allOf(pending);
+    }
+
+    /**
+     * Close all shards.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        Exception failure = null;
+
+        for (Mishmash<Key, Value> shard : shards) {
+            try {
+                shard.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
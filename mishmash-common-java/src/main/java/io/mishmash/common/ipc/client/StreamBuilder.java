@@ -16,8 +16,17 @@
  */
 package io.mishmash.common.ipc.client;
 
-import io.grpc.ManagedChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import io.grpc.Channel;
+import io.grpc.stub.StreamObserver;
+import io.mishmash.common.data.Key;
 import io.mishmash.common.exception.MishmashException;
+import io.mishmash.common.ipc.proto.ReadPartitions;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
 import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
 import io.mishmash.common.rpc.MishmashServiceGrpc;
@@ -34,26 +43,301 @@ public class StreamBuilder extends ClientMishmashBuilder<
     /**
      * The GRPC communications channel.
      */
-    private ManagedChannel grpcChannel;
+    private Channel grpcChannel;
+
+    /**
+     * The session streams are opened on, if any.
+     */
+    private ClientSession session;
+
+    /**
+     * The result cache, if any.
+     */
+    private ResultCache resultCache;
+
+
+    /**
+     * If only the setup fingerprint is sent first.
+     */
+    private boolean isUseFingerprint;
+
+    /**
+     * The maximum serialized size of a setup chunk, 0 to never chunk.
+     */
+    private int maxSetupChunkBytes;
 
     /**
      * Create a new StreamBuilder.
      *
-     * @param channel - the GRPC network channel
+     * @param channel - the GRPC network channel, or a {@link ChannelPool}
      */
-    public StreamBuilder(final ManagedChannel channel) {
+    public StreamBuilder(final Channel channel) {
         this.grpcChannel = channel;
     }
 
     /**
+     * Open the built stream as a channel of a session instead of on
+     * its own GRPC call.
+     *
+     * @param clientSession - the session or null to open a GRPC call
+     * @return - this builder
+     */
+    public StreamBuilder setSession(final ClientSession clientSession) {
+        this.session = clientSession;
+        return this;
+    }
+
+    /**
+     * Serve the built stream from a cache, when possible.
+     *
+     * @param cache - the cache or null to disable caching
+     * @return - this builder
+     */
+    public StreamBuilder setResultCache(final ResultCache cache) {
+        this.resultCache = cache;
+        return this;
+    }
+
+    /**
+     * Send only the fingerprint of the setup first, the server asks for
+     * the full setup if it has no plan cached for it.
+     *
+     * @param useFingerprint - true to send the fingerprint first
+     * @return - this builder
+     */
+    public StreamBuilder setUseFingerprint(final boolean useFingerprint) {
+        this.isUseFingerprint = useFingerprint;
+        return this;
+    }
+
+    /**
+     * Send setups larger than a limit in chunks, as a SETUP followed by
+     * continuations. A chunked setup is always sent in full, without
+     * a fingerprint.
+     *
+     * @param maxChunkBytes - the maximum serialized size of a chunk
+     *          or 0 to never chunk
+     * @return - this builder
+     */
+    public StreamBuilder setMaxSetupChunkBytes(final int maxChunkBytes) {
+        this.maxSetupChunkBytes = maxChunkBytes;
+        return this;
+    }
+
+    /**
+     * Builds a {@link CachedStreamMishmash} if a result cache was set.
+     *
      * {@inheritDoc}
      */
     @Override
     public StreamMishmash build() throws MishmashException {
-        return new StreamMishmash(MishmashServiceGrpc.newStub(
-                grpcChannel),
-                getBuilder(),
-                new StreamClient());
+        return newStream(getBuilder());
+    }
+
+    /**
+     * Builds a stream shared with identical streams opened at the same
+     * time. The underlying streams it opens read from a
+     * {@link CachedStreamMishmash} if a result cache was set.
+     *
+     * @param coalescer - the coalescer
+     * @return - the coalesced stream
+     * @throws MishmashException - thrown on failure
+     */
+    public CoalescedStreamMishmash buildCoalesced(
+            final StreamCoalescer coalescer) throws MishmashException {
+        MishmashSetup.Builder setup = getBuilder();
+
+        return new CoalescedStreamMishmash(
+                coalescer,
+                setup.build(),
+                () -> newStream(setup));
+    }
+
+    /**
+     * Create a stream, cached if a result cache was set.
+     *
+     * @param setup - the GRPC MishmashSetup message
+     * @return - the stream
+     */
+    private StreamMishmash newStream(final MishmashSetup.Builder setup) {
+        StreamClient client = configure(new StreamClient());
+        StreamMishmash res;
+
+        if (resultCache != null) {
+            res = new CachedStreamMishmash(
+                    remotePeer(),
+                    setup,
+                    client,
+                    resultCache);
+        } else {
+            res = new StreamMishmash(
+                    remotePeer(),
+                    setup,
+                    client);
+        }
+
+        prepareSetup(client, setup);
+
+        return res;
+    }
+
+    /**
+     * Builds a read split into partitions by hash, each read by its
+     * own stream. Result caches and coalescers are not used. A stream
+     * fails to open if its server does not confirm the partition.
+     *
+     * @param count - the number of partitions
+     * @param prefixLength - the number of keys of each data point that
+     *          decide its partition
+     * @return - the partitioned read
+     * @throws MishmashException - thrown on failure
+     */
+    public PartitionedStreamMishmash buildPartitioned(
+            final int count,
+            final int prefixLength) throws MishmashException {
+        MishmashSetup.Builder setup = getBuilder();
+        List<StreamMishmash> res = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            res.add(newPartition(setup,
+                    ReadPartitions.hashOptions(count, i, prefixLength)));
+        }
+
+        return new PartitionedStreamMishmash(res);
+    }
+
+    /**
+     * Builds a read split into partitions by range, each read by its
+     * own stream. There is one partition more than split points.
+     * Result caches and coalescers are not used. A stream fails to open
+     * if its server does not confirm the partition.
+     *
+     * @param prefixLength - the number of keys of each data point that
+     *          decide its partition
+     * @param splitPoints - the split points, sorted by
+     *          {@link io.mishmash.common.data.KeyComparator}
+     * @return - the partitioned read
+     * @throws MishmashException - thrown on failure
+     */
+    public PartitionedStreamMishmash buildPartitioned(
+            final int prefixLength,
+            final List<? extends Iterable<Key>> splitPoints)
+                    throws MishmashException {
+        MishmashSetup.Builder setup = getBuilder();
+        List<StreamMishmash> res = new ArrayList<>(splitPoints.size() + 1);
+
+        for (int i = 0; i <= splitPoints.size(); i++) {
+            res.add(newPartition(setup, ReadPartitions
+                    .rangeOptions(i, prefixLength, splitPoints)));
+        }
+
+        return new PartitionedStreamMishmash(res);
+    }
+
+    /**
+     * Create the stream of a partition.
+     *
+     * @param setup - the GRPC MishmashSetup message
+     * @param options - the client options of the partition
+     * @return - the stream
+     */
+    private StreamMishmash newPartition(
+            final MishmashSetup.Builder setup,
+            final Map<String, String> options) {
+        MishmashSetup.Builder partition = setup.clone()
+                .putAllClientOptions(options);
+        StreamMishmash res = newDirect(partition);
+
+        prepareSetup(res.getClient(), partition);
+
+        return res;
+    }
+
+    /**
+     * Builds a stream that is opened again when it breaks, resuming
+     * after the data points already taken. Result caches and
+     * coalescers are not used.
+     *
+     * @param policy - when to open the stream again
+     * @param isOrdered - true if the results are ordered by
+     *          {@link io.mishmash.common.data.KeyComparator}, to resume
+     *          after the last key taken instead of by count
+     * @return - the resumable stream
+     * @throws MishmashException - thrown on failure
+     */
+    public ResumableStreamMishmash buildResumable(
+            final ReconnectPolicy policy,
+            final boolean isOrdered) throws MishmashException {
+        MishmashSetup.Builder setup = getBuilder();
+
+        return new ResumableStreamMishmash(position -> {
+            if (position == null) {
+                StreamMishmash res = newDirect(setup);
+                prepareSetup(res.getClient(), setup);
+
+                return res;
+            }
+
+            // a fingerprint-only setup would not carry the position
+            MishmashSetup.Builder resumed = setup.clone()
+                    .setResume(position);
+            StreamMishmash res = newDirect(resumed);
+            MishmashSetup full = resumed.build();
+            if (maxSetupChunkBytes > 0
+                    && full.getSerializedSize() > maxSetupChunkBytes) {
+                res.getClient().useChunks(full, maxSetupChunkBytes);
+            }
+
+            return res;
+        }, policy, isOrdered);
+    }
+
+    /**
+     * Create a stream on a GRPC call or session, without a cache or
+     * a coalescer.
+     *
+     * @param setup - the GRPC MishmashSetup message
+     * @return - the stream
+     */
+    private StreamMishmash newDirect(final MishmashSetup.Builder setup) {
+        return new StreamMishmash(
+                remotePeer(),
+                setup,
+                configure(new StreamClient()));
+    }
+
+    /**
+     * Send the setup of a client in chunks or as a fingerprint first,
+     * if configured.
+     *
+     * @param client - the client
+     * @param setup - the GRPC MishmashSetup message
+     */
+    private void prepareSetup(
+            final StreamClient client,
+            final MishmashSetup.Builder setup) {
+        MishmashSetup full = setup.build();
+        if (maxSetupChunkBytes > 0
+                && full.getSerializedSize() > maxSetupChunkBytes) {
+            client.useChunks(full, maxSetupChunkBytes);
+        } else if (isUseFingerprint) {
+            client.useFingerprint(full);
+        }
+    }
+
+    /**
+     * Get the function that opens streams, on the session if one
+     * was set.
+     *
+     * @return - the function
+     */
+    private Function<StreamClient, StreamObserver<StreamClientMessage>>
+            remotePeer() {
+        if (session != null) {
+            return session::stream;
+        }
+
+        return MishmashServiceGrpc.newStub(grpcChannel)::stream;
     }
 
 }
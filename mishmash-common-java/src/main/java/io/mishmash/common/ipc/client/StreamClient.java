@@ -16,39 +16,93 @@
  */
 package io.mishmash.common.ipc.client;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
 
 import io.mishmash.common.data.BaseDataPoint;
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashNotSupportedException;
+import io.mishmash.common.exception.MishmashProtocolException;
+import io.mishmash.common.ipc.FlowControlledObserver;
 import io.mishmash.common.ipc.GrpcStreamState;
+import io.mishmash.common.ipc.ProtocolTimeouts;
+import io.mishmash.common.ipc.proto.Proto;
+import io.mishmash.common.ipc.proto.ReadPartitions;
+import io.mishmash.common.ipc.proto.ResumePositions;
 import io.mishmash.common.ipc.proto.StreamMessages;
+import io.mishmash.common.ipc.proto.Yields;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
 import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
 
 /**
  * A {@link BaseClient} for a GRPC stream.
+ *
+ * Data points received from the server are queued until they are
+ * taken with {@link #next()}. Every data point taken is acknowledged
+ * to the server and, over a session, reported as consumed so that the
+ * channel window bounds the queued data points.
  */
 public class StreamClient
-    extends BaseClient<StreamServerMessage, StreamClientMessage> {
+    extends BaseClient<StreamServerMessage, StreamClientMessage>
+    implements FlowControlledObserver {
 
     /**
      * A future that completes on SetupAck or failure to open the stream.
      */
     private CompletableFuture<Void> openFuture;
 
+    /**
+     * Guards the received data points and the pending futures.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Yields received from the server and not taken yet.
+     */
+    private final Queue<StreamServerMessage> received = new ArrayDeque<>();
+
+    /**
+     * Server sequence numbers of taken yields that were not
+     * acknowledged yet.
+     */
+    private final Queue<Integer> acksDue = new ArrayDeque<>();
+
     /**
      * A future that completes when next {@link BaseDataPoint} is available.
      */
     private CompletableFuture<BaseDataPoint<Key, Value>> yieldFuture;
 
-    /*
-     * A future that completes on YieldAck from the server.
+    /**
+     * A future waiting to send the next YieldAck to the server.
+     */
+    private CompletableFuture<StreamClientMessage> ackFuture;
+
+    /**
+     * The local sequence number counter of the output.
+     */
+    private AtomicInteger ackSeqNo;
+
+    /**
+     * Set when the server will not send more data points.
+     */
+    private boolean isFinished;
+
+    /**
+     * The error that ended the stream, if any.
      */
-    // TODO
-    //private CompletableFuture<Void> yieldAckFuture;
+    private Throwable failure;
+
+    /**
+     * Called with the number of server messages consumed, if set.
+     */
+    private volatile IntConsumer consumedListener;
 
     /**
      * {@inheritDoc}
@@ -61,8 +115,7 @@ public class StreamClient
         }
 
         openFuture = new CompletableFuture<>();
-        yieldFuture = new CompletableFuture<>();
-        initState(new StreamSetup());
+        initState(new StreamSetup(getFingerprintSetup() != null));
 
         return openFuture;
     }
@@ -77,6 +130,41 @@ public class StreamClient
         return StreamMessages.clientSetup(0, setup).build();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamClientMessage getSetupContinuationMessage(
+            final int clientSeqNo,
+            final MishmashSetupContinuation.Builder continuation) {
+        return StreamMessages
+                .clientSetupContinuation(clientSeqNo, continuation)
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setConsumedListener(final IntConsumer listener) {
+        this.consumedListener = listener;
+    }
+
+    /**
+     * Handle the next server message. Messages other than yields are
+     * consumed right away, yields when they are taken.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNext(final StreamServerMessage value) {
+        super.onNext(value);
+
+        if (value.getAltCase() != StreamServerMessage.AltCase.YIELD_DATA) {
+            consumed();
+        }
+    }
+
     /**
      * Throws an error, streams do not support this method.
      *
@@ -89,18 +177,191 @@ public class StreamClient
         throw new IllegalStateException("Stream client cannot accept data");
     }
 
+    /**
+     * Take the next {@link BaseDataPoint} received from the server.
+     *
+     * @return - a future that completes with the next data point, with
+     *          null when the stream has ended or on error
+     */
+    public CompletableFuture<BaseDataPoint<Key, Value>> next() {
+        StreamServerMessage msg;
+
+        lock.lock();
+        try {
+            if (yieldFuture != null) {
+                throw new IllegalStateException(
+                        "Previous data point not received yet");
+            }
+
+            msg = received.poll();
+            if (msg == null) {
+                if (failure != null) {
+                    return CompletableFuture.failedFuture(failure);
+                } else if (isFinished) {
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                yieldFuture = new CompletableFuture<>();
+
+                return yieldFuture;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        ack(msg);
+
+        return CompletableFuture.completedFuture(
+                Yields.fromYieldData(msg.getYieldData()));
+    }
+
+    /**
+     * Close the client, any pending data point future completes with null.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            super.close();
+        } finally {
+            finish(null);
+        }
+    }
+
+    /**
+     * Handle a yield from the server.
+     *
+     * @param msg - the server message
+     */
+    private void received(final StreamServerMessage msg) {
+        CompletableFuture<BaseDataPoint<Key, Value>> f;
+
+        lock.lock();
+        try {
+            if (yieldFuture == null) {
+                received.add(msg);
+
+                return;
+            }
+
+            f = yieldFuture;
+            yieldFuture = null;
+        } finally {
+            lock.unlock();
+        }
+
+        ack(msg);
+        f.complete(Yields.fromYieldData(msg.getYieldData()));
+    }
+
+    /**
+     * Report a server message as consumed.
+     */
+    private void consumed() {
+        IntConsumer l = consumedListener;
+
+        if (l != null) {
+            l.accept(1);
+        }
+    }
+
+    /**
+     * Acknowledge a yield that was taken.
+     *
+     * @param msg - the server message
+     */
+    private void ack(final StreamServerMessage msg) {
+        CompletableFuture<StreamClientMessage> f;
+
+        consumed();
+
+        lock.lock();
+        try {
+            if (ackFuture == null) {
+                acksDue.add(msg.getServerSeqNo());
+
+                return;
+            }
+
+            f = ackFuture;
+            ackFuture = null;
+        } finally {
+            lock.unlock();
+        }
+
+        f.complete(StreamMessages.clientYieldAck(
+                ackSeqNo.getAndIncrement(),
+                msg.getServerSeqNo()).build());
+    }
+
+    /**
+     * Mark the stream as ended, completing a pending data point future.
+     *
+     * @param t - the error that ended the stream or null
+     */
+    private void finish(final Throwable t) {
+        CompletableFuture<BaseDataPoint<Key, Value>> f;
+
+        lock.lock();
+        try {
+            if (isFinished) {
+                return;
+            }
+
+            isFinished = true;
+            failure = t;
+            f = yieldFuture;
+            yieldFuture = null;
+        } finally {
+            lock.unlock();
+        }
+
+        if (f == null) {
+            return;
+        } else if (t == null) {
+            f.complete(null);
+        } else {
+            f.completeExceptionally(t);
+        }
+    }
+
     /**
      * Sends the GRPC MishmashSetup to the server.
      */
     public class StreamSetup extends SendStreamSetupState<StreamMishmash> {
 
+        /**
+         * If only the fingerprint of the setup should be sent.
+         */
+        private final boolean isFingerprintOnly;
+
+        /**
+         * Create a new StreamSetup.
+         *
+         * @param fingerprintOnly - send only the fingerprint of the setup
+         */
+        public StreamSetup(final boolean fingerprintOnly) {
+            this.isFingerprintOnly = fingerprintOnly;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public StreamClientMessage getSetupMessage() {
-            return StreamMessages.clientSetup(0, MishmashSetup.newBuilder())
-                    .build();
+            return isFingerprintOnly ? getFingerprintSetup() : getSetup();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public StreamClientMessage getContinuationMessage(
+                final AtomicInteger currentSeqNo) {
+            return isFingerprintOnly
+                    ? null
+                    : nextSetupContinuation(currentSeqNo);
         }
 
         /**
@@ -110,7 +371,7 @@ public class StreamClient
         public GrpcStreamState<StreamServerMessage, StreamClientMessage>
                 prepareNext() {
 
-            return new WaitSetupAck();
+            return new WaitSetupAck(getTimeouts());
         }
 
     }
@@ -119,9 +380,55 @@ public class StreamClient
      * Waits for the SetupAck and resolves the open() future,
      * so that users of this stream can know when it's okay
      * to start yielding data.
+     *
+     * The open() future fails with a {@link MishmashNotSupportedException}
+     * when the setup asks for a partition of the results or resumes a
+     * stream and the server does not confirm it.
      */
     public class WaitSetupAck extends WaitStreamSetupAckState<StreamMishmash> {
 
+        /**
+         * Create a new WaitSetupAck.
+         *
+         * @param timeouts - the timeouts of the stream
+         */
+        public WaitSetupAck(final ProtocolTimeouts timeouts) {
+            super(timeouts);
+        }
+
+        /**
+         * Also ensure the server confirmed the partition asked for and
+         * the resume position.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public void validateInput(final StreamServerMessage input)
+                throws Exception {
+            super.validateInput(input);
+
+            if (isSendFullSetup(input)) {
+                return;
+            }
+
+            MishmashSetup setup = getSetup().getSetup();
+            if (!ReadPartitions.isConfirmed(setup.getClientOptionsMap(),
+                        input.getSetupAck())
+                    || !ResumePositions.isConfirmed(setup,
+                        input.getSetupAck())) {
+                throw new MishmashNotSupportedException();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public GrpcStreamState<StreamServerMessage, StreamClientMessage>
+                prepareFullSetup() {
+            return new StreamSetup(false);
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -165,9 +472,13 @@ public class StreamClient
         @Override
         public void validateInput(final StreamServerMessage input)
                 throws Exception {
-
-            // TODO Auto-generated method stub
-
+            switch (Proto.ensureCase(input)) {
+            case YIELD_DATA:
+            case ERROR:
+                break;
+            default:
+                Proto.unexpectedAltCase(input.getAltCase());
+            }
         }
 
         /**
@@ -175,8 +486,12 @@ public class StreamClient
          */
         @Override
         public void input(final StreamServerMessage input) throws Exception {
-            // TODO Auto-generated method stub
-
+            if (input.getAltCase()
+                    == StreamServerMessage.AltCase.ERROR) {
+                finish(new MishmashProtocolException());
+            } else {
+                received(input);
+            }
         }
 
         /**
@@ -185,7 +500,6 @@ public class StreamClient
         @Override
         public
             GrpcStreamState<StreamServerMessage, StreamClientMessage> leave() {
-            // TODO Auto-generated method stub
             return null;
         }
 
@@ -195,9 +509,26 @@ public class StreamClient
         @Override
         public CompletableFuture<StreamClientMessage>
             output(final AtomicInteger currentSeqNo) {
-
-            // TODO Auto-generated method stub
-            return null;
+            Integer serverSeqNo;
+
+            lock.lock();
+            try {
+                ackSeqNo = currentSeqNo;
+                serverSeqNo = acksDue.poll();
+
+                if (serverSeqNo == null) {
+                    ackFuture = new CompletableFuture<>();
+
+                    return ackFuture;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            return CompletableFuture.completedFuture(
+                    StreamMessages.clientYieldAck(
+                            currentSeqNo.getAndIncrement(),
+                            serverSeqNo).build());
         }
 
         /**
@@ -205,8 +536,7 @@ public class StreamClient
          */
         @Override
         public void error(final Throwable t) {
-            // TODO Auto-generated method stub
-
+            finish(t);
         }
 
         /**
@@ -214,8 +544,7 @@ public class StreamClient
          */
         @Override
         public void close() throws Exception {
-            // TODO Auto-generated method stub
-
+            finish(null);
         }
 
     }
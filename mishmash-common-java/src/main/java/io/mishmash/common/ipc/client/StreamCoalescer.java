@@ -0,0 +1,587 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.google.protobuf.ByteString;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.ipc.proto.SetupCanonicalizer;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+
+/**
+ * Coalesces concurrent, identical stream requests into a single
+ * underlying stream.
+ *
+ * Requests are identical when their setups have the same structural
+ * hash. The data points of the shared stream are kept in a replay
+ * buffer and every subscriber reads them through its own cursor.
+ * The shared stream is read only when a subscriber asks for more data
+ * points, and never more than a maximum lag ahead of the slowest
+ * subscriber, so fast subscribers wait for slow ones.
+ *
+ * A request can join a shared stream until its first data point has
+ * been read by all subscribers or the stream has ended or failed,
+ * also to open. After that, identical requests open a new stream.
+ *
+ * Instances are thread-safe.
+ */
+public class StreamCoalescer {
+
+    /**
+     * The default maximum number of buffered data points.
+     */
+    public static final int DEFAULT_MAX_LAG = 1024;
+
+    /**
+     * The maximum number of data points a subscriber can be ahead of
+     * the slowest one.
+     */
+    private final int maxLag;
+
+    /**
+     * Guards the flights.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The shared streams that can still be joined.
+     */
+    private final Map<ByteString, Flight> flights = new HashMap<>();
+
+    /**
+     * Create a coalescer with the default maximum lag.
+     */
+    public StreamCoalescer() {
+        this(DEFAULT_MAX_LAG);
+    }
+
+    /**
+     * Create a coalescer.
+     *
+     * @param maxBufferedPoints - the maximum number of data points a
+     *          subscriber can be ahead of the slowest one
+     */
+    public StreamCoalescer(final int maxBufferedPoints) {
+        this.maxLag = maxBufferedPoints;
+    }
+
+    /**
+     * Subscribe to a shared stream for a setup, creating it if needed.
+     *
+     * @param setup - the setup
+     * @param source - creates the underlying stream, when needed
+     * @return - a new subscription, not opened yet
+     */
+    public Subscription subscribe(final MishmashSetup setup,
+            final Supplier<? extends Mishmash<Key, Value>> source) {
+        ByteString key = SetupCanonicalizer.hash(setup);
+
+        lock.lock();
+        try {
+            Flight f = flights.get(key);
+            Subscription res = f == null ? null : f.tryJoin();
+            if (res == null) {
+                f = new Flight(key, source.get());
+                flights.put(key, f);
+                res = f.tryJoin();
+            }
+
+            return res;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of shared streams that can still be joined.
+     *
+     * @return - the number of streams
+     */
+    public int getJoinableCount() {
+        lock.lock();
+        try {
+            return flights.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop new subscribers from joining a flight.
+     *
+     * @param flight - the flight
+     */
+    private void retire(final Flight flight) {
+        lock.lock();
+        try {
+            flights.remove(flight.key, flight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A subscriber's cursor over a shared stream.
+     */
+    public final class Subscription implements Mishmash<Key, Value> {
+
+        /**
+         * The shared stream.
+         */
+        private final Flight flight;
+
+        /**
+         * The position of the next data point to read.
+         */
+        private long position;
+
+        /**
+         * A future waiting for the next data point, if any.
+         */
+        private CompletableFuture<BaseDataPoint<Key, Value>> pending;
+
+        /**
+         * Set when closed.
+         */
+        private boolean isClosed;
+
+        /**
+         * Create a subscription.
+         *
+         * @param sharedStream - the shared stream
+         */
+        private Subscription(final Flight sharedStream) {
+            this.flight = sharedStream;
+        }
+
+        /**
+         * Opens the shared stream, if not open yet.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletableFuture<Void> open() {
+            return flight.open();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletableFuture<BaseDataPoint<Key, Value>> get() {
+            return flight.next(this);
+        }
+
+        /**
+         * Returns a future that was completed with an error.
+         * Shared streams do not implement this method.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletableFuture<Void> put(
+                final BaseDataPoint<Key, Value> dataPoint) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException(
+                            "Shared stream cannot accept data"));
+        }
+
+        /**
+         * Leave the shared stream, which is closed when all subscribers
+         * have left.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws Exception {
+            flight.leave(this);
+        }
+    }
+
+    /**
+     * A shared stream and its subscribers.
+     */
+    private final class Flight {
+
+        /**
+         * The setup hash.
+         */
+        private final ByteString key;
+
+        /**
+         * The underlying stream.
+         */
+        private final Mishmash<Key, Value> source;
+
+        /**
+         * Guards the flight state.
+         */
+        private final ReentrantLock flightLock = new ReentrantLock();
+
+        /**
+         * The subscribers.
+         */
+        private final List<Subscription> subscribers = new ArrayList<>();
+
+        /**
+         * The data points not yet read by all subscribers.
+         */
+        private final List<DataPoint> buffer = new ArrayList<>();
+
+        /**
+         * The position of the first data point in the buffer.
+         */
+        private long bufferStart;
+
+        /**
+         * The future of opening the source, once opened.
+         */
+        private CompletableFuture<Void> openFuture;
+
+        /**
+         * Set while waiting for the source.
+         */
+        private boolean isFetching;
+
+        /**
+         * Set when the source has no more data points.
+         */
+        private boolean isEnded;
+
+        /**
+         * The error of the source, if any.
+         */
+        private Throwable failure;
+
+        /**
+         * Set when the source was closed.
+         */
+        private boolean isClosed;
+
+        /**
+         * Create a flight.
+         *
+         * @param setupKey - the setup hash
+         * @param sourceStream - the underlying stream
+         */
+        Flight(final ByteString setupKey,
+                final Mishmash<Key, Value> sourceStream) {
+            this.key = setupKey;
+            this.source = sourceStream;
+        }
+
+        /**
+         * Add a subscriber, if new subscribers can still join: no data
+         * point was dropped from the buffer and the source did not end,
+         * fail or close.
+         *
+         * @return - the subscription or null if the flight cannot be
+         *          joined
+         */
+        Subscription tryJoin() {
+            flightLock.lock();
+            try {
+                if (bufferStart > 0 || isEnded || isClosed
+                        || failure != null) {
+                    return null;
+                }
+
+                Subscription s = new Subscription(this);
+                subscribers.add(s);
+
+                return s;
+            } finally {
+                flightLock.unlock();
+            }
+        }
+
+        /**
+         * Open the source, once.
+         *
+         * @return - a future that completes when the source is open
+         */
+        CompletableFuture<Void> open() {
+            CompletableFuture<Void> res;
+
+            flightLock.lock();
+            try {
+                if (openFuture == null) {
+                    openFuture = new CompletableFuture<>();
+                    res = openFuture;
+                } else {
+                    return openFuture.thenApply(v -> v);
+                }
+            } finally {
+                flightLock.unlock();
+            }
+
+            source.open().whenComplete((v, t) -> {
+                if (t != null) {
+                    flightLock.lock();
+                    try {
+                        failure = t;
+                    } finally {
+                        flightLock.unlock();
+                    }
+
+                    // identical requests open a new stream
+                    retire(this);
+                    res.completeExceptionally(t);
+                } else {
+                    res.complete(null);
+                }
+            });
+
+            return res.thenApply(v -> v);
+        }
+
+        /**
+         * Get the next data point of a subscriber.
+         *
+         * @param sub - the subscriber
+         * @return - a future that completes with the data point, null at
+         *          the end or on error
+         */
+        CompletableFuture<BaseDataPoint<Key, Value>> next(
+                final Subscription sub) {
+            CompletableFuture<BaseDataPoint<Key, Value>> res;
+            boolean fetch;
+            boolean isRetired;
+
+            flightLock.lock();
+            try {
+                if (sub.isClosed) {
+                    return CompletableFuture.failedFuture(
+                            new IllegalStateException("Subscription closed"));
+                } else if (sub.pending != null) {
+                    throw new IllegalStateException(
+                            "Previous data point not received yet");
+                }
+
+                long end = bufferStart + buffer.size();
+                if (sub.position < end) {
+                    DataPoint dp = buffer.get(
+                            (int) (sub.position - bufferStart));
+                    sub.position++;
+                    fetch = trim();
+                    res = CompletableFuture.completedFuture(dp);
+                } else if (failure != null) {
+                    return CompletableFuture.failedFuture(failure);
+                } else if (isEnded) {
+                    return CompletableFuture.completedFuture(null);
+                } else {
+                    sub.pending = new CompletableFuture<>();
+                    res = sub.pending;
+                    fetch = shouldFetch();
+                }
+
+                isRetired = bufferStart > 0;
+            } finally {
+                flightLock.unlock();
+            }
+
+            if (isRetired) {
+                retire(this);
+            }
+
+            if (fetch) {
+                fetch();
+            }
+
+            return res;
+        }
+
+        /**
+         * Remove a subscriber, closing the source after the last one.
+         *
+         * @param sub - the subscriber
+         * @throws Exception - if closing the source fails
+         */
+        void leave(final Subscription sub) throws Exception {
+            CompletableFuture<BaseDataPoint<Key, Value>> f;
+            boolean close = false;
+            boolean fetch = false;
+
+            flightLock.lock();
+            try {
+                if (sub.isClosed) {
+                    return;
+                }
+
+                sub.isClosed = true;
+                subscribers.remove(sub);
+                f = sub.pending;
+                sub.pending = null;
+
+                if (subscribers.isEmpty()) {
+                    close = !isClosed;
+                    isClosed = true;
+                } else {
+                    fetch = trim();
+                }
+            } finally {
+                flightLock.unlock();
+            }
+
+            if (f != null) {
+                f.complete(null);
+            }
+
+            if (close) {
+                retire(this);
+                source.close();
+            } else if (fetch) {
+                fetch();
+            }
+        }
+
+        /**
+         * Drop the data points read by all subscribers from the buffer.
+         *
+         * Must be called with the flight lock held.
+         *
+         * @return - true if the source should be read
+         */
+        private boolean trim() {
+            long min = Long.MAX_VALUE;
+            for (Subscription s : subscribers) {
+                min = Math.min(min, s.position);
+            }
+
+            if (min != Long.MAX_VALUE && min > bufferStart) {
+                buffer.subList(0, (int) (min - bufferStart)).clear();
+                bufferStart = min;
+            }
+
+            return shouldFetch();
+        }
+
+        /**
+         * Check if the source should be read now, marking it as being
+         * read if so.
+         *
+         * Must be called with the flight lock held.
+         *
+         * @return - true if the caller should read the source
+         */
+        private boolean shouldFetch() {
+            if (isFetching || isEnded || isClosed || failure != null
+                    || buffer.size() >= maxLag) {
+                return false;
+            }
+
+            for (Subscription s : subscribers) {
+                if (s.pending != null) {
+                    isFetching = true;
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Read the next data point of the source and hand it to the
+         * waiting subscribers.
+         */
+        private void fetch() {
+            CompletableFuture<? extends BaseDataPoint<Key, Value>> f;
+            try {
+                f = source.get();
+            } catch (RuntimeException e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+
+            f.whenComplete(this::fetched);
+        }
+
+        /**
+         * Handle a data point read from the source.
+         *
+         * @param dataPoint - the data point or null at the end
+         * @param t - the error or null
+         */
+        private void fetched(final BaseDataPoint<Key, Value> dataPoint,
+                final Throwable t) {
+            DataPoint dp = t == null && dataPoint != null
+                    ? DataPoint.copyOf(dataPoint)
+                    : null;
+            List<CompletableFuture<BaseDataPoint<Key, Value>>> waiting =
+                    new ArrayList<>();
+            boolean fetch;
+            boolean isRetired;
+
+            flightLock.lock();
+            try {
+                isFetching = false;
+
+                if (t != null) {
+                    failure = t;
+                } else if (dp == null) {
+                    isEnded = true;
+                } else {
+                    buffer.add(dp);
+                }
+
+                for (Subscription s : subscribers) {
+                    if (s.pending != null) {
+                        waiting.add(s.pending);
+                        s.pending = null;
+
+                        if (dp != null) {
+                            s.position++;
+                        }
+                    }
+                }
+
+                fetch = trim();
+                isRetired = t != null || dp == null || bufferStart > 0;
+            } finally {
+                flightLock.unlock();
+            }
+
+            if (isRetired) {
+                retire(this);
+            }
+
+            for (CompletableFuture<BaseDataPoint<Key, Value>> w : waiting) {
+                if (t != null) {
+                    w.completeExceptionally(t);
+                } else {
+                    w.complete(dp);
+                }
+            }
+
+            if (fetch) {
+                fetch();
+            }
+        }
+    }
+}
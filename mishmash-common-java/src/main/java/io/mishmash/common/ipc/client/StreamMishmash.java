@@ -17,7 +17,9 @@
 package io.mishmash.common.ipc.client;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
+import io.grpc.stub.StreamObserver;
 import io.mishmash.common.data.BaseDataPoint;
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Value;
@@ -48,7 +50,23 @@ public class StreamMishmash extends
             final MishmashServiceStub stub,
             final MishmashSetup.Builder setup,
             final StreamClient client) {
-        super(client.getSetupMessage(setup), client, stub::stream);
+        this(stub::stream, setup, client);
+    }
+
+    /**
+     * Create a new {@link ClientMishmash} for a stream opened by a
+     * function, for example on a {@link ClientSession}.
+     *
+     * @param remotePeer - opens the stream for a client
+     * @param setup - the GRPC MishmashSetup message
+     * @param client - the {@link StreamClient}
+     */
+    public StreamMishmash(
+            final Function<StreamClient, StreamObserver<StreamClientMessage>>
+                remotePeer,
+            final MishmashSetup.Builder setup,
+            final StreamClient client) {
+        super(client.getSetupMessage(setup), client, remotePeer);
     }
 
     /**
@@ -56,8 +74,7 @@ public class StreamMishmash extends
      */
     @Override
     public CompletableFuture<? extends BaseDataPoint<Key, Value>> get() {
-        // TODO Auto-generated method stub
-        return null;
+        return getClient().next();
     }
 
     /**
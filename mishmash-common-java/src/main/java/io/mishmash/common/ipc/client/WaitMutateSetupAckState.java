@@ -19,6 +19,7 @@ package io.mishmash.common.ipc.client;
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Mishmash;
 import io.mishmash.common.data.Value;
+import io.mishmash.common.ipc.ProtocolTimeouts;
 import io.mishmash.common.ipc.proto.Proto;
 import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
@@ -34,6 +35,22 @@ public abstract class WaitMutateSetupAckState<MT extends Mishmash<Key, Value>>
             MutationClientMessage,
             MT> {
 
+    /**
+     * Create a new WaitMutateSetupAckState with the default timeout.
+     */
+    public WaitMutateSetupAckState() {
+        super();
+    }
+
+    /**
+     * Create a new WaitMutateSetupAckState.
+     *
+     * @param timeouts - the timeouts of the stream
+     */
+    public WaitMutateSetupAckState(final ProtocolTimeouts timeouts) {
+        super(timeouts);
+    }
+
     /**
      * Ensure an incoming GRPC server message is a SetupAck.
      *
@@ -45,4 +62,12 @@ public abstract class WaitMutateSetupAckState<MT extends Mishmash<Key, Value>>
         Proto.ensureSetupAck(input);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSendFullSetup(final MutationServerMessage input) {
+        return input.getSetupAck().getSendFullSetup();
+    }
+
 }
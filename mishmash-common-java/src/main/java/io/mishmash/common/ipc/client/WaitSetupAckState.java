@@ -17,17 +17,23 @@
 package io.mishmash.common.ipc.client;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Mishmash;
 import io.mishmash.common.data.Value;
 import io.mishmash.common.ipc.GrpcStreamState;
+import io.mishmash.common.ipc.HashedWheelTimer;
+import io.mishmash.common.ipc.ProtocolTimeouts;
 
 /**
  * A {@link GrpcStreamState} that waits for a GRPC SetupAck from the server.
  *
+ * While waiting, messages pipelined after the setup may be sent, see
+ * {@link #pollPipelined(AtomicInteger)}.
+ *
  * @param <I> - the type of GRPC input messages
  * @param <O> - the type of GRPC output messages
  * @param <MT> - the type of {@link Mishmash} that is used
@@ -40,13 +46,66 @@ public abstract class WaitSetupAckState<
     /**
      * Default number of milliseconds to wait for the SETUP ACK message.
      */
-    public static final int SETUP_ACK_WAIT_MSEC = 1500;
+    public static final int SETUP_ACK_WAIT_MSEC =
+            ProtocolTimeouts.DEFAULT_SETUP_ACK_MSEC;
+
+    /**
+     * The timeouts of the stream.
+     */
+    private final ProtocolTimeouts timeouts;
 
     /**
-     * A future that waits for the SetupAck.
+     * Guards the waiting future and the flags.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * A future that waits for the SetupAck or a pipelined message.
      */
     private CompletableFuture<O> waitingFuture;
 
+    /**
+     * The sequence number counter of the waiting output.
+     */
+    private AtomicInteger outputSeqNo;
+
+    /**
+     * Times out the wait for the SetupAck.
+     */
+    private HashedWheelTimer.Timeout timeout;
+
+    /**
+     * If the SetupAck was received.
+     */
+    private boolean isAcked;
+
+    /**
+     * If the SetupAck did not arrive in time.
+     */
+    private boolean isTimedOut;
+
+    /**
+     * If the server asked for the full setup.
+     */
+    private boolean isFullSetupRequested;
+
+    /**
+     * Create a state that waits for the SetupAck with the default
+     * timeout.
+     */
+    public WaitSetupAckState() {
+        this(ProtocolTimeouts.DEFAULT);
+    }
+
+    /**
+     * Create a state that waits for the SetupAck.
+     *
+     * @param protocolTimeouts - the timeouts of the stream
+     */
+    public WaitSetupAckState(final ProtocolTimeouts protocolTimeouts) {
+        this.timeouts = protocolTimeouts;
+    }
+
     /**
      * Supplies the next state when this completes successfully.
      *
@@ -55,35 +114,172 @@ public abstract class WaitSetupAckState<
     public abstract GrpcStreamState<I, O> prepareNext();
 
     /**
+     * Supplies the state that sends the full setup, when the server did
+     * not know the fingerprint sent.
+     *
+     * @return - the next {@link GrpcStreamState}
+     */
+    public abstract GrpcStreamState<I, O> prepareFullSetup();
+
+    /**
+     * Check if a SetupAck asks for the full setup.
+     *
+     * @param input - the SetupAck message
+     * @return - true if the full setup should be sent
+     */
+    public abstract boolean isSendFullSetup(I input);
+
+    /**
+     * Get the next message to send before the SetupAck, if one is
+     * available now.
+     *
+     * The default implementation does not pipeline messages.
+     *
+     * @param currentSeqNo - the local-end sequence number
+     * @return - the message or null if there is none
+     */
+    protected O pollPipelined(final AtomicInteger currentSeqNo) {
+        return null;
+    }
+
+    /**
+     * Signal that a message to pipeline became available, so that it
+     * is sent if this state is waiting.
+     */
+    public void pipelinedAvailable() {
+        CompletableFuture<O> f;
+        O msg;
+
+        lock.lock();
+        try {
+            if (waitingFuture == null) {
+                return;
+            }
+
+            msg = pollPipelined(outputSeqNo);
+            if (msg == null) {
+                return;
+            }
+
+            f = waitingFuture;
+            waitingFuture = null;
+        } finally {
+            lock.unlock();
+        }
+
+        f.complete(msg);
+    }
+
+    /**
+     * Start waiting for the SetupAck.
+     *
      * {@inheritDoc}
      */
     public CompletableFuture<Void> enter() {
+        lock.lock();
+        try {
+            if (!isAcked && timeout == null) {
+                // the SetupAck may have arrived before this was entered
+                timeout = timeouts.schedule(this::timedOut,
+                        timeouts.getSetupAckMsec());
+            }
+        } finally {
+            lock.unlock();
+        }
+
         return CompletableFuture.completedFuture(null);
     }
 
+    /**
+     * Cancel the timeout, if scheduled. The lock must be held.
+     */
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Fail the wait when the SetupAck did not arrive in time.
+     */
+    private void timedOut() {
+        CompletableFuture<O> f;
+
+        lock.lock();
+        try {
+            if (isAcked) {
+                return;
+            }
+
+            isTimedOut = true;
+            f = waitingFuture;
+            waitingFuture = null;
+        } finally {
+            lock.unlock();
+        }
+
+        if (f != null) {
+            f.completeExceptionally(new TimeoutException());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     public void input(final I input) throws Exception {
-        waitingFuture.complete(null);
-        waitingFuture = null;
+        CompletableFuture<O> f;
+
+        lock.lock();
+        try {
+            isFullSetupRequested = isSendFullSetup(input);
+            isAcked = true;
+            f = waitingFuture;
+            waitingFuture = null;
+            cancelTimeout();
+        } finally {
+            lock.unlock();
+        }
+
+        if (f != null) {
+            f.complete(null);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public GrpcStreamState<I, O> leave() {
-        return prepareNext();
+        return isFullSetupRequested ? prepareFullSetup() : prepareNext();
     }
 
     /**
+     * Send pipelined messages as they become available and complete
+     * with null on SetupAck.
+     *
      * {@inheritDoc}
      */
     public CompletableFuture<O> output(final AtomicInteger currentSeqNo) {
-        waitingFuture = (new CompletableFuture<O>())
-                .orTimeout(SETUP_ACK_WAIT_MSEC, TimeUnit.MILLISECONDS);
+        lock.lock();
+        try {
+            if (isAcked) {
+                return CompletableFuture.completedFuture(null);
+            } else if (isTimedOut) {
+                return CompletableFuture.failedFuture(
+                        new TimeoutException());
+            }
+
+            O msg = pollPipelined(currentSeqNo);
+            if (msg != null) {
+                return CompletableFuture.completedFuture(msg);
+            }
 
-        return waitingFuture;
+            outputSeqNo = currentSeqNo;
+            waitingFuture = new CompletableFuture<>();
+
+            return waitingFuture;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -97,8 +293,19 @@ public abstract class WaitSetupAckState<
      * {@inheritDoc}
      */
     public void close() throws Exception {
-        if (waitingFuture != null && !waitingFuture.isDone()) {
-            waitingFuture.cancel(true);
+        CompletableFuture<O> f;
+
+        lock.lock();
+        try {
+            f = waitingFuture;
+            waitingFuture = null;
+            cancelTimeout();
+        } finally {
+            lock.unlock();
+        }
+
+        if (f != null && !f.isDone()) {
+            f.cancel(true);
         }
     }
 
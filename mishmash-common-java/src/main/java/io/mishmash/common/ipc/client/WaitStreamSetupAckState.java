@@ -19,6 +19,7 @@ package io.mishmash.common.ipc.client;
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Mishmash;
 import io.mishmash.common.data.Value;
+import io.mishmash.common.ipc.ProtocolTimeouts;
 import io.mishmash.common.ipc.proto.Proto;
 import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
@@ -34,6 +35,22 @@ public abstract class WaitStreamSetupAckState<MT extends Mishmash<Key, Value>>
             StreamClientMessage,
             MT> {
 
+    /**
+     * Create a new WaitStreamSetupAckState with the default timeout.
+     */
+    public WaitStreamSetupAckState() {
+        super();
+    }
+
+    /**
+     * Create a new WaitStreamSetupAckState.
+     *
+     * @param timeouts - the timeouts of the stream
+     */
+    public WaitStreamSetupAckState(final ProtocolTimeouts timeouts) {
+        super(timeouts);
+    }
+
     /**
      * Ensure an incoming GRPC server message is a SetupAck.
      *
@@ -45,4 +62,12 @@ public abstract class WaitStreamSetupAckState<MT extends Mishmash<Key, Value>>
         Proto.ensureSetupAck(input);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSendFullSetup(final StreamServerMessage input) {
+        return input.getSetupAck().getSendFullSetup();
+    }
+
 }
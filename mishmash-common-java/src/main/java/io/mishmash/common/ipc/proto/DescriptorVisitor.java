@@ -0,0 +1,180 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import io.mishmash.common.rpc.MishmashRpc.Intersection;
+import io.mishmash.common.rpc.MishmashRpc.LambdaFunction;
+import io.mishmash.common.rpc.MishmashRpc.Literal;
+import io.mishmash.common.rpc.MishmashRpc.LiteralSet;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
+import io.mishmash.common.rpc.MishmashRpc.PredefinedFunction;
+import io.mishmash.common.rpc.MishmashRpc.PredefinedSet;
+import io.mishmash.common.rpc.MishmashRpc.Transformation;
+import io.mishmash.common.rpc.MishmashRpc.Union;
+
+/**
+ * Receives the elements of set descriptors, in order, from a
+ * {@link DescriptorWalker}.
+ *
+ * Every enter call is matched by a leave call once all nested
+ * descriptors have been visited. Empty unions and intersections are
+ * entered and left too.
+ *
+ * @param <E> - the type of exceptions thrown by the visitor
+ */
+public interface DescriptorVisitor<E extends Exception> {
+
+    /**
+     * Enter a union, before its operands.
+     *
+     * @param union - the union
+     * @throws E - if visiting fails
+     */
+    void enterUnion(Union union) throws E;
+
+    /**
+     * Leave a union, after its operands.
+     *
+     * @param union - the union
+     * @throws E - if visiting fails
+     */
+    void leaveUnion(Union union) throws E;
+
+    /**
+     * Enter an intersection, before its operands.
+     *
+     * @param intersection - the intersection
+     * @throws E - if visiting fails
+     */
+    void enterIntersection(Intersection intersection) throws E;
+
+    /**
+     * Leave an intersection, after its operands.
+     *
+     * @param intersection - the intersection
+     * @throws E - if visiting fails
+     */
+    void leaveIntersection(Intersection intersection) throws E;
+
+    /**
+     * Enter a transformation and its left axis.
+     *
+     * @param transformation - the transformation
+     * @throws E - if visiting fails
+     */
+    void enterTransformationLeft(Transformation transformation) throws E;
+
+    /**
+     * Leave the left axis of a transformation.
+     *
+     * @param transformation - the transformation
+     * @throws E - if visiting fails
+     */
+    void leaveTransformationLeft(Transformation transformation) throws E;
+
+    /**
+     * Enter the right axis of a transformation.
+     *
+     * @param transformation - the transformation
+     * @throws E - if visiting fails
+     */
+    void enterTransformationRight(Transformation transformation) throws E;
+
+    /**
+     * Leave the right axis and the transformation.
+     *
+     * @param transformation - the transformation
+     * @throws E - if visiting fails
+     */
+    void leaveTransformationRight(Transformation transformation) throws E;
+
+    /**
+     * Enter a predefined function, before its arguments.
+     *
+     * @param function - the function
+     * @throws E - if visiting fails
+     */
+    void enterPredefinedFunction(PredefinedFunction function) throws E;
+
+    /**
+     * Enter an argument of a predefined function.
+     *
+     * @param function - the function
+     * @param index - the argument index
+     * @throws E - if visiting fails
+     */
+    void enterPredefinedFunctionArgument(PredefinedFunction function,
+            int index) throws E;
+
+    /**
+     * Leave an argument of a predefined function.
+     *
+     * @param function - the function
+     * @param index - the argument index
+     * @throws E - if visiting fails
+     */
+    void leavePredefinedFunctionArgument(PredefinedFunction function,
+            int index) throws E;
+
+    /**
+     * Leave a predefined function, after its arguments.
+     *
+     * @param function - the function
+     * @throws E - if visiting fails
+     */
+    void leavePredefinedFunction(PredefinedFunction function) throws E;
+
+    /**
+     * Visit a literal.
+     *
+     * @param literal - the literal
+     * @throws E - if visiting fails
+     */
+    void visitLiteral(Literal literal) throws E;
+
+    /**
+     * Visit a packed set of literals.
+     *
+     * @param set - the literal set
+     * @throws E - if visiting fails
+     */
+    void visitLiteralSet(LiteralSet set) throws E;
+
+    /**
+     * Visit a predefined set.
+     *
+     * @param set - the predefined set
+     * @throws E - if visiting fails
+     */
+    void visitPredefinedSet(PredefinedSet set) throws E;
+
+    /**
+     * Visit a lambda function.
+     *
+     * @param function - the lambda function
+     * @throws E - if visiting fails
+     */
+    void visitLambdaFunction(LambdaFunction function) throws E;
+
+    /**
+     * Visit a descriptor of no known type.
+     *
+     * @param descriptor - the descriptor
+     * @throws E - if visiting fails
+     */
+    void visitUnknown(MishmashSetDescriptor descriptor) throws E;
+}
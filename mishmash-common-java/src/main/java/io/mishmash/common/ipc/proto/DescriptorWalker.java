@@ -0,0 +1,294 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
+import io.mishmash.common.rpc.MishmashRpc.PredefinedFunction;
+import io.mishmash.common.rpc.MishmashRpc.Transformation;
+
+/**
+ * Walks set descriptors depth-first and reports their elements to a
+ * {@link DescriptorVisitor}.
+ *
+ * The walker keeps its own stack on the heap, so descriptors of any
+ * depth are walked in constant call stack space.
+ */
+public final class DescriptorWalker {
+
+    /**
+     * The kinds of descriptor lists being walked.
+     */
+    private enum Kind {
+        /**
+         * A top-level list.
+         */
+        LIST,
+        /**
+         * The operands of a union.
+         */
+        UNION,
+        /**
+         * The operands of an intersection.
+         */
+        INTERSECTION,
+        /**
+         * The left axis of a transformation.
+         */
+        LEFT,
+        /**
+         * The right axis of a transformation.
+         */
+        RIGHT,
+        /**
+         * The arguments of a predefined function.
+         */
+        FUNCTION,
+        /**
+         * A single argument of a predefined function.
+         */
+        ARGUMENT
+    }
+
+    /**
+     * A descriptor list being walked.
+     */
+    private static final class Frame {
+
+        /**
+         * The kind of list.
+         */
+        private final Kind kind;
+
+        /**
+         * The descriptor the list belongs to, null for a top-level list.
+         */
+        private final MishmashSetDescriptor owner;
+
+        /**
+         * The descriptors of the list.
+         */
+        private final List<MishmashSetDescriptor> entries;
+
+        /**
+         * The argument index, for a single argument.
+         */
+        private final int argument;
+
+        /**
+         * The index of the next descriptor to walk.
+         */
+        private int next;
+
+        /**
+         * Create a new Frame.
+         *
+         * @param listKind - the kind of list
+         * @param ownerDescriptor - the descriptor the list belongs to
+         * @param descriptors - the descriptors of the list
+         * @param argumentIndex - the argument index, for an argument
+         */
+        private Frame(
+                final Kind listKind,
+                final MishmashSetDescriptor ownerDescriptor,
+                final List<MishmashSetDescriptor> descriptors,
+                final int argumentIndex) {
+            this.kind = listKind;
+            this.owner = ownerDescriptor;
+            this.entries = descriptors;
+            this.argument = argumentIndex;
+        }
+    }
+
+    /**
+     * Instances of DescriptorWalker are not needed.
+     */
+    private DescriptorWalker() {
+        // Hide the constructor
+    }
+
+    /**
+     * Walk a descriptor list.
+     *
+     * @param <E> - the type of exceptions thrown by the visitor
+     * @param list - the list
+     * @param visitor - the visitor
+     * @throws E - if the visitor fails
+     */
+    public static <E extends Exception> void walk(
+            final MishmashSetDescriptorList list,
+            final DescriptorVisitor<E> visitor)
+                    throws E {
+        walk(new Frame(Kind.LIST, null, list.getEntriesList(), 0), visitor);
+    }
+
+    /**
+     * Walk a descriptor.
+     *
+     * @param <E> - the type of exceptions thrown by the visitor
+     * @param descriptor - the descriptor
+     * @param visitor - the visitor
+     * @throws E - if the visitor fails
+     */
+    public static <E extends Exception> void walk(
+            final MishmashSetDescriptor descriptor,
+            final DescriptorVisitor<E> visitor)
+                    throws E {
+        walk(new Frame(Kind.LIST, null,
+                    Collections.singletonList(descriptor), 0),
+                visitor);
+    }
+
+    /**
+     * Walk until the root list and all nested lists are done.
+     *
+     * @param <E> - the type of exceptions thrown by the visitor
+     * @param root - the root list
+     * @param visitor - the visitor
+     * @throws E - if the visitor fails
+     */
+    private static <E extends Exception> void walk(
+            final Frame root,
+            final DescriptorVisitor<E> visitor)
+                    throws E {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            Frame f = stack.peek();
+
+            if (f.next == f.entries.size()) {
+                stack.pop();
+                leave(f, stack, visitor);
+            } else if (f.kind == Kind.FUNCTION) {
+                int i = f.next++;
+                visitor.enterPredefinedFunctionArgument(
+                        f.owner.getPredefinedFunction(), i);
+                stack.push(new Frame(Kind.ARGUMENT, f.owner,
+                        Collections.singletonList(f.entries.get(i)), i));
+            } else {
+                enter(f.entries.get(f.next++), stack, visitor);
+            }
+        }
+    }
+
+    /**
+     * Visit a descriptor, or enter it and push its nested list.
+     *
+     * @param <E> - the type of exceptions thrown by the visitor
+     * @param descriptor - the descriptor
+     * @param stack - the stack of lists
+     * @param visitor - the visitor
+     * @throws E - if the visitor fails
+     */
+    private static <E extends Exception> void enter(
+            final MishmashSetDescriptor descriptor,
+            final Deque<Frame> stack,
+            final DescriptorVisitor<E> visitor)
+                    throws E {
+        switch (descriptor.getAltCase()) {
+        case UNION:
+            visitor.enterUnion(descriptor.getUnion());
+            stack.push(new Frame(Kind.UNION, descriptor,
+                    descriptor.getUnion().getSets().getEntriesList(), 0));
+            break;
+        case INTERSECTION:
+            visitor.enterIntersection(descriptor.getIntersection());
+            stack.push(new Frame(Kind.INTERSECTION, descriptor,
+                    descriptor.getIntersection().getSets()
+                        .getEntriesList(),
+                    0));
+            break;
+        case TRANSFORMATION:
+            Transformation t = descriptor.getTransformation();
+            visitor.enterTransformationLeft(t);
+            stack.push(new Frame(Kind.LEFT, descriptor,
+                    t.getAxis().getLeft().getEntriesList(), 0));
+            break;
+        case PREDEFINED_FUNCTION:
+            PredefinedFunction function = descriptor.getPredefinedFunction();
+            visitor.enterPredefinedFunction(function);
+            stack.push(new Frame(Kind.FUNCTION, descriptor,
+                    function.getArgumentsList(), 0));
+            break;
+        case LITERAL:
+            visitor.visitLiteral(descriptor.getLiteral());
+            break;
+        case LITERAL_SET:
+            visitor.visitLiteralSet(descriptor.getLiteralSet());
+            break;
+        case PREDEFINED_SET:
+            visitor.visitPredefinedSet(descriptor.getPredefinedSet());
+            break;
+        case LAMBDA_FUNCTION:
+            visitor.visitLambdaFunction(descriptor.getLambdaFunction());
+            break;
+        default:
+            visitor.visitUnknown(descriptor);
+            break;
+        }
+    }
+
+    /**
+     * Leave a list that has been walked.
+     *
+     * @param <E> - the type of exceptions thrown by the visitor
+     * @param f - the list
+     * @param stack - the stack of lists
+     * @param visitor - the visitor
+     * @throws E - if the visitor fails
+     */
+    private static <E extends Exception> void leave(
+            final Frame f,
+            final Deque<Frame> stack,
+            final DescriptorVisitor<E> visitor)
+                    throws E {
+        switch (f.kind) {
+        case UNION:
+            visitor.leaveUnion(f.owner.getUnion());
+            break;
+        case INTERSECTION:
+            visitor.leaveIntersection(f.owner.getIntersection());
+            break;
+        case LEFT:
+            Transformation t = f.owner.getTransformation();
+            visitor.leaveTransformationLeft(t);
+            visitor.enterTransformationRight(t);
+            stack.push(new Frame(Kind.RIGHT, f.owner,
+                    t.getAxis().getRight().getEntriesList(), 0));
+            break;
+        case RIGHT:
+            visitor.leaveTransformationRight(f.owner.getTransformation());
+            break;
+        case FUNCTION:
+            visitor.leavePredefinedFunction(f.owner.getPredefinedFunction());
+            break;
+        case ARGUMENT:
+            visitor.leavePredefinedFunctionArgument(
+                    f.owner.getPredefinedFunction(), f.argument);
+            break;
+        default:
+            // top-level list
+            break;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import io.mishmash.common.data.MishmashBuilder;
+import io.mishmash.common.exception.MishmashException;
+import io.mishmash.common.exception.MishmashProtocolException;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
+
+/**
+ * Builds a SETUP received in chunks into a {@link MishmashBuilder}, chunk
+ * by chunk, so the full target set is never held in memory.
+ *
+ * The first chunk is the target set of the SETUP message, the rest
+ * arrive as MishmashSetupContinuation messages. A continuation appends
+ * its entries to a list on the open path: the target set, the operands
+ * of its last entry, the operands of their last entry and so on. The
+ * unions and intersections on the open path are left only when a
+ * continuation appends to a shallower list, or at the end.
+ *
+ * The builder receives exactly the calls
+ * {@link ProtoSetup#fromSetup(MishmashSetup, MishmashBuilder)} would
+ * make for the assembled setup.
+ *
+ * @param <MT> the Class of objects built by the {@link MishmashBuilder}
+ */
+public final class IncrementalSetup<MT> {
+
+    /**
+     * A union or an intersection on the open path.
+     */
+    private static final class Scope {
+
+        /**
+         * If a union, otherwise an intersection.
+         */
+        private final boolean isUnion;
+
+        /**
+         * If entered in the builder, which happens with its first
+         * operand.
+         */
+        private boolean isEntered;
+
+        /**
+         * Create a new Scope.
+         *
+         * @param union - true for a union
+         */
+        private Scope(final boolean union) {
+            this.isUnion = union;
+        }
+    }
+
+    /**
+     * The builder.
+     */
+    private MishmashBuilder<MT> builder;
+
+    /**
+     * The open path, the deepest scope on top.
+     */
+    private final Deque<Scope> open = new ArrayDeque<>();
+
+    /**
+     * If the last chunk has been built.
+     */
+    private boolean isComplete;
+
+    /**
+     * Create a new IncrementalSetup.
+     *
+     * @param target - the builder
+     */
+    public IncrementalSetup(final MishmashBuilder<MT> target) {
+        this.builder = target;
+    }
+
+    /**
+     * Get the builder.
+     *
+     * @return - the builder
+     */
+    public MishmashBuilder<MT> getBuilder() {
+        return builder;
+    }
+
+    /**
+     * Check if the last chunk has been built.
+     *
+     * @return - true if complete
+     */
+    public boolean isComplete() {
+        return isComplete;
+    }
+
+    /**
+     * Build the SETUP message, the first chunk.
+     *
+     * @param setup - the SETUP message
+     * @throws MishmashException - if protocol checks fail
+     */
+    public void begin(final MishmashSetup setup) throws MishmashException {
+        builder = builder.setClientOptions(setup.getClientOptionsMap());
+        builder = builder.setMutationType(setup.getMutationTypeValue());
+
+        append(0, setup.getTargetSet().getEntriesList());
+
+        if (!setup.getHasContinuation()) {
+            finish();
+        }
+    }
+
+    /**
+     * Build the next chunk.
+     *
+     * @param continuation - the chunk
+     * @throws MishmashException - if protocol checks fail
+     */
+    public void append(final MishmashSetupContinuation continuation)
+            throws MishmashException {
+        if (isComplete) {
+            throw new MishmashProtocolException();
+        }
+
+        append(continuation.getDepth(), continuation.getEntriesList());
+
+        if (continuation.getLast()) {
+            finish();
+        }
+    }
+
+    /**
+     * Append entries to a list on the open path.
+     *
+     * @param depth - the depth of the list
+     * @param entries - the entries
+     * @throws MishmashException - if protocol checks fail
+     */
+    private void append(final int depth,
+            final List<MishmashSetDescriptor> entries)
+                    throws MishmashException {
+        if (depth < 0 || depth > open.size()) {
+            throw new MishmashProtocolException();
+        }
+
+        while (open.size() > depth) {
+            leave(open.pop());
+        }
+
+        int last = entries.size() - 1;
+        for (int i = 0; i < last; i++) {
+            enterTop();
+            builder = ProtoSetup.fromDescriptor(entries.get(i), builder);
+        }
+
+        if (last >= 0) {
+            enterTop();
+            openPath(entries.get(last));
+        }
+    }
+
+    /**
+     * Build the last entry of a list, leaving the unions and
+     * intersections along its last entries open.
+     *
+     * @param descriptor - the last entry
+     * @throws MishmashException - if protocol checks fail
+     */
+    private void openPath(final MishmashSetDescriptor descriptor)
+            throws MishmashException {
+        MishmashSetDescriptor d = descriptor;
+
+        while (d.hasUnion() || d.hasIntersection()) {
+            List<MishmashSetDescriptor> operands = d.hasUnion()
+                    ? d.getUnion().getSets().getEntriesList()
+                    : d.getIntersection().getSets().getEntriesList();
+            open.push(new Scope(d.hasUnion()));
+
+            int last = operands.size() - 1;
+            if (last < 0) {
+                return;
+            }
+
+            enterTop();
+            for (int i = 0; i < last; i++) {
+                builder = ProtoSetup.fromDescriptor(operands.get(i), builder);
+            }
+
+            d = operands.get(last);
+        }
+
+        builder = ProtoSetup.fromDescriptor(d, builder);
+    }
+
+    /**
+     * Enter the deepest scope on the open path, before its first operand.
+     *
+     * @throws MishmashException - if the builder fails
+     */
+    private void enterTop() throws MishmashException {
+        Scope s = open.peek();
+
+        if (s != null && !s.isEntered) {
+            s.isEntered = true;
+            builder = s.isUnion
+                    ? builder.enterUnion()
+                    : builder.enterIntersection();
+        }
+    }
+
+    /**
+     * Leave a scope of the open path.
+     *
+     * @param s - the scope
+     * @throws MishmashException - if the builder fails
+     */
+    private void leave(final Scope s) throws MishmashException {
+        if (s.isEntered) {
+            builder = s.isUnion
+                    ? builder.leaveUnion()
+                    : builder.leaveIntersection();
+        }
+    }
+
+    /**
+     * Leave all scopes of the open path.
+     *
+     * @throws MishmashException - if the builder fails
+     */
+    private void finish() throws MishmashException {
+        while (!open.isEmpty()) {
+            leave(open.pop());
+        }
+
+        isComplete = true;
+    }
+}
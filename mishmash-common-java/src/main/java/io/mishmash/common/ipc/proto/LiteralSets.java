@@ -0,0 +1,334 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.mishmash.common.rpc.MishmashRpc.DecimalValue;
+import io.mishmash.common.rpc.MishmashRpc.Id;
+import io.mishmash.common.rpc.MishmashRpc.Literal;
+import io.mishmash.common.rpc.MishmashRpc.LiteralSet;
+import io.mishmash.common.rpc.MishmashRpc.PackedIntegers;
+import io.mishmash.common.rpc.MishmashRpc.Value;
+
+/**
+ * Helper methods to pack runs of literals of the same type into
+ * LiteralSet GRPC messages and to unpack them.
+ *
+ * Only instance IDs, strings, booleans and decimals held as integers
+ * or doubles are packed. Integers are delta-encoded, so runs of close
+ * numbers take one or two bytes per element.
+ */
+public final class LiteralSets {
+
+    /**
+     * The shortest run of literals worth packing.
+     */
+    public static final int MIN_PACKED = 16;
+
+    /**
+     * The most literals packed in a single LiteralSet, so that large
+     * runs can still be split into setup continuations.
+     */
+    public static final int MAX_PACKED = 4096;
+
+    /**
+     * The LiteralSets class should not be instantiated.
+     */
+    private LiteralSets() {
+        // Hide the constructor
+    }
+
+    /**
+     * Get the type of LiteralSet a literal can be packed into.
+     *
+     * @param literal - the literal
+     * @return - the type or ALT_NOT_SET if the literal is not packed
+     */
+    public static LiteralSet.AltCase packedType(final Literal literal) {
+        switch (literal.getAltCase()) {
+        case ID:
+            // dictionary references are only used by snapshot files
+            return literal.getId().getDictionaryRef() == 0
+                    ? LiteralSet.AltCase.IDS
+                    : LiteralSet.AltCase.ALT_NOT_SET;
+        case VALUE:
+            return packedType(literal.getValue());
+        default:
+            return LiteralSet.AltCase.ALT_NOT_SET;
+        }
+    }
+
+    /**
+     * Get the type of LiteralSet a value can be packed into.
+     *
+     * @param value - the value
+     * @return - the type or ALT_NOT_SET if the value is not packed
+     */
+    private static LiteralSet.AltCase packedType(final Value value) {
+        switch (value.getAltCase()) {
+        case BOOLEAN:
+            return LiteralSet.AltCase.BOOLEANS;
+        case STRING:
+            return LiteralSet.AltCase.STRINGS;
+        case DECIMAL:
+            switch (value.getDecimal().getAltCase()) {
+            case S_INT_64:
+                return LiteralSet.AltCase.SIGNED_LONGS;
+            case U_INT_64:
+                return LiteralSet.AltCase.UNSIGNED_LONGS;
+            case S_INT_32:
+                return LiteralSet.AltCase.SIGNED_INTS;
+            case U_INT_32:
+                return LiteralSet.AltCase.UNSIGNED_INTS;
+            case FLOATING:
+                return LiteralSet.AltCase.DOUBLES;
+            default:
+                return LiteralSet.AltCase.ALT_NOT_SET;
+            }
+        default:
+            return LiteralSet.AltCase.ALT_NOT_SET;
+        }
+    }
+
+    /**
+     * Pack a run of literals, keeping their order.
+     *
+     * @param literals - the literals, all of the same packed type
+     * @return - the LiteralSet builder
+     */
+    public static LiteralSet.Builder pack(final List<Literal> literals) {
+        if (literals.isEmpty()) {
+            throw new IllegalArgumentException("No literals to pack");
+        }
+
+        LiteralSet.AltCase type = packedType(literals.get(0));
+        LiteralSet.Builder res = LiteralSet.newBuilder();
+        long last = 0;
+
+        for (Literal literal : literals) {
+            if (type == LiteralSet.AltCase.ALT_NOT_SET
+                    || packedType(literal) != type) {
+                throw new IllegalArgumentException(
+                        "Literals are not of the same packed type");
+            }
+
+            Value value = literal.getValue();
+            DecimalValue decimal = value.getDecimal();
+            long next;
+
+            switch (type) {
+            case IDS:
+                res.getIdsBuilder().addValues(literal.getId().getId());
+                break;
+            case STRINGS:
+                res.getStringsBuilder()
+                    .addValues(value.getString().getSequence());
+                break;
+            case BOOLEANS:
+                res.getBooleansBuilder()
+                    .addValues(value.getBoolean().getBoolean());
+                break;
+            case DOUBLES:
+                res.getDoublesBuilder().addValues(decimal.getFloating());
+                break;
+            case SIGNED_LONGS:
+                next = decimal.getSInt64();
+                res.getSignedLongsBuilder().addDeltas(next - last);
+                last = next;
+                break;
+            case UNSIGNED_LONGS:
+                next = decimal.getUInt64();
+                res.getUnsignedLongsBuilder().addDeltas(next - last);
+                last = next;
+                break;
+            case SIGNED_INTS:
+                next = decimal.getSInt32();
+                res.getSignedIntsBuilder().addDeltas(next - last);
+                last = next;
+                break;
+            case UNSIGNED_INTS:
+                next = decimal.getUInt32();
+                res.getUnsignedIntsBuilder().addDeltas(next - last);
+                last = next;
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unexpected packed type " + type);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Get the number of literals in a LiteralSet.
+     *
+     * @param set - the LiteralSet
+     * @return - the number of literals
+     */
+    public static int size(final LiteralSet set) {
+        switch (set.getAltCase()) {
+        case IDS:
+            return set.getIds().getValuesCount();
+        case STRINGS:
+            return set.getStrings().getValuesCount();
+        case BOOLEANS:
+            return set.getBooleans().getValuesCount();
+        case DOUBLES:
+            return set.getDoubles().getValuesCount();
+        case SIGNED_LONGS:
+            return set.getSignedLongs().getDeltasCount();
+        case UNSIGNED_LONGS:
+            return set.getUnsignedLongs().getDeltasCount();
+        case SIGNED_INTS:
+            return set.getSignedInts().getDeltasCount();
+        case UNSIGNED_INTS:
+            return set.getUnsignedInts().getDeltasCount();
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Unpack all literals of a LiteralSet, in order.
+     *
+     * Prefer {@link ProtoSetup#fromLiteralSet} when building, it does
+     * not create a Literal per element.
+     *
+     * @param set - the LiteralSet
+     * @return - the literals
+     */
+    public static List<Literal> unpack(final LiteralSet set) {
+        int size = size(set);
+        List<Literal> res = new ArrayList<>(size);
+        long last = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (isInteger(set.getAltCase())) {
+                last += integers(set).getDeltas(i);
+            }
+
+            res.add(literal(set, i, last));
+        }
+
+        return res;
+    }
+
+    /**
+     * Unpack a single literal of a LiteralSet. Integers are decoded
+     * from the first element on, so this takes time linear in the index.
+     *
+     * @param set - the LiteralSet
+     * @param index - the index of the literal
+     * @return - the literal
+     */
+    public static Literal get(final LiteralSet set, final int index) {
+        if (index < 0 || index >= size(set)) {
+            throw new IndexOutOfBoundsException("Index " + index);
+        }
+
+        long value = 0;
+        if (isInteger(set.getAltCase())) {
+            PackedIntegers ints = integers(set);
+            for (int i = 0; i <= index; i++) {
+                value += ints.getDeltas(i);
+            }
+        }
+
+        return literal(set, index, value);
+    }
+
+    /**
+     * Check if a LiteralSet type holds delta-encoded integers.
+     *
+     * @param type - the type
+     * @return - true for integer types
+     */
+    private static boolean isInteger(final LiteralSet.AltCase type) {
+        return type == LiteralSet.AltCase.SIGNED_LONGS
+                || type == LiteralSet.AltCase.UNSIGNED_LONGS
+                || type == LiteralSet.AltCase.SIGNED_INTS
+                || type == LiteralSet.AltCase.UNSIGNED_INTS;
+    }
+
+    /**
+     * Get the delta-encoded integers of a LiteralSet.
+     *
+     * @param set - a LiteralSet of an integer type
+     * @return - the packed integers
+     */
+    private static PackedIntegers integers(final LiteralSet set) {
+        switch (set.getAltCase()) {
+        case SIGNED_LONGS:
+            return set.getSignedLongs();
+        case UNSIGNED_LONGS:
+            return set.getUnsignedLongs();
+        case SIGNED_INTS:
+            return set.getSignedInts();
+        default:
+            return set.getUnsignedInts();
+        }
+    }
+
+    /**
+     * Build a literal of a LiteralSet.
+     *
+     * @param set - the LiteralSet
+     * @param index - the index of the literal
+     * @param integer - the decoded value for integer types
+     * @return - the literal
+     */
+    private static Literal literal(final LiteralSet set, final int index,
+            final long integer) {
+        Literal.Builder res = Literal.newBuilder();
+
+        switch (set.getAltCase()) {
+        case IDS:
+            return res.setId(Id.newBuilder()
+                        .setId(set.getIds().getValues(index)))
+                    .build();
+        case STRINGS:
+            return res.setValue(Values.stringValue(
+                        set.getStrings().getValues(index)))
+                    .build();
+        case BOOLEANS:
+            return res.setValue(Values.booleanValue(
+                        set.getBooleans().getValues(index)))
+                    .build();
+        case DOUBLES:
+            return res.setValue(Values.decimalValue(
+                        set.getDoubles().getValues(index)))
+                    .build();
+        case SIGNED_LONGS:
+            return res.setValue(Values.decimalValueSigned(integer)).build();
+        case UNSIGNED_LONGS:
+            return res.setValue(Values.decimalValueUnsigned(integer))
+                    .build();
+        case SIGNED_INTS:
+            return res.setValue(Values.decimalValueSigned((int) integer))
+                    .build();
+        case UNSIGNED_INTS:
+            return res.setValue(Values.decimalValueUnsigned((int) integer))
+                    .build();
+        default:
+            throw new IllegalArgumentException(
+                    "Unexpected packed type " + set.getAltCase());
+        }
+    }
+}
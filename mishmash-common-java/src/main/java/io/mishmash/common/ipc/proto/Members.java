@@ -17,10 +17,12 @@
 package io.mishmash.common.ipc.proto;
 
 import java.util.Iterator;
+import java.util.List;
 
 import com.google.common.collect.Iterators;
 
 import io.mishmash.common.data.Key;
+import io.mishmash.common.data.KeyComparator;
 import io.mishmash.common.rpc.MishmashRpc.Id;
 import io.mishmash.common.rpc.MishmashRpc.Member;
 import io.mishmash.common.rpc.MishmashRpc.YieldData;
@@ -96,6 +98,37 @@ public final class Members {
         return Id.newBuilder().setId(instanceId);
     }
 
+    /**
+     * Build an Id that refers to an entry of an instance ID dictionary.
+     *
+     * @param dictionaryIndex - the 0-based index in the dictionary
+     * @return Builder - an Id builder
+     */
+    public static Id.Builder ref(final int dictionaryIndex) {
+        return Id.newBuilder().setDictionaryRef(dictionaryIndex + 1);
+    }
+
+    /**
+     * Resolve an Id that may refer to an instance ID dictionary.
+     *
+     * @param id - the GRPC Id message
+     * @param dictionary - the instance ID dictionary
+     * @return - an Id with the instance id set
+     */
+    public static Id resolve(final Id id, final List<String> dictionary) {
+        int ref = id.getDictionaryRef();
+        if (ref == 0) {
+            return id;
+        }
+
+        if (ref > dictionary.size()) {
+            throw new IllegalArgumentException(
+                    "Instance Id reference out of range: " + ref);
+        }
+
+        return id(dictionary.get(ref - 1)).build();
+    }
+
     /**
      * Extract the {@link Key} id from a GRPC Id.
      *
@@ -169,4 +202,49 @@ public final class Members {
         return Iterators.transform(yield.getHierarchyList().iterator(),
                 Members::fromMember);
     }
+
+    /**
+     * Compare two GRPC Members in {@link KeyComparator} order, without
+     * converting them to {@link Key}s.
+     *
+     * @param a - the first member
+     * @param b - the second member
+     * @return - negative, zero or positive as a is less than, equal to or
+     *          greater than b
+     */
+    public static int compare(final Member a, final Member b) {
+        boolean isIndexA = a.getAltCase() == Member.AltCase.INDEX;
+        boolean isIndexB = b.getAltCase() == Member.AltCase.INDEX;
+
+        if (isIndexA) {
+            return isIndexB
+                    ? Long.compareUnsigned(a.getIndex(), b.getIndex())
+                    : -1;
+        }
+
+        return isIndexB ? 1 : a.getName().compareTo(b.getName());
+    }
+
+    /**
+     * Compare two GRPC member hierarchies in {@link KeyComparator}
+     * order, without converting them to {@link Key}s.
+     *
+     * @param a - the first hierarchy
+     * @param b - the second hierarchy
+     * @return - negative, zero or positive as a is less than, equal to or
+     *          greater than b
+     */
+    public static int compare(final List<YieldMember> a,
+            final List<YieldMember> b) {
+        int size = Math.min(a.size(), b.size());
+
+        for (int i = 0; i < size; i++) {
+            int res = compare(a.get(i).getMember(), b.get(i).getMember());
+            if (res != 0) {
+                return res;
+            }
+        }
+
+        return Integer.compare(a.size(), b.size());
+    }
 }
@@ -18,6 +18,7 @@ package io.mishmash.common.ipc.proto;
 
 import io.mishmash.common.rpc.MishmashRpc;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
 import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
 import io.mishmash.common.rpc.MishmashRpc.SetupAck;
@@ -29,6 +30,12 @@ import io.mishmash.common.rpc.MishmashRpc.YieldData;
  */
 public final class MutationMessages {
 
+    /**
+     * The most data points a client may send right after a setup,
+     * before the SetupAck.
+     */
+    public static final int MAX_PIPELINED = 64;
+
     /**
      * The MutationMessages class should not be instantiated.
      */
@@ -61,6 +68,20 @@ public final class MutationMessages {
                 .setSetup(setup);
     }
 
+    /**
+     * Build a client SetupContinuation message.
+     *
+     * @param clientSeqNo - the client sequence number
+     * @param continuation - the next chunk of the target
+     * @return Builder - the Builder
+     */
+    public static MutationClientMessage.Builder
+            clientSetupContinuation(final int clientSeqNo,
+                    final MishmashSetupContinuation.Builder continuation) {
+        return client(clientSeqNo)
+                .setSetupContinuation(continuation);
+    }
+
     /**
      * Build a YieldData client message.
      *
@@ -74,6 +95,19 @@ public final class MutationMessages {
                 .setYieldData(yield);
     }
 
+    /**
+     * Build a YieldData client message from data built already.
+     *
+     * @param clientSeqNo - the client sequence number
+     * @param yield - the data
+     * @return Builder - the Builder
+     */
+    public static MutationClientMessage.Builder
+            clientYield(final int clientSeqNo, final YieldData yield) {
+        return client(clientSeqNo)
+                .setYieldData(yield);
+    }
+
     /**
      * Build an Error client message.
      *
@@ -124,6 +158,19 @@ public final class MutationMessages {
                 .setSetupAck(SetupAck.newBuilder());
     }
 
+    /**
+     * Build a SetupAck asking for the full setup, when the fingerprint
+     * received is not known.
+     *
+     * @param serverSeqNo - the server sequence number
+     * @return Builder - the Builder
+     */
+    public static MutationServerMessage.Builder
+            serverSendFullSetup(final int serverSeqNo) {
+        return server(serverSeqNo)
+                .setSetupAck(SetupAck.newBuilder().setSendFullSetup(true));
+    }
+
     /**
      * Build a YieldDataAck.
      *
@@ -134,7 +181,7 @@ public final class MutationMessages {
     public static MutationServerMessage.Builder
             serverYieldAck(final int serverSeqNo, final int clientSeqNo) {
         return server(serverSeqNo)
-                .setAck(Yields.yieldDataAck());
+                .setAck(Yields.yieldDataAck(clientSeqNo));
     }
 
     /**
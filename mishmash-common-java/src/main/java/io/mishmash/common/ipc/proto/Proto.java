@@ -22,6 +22,7 @@ import io.mishmash.common.exception.MishmashInvalidStateException;
 import io.mishmash.common.exception.MishmashProtocolException;
 import io.mishmash.common.exception.MishmashUnimplementedException;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
 import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
 import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
@@ -223,6 +224,22 @@ public final class Proto {
         return ensureNonNull(msg.getSetup(), "Missing SETUP element");
     }
 
+    /**
+     * Ensure message is a SETUP CONTINUATION.
+     *
+     * @param msg - the message
+     * @return - the continuation
+     * @throws MishmashException - if checks fail
+     */
+    public static MishmashSetupContinuation
+            ensureSetupContinuation(final StreamClientMessage msg)
+                    throws MishmashException {
+        ensureCase(msg, StreamClientMessage.AltCase.SETUP_CONTINUATION);
+
+        return ensureNonNull(msg.getSetupContinuation(),
+                "Missing SETUP CONTINUATION element");
+    }
+
     /**
      * Ensure message is SETUP ACK.
      *
@@ -314,6 +331,22 @@ public final class Proto {
         return ensureNonNull(msg.getSetup(), "Missing SETUP element");
     }
 
+    /**
+     * Ensure message is a SETUP CONTINUATION.
+     *
+     * @param msg - the message
+     * @return - the continuation
+     * @throws MishmashException - if checks fail
+     */
+    public static MishmashSetupContinuation
+            ensureSetupContinuation(final MutationClientMessage msg)
+                    throws MishmashException {
+        ensureCase(msg, MutationClientMessage.AltCase.SETUP_CONTINUATION);
+
+        return ensureNonNull(msg.getSetupContinuation(),
+                "Missing SETUP CONTINUATION element");
+    }
+
     /**
      * Ensure message is a SETUP ACK.
      *
@@ -29,12 +29,15 @@ import io.mishmash.common.rpc.MishmashRpc.DecimalValue;
 import io.mishmash.common.rpc.MishmashRpc.Intersection;
 import io.mishmash.common.rpc.MishmashRpc.LambdaFunction;
 import io.mishmash.common.rpc.MishmashRpc.Literal;
+import io.mishmash.common.rpc.MishmashRpc.LiteralSet;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.PackedBooleans;
+import io.mishmash.common.rpc.MishmashRpc.PackedDoubles;
+import io.mishmash.common.rpc.MishmashRpc.PackedIntegers;
 import io.mishmash.common.rpc.MishmashRpc.PredefinedSet;
 import io.mishmash.common.rpc.MishmashRpc.Transformation;
-import io.mishmash.common.rpc.MishmashRpc.Transformation.Axis;
 import io.mishmash.common.rpc.MishmashRpc.Union;
 import io.mishmash.common.rpc.MishmashRpc.Value;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup.MutationType;
@@ -223,31 +226,116 @@ public final class ProtoSetup {
     }
 
     /**
-     * Build from a protocol union message.
+     * Build the literals of a packed literal set, in order, without
+     * creating a descriptor or a literal per element.
      *
      * @param <MT> the Class of objects built by the {@link MishmashBuilder}
-     * @param u - the union
+     * @param set - the literal set
      * @param builder - the builder
      * @return - a builder instance
      * @throws MishmashException - if protocol checks fail
      */
     public static <MT> MishmashBuilder<MT>
-            fromUnion(final Union u, final MishmashBuilder<MT> builder)
-                    throws MishmashException {
+            fromLiteralSet(final LiteralSet set,
+                    final MishmashBuilder<MT> builder)
+                            throws MishmashException {
+        LiteralSet.AltCase altCase = Proto.ensureAltCase(set.getAltCase(),
+                LiteralSet.AltCase.ALT_NOT_SET, "LITERAL SET Type not set");
+
+        MishmashBuilder<MT> res = builder;
+
+        switch (altCase) {
+        case IDS:
+            for (String id : set.getIds().getValuesList()) {
+                res = res.addInstance(
+                        Proto.ensureNonEmpty(id,
+                                "LITERAL ID cannot be empty"));
+            }
+            return res;
+        case STRINGS:
+            for (String s : set.getStrings().getValuesList()) {
+                res = res.addString(
+                        Proto.ensureNonEmpty(s,
+                                "STRING VALUE cannot be empty"));
+            }
+            return res;
+        case BOOLEANS:
+            PackedBooleans booleans = set.getBooleans();
+            for (int i = 0; i < booleans.getValuesCount(); i++) {
+                res = res.addBoolean(booleans.getValues(i));
+            }
+            return res;
+        case DOUBLES:
+            PackedDoubles doubles = set.getDoubles();
+            for (int i = 0; i < doubles.getValuesCount(); i++) {
+                res = res.addDouble(doubles.getValues(i));
+            }
+            return res;
+        case SIGNED_LONGS:
+            return fromPackedIntegers(set.getSignedLongs(), true, true, res);
+        case UNSIGNED_LONGS:
+            return fromPackedIntegers(set.getUnsignedLongs(), true, false,
+                    res);
+        case SIGNED_INTS:
+            return fromPackedIntegers(set.getSignedInts(), false, true, res);
+        case UNSIGNED_INTS:
+            return fromPackedIntegers(set.getUnsignedInts(), false, false,
+                    res);
+        default:
+            Proto.unexpectedAltCase(altCase);
+        }
+
+        // should not be reached
+        throw new MishmashInternalErrorException();
+    }
+
+    /**
+     * Build delta-encoded integers of a literal set.
+     *
+     * @param <MT> the Class of objects built by the {@link MishmashBuilder}
+     * @param ints - the packed integers
+     * @param isLong - true for longs, false for ints
+     * @param isSigned - true for signed integers
+     * @param builder - the builder
+     * @return - a builder instance
+     * @throws MishmashException - if protocol checks fail
+     */
+    private static <MT> MishmashBuilder<MT>
+            fromPackedIntegers(final PackedIntegers ints,
+                    final boolean isLong,
+                    final boolean isSigned,
+                    final MishmashBuilder<MT> builder)
+                            throws MishmashException {
         MishmashBuilder<MT> res = builder;
-        MishmashSetDescriptorList descriptors = Proto.ensureNonNull(
-                u.getSets(),
-                "UNION members cannot be null");
-
-        if (descriptors.getEntriesCount() > 0) {
-            res = res.enterUnion();
-            res = fromDescriptors(descriptors, res);
-            res = res.leaveUnion();
+        long value = 0;
+
+        for (int i = 0; i < ints.getDeltasCount(); i++) {
+            value += ints.getDeltas(i);
+            res = isLong
+                    ? res.addLong(value, isSigned)
+                    : res.addInteger((int) value, isSigned);
         }
 
         return res;
     }
 
+    /**
+     * Build from a protocol union message.
+     *
+     * @param <MT> the Class of objects built by the {@link MishmashBuilder}
+     * @param u - the union
+     * @param builder - the builder
+     * @return - a builder instance
+     * @throws MishmashException - if protocol checks fail
+     */
+    public static <MT> MishmashBuilder<MT>
+            fromUnion(final Union u, final MishmashBuilder<MT> builder)
+                    throws MishmashException {
+        return fromDescriptor(
+                MishmashSetDescriptor.newBuilder().setUnion(u).build(),
+                builder);
+    }
+
     /**
      * Build from a protocol intersection message.
      *
@@ -261,18 +349,9 @@ public final class ProtoSetup {
             fromIntersection(final Intersection i,
                     final MishmashBuilder<MT> builder)
                             throws MishmashException {
-        MishmashBuilder<MT> res = builder;
-        MishmashSetDescriptorList descriptors = Proto.ensureNonNull(
-                i.getSets(),
-                "INTERSECTION members cannot be null");
-
-        if (descriptors.getEntriesCount() > 0) {
-            res = res.enterIntersection();
-            res = fromDescriptors(descriptors, res);
-            res = res.leaveIntersection();
-        }
-
-        return res;
+        return fromDescriptor(
+                MishmashSetDescriptor.newBuilder().setIntersection(i).build(),
+                builder);
     }
 
     /**
@@ -333,24 +412,11 @@ public final class ProtoSetup {
             fromPredefinedFunction(final PredefinedFunction function,
                     final MishmashBuilder<MT> builder)
                             throws MishmashException {
-        MishmashBuilder<MT> res = builder;
-        String functionName = Proto.ensureNonEmpty(
-                function.getName(),
-                "PREDEFINED FUNC Name cannot be empty");
-        int argsCnt = function.getArgumentsCount();
-
-        res = res.enterPredefinedFunction(functionName);
-        for (int i = 0; i < argsCnt; i++) {
-            res = res.enterPredefinedFunctionArgument(i);
-            res = fromDescriptor(
-                    Proto.ensureNonNull(
-                            function.getArguments(i),
-                            "PREDEFINED FUNC Arg cannot be null"),
-                    res);
-            res = res.leavePredefinedFunctionArgument(i);
-        }
-
-        return res.leavePredefinedFunction(functionName);
+        return fromDescriptor(
+                MishmashSetDescriptor.newBuilder()
+                    .setPredefinedFunction(function)
+                    .build(),
+                builder);
     }
 
     /**
@@ -366,29 +432,11 @@ public final class ProtoSetup {
             fromTransformation(final Transformation transform,
                     final MishmashBuilder<MT> builder)
                             throws MishmashException {
-        MishmashBuilder<MT> res = builder;
-        Axis axes = Proto.ensureNonNull(
-                transform.getAxis(),
-                "TRANSFORM AXES cannot be null");
-        MishmashSetDescriptorList left = Proto.ensureNonNull(
-                axes.getLeft(),
-                "TRANSFORM LEFT AXIS cannot be null");
-        MishmashSetDescriptorList right = Proto.ensureNonNull(
-                axes.getRight(),
-                "TRANSFORM RIGHT AXIS cannot be null");
-
-        res = res
-                .enterIntersection()
-                .enterTransformationLeft();
-        res = fromDescriptors(left, res);
-
-        res = res
-                .leaveTransformationLeft()
-                .enterTransformationRight();
-        res = fromDescriptors(right, res);
-
-        return res.leaveTransformationRight()
-                .leaveTransformation();
+        return fromDescriptor(
+                MishmashSetDescriptor.newBuilder()
+                    .setTransformation(transform)
+                    .build(),
+                builder);
     }
 
     /**
@@ -438,66 +486,18 @@ public final class ProtoSetup {
             fromDescriptor(final MishmashSetDescriptor descriptor,
                     final MishmashBuilder<MT> builder)
                             throws MishmashException {
-        MishmashSetDescriptor.AltCase altCase = Proto.ensureAltCase(
-                descriptor.getAltCase(),
-                MishmashSetDescriptor.AltCase.ALT_NOT_SET,
-                "SET DESCRIPTOR Type not set");
-
-        switch (altCase) {
-        case INTERSECTION:
-            return fromIntersection(
-                    Proto.ensureNonNull(
-                            descriptor.getIntersection(),
-                            "INTERSECTION cannot be null"),
-                    builder);
-        case LAMBDA_FUNCTION:
-            return fromLambda(
-                    Proto.ensureNonNull(
-                            descriptor.getLambdaFunction(),
-                            "LAMBDA FUNCTION cannot be null"),
-                    builder);
-        case LITERAL:
-            return fromLiteral(
-                    Proto.ensureNonNull(
-                            descriptor.getLiteral(),
-                            "LITERAL cannot be null"),
-                    builder);
-        case PREDEFINED_FUNCTION:
-            return fromPredefinedFunction(
-                    Proto.ensureNonNull(
-                            descriptor.getPredefinedFunction(),
-                            "SET PREDEFINED FUNC cannot be null"),
-                    builder);
-        case PREDEFINED_SET:
-            return fromPredefinedSet(
-                    Proto.ensureNonNull(
-                            descriptor.getPredefinedSet(),
-                            "PREDEFINED SET cannot be null"),
-                    builder);
-        case TRANSFORMATION:
-            return fromTransformation(
-                    Proto.ensureNonNull(
-                            descriptor.getTransformation(),
-                            "TRANSFORM cannot be null"),
-                    builder);
-        case UNION:
-            return fromUnion(
-                    Proto.ensureNonNull(
-                            descriptor.getUnion(),
-                            "UNION cannot be null"),
-                    builder);
-        default:
-            Proto.unexpectedAltCase(altCase);
-            break;
-        }
+        BuildingVisitor<MT> visitor = new BuildingVisitor<>(builder);
+        DescriptorWalker.walk(descriptor, visitor);
 
-        // should not be reached
-        throw new MishmashInternalErrorException();
+        return visitor.getBuilder();
     }
 
     /**
      * Build from a list of protocol descriptors.
      *
+     * The descriptors are walked by a {@link DescriptorWalker}, so deeply
+     * nested descriptors do not exhaust the call stack.
+     *
      * @param <MT> the Class of objects built by the {@link MishmashBuilder}
      * @param descriptors - the list of descriptors
      * @param builder - the builder
@@ -508,17 +508,10 @@ public final class ProtoSetup {
             fromDescriptors(final MishmashSetDescriptorList descriptors,
                     final MishmashBuilder<MT> builder)
                             throws MishmashException {
-        MishmashBuilder<MT> res = builder;
-
-        for (int i = 0; i < descriptors.getEntriesCount(); i++) {
-            res = fromDescriptor(
-                    Proto.ensureNonNull(
-                            descriptors.getEntries(i),
-                            "SET DESCRIPTOR cannot be null"),
-                    res);
-        }
+        BuildingVisitor<MT> visitor = new BuildingVisitor<>(builder);
+        DescriptorWalker.walk(descriptors, visitor);
 
-        return res;
+        return visitor.getBuilder();
     }
 
     /**
@@ -551,4 +544,217 @@ public final class ProtoSetup {
                         "SETUP has no TARGET"),
                 res);
     }
+
+    /**
+     * A {@link DescriptorVisitor} that builds the visited descriptors
+     * into a {@link MishmashBuilder}.
+     *
+     * Empty unions and intersections are skipped.
+     *
+     * @param <MT> the Class of objects built by the {@link MishmashBuilder}
+     */
+    private static final class BuildingVisitor<MT>
+            implements DescriptorVisitor<MishmashException> {
+
+        /**
+         * The current builder.
+         */
+        private MishmashBuilder<MT> res;
+
+        /**
+         * Create a new BuildingVisitor.
+         *
+         * @param builder - the builder
+         */
+        private BuildingVisitor(final MishmashBuilder<MT> builder) {
+            this.res = builder;
+        }
+
+        /**
+         * Get the current builder.
+         *
+         * @return - the builder
+         */
+        private MishmashBuilder<MT> getBuilder() {
+            return res;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterUnion(final Union union) throws MishmashException {
+            if (union.getSets().getEntriesCount() > 0) {
+                res = res.enterUnion();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveUnion(final Union union) throws MishmashException {
+            if (union.getSets().getEntriesCount() > 0) {
+                res = res.leaveUnion();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterIntersection(final Intersection intersection)
+                throws MishmashException {
+            if (intersection.getSets().getEntriesCount() > 0) {
+                res = res.enterIntersection();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveIntersection(final Intersection intersection)
+                throws MishmashException {
+            if (intersection.getSets().getEntriesCount() > 0) {
+                res = res.leaveIntersection();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterTransformationLeft(
+                final Transformation transformation)
+                        throws MishmashException {
+            res = res
+                    .enterIntersection()
+                    .enterTransformationLeft();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveTransformationLeft(
+                final Transformation transformation)
+                        throws MishmashException {
+            res = res.leaveTransformationLeft();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterTransformationRight(
+                final Transformation transformation)
+                        throws MishmashException {
+            res = res.enterTransformationRight();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveTransformationRight(
+                final Transformation transformation)
+                        throws MishmashException {
+            res = res.leaveTransformationRight()
+                    .leaveTransformation();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterPredefinedFunction(
+                final PredefinedFunction function)
+                        throws MishmashException {
+            res = res.enterPredefinedFunction(
+                    Proto.ensureNonEmpty(
+                            function.getName(),
+                            "PREDEFINED FUNC Name cannot be empty"));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterPredefinedFunctionArgument(
+                final PredefinedFunction function,
+                final int index)
+                        throws MishmashException {
+            res = res.enterPredefinedFunctionArgument(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leavePredefinedFunctionArgument(
+                final PredefinedFunction function,
+                final int index)
+                        throws MishmashException {
+            res = res.leavePredefinedFunctionArgument(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leavePredefinedFunction(
+                final PredefinedFunction function)
+                        throws MishmashException {
+            res = res.leavePredefinedFunction(function.getName());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLiteral(final Literal literal)
+                throws MishmashException {
+            res = fromLiteral(literal, res);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLiteralSet(final LiteralSet set)
+                throws MishmashException {
+            res = fromLiteralSet(set, res);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitPredefinedSet(final PredefinedSet set)
+                throws MishmashException {
+            res = fromPredefinedSet(set, res);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLambdaFunction(final LambdaFunction function)
+                throws MishmashException {
+            res = fromLambda(function, res);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitUnknown(final MishmashSetDescriptor descriptor)
+                throws MishmashException {
+            Proto.unexpectedAltCase(Proto.ensureAltCase(
+                    descriptor.getAltCase(),
+                    MishmashSetDescriptor.AltCase.ALT_NOT_SET,
+                    "SET DESCRIPTOR Type not set"));
+        }
+    }
 }
@@ -0,0 +1,287 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Partitioner;
+import io.mishmash.common.data.Partitioners;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidArgumentException;
+import io.mishmash.common.rpc.MishmashRpc.SetupAck;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+
+/**
+ * Client options that ask a server to stream only one partition of a
+ * setup's results, so that a large read can be split over several
+ * streams.
+ *
+ * A partition is set by:
+ * <ul>
+ * <li>{@value #COUNT} - the number of partitions</li>
+ * <li>{@value #INDEX} - the partition to read, from 0</li>
+ * <li>{@value #PREFIX} - the number of keys of each data point that
+ * decide its partition</li>
+ * <li>{@value #SPLITS} - optional, the split points of a partitioning
+ * by range, comma-separated, each a YieldData hierarchy serialized and
+ * encoded in URL-safe base64. Without it, data points are partitioned
+ * by {@link Partitioners#hash(int)}.</li>
+ * </ul>
+ *
+ * A server that streams only the partition asked for echoes it in the
+ * SetupAck, see {@link #confirm(Map, SetupAck.Builder)}. Clients check
+ * it with {@link #isConfirmed(Map, SetupAck)}: a server that ignores
+ * the options would stream all results to every partition.
+ */
+public final class ReadPartitions {
+
+    /**
+     * The client option with the number of partitions.
+     */
+    public static final String COUNT = "mishmash.partition.count";
+
+    /**
+     * The client option with the partition to read.
+     */
+    public static final String INDEX = "mishmash.partition.index";
+
+    /**
+     * The client option with the number of keys partitioned on.
+     */
+    public static final String PREFIX = "mishmash.partition.prefix";
+
+    /**
+     * The client option with the split points of a range partitioning.
+     */
+    public static final String SPLITS = "mishmash.partition.splits";
+
+    /**
+     * Hide the constructor.
+     */
+    private ReadPartitions() {
+        // Utility class
+    }
+
+    /**
+     * Build the client options of a partition by hash.
+     *
+     * @param count - the number of partitions
+     * @param index - the partition to read
+     * @param prefixLength - the number of keys partitioned on
+     * @return - the client options
+     */
+    public static Map<String, String> hashOptions(
+            final int count,
+            final int index,
+            final int prefixLength) {
+        if (count < 1 || index < 0 || index >= count || prefixLength < 1) {
+            throw new IllegalArgumentException("Invalid partition");
+        }
+
+        Map<String, String> res = new HashMap<>();
+        res.put(COUNT, Integer.toString(count));
+        res.put(INDEX, Integer.toString(index));
+        res.put(PREFIX, Integer.toString(prefixLength));
+
+        return res;
+    }
+
+    /**
+     * Build the client options of a partition by range. There is one
+     * partition more than split points.
+     *
+     * @param index - the partition to read
+     * @param prefixLength - the number of keys partitioned on
+     * @param splitPoints - the sorted split points
+     * @return - the client options
+     */
+    public static Map<String, String> rangeOptions(
+            final int index,
+            final int prefixLength,
+            final List<? extends Iterable<Key>> splitPoints) {
+        Map<String, String> res = hashOptions(splitPoints.size() + 1,
+                index, prefixLength);
+        StringBuilder splits = new StringBuilder();
+
+        for (Iterable<Key> split : splitPoints) {
+            if (!splits.isEmpty()) {
+                splits.append(',');
+            }
+
+            splits.append(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(Members.toMembers(split)
+                            .build()
+                            .toByteArray()));
+        }
+
+        res.put(SPLITS, splits.toString());
+
+        return res;
+    }
+
+    /**
+     * Check if client options ask for a partition.
+     *
+     * @param options - the client options
+     * @return - true if a partition is set
+     */
+    public static boolean isPartitioned(final Map<String, String> options) {
+        return options.containsKey(COUNT);
+    }
+
+    /**
+     * Get the {@link Partitioner} of a partition set in client options.
+     *
+     * @param options - the client options
+     * @return - the partitioner or null if no partition is set
+     * @throws MishmashInvalidArgumentException - if the options are
+     *          not valid
+     */
+    public static Partitioner partitioner(final Map<String, String> options)
+            throws MishmashInvalidArgumentException {
+        if (!isPartitioned(options)) {
+            return null;
+        }
+
+        int prefixLength = parse(options, PREFIX);
+        String splits = options.get(SPLITS);
+        if (splits == null) {
+            return Partitioners.hash(prefixLength);
+        }
+
+        List<List<Key>> points = new ArrayList<>();
+        for (String split : splits.split(",")) {
+            if (split.isEmpty()) {
+                continue;
+            }
+
+            try {
+                points.add(ImmutableList.copyOf(Members.fromMembers(
+                        YieldData.parseFrom(
+                                Base64.getUrlDecoder().decode(split)))));
+            } catch (InvalidProtocolBufferException
+                    | IllegalArgumentException e) {
+                throw new MishmashInvalidArgumentException();
+            }
+        }
+
+        if (points.size() + 1 != parse(options, COUNT)) {
+            throw new MishmashInvalidArgumentException();
+        }
+
+        return Partitioners.range(prefixLength, points);
+    }
+
+    /**
+     * Build a filter that keeps the data points of the partition set in
+     * client options.
+     *
+     * @param options - the client options
+     * @return - the filter, that keeps all data points if no partition
+     *          is set
+     * @throws MishmashInvalidArgumentException - if the options are
+     *          not valid
+     */
+    public static Predicate<BaseDataPoint<Key, Value>> filter(
+            final Map<String, String> options)
+                    throws MishmashInvalidArgumentException {
+        Partitioner partitioner = partitioner(options);
+        if (partitioner == null) {
+            return dp -> true;
+        }
+
+        int count = parse(options, COUNT);
+        int index = parse(options, INDEX);
+        if (count < 1 || index < 0 || index >= count) {
+            throw new MishmashInvalidArgumentException();
+        }
+
+        return dp -> partitioner.partition(dp.keys(), count) == index;
+    }
+
+    /**
+     * Echo the partition set in client options in a SetupAck, once the
+     * server is set to stream only that partition.
+     *
+     * @param options - the client options
+     * @param ack - the SetupAck
+     * @return - the SetupAck
+     * @throws MishmashInvalidArgumentException - if the options are
+     *          not valid
+     */
+    public static SetupAck.Builder confirm(
+            final Map<String, String> options,
+            final SetupAck.Builder ack)
+                    throws MishmashInvalidArgumentException {
+        if (isPartitioned(options)) {
+            ack.setPartitionCount(parse(options, COUNT))
+                .setPartitionIndex(parse(options, INDEX));
+        }
+
+        return ack;
+    }
+
+    /**
+     * Check if a SetupAck confirms the partition set in client options.
+     *
+     * @param options - the client options
+     * @param ack - the SetupAck
+     * @return - true if no partition is set or the server echoed it
+     */
+    public static boolean isConfirmed(
+            final Map<String, String> options,
+            final SetupAck ack) {
+        if (!isPartitioned(options)) {
+            return true;
+        }
+
+        try {
+            return ack.getPartitionCount() == parse(options, COUNT)
+                    && ack.getPartitionIndex() == parse(options, INDEX);
+        } catch (MishmashInvalidArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parse a numeric client option.
+     *
+     * @param options - the client options
+     * @param name - the option
+     * @return - the value
+     * @throws MishmashInvalidArgumentException - if missing or not
+     *          a number
+     */
+    private static int parse(final Map<String, String> options,
+            final String name) throws MishmashInvalidArgumentException {
+        try {
+            return Integer.parseInt(options.get(name));
+        } catch (NumberFormatException e) {
+            throw new MishmashInvalidArgumentException();
+        }
+    }
+}
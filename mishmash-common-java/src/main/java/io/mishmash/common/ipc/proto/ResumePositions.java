@@ -0,0 +1,165 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.ResumePosition;
+import io.mishmash.common.rpc.MishmashRpc.SetupAck;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+import io.mishmash.common.rpc.MishmashRpc.YieldMember;
+
+/**
+ * Helper methods for the GRPC ResumePosition of a stream that is
+ * opened again after it broke.
+ *
+ * A server that skips the results already received echoes the position
+ * in the SetupAck, see {@link #confirm(MishmashSetup, SetupAck.Builder)}.
+ * Clients check it with {@link #isConfirmed(MishmashSetup, SetupAck)}:
+ * a server that ignores the position would stream all results again.
+ */
+public final class ResumePositions {
+
+    /**
+     * Hide the constructor.
+     */
+    private ResumePositions() {
+        // Utility class
+    }
+
+    /**
+     * Build a ResumePosition.
+     *
+     * @param received - the number of yields taken so far
+     * @param last - the last yield taken, to resume after its hierarchy,
+     *          or null to resume by count only
+     * @param receivedAtLast - the number of yields taken with a
+     *          hierarchy equal to the last one, the last one included
+     * @return - the Builder
+     */
+    public static ResumePosition.Builder position(
+            final long received,
+            final YieldData last,
+            final long receivedAtLast) {
+        ResumePosition.Builder res = ResumePosition.newBuilder()
+                .setReceived(received);
+
+        if (last != null) {
+            res.addAllAfter(last.getHierarchyList())
+                .setReceivedAtLast(receivedAtLast);
+        }
+
+        return res;
+    }
+
+    /**
+     * Check if a setup resumes a stream.
+     *
+     * @param setup - the setup
+     * @return - true if a resume position is set
+     */
+    public static boolean isResume(final MishmashSetup setup) {
+        return setup.hasResume();
+    }
+
+    /**
+     * Echo the resume position of a setup in a SetupAck, once the server
+     * is set to skip the results already received.
+     *
+     * @param setup - the setup
+     * @param ack - the SetupAck
+     * @return - the SetupAck
+     */
+    public static SetupAck.Builder confirm(
+            final MishmashSetup setup,
+            final SetupAck.Builder ack) {
+        if (isResume(setup)) {
+            ack.setResume(setup.getResume());
+        }
+
+        return ack;
+    }
+
+    /**
+     * Check if a SetupAck confirms the resume position of a setup.
+     *
+     * @param setup - the setup
+     * @param ack - the SetupAck
+     * @return - true if the setup does not resume a stream or the server
+     *          echoed its position
+     */
+    public static boolean isConfirmed(
+            final MishmashSetup setup,
+            final SetupAck ack) {
+        return !isResume(setup)
+                || (ack.hasResume() && ack.getResume().equals(
+                        setup.getResume()));
+    }
+
+    /**
+     * Build a filter that drops the yields a client already received,
+     * to apply to the results of a resumed stream in their order.
+     *
+     * With a hierarchy set, yields before it are dropped, and of the
+     * yields equal to it as many as were received with it, since
+     * hierarchies compare without instance IDs. Otherwise the first
+     * received yields are dropped. The returned filter counts the
+     * yields it sees and is not thread-safe.
+     *
+     * @param setup - the setup
+     * @return - the filter, that keeps all yields if the setup does
+     *          not resume a stream
+     */
+    public static Predicate<YieldData> filter(final MishmashSetup setup) {
+        if (!isResume(setup)) {
+            return yield -> true;
+        }
+
+        ResumePosition position = setup.getResume();
+        List<YieldMember> after = position.getAfterList();
+
+        long[] skipped = {0};
+
+        if (!after.isEmpty()) {
+            return yield -> {
+                int cmp = Members.compare(yield.getHierarchyList(), after);
+
+                if (cmp == 0 && Long.compareUnsigned(skipped[0],
+                        position.getReceivedAtLast()) < 0) {
+                    skipped[0]++;
+
+                    return false;
+                }
+
+                return cmp >= 0;
+            };
+        }
+
+        return yield -> {
+            if (Long.compareUnsigned(skipped[0],
+                    position.getReceived()) < 0) {
+                skipped[0]++;
+
+                return false;
+            }
+
+            return true;
+        };
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import io.mishmash.common.rpc.MishmashRpc.ChannelClose;
+import io.mishmash.common.rpc.MishmashRpc.ChannelWindow;
+import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.SessionClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.SessionServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
+
+/**
+ * Helper methods to build Session GRPC messages.
+ *
+ */
+public final class SessionMessages {
+
+    /**
+     * The SessionMessages class should not be instantiated.
+     */
+    private SessionMessages() {
+        // Hide constructor
+    }
+
+    /**
+     * Return a SessionClientMessage Builder.
+     *
+     * @param channelId - the logical channel id
+     * @return Builder - the Builder
+     */
+    public static SessionClientMessage.Builder client(final int channelId) {
+        return SessionClientMessage.newBuilder()
+                .setChannelId(channelId);
+    }
+
+    /**
+     * Build a client message carrying a stream message.
+     *
+     * @param channelId - the logical channel id
+     * @param msg - the stream message
+     * @return Builder - the Builder
+     */
+    public static SessionClientMessage.Builder
+            clientStream(final int channelId,
+                    final StreamClientMessage msg) {
+        return client(channelId)
+                .setStream(msg);
+    }
+
+    /**
+     * Build a client message carrying a mutation message.
+     *
+     * @param channelId - the logical channel id
+     * @param msg - the mutation message
+     * @return Builder - the Builder
+     */
+    public static SessionClientMessage.Builder
+            clientMutation(final int channelId,
+                    final MutationClientMessage msg) {
+        return client(channelId)
+                .setMutation(msg);
+    }
+
+    /**
+     * Build a client ChannelWindow message.
+     *
+     * @param channelId - the logical channel id
+     * @param credits - the number of additional messages granted
+     * @return Builder - the Builder
+     */
+    public static SessionClientMessage.Builder
+            clientWindow(final int channelId, final int credits) {
+        return client(channelId)
+                .setWindow(ChannelWindow.newBuilder()
+                        .setCredits(credits));
+    }
+
+    /**
+     * Build a client ChannelClose message.
+     *
+     * @param channelId - the logical channel id
+     * @param failed - if the channel failed
+     * @return Builder - the Builder
+     */
+    public static SessionClientMessage.Builder
+            clientClose(final int channelId, final boolean failed) {
+        return client(channelId)
+                .setClose(ChannelClose.newBuilder()
+                        .setFailed(failed));
+    }
+
+    /**
+     * Return a SessionServerMessage Builder.
+     *
+     * @param channelId - the logical channel id
+     * @return Builder - the Builder
+     */
+    public static SessionServerMessage.Builder server(final int channelId) {
+        return SessionServerMessage.newBuilder()
+                .setChannelId(channelId);
+    }
+
+    /**
+     * Build a server message carrying a stream message.
+     *
+     * @param channelId - the logical channel id
+     * @param msg - the stream message
+     * @return Builder - the Builder
+     */
+    public static SessionServerMessage.Builder
+            serverStream(final int channelId,
+                    final StreamServerMessage msg) {
+        return server(channelId)
+                .setStream(msg);
+    }
+
+    /**
+     * Build a server message carrying a mutation message.
+     *
+     * @param channelId - the logical channel id
+     * @param msg - the mutation message
+     * @return Builder - the Builder
+     */
+    public static SessionServerMessage.Builder
+            serverMutation(final int channelId,
+                    final MutationServerMessage msg) {
+        return server(channelId)
+                .setMutation(msg);
+    }
+
+    /**
+     * Build a server ChannelWindow message.
+     *
+     * @param channelId - the logical channel id
+     * @param credits - the number of additional messages granted
+     * @return Builder - the Builder
+     */
+    public static SessionServerMessage.Builder
+            serverWindow(final int channelId, final int credits) {
+        return server(channelId)
+                .setWindow(ChannelWindow.newBuilder()
+                        .setCredits(credits));
+    }
+
+    /**
+     * Build a server ChannelClose message.
+     *
+     * @param channelId - the logical channel id
+     * @param failed - if the channel failed
+     * @return Builder - the Builder
+     */
+    public static SessionServerMessage.Builder
+            serverClose(final int channelId, final boolean failed) {
+        return server(channelId)
+                .setClose(ChannelClose.newBuilder()
+                        .setFailed(failed));
+    }
+}
@@ -0,0 +1,713 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+
+import io.mishmash.common.rpc.MishmashRpc.Intersection;
+import io.mishmash.common.rpc.MishmashRpc.LambdaFunction;
+import io.mishmash.common.rpc.MishmashRpc.Literal;
+import io.mishmash.common.rpc.MishmashRpc.LiteralSet;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.PredefinedFunction;
+import io.mishmash.common.rpc.MishmashRpc.PredefinedSet;
+import io.mishmash.common.rpc.MishmashRpc.Transformation;
+import io.mishmash.common.rpc.MishmashRpc.Union;
+
+/**
+ * Brings set descriptors to a canonical form and computes their
+ * structural hashes, so that equivalent descriptors can be recognized.
+ *
+ * In the canonical form:
+ * <ul>
+ * <li>unions of unions and intersections of intersections are
+ * flattened</li>
+ * <li>operands of unions and intersections are sorted and duplicates
+ * are removed</li>
+ * <li>unions and intersections of a single operand are replaced by the
+ * operand</li>
+ * <li>packed literal sets are replaced by their literals</li>
+ * </ul>
+ * The order of all other descriptor lists is kept. Operands are not
+ * reordered or removed when one of them is a transformation, a function
+ * or a lambda.
+ *
+ * Structural hashes are SHA-256 digests of the canonical form, so that
+ * a client cannot craft a setup that collides with another client's
+ * setup and have its plan or results reused.
+ */
+public final class SetupCanonicalizer {
+
+    /**
+     * The number of bytes in a structural hash.
+     */
+    public static final int HASH_BYTES = 32;
+
+    /**
+     * Instances of SetupCanonicalizer are not needed.
+     */
+    private SetupCanonicalizer() {
+        // Hide the constructor
+    }
+
+    /**
+     * Get the canonical form of a setup. Only the target set is changed.
+     *
+     * @param setup - the setup
+     * @return - the canonical setup
+     */
+    public static MishmashSetup canonicalize(final MishmashSetup setup) {
+        return setup.toBuilder()
+                .setTargetSet(canonicalize(setup.getTargetSet()))
+                .build();
+    }
+
+    /**
+     * Get the canonical form of a descriptor list, keeping the order of
+     * its entries.
+     *
+     * @param list - the list
+     * @return - the canonical list
+     */
+    public static MishmashSetDescriptorList canonicalize(
+            final MishmashSetDescriptorList list) {
+        CanonicalVisitor visitor = new CanonicalVisitor();
+        DescriptorWalker.walk(list, visitor);
+
+        return MishmashSetDescriptorList.newBuilder()
+                .addAllEntries(visitor.getResult())
+                .build();
+    }
+
+    /**
+     * Get the canonical form of a descriptor.
+     *
+     * @param descriptor - the descriptor
+     * @return - the canonical descriptor
+     */
+    public static MishmashSetDescriptor canonicalize(
+            final MishmashSetDescriptor descriptor) {
+        CanonicalVisitor visitor = new CanonicalVisitor();
+        DescriptorWalker.walk(descriptor, visitor);
+
+        return visitor.getResult().get(0);
+    }
+
+    /**
+     * Get the structural hash of the canonical form of a setup, covering
+     * its target set, mutation type and client options.
+     *
+     * @param setup - the setup
+     * @return - the hash
+     */
+    public static ByteString hash(final MishmashSetup setup) {
+        Hasher h = Hashing.sha256().newHasher();
+
+        h.putInt(setup.getMutationTypeValue());
+        Map<String, String> opts = new TreeMap<>(setup.getClientOptionsMap());
+        h.putInt(opts.size());
+        for (Map.Entry<String, String> e : opts.entrySet()) {
+            putString(h, e.getKey());
+            putString(h, e.getValue());
+        }
+
+        putList(h, canonicalize(setup.getTargetSet()));
+
+        return ByteString.copyFrom(h.hash().asBytes());
+    }
+
+    /**
+     * Get the structural hash of the canonical form of a
+     * descriptor list.
+     *
+     * @param list - the list
+     * @return - the hash
+     */
+    public static ByteString hash(final MishmashSetDescriptorList list) {
+        Hasher h = Hashing.sha256().newHasher();
+        putList(h, canonicalize(list));
+
+        return ByteString.copyFrom(h.hash().asBytes());
+    }
+
+    /**
+     * Serialize a message deterministically.
+     *
+     * @param message - the message
+     * @return - the bytes
+     */
+    public static ByteString serialize(final MessageLite message) {
+        ByteString.Output out = ByteString.newOutput(
+                message.getSerializedSize());
+        CodedOutputStream cos = CodedOutputStream.newInstance(out);
+        cos.useDeterministicSerialization();
+
+        try {
+            message.writeTo(cos);
+            cos.flush();
+        } catch (IOException e) {
+            // not expected when writing to memory
+            throw new UncheckedIOException(e);
+        }
+
+        return out.toByteString();
+    }
+
+    /**
+     * Get the operands of a union or an intersection.
+     *
+     * @param descriptor - the union or intersection
+     * @return - the operands
+     */
+    private static MishmashSetDescriptorList operandsOf(
+            final MishmashSetDescriptor descriptor) {
+        return descriptor.hasUnion()
+                ? descriptor.getUnion().getSets()
+                : descriptor.getIntersection().getSets();
+    }
+
+    /**
+     * Add a descriptor list to a hash.
+     *
+     * @param h - the hasher
+     * @param list - the canonical list
+     */
+    private static void putList(final Hasher h,
+            final MishmashSetDescriptorList list) {
+        h.putInt(list.getEntriesCount());
+        DescriptorWalker.walk(list, new HashingVisitor(h));
+    }
+
+    /**
+     * Add a length-prefixed string to a hash.
+     *
+     * @param h - the hasher
+     * @param s - the string
+     */
+    private static void putString(final Hasher h, final String s) {
+        putBytes(h, ByteString.copyFrom(s, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add length-prefixed bytes to a hash.
+     *
+     * @param h - the hasher
+     * @param bytes - the bytes
+     */
+    private static void putBytes(final Hasher h, final ByteString bytes) {
+        h.putInt(bytes.size());
+        h.putBytes(bytes.asReadOnlyByteBuffer());
+    }
+
+    /**
+     * The canonical operands of a descriptor being canonicalized.
+     */
+    private static final class Operands {
+
+        /**
+         * The canonical operands.
+         */
+        private final List<MishmashSetDescriptor> ops = new ArrayList<>();
+
+        /**
+         * If all operands may be reordered or removed when they are
+         * operands of a union or intersection.
+         */
+        private boolean isOrderFree = true;
+
+        /**
+         * Add an operand.
+         *
+         * @param descriptor - the canonical operand
+         * @param orderFree - if the operand may be reordered or removed
+         */
+        private void add(final MishmashSetDescriptor descriptor,
+                final boolean orderFree) {
+            ops.add(descriptor);
+            isOrderFree &= orderFree;
+        }
+    }
+
+    /**
+     * A {@link DescriptorVisitor} that builds the canonical form of the
+     * visited descriptors bottom-up.
+     */
+    private static final class CanonicalVisitor
+            implements DescriptorVisitor<RuntimeException> {
+
+        /**
+         * The operands of the descriptors entered and not yet left,
+         * the top-level operands at the bottom.
+         */
+        private final Deque<Operands> stack = new ArrayDeque<>();
+
+        /**
+         * Create a new CanonicalVisitor.
+         */
+        private CanonicalVisitor() {
+            stack.push(new Operands());
+        }
+
+        /**
+         * Get the canonical top-level descriptors.
+         *
+         * @return - the descriptors
+         */
+        private List<MishmashSetDescriptor> getResult() {
+            return stack.getLast().ops;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterUnion(final Union union) {
+            stack.push(new Operands());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveUnion(final Union union) {
+            operands(MishmashSetDescriptor.AltCase.UNION, stack.pop());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterIntersection(final Intersection intersection) {
+            stack.push(new Operands());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveIntersection(final Intersection intersection) {
+            operands(MishmashSetDescriptor.AltCase.INTERSECTION, stack.pop());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterTransformationLeft(
+                final Transformation transformation) {
+            stack.push(new Operands());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveTransformationLeft(
+                final Transformation transformation) {
+            // kept on the stack until the right axis is done
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterTransformationRight(
+                final Transformation transformation) {
+            stack.push(new Operands());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveTransformationRight(
+                final Transformation transformation) {
+            Operands right = stack.pop();
+            Operands left = stack.pop();
+
+            stack.peek().add(MishmashSetDescriptor.newBuilder()
+                        .setTransformation(Transformation.newBuilder()
+                                .setAxis(Transformation.Axis.newBuilder()
+                                        .setLeft(list(left))
+                                        .setRight(list(right))))
+                        .build(),
+                    false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterPredefinedFunction(
+                final PredefinedFunction function) {
+            stack.push(new Operands());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterPredefinedFunctionArgument(
+                final PredefinedFunction function,
+                final int index) {
+            // arguments are collected in order
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leavePredefinedFunctionArgument(
+                final PredefinedFunction function,
+                final int index) {
+            // arguments are collected in order
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leavePredefinedFunction(
+                final PredefinedFunction function) {
+            Operands args = stack.pop();
+
+            stack.peek().add(MishmashSetDescriptor.newBuilder()
+                        .setPredefinedFunction(function.toBuilder()
+                                .clearArguments()
+                                .addAllArguments(args.ops))
+                        .build(),
+                    false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLiteral(final Literal literal) {
+            stack.peek().add(MishmashSetDescriptor.newBuilder()
+                        .setLiteral(literal)
+                        .build(),
+                    true);
+        }
+
+        /**
+         * Literal sets are unpacked, so that packed and unpacked
+         * literals have the same canonical form.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLiteralSet(final LiteralSet set) {
+            for (Literal literal : LiteralSets.unpack(set)) {
+                visitLiteral(literal);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitPredefinedSet(final PredefinedSet set) {
+            stack.peek().add(MishmashSetDescriptor.newBuilder()
+                        .setPredefinedSet(set)
+                        .build(),
+                    true);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLambdaFunction(final LambdaFunction function) {
+            stack.peek().add(MishmashSetDescriptor.newBuilder()
+                        .setLambdaFunction(function)
+                        .build(),
+                    false);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitUnknown(final MishmashSetDescriptor descriptor) {
+            stack.peek().add(descriptor, false);
+        }
+
+        /**
+         * Build a descriptor list of operands.
+         *
+         * @param operands - the operands
+         * @return - the list
+         */
+        private static MishmashSetDescriptorList list(
+                final Operands operands) {
+            return MishmashSetDescriptorList.newBuilder()
+                    .addAllEntries(operands.ops)
+                    .build();
+        }
+
+        /**
+         * Add the canonical union or intersection of operands to the
+         * enclosing descriptor.
+         *
+         * @param kind - UNION or INTERSECTION
+         * @param operands - the canonical operands
+         */
+        private void operands(
+                final MishmashSetDescriptor.AltCase kind,
+                final Operands operands) {
+            List<MishmashSetDescriptor> ops = new ArrayList<>();
+
+            for (MishmashSetDescriptor c : operands.ops) {
+                if (c.getAltCase() == kind) {
+                    ops.addAll(operandsOf(c).getEntriesList());
+                } else {
+                    ops.add(c);
+                }
+            }
+
+            if (operands.isOrderFree) {
+                TreeMap<ByteString, MishmashSetDescriptor> sorted =
+                        new TreeMap<>(
+                            ByteString.unsignedLexicographicalComparator());
+                for (MishmashSetDescriptor c : ops) {
+                    sorted.put(serialize(c), c);
+                }
+
+                ops = new ArrayList<>(sorted.values());
+            }
+
+            if (ops.size() == 1) {
+                stack.peek().add(ops.get(0), operands.isOrderFree);
+                return;
+            }
+
+            MishmashSetDescriptorList list =
+                    MishmashSetDescriptorList.newBuilder()
+                        .addAllEntries(ops)
+                        .build();
+
+            stack.peek().add(kind == MishmashSetDescriptor.AltCase.UNION
+                        ? MishmashSetDescriptor.newBuilder()
+                            .setUnion(Union.newBuilder().setSets(list))
+                            .build()
+                        : MishmashSetDescriptor.newBuilder()
+                            .setIntersection(Intersection.newBuilder()
+                                    .setSets(list))
+                            .build(),
+                    operands.isOrderFree);
+        }
+    }
+
+    /**
+     * A {@link DescriptorVisitor} that adds the visited canonical
+     * descriptors to a hash.
+     */
+    private static final class HashingVisitor
+            implements DescriptorVisitor<RuntimeException> {
+
+        /**
+         * The hasher.
+         */
+        private final Hasher h;
+
+        /**
+         * Create a new HashingVisitor.
+         *
+         * @param hasher - the hasher
+         */
+        private HashingVisitor(final Hasher hasher) {
+            this.h = hasher;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterUnion(final Union union) {
+            h.putInt(MishmashSetDescriptor.AltCase.UNION.getNumber());
+            h.putInt(union.getSets().getEntriesCount());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveUnion(final Union union) {
+            // nothing to add
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterIntersection(final Intersection intersection) {
+            h.putInt(MishmashSetDescriptor.AltCase.INTERSECTION.getNumber());
+            h.putInt(intersection.getSets().getEntriesCount());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveIntersection(final Intersection intersection) {
+            // nothing to add
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterTransformationLeft(
+                final Transformation transformation) {
+            h.putInt(MishmashSetDescriptor.AltCase.TRANSFORMATION.getNumber());
+            h.putInt(transformation.getAxis().getLeft().getEntriesCount());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveTransformationLeft(
+                final Transformation transformation) {
+            // nothing to add
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterTransformationRight(
+                final Transformation transformation) {
+            h.putInt(transformation.getAxis().getRight().getEntriesCount());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leaveTransformationRight(
+                final Transformation transformation) {
+            // nothing to add
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterPredefinedFunction(
+                final PredefinedFunction function) {
+            h.putInt(MishmashSetDescriptor.AltCase.PREDEFINED_FUNCTION
+                    .getNumber());
+            putString(h, function.getName());
+            h.putInt(function.getArgumentsCount());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void enterPredefinedFunctionArgument(
+                final PredefinedFunction function,
+                final int index) {
+            // nothing to add
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leavePredefinedFunctionArgument(
+                final PredefinedFunction function,
+                final int index) {
+            // nothing to add
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void leavePredefinedFunction(
+                final PredefinedFunction function) {
+            // nothing to add
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLiteral(final Literal literal) {
+            h.putInt(MishmashSetDescriptor.AltCase.LITERAL.getNumber());
+            putBytes(h, serialize(literal));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLiteralSet(final LiteralSet set) {
+            // not found in canonical descriptors
+            visitUnknown(MishmashSetDescriptor.newBuilder()
+                    .setLiteralSet(set)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitPredefinedSet(final PredefinedSet set) {
+            h.putInt(MishmashSetDescriptor.AltCase.PREDEFINED_SET.getNumber());
+            h.putInt(set.getIdentValue());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitLambdaFunction(final LambdaFunction function) {
+            visitUnknown(MishmashSetDescriptor.newBuilder()
+                    .setLambdaFunction(function)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visitUnknown(final MishmashSetDescriptor descriptor) {
+            h.putInt(descriptor.getAltCase().getNumber());
+            putBytes(h, serialize(descriptor));
+        }
+    }
+}
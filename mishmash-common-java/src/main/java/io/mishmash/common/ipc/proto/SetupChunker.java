@@ -0,0 +1,214 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import io.mishmash.common.rpc.MishmashRpc.Intersection;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptor;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetDescriptorList;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
+import io.mishmash.common.rpc.MishmashRpc.Union;
+
+/**
+ * Splits the target set of a SETUP into chunks of limited size: the
+ * target set of a first SETUP message and the continuations that follow
+ * it. See {@link IncrementalSetup} for how they are put back together.
+ *
+ * Lists are split between entries. A union or an intersection that does
+ * not fit in a chunk on its own is sent empty, as the last entry of its
+ * chunk, and its operands follow in continuations one level deeper. Any
+ * other entry that does not fit is sent in a chunk of its own.
+ *
+ * Continuations are produced as they are iterated.
+ */
+public final class SetupChunker
+        implements Iterator<MishmashSetupContinuation.Builder> {
+
+    /**
+     * The default maximum serialized size of a chunk.
+     */
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * A list being split.
+     */
+    private static final class Frame {
+
+        /**
+         * The entries of the list.
+         */
+        private final List<MishmashSetDescriptor> entries;
+
+        /**
+         * The depth of the list.
+         */
+        private final int depth;
+
+        /**
+         * The index of the next entry to send.
+         */
+        private int next;
+
+        /**
+         * Create a new Frame.
+         *
+         * @param descriptors - the entries of the list
+         * @param listDepth - the depth of the list
+         */
+        private Frame(final List<MishmashSetDescriptor> descriptors,
+                final int listDepth) {
+            this.entries = descriptors;
+            this.depth = listDepth;
+        }
+    }
+
+    /**
+     * The maximum serialized size of a chunk.
+     */
+    private final int maxBytes;
+
+    /**
+     * The lists not fully sent, the deepest on top.
+     */
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    /**
+     * The first SETUP message.
+     */
+    private final MishmashSetup.Builder first;
+
+    /**
+     * Split a SETUP.
+     *
+     * @param setup - the SETUP
+     * @param maxChunkBytes - the maximum serialized size of a chunk
+     */
+    public SetupChunker(final MishmashSetup setup, final int maxChunkBytes) {
+        this.maxBytes = maxChunkBytes;
+
+        stack.push(new Frame(setup.getTargetSet().getEntriesList(), 0));
+        List<MishmashSetDescriptor> chunk = nextChunk();
+
+        this.first = setup.toBuilder()
+                .setTargetSet(MishmashSetDescriptorList.newBuilder()
+                        .addAllEntries(chunk))
+                .setHasContinuation(hasNext());
+    }
+
+    /**
+     * Get the first SETUP message, with the first chunk as its target set.
+     *
+     * @return - the SETUP message
+     */
+    public MishmashSetup.Builder getSetup() {
+        return first;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return !stack.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MishmashSetupContinuation.Builder next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        int depth = stack.peek().depth;
+        List<MishmashSetDescriptor> chunk = nextChunk();
+
+        return MishmashSetupContinuation.newBuilder()
+                .setDepth(depth)
+                .addAllEntries(chunk)
+                .setLast(!hasNext());
+    }
+
+    /**
+     * Take the next chunk of the deepest list not fully sent.
+     *
+     * @return - the entries of the chunk
+     */
+    private List<MishmashSetDescriptor> nextChunk() {
+        Frame f = stack.peek();
+        List<MishmashSetDescriptor> res = new ArrayList<>();
+        long size = 0;
+
+        while (f.next < f.entries.size()) {
+            MishmashSetDescriptor e = f.entries.get(f.next);
+            int entrySize = e.getSerializedSize();
+
+            if (size + entrySize <= maxBytes) {
+                res.add(e);
+                size += entrySize;
+                f.next++;
+                continue;
+            }
+
+            if (entrySize > maxBytes && (e.hasUnion() || e.hasIntersection())) {
+                MishmashSetDescriptor empty = e.hasUnion()
+                        ? MishmashSetDescriptor.newBuilder()
+                            .setUnion(Union.newBuilder())
+                            .build()
+                        : MishmashSetDescriptor.newBuilder()
+                            .setIntersection(Intersection.newBuilder())
+                            .build();
+
+                if (!res.isEmpty()
+                        && size + empty.getSerializedSize() > maxBytes) {
+                    break;
+                }
+
+                res.add(empty);
+                f.next++;
+                stack.push(new Frame(e.hasUnion()
+                            ? e.getUnion().getSets().getEntriesList()
+                            : e.getIntersection().getSets().getEntriesList(),
+                        f.depth + 1));
+                break;
+            }
+
+            if (res.isEmpty()) {
+                res.add(e);
+                f.next++;
+            }
+
+            break;
+        }
+
+        // drop the lists fully sent
+        while (!stack.isEmpty()
+                && stack.peek().next == stack.peek().entries.size()) {
+            stack.pop();
+        }
+
+        return res;
+    }
+}
@@ -20,6 +20,7 @@ import java.util.Arrays;
 
 import io.mishmash.common.rpc.MishmashRpc;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
 import io.mishmash.common.rpc.MishmashRpc.SetupAck;
 import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
@@ -64,6 +65,20 @@ public final class StreamMessages {
                 .setSetup(setup);
     }
 
+    /**
+     * Build a client SetupContinuation message.
+     *
+     * @param clientSeqNo - the client sequence number
+     * @param continuation - the next chunk of the target
+     * @return Builder - the Builder
+     */
+    public static StreamClientMessage.Builder
+            clientSetupContinuation(final int clientSeqNo,
+                    final MishmashSetupContinuation.Builder continuation) {
+        return client(clientSeqNo)
+                .setSetupContinuation(continuation);
+    }
+
     /**
      * Build a client YieldAck.
      *
@@ -74,7 +89,7 @@ public final class StreamMessages {
     public static StreamClientMessage.Builder
             clientYieldAck(final int clientSeqNo, final int serverSeqNo) {
         return client(clientSeqNo)
-                .setAck(Yields.yieldDataAck());
+                .setAck(Yields.yieldDataAck(serverSeqNo));
     }
 
     /**
@@ -169,6 +184,19 @@ public final class StreamMessages {
                 .setSetupAck(SetupAck.newBuilder());
     }
 
+    /**
+     * Build a SetupAck asking for the full setup, when the fingerprint
+     * received is not known.
+     *
+     * @param serverSeqNo - the server sequence number
+     * @return Builder - the Builder
+     */
+    public static StreamServerMessage.Builder
+            serverSendFullSetup(final int serverSeqNo) {
+        return server(serverSeqNo)
+                .setSetupAck(SetupAck.newBuilder().setSendFullSetup(true));
+    }
+
     /**
      * Build a Yield server message.
      *
@@ -40,16 +40,6 @@ import io.mishmash.common.rpc.MishmashRpc.YieldValue;
  */
 public final class Values {
 
-    /**
-     * Ensures unsinged int to long transformation.
-     */
-    private static final long U_INT_MASK = 0x0FFFFFFFFL;
-
-    /**
-     * Gets all bits except sign bit.
-     */
-    private static final long U_LONG_NO_SIGN = 0x7FFFFFFFFFFFFFFFL;
-
     /**
      * The Yields class should not be instantiated.
      */
@@ -460,7 +450,7 @@ public final class Values {
             return io.mishmash.common.data.Value.ofInt(value,
                     Members.fromId(id));
         } else {
-            return io.mishmash.common.data.Value.ofLong(value & U_INT_MASK,
+            return io.mishmash.common.data.Value.ofUnsignedInt(value,
                     Members.fromId(id));
         }
     }
@@ -480,12 +470,7 @@ public final class Values {
             return io.mishmash.common.data.Value.ofLong(value,
                 Members.fromId(id));
         } else {
-            BigInteger d = BigInteger.valueOf(value & U_LONG_NO_SIGN);
-            if (value < 0) {
-                d = d.flipBit(Long.SIZE - 1);
-            }
-
-            return io.mishmash.common.data.Value.ofBigDecimal(new BigDecimal(d),
+            return io.mishmash.common.data.Value.ofUnsignedLong(value,
                     Members.fromId(id));
         }
     }
@@ -515,7 +500,7 @@ public final class Values {
         case S_INT_32:
             return fromDecimal(value.getSInt32(), id, true);
         case S_INT_64:
-            return fromDecimal(value.getUInt64(), id, true);
+            return fromDecimal(value.getSInt64(), id, true);
         case U_INT_32:
             return fromDecimal(value.getUInt32(), id, false);
         case U_INT_64:
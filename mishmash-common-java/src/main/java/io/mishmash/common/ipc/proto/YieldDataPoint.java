@@ -0,0 +1,71 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+
+/**
+ * A {@link BaseDataPoint} backed by a GRPC YieldData.
+ *
+ * Keys and the value are converted each time they are accessed. Code
+ * that only compares hierarchies can use {@link #getYieldData()} with
+ * {@link Members#compare(java.util.List, java.util.List)} instead.
+ */
+public class YieldDataPoint implements BaseDataPoint<Key, Value> {
+
+    /**
+     * The GRPC YieldData.
+     */
+    private final YieldData yieldData;
+
+    /**
+     * Create a new YieldDataPoint.
+     *
+     * @param yield - the GRPC YieldData
+     */
+    public YieldDataPoint(final YieldData yield) {
+        this.yieldData = yield;
+    }
+
+    /**
+     * Get the GRPC YieldData.
+     *
+     * @return - the YieldData
+     */
+    public YieldData getYieldData() {
+        return yieldData;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Key> keys() {
+        return () -> Members.fromMembers(yieldData);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Value value() {
+        return Values.fromValue(yieldData.getValue());
+    }
+}
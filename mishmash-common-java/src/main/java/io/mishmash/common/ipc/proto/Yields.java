@@ -52,79 +52,80 @@ public final class Yields {
                 throws MishmashInvalidArgumentException {
         Value val = dataPoint.value();
 
-        if (val.isNull()) {
+        switch (val.getType()) {
+        case nullValue:
             return yieldNull(dataPoint.keys());
-        } else if (val.isBoolean()) {
+        case booleanValue:
             return yieldBoolean(dataPoint.keys(),
                     val.getBoolean(),
                     val.getInstance());
-        } else if (val.isDecimal()) {
-            if (val.isNaN()) {
-                return yieldDecimal(dataPoint.keys(),
-                        Double.NaN,
-                        val.getInstance());
-            } else if (val.isMinusInf()) {
-                return yieldDecimal(dataPoint.keys(),
-                        Double.NEGATIVE_INFINITY,
-                        val.getInstance());
-            } else if (val.isPlusInf()) {
-                return yieldDecimal(dataPoint.keys(),
-                        Double.POSITIVE_INFINITY,
-                        val.getInstance());
-            } else if (val.hasFraction()) {
-                if (val.fits64Bits()) {
-                    return yieldDecimal(dataPoint.keys(),
-                            val.getDouble(),
-                            val.getInstance());
-                } else {
-                    return yieldDecimal(dataPoint.keys(),
-                            val.getBigDecimal(),
-                            val.getInstance());
-                }
-            } else {
-                if (val.hasSign()) {
-                    if (val.fits32Bits()) {
-                        return yieldDecimalSigned(dataPoint.keys(),
-                                val.getInt(),
-                                val.getInstance());
-                    } else if (val.fits64Bits()) {
-                        return yieldDecimalSigned(dataPoint.keys(),
-                                val.getLong(),
-                                val.getInstance());
-                    } else {
-                        return yieldDecimal(dataPoint.keys(),
-                                val.getBigInteger(),
-                                val.getInstance());
-                    }
-                } else {
-                    if (val.fits32Bits()) {
-                        return yieldDecimalUnsigned(dataPoint.keys(),
-                                val.getInt(),
-                                val.getInstance());
-                    } else if (val.fits64Bits()) {
-                        return yieldDecimalUnsigned(dataPoint.keys(),
-                                val.getInt(),
-                                val.getInstance());
-                    } else {
-                        return yieldDecimal(dataPoint.keys(),
-                                val.getBigInteger(),
-                                val.getInstance());
-                    }
-                }
-            }
-        } else if (val.isString()) {
+        case decimalValue:
+            return yieldDecimal(dataPoint.keys(), val);
+        case stringValue:
             return yieldString(dataPoint.keys(),
                     val.getString(),
                     val.getInstance());
-        } else if (val.isDate()) {
+        case dateValue:
             return yieldDate(dataPoint.keys(),
                     val.getDate(),
                     val.getInstance());
-        } else if (val.isBuffer()) {
+        case bufferValue:
             return yieldBuffer(dataPoint.keys(),
                     val.getBufferBytes(),
                     val.getInstance());
-        } else {
+        default:
+            throw new MishmashInvalidArgumentException();
+        }
+    }
+
+    /**
+     * Build a YieldData for a decimal {@link Value}, using the
+     * wire encoding that matches its precise numeric subtype.
+     *
+     * @param members - the member hierarchy
+     * @param val - the decimal value
+     * @return Builder - a YieldData builder
+     * @throws MishmashInvalidArgumentException - on unknown decimal types
+     */
+    public static YieldData.Builder yieldDecimal(
+            final Iterable<Key> members,
+            final Value val)
+                throws MishmashInvalidArgumentException {
+        Value.DecimalType decimalType = val.getDecimalType();
+        if (decimalType == null) {
+            throw new MishmashInvalidArgumentException();
+        }
+
+        switch (decimalType) {
+        case int32:
+            return yieldDecimalSigned(members,
+                    val.getInt(),
+                    val.getInstance());
+        case uint32:
+            return yieldDecimalUnsigned(members,
+                    val.getInt(),
+                    val.getInstance());
+        case int64:
+            return yieldDecimalSigned(members,
+                    val.getLong(),
+                    val.getInstance());
+        case uint64:
+            return yieldDecimalUnsigned(members,
+                    val.getLong(),
+                    val.getInstance());
+        case float64:
+            return yieldDecimal(members,
+                    val.getDouble().doubleValue(),
+                    val.getInstance());
+        case bigInteger:
+            return yieldDecimal(members,
+                    val.getBigInteger(),
+                    val.getInstance());
+        case bigDecimal:
+            return yieldDecimal(members,
+                    val.getBigDecimal(),
+                    val.getInstance());
+        default:
             throw new MishmashInvalidArgumentException();
         }
     }
@@ -138,21 +139,7 @@ public final class Yields {
      */
     public static BaseDataPoint<Key, Value>
             fromYieldData(final YieldData yield) {
-        return new BaseDataPoint<Key, Value>() {
-
-            @Override
-            public Iterable<Key> keys() {
-                return () -> {
-                    return Members.fromMembers(yield);
-                };
-            }
-
-            @Override
-            public Value value() {
-                return Values.fromValue(yield.getValue());
-            }
-
-        };
+        return new YieldDataPoint(yield);
     }
 
     /**
@@ -423,7 +410,7 @@ public final class Yields {
             final String instanceId) {
         return YieldValue.newBuilder()
                 .setInstanceId(Members.id(instanceId))
-                .setValue(Values.decimalValueUnsigned(value));
+                .setValue(Values.decimalValueSigned(value));
     }
 
     /**
@@ -533,4 +520,14 @@ public final class Yields {
         return YieldDataAck.newBuilder();
     }
 
+    /**
+     * Build a YieldDataAck for a given YieldData.
+     *
+     * @param ackSeqNo - the sequence number of the YieldData
+     * @return Builder - a YieldAck builder
+     */
+    public static YieldDataAck.Builder yieldDataAck(final int ackSeqNo) {
+        return YieldDataAck.newBuilder().setAckSeqNo(ackSeqNo);
+    }
+
 }
@@ -0,0 +1,175 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.server;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.mishmash.common.ipc.GrpcStreamState;
+
+/**
+ * A {@link GrpcStreamState} that passes messages pipelined by the
+ * client before the SetupAck to the state that follows the SETUP.
+ *
+ * The pipelined messages are given to the wrapped state once it is
+ * entered, followed by messages received meanwhile, in order. From
+ * then on all calls are passed through.
+ *
+ * @param <I> - the GRPC input message type
+ * @param <O> - the GRPC output message type
+ */
+public class PipelinedState<I, O> implements GrpcStreamState<I, O> {
+
+    /**
+     * The wrapped state.
+     */
+    private final GrpcStreamState<I, O> delegate;
+
+    /**
+     * Guards the queued messages.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Messages not yet given to the wrapped state.
+     */
+    private final Queue<I> queued;
+
+    /**
+     * Set once all queued messages were given to the wrapped state.
+     */
+    private boolean isReplayed;
+
+    /**
+     * Create a PipelinedState.
+     *
+     * @param next - the state that follows the SETUP
+     * @param pipelined - the messages pipelined so far
+     */
+    public PipelinedState(final GrpcStreamState<I, O> next,
+            final Collection<I> pipelined) {
+        this.delegate = next;
+        this.queued = new ArrayDeque<>(pipelined);
+    }
+
+    /**
+     * Enter the wrapped state and give it the queued messages.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> enter() {
+        return delegate.enter()
+                .thenRun(this::replay);
+    }
+
+    /**
+     * Give the queued messages to the wrapped state, until none
+     * are left.
+     */
+    private void replay() {
+        I next;
+
+        while (true) {
+            lock.lock();
+            try {
+                next = queued.poll();
+                if (next == null) {
+                    isReplayed = true;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                delegate.validateInput(next);
+                delegate.input(next);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void validateInput(final I input) throws Exception {
+        delegate.validateInput(input);
+    }
+
+    /**
+     * Queue the message until the queued messages were given to the
+     * wrapped state.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void input(final I input) throws Exception {
+        lock.lock();
+        try {
+            if (!isReplayed) {
+                queued.add(input);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        delegate.input(input);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GrpcStreamState<I, O> leave() {
+        return delegate.leave();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<O> output(final AtomicInteger currentSeqNo) {
+        return delegate.output(currentSeqNo);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void error(final Throwable t) {
+        delegate.error(t);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+}
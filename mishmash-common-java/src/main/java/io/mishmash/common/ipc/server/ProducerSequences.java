@@ -0,0 +1,329 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.server;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Remembers the data points of mutation producers that were applied,
+ * so that data points a client sends again after an error are applied
+ * only once.
+ *
+ * Clients mark the data of a mutation with a MishmashSetup producer_id,
+ * kept over reconnects, and each data point with a YieldData
+ * producer_seq_no. A server that keeps the producer's sequence
+ * numbers echoes the producer_id in its SetupAck, clients do not trust
+ * it to skip repeated data points otherwise.
+ *
+ * The server claims each sequence number before it
+ * applies the data point, then commits the claim once the data point
+ * is applied or releases it if applying fails.
+ *
+ * A claim on a data point that is being applied already waits for the
+ * first one: it is refused if that commits, so that the repeat is only
+ * acknowledged once the data point is saved, and granted if that is
+ * released, so that the repeat is applied instead.
+ *
+ * Per producer, the highest sequence number below which all were
+ * committed is kept, along with the committed ones above it and the
+ * claims in progress. The least recently used producers are forgotten
+ * first, except while they have claims in progress.
+ *
+ * Instances are thread-safe.
+ */
+public class ProducerSequences {
+
+    /**
+     * The default maximum number of producers remembered.
+     */
+    public static final int DEFAULT_MAX_PRODUCERS = 4096;
+
+    /**
+     * The initial capacity of the producers map.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The load factor of the producers map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The maximum number of producers remembered.
+     */
+    private final int maxProducers;
+
+    /**
+     * Guards the producers.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The sequence numbers of each producer, in access order.
+     */
+    private final LinkedHashMap<ByteString, Claimed> producers;
+
+    /**
+     * Create an instance remembering up to
+     * {@link #DEFAULT_MAX_PRODUCERS} producers.
+     */
+    public ProducerSequences() {
+        this(DEFAULT_MAX_PRODUCERS);
+    }
+
+    /**
+     * Create an instance.
+     *
+     * @param maxSize - the maximum number of producers to remember
+     */
+    public ProducerSequences(final int maxSize) {
+        this.maxProducers = maxSize;
+        this.producers = new LinkedHashMap<>(
+                INITIAL_CAPACITY, LOAD_FACTOR, true) {
+
+            /**
+             * Serialization version.
+             */
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * Forget the least recently used producer when full.
+             *
+             * {@inheritDoc}
+             */
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<ByteString, Claimed> eldest) {
+                return size() > maxProducers
+                        && eldest.getValue().inProgress.isEmpty();
+            }
+        };
+    }
+
+    /**
+     * Claim a data point of a producer before applying it.
+     *
+     * A granted claim must be committed or released.
+     *
+     * @param producerId - the producer_id of the mutation, data points
+     *          without one are always granted
+     * @param seqNo - the producer_seq_no of the data point, 0 if not set
+     * @return - a future that completes with true if the data point
+     *          should be applied, false if it was applied already. If
+     *          it is being applied, the future completes once that
+     *          is committed or released.
+     */
+    public CompletableFuture<Boolean> claim(
+            final ByteString producerId,
+            final long seqNo) {
+        if (producerId.isEmpty() || seqNo == 0) {
+            return CompletableFuture.completedFuture(true);
+        }
+
+        lock.lock();
+        try {
+            return producers
+                    .computeIfAbsent(producerId, id -> new Claimed())
+                    .claim(seqNo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commit the claim on a data point that was applied. Waiting claims
+     * on it are refused.
+     *
+     * @param producerId - the producer_id of the mutation
+     * @param seqNo - the producer_seq_no of the data point
+     */
+    public void commit(final ByteString producerId, final long seqNo) {
+        if (producerId.isEmpty() || seqNo == 0) {
+            return;
+        }
+
+        Queue<CompletableFuture<Boolean>> waiting;
+
+        lock.lock();
+        try {
+            Claimed claimed = producers.get(producerId);
+            if (claimed == null) {
+                return;
+            }
+
+            waiting = claimed.commit(seqNo);
+        } finally {
+            lock.unlock();
+        }
+
+        for (CompletableFuture<Boolean> f : waiting) {
+            f.complete(false);
+        }
+    }
+
+    /**
+     * Release the claim on a data point that could not be applied, so
+     * that it is applied when sent again. The first waiting claim on it,
+     * if any, is granted instead.
+     *
+     * @param producerId - the producer_id of the mutation
+     * @param seqNo - the producer_seq_no of the data point
+     */
+    public void release(final ByteString producerId, final long seqNo) {
+        if (producerId.isEmpty() || seqNo == 0) {
+            return;
+        }
+
+        CompletableFuture<Boolean> next;
+
+        lock.lock();
+        try {
+            Claimed claimed = producers.get(producerId);
+            if (claimed == null) {
+                return;
+            }
+
+            next = claimed.release(seqNo);
+        } finally {
+            lock.unlock();
+        }
+
+        if (next != null) {
+            next.complete(true);
+        }
+    }
+
+    /**
+     * Forget a producer, for example when its client ended the mutation
+     * normally. A producer with claims in progress is kept until they
+     * are committed or released.
+     *
+     * @param producerId - the producer_id
+     */
+    public void forget(final ByteString producerId) {
+        lock.lock();
+        try {
+            Claimed claimed = producers.get(producerId);
+            if (claimed != null && claimed.inProgress.isEmpty()) {
+                producers.remove(producerId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The sequence numbers of a producer.
+     */
+    private static final class Claimed {
+
+        /**
+         * All sequence numbers up to this one are committed.
+         */
+        private long floor;
+
+        /**
+         * Committed sequence numbers above floor + 1.
+         */
+        private final TreeSet<Long> above = new TreeSet<>();
+
+        /**
+         * Claims in progress, with the claims waiting for each.
+         */
+        private final Map<Long, Queue<CompletableFuture<Boolean>>>
+            inProgress = new HashMap<>();
+
+        /**
+         * Claim a sequence number.
+         *
+         * @param seqNo - the sequence number
+         * @return - the claim
+         */
+        CompletableFuture<Boolean> claim(final long seqNo) {
+            if (Long.compareUnsigned(seqNo, floor) <= 0
+                    || above.contains(seqNo)) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            Queue<CompletableFuture<Boolean>> waiting =
+                    inProgress.get(seqNo);
+            if (waiting == null) {
+                inProgress.put(seqNo, new ArrayDeque<>());
+
+                return CompletableFuture.completedFuture(true);
+            }
+
+            CompletableFuture<Boolean> res = new CompletableFuture<>();
+            waiting.add(res);
+
+            return res;
+        }
+
+        /**
+         * Commit a sequence number.
+         *
+         * @param seqNo - the sequence number
+         * @return - the claims waiting for it
+         */
+        Queue<CompletableFuture<Boolean>> commit(final long seqNo) {
+            Queue<CompletableFuture<Boolean>> waiting =
+                    inProgress.remove(seqNo);
+            if (waiting == null) {
+                return new ArrayDeque<>();
+            }
+
+            if (Long.compareUnsigned(seqNo, floor) > 0) {
+                above.add(seqNo);
+                while (above.remove(floor + 1)) {
+                    floor++;
+                }
+            }
+
+            return waiting;
+        }
+
+        /**
+         * Release a sequence number.
+         *
+         * @param seqNo - the sequence number
+         * @return - the waiting claim that now holds it or null
+         */
+        CompletableFuture<Boolean> release(final long seqNo) {
+            Queue<CompletableFuture<Boolean>> waiting =
+                    inProgress.get(seqNo);
+            if (waiting == null) {
+                return null;
+            }
+
+            CompletableFuture<Boolean> next = waiting.poll();
+            if (next == null) {
+                inProgress.remove(seqNo);
+            }
+
+            return next;
+        }
+    }
+}
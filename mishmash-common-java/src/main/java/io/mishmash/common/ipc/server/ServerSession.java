@@ -0,0 +1,324 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.server;
+
+import java.util.function.Function;
+
+import io.grpc.stub.StreamObserver;
+import io.mishmash.common.exception.MishmashProtocolException;
+import io.mishmash.common.ipc.BaseSession;
+import io.mishmash.common.ipc.SessionChannel;
+import io.mishmash.common.ipc.proto.SessionMessages;
+import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.SessionClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.SessionServerMessage;
+import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
+import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
+
+/**
+ * The server end of a GRPC session.
+ *
+ * Channels opened by the client are served by the same handlers that
+ * serve the stream() and mutate() GRPC calls, so a service can
+ * implement session() as:
+ * <pre>
+ * return new ServerSession(responseObserver, this::stream, this::mutate);
+ * </pre>
+ */
+public class ServerSession
+        extends BaseSession<SessionClientMessage, SessionServerMessage> {
+
+    /**
+     * The default maximum number of channels open at the same time.
+     */
+    public static final int DEFAULT_MAX_CHANNELS = 1024;
+
+    /**
+     * Serves logical streams.
+     */
+    private final Function<
+            StreamObserver<StreamServerMessage>,
+            StreamObserver<StreamClientMessage>> streamHandler;
+
+    /**
+     * Serves logical mutations.
+     */
+    private final Function<
+            StreamObserver<MutationServerMessage>,
+            StreamObserver<MutationClientMessage>> mutateHandler;
+
+    /**
+     * The maximum number of channels open at the same time.
+     */
+    private final int maxChannels;
+
+    /**
+     * The highest channel id the client opened, or tried to open.
+     * Accessed only by the GRPC call's serialized onNext().
+     */
+    private long lastChannelId;
+
+    /**
+     * Create a session with at most {@link #DEFAULT_MAX_CHANNELS}
+     * channels open at the same time.
+     *
+     * @param responseObserver - the GRPC connection peer
+     * @param streams - serves logical streams
+     * @param mutations - serves logical mutations
+     */
+    public ServerSession(
+            final StreamObserver<SessionServerMessage> responseObserver,
+            final Function<
+                StreamObserver<StreamServerMessage>,
+                StreamObserver<StreamClientMessage>> streams,
+            final Function<
+                StreamObserver<MutationServerMessage>,
+                StreamObserver<MutationClientMessage>> mutations) {
+        this(responseObserver, streams, mutations, DEFAULT_MAX_CHANNELS);
+    }
+
+    /**
+     * Create a session.
+     *
+     * @param responseObserver - the GRPC connection peer
+     * @param streams - serves logical streams
+     * @param mutations - serves logical mutations
+     * @param maxOpenChannels - the maximum number of channels open at
+     *          the same time, further channels are failed
+     */
+    public ServerSession(
+            final StreamObserver<SessionServerMessage> responseObserver,
+            final Function<
+                StreamObserver<StreamServerMessage>,
+                StreamObserver<StreamClientMessage>> streams,
+            final Function<
+                StreamObserver<MutationServerMessage>,
+                StreamObserver<MutationClientMessage>> mutations,
+            final int maxOpenChannels) {
+        this.streamHandler = streams;
+        this.mutateHandler = mutations;
+        this.maxChannels = maxOpenChannels;
+
+        setRemotePeer(responseObserver);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onNext(final SessionClientMessage value) {
+        int channelId = value.getChannelId();
+        SessionChannel<?, ?> channel;
+
+        switch (value.getAltCase()) {
+        case STREAM:
+            channel = getChannel(channelId);
+            if (channel == null) {
+                if (!isNewChannel(channelId)) {
+                    break;
+                }
+
+                StreamChannel s = new StreamChannel(channelId);
+                if (open(s)) {
+                    s.setObserver(streamHandler.apply(s));
+                    s.deliver(value.getStream());
+                }
+            } else if (channel instanceof StreamChannel s) {
+                s.deliver(value.getStream());
+            } else {
+                channel.onError(new MishmashProtocolException());
+            }
+            break;
+        case MUTATION:
+            channel = getChannel(channelId);
+            if (channel == null) {
+                if (!isNewChannel(channelId)) {
+                    break;
+                }
+
+                MutationChannel m = new MutationChannel(channelId);
+                if (open(m)) {
+                    m.setObserver(mutateHandler.apply(m));
+                    m.deliver(value.getMutation());
+                }
+            } else if (channel instanceof MutationChannel m) {
+                m.deliver(value.getMutation());
+            } else {
+                channel.onError(new MishmashProtocolException());
+            }
+            break;
+        case WINDOW:
+            window(channelId, value.getWindow().getCredits());
+            break;
+        case CLOSE:
+            close(channelId, value.getClose().getFailed());
+            break;
+        default:
+            closeWithError(new MishmashProtocolException());
+            break;
+        }
+    }
+
+    /**
+     * Check if an unknown channel id opens a new channel. Clients use
+     * increasing ids, messages for lower ones belong to channels that
+     * were closed, failed or refused, and are dropped.
+     *
+     * @param channelId - the channel id
+     * @return - true if the id is higher than all ids opened before
+     */
+    private boolean isNewChannel(final int channelId) {
+        long id = Integer.toUnsignedLong(channelId);
+
+        if (id <= lastChannelId) {
+            return false;
+        }
+
+        lastChannelId = id;
+
+        return true;
+    }
+
+    /**
+     * Register a channel opened by the client, or refuse it if too many
+     * are open.
+     *
+     * @param channel - the channel
+     * @return - true if the channel was opened
+     */
+    private boolean open(final SessionChannel<?, ?> channel) {
+        if (getChannelCount() >= maxChannels || !register(channel)) {
+            send(SessionMessages.serverClose(channel.getChannelId(), true)
+                    .build());
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * A logical stream.
+     */
+    private final class StreamChannel
+            extends SessionChannel<StreamClientMessage, StreamServerMessage> {
+
+        /**
+         * Create a StreamChannel.
+         *
+         * @param id - the channel id
+         */
+        private StreamChannel(final int id) {
+            super(id);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void send(final StreamServerMessage message) {
+            ServerSession.this.send(SessionMessages
+                    .serverStream(getChannelId(), message)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendWindow(final int granted) {
+            ServerSession.this.send(SessionMessages
+                    .serverWindow(getChannelId(), granted)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendClose(final boolean failed) {
+            ServerSession.this.send(SessionMessages
+                    .serverClose(getChannelId(), failed)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void release() {
+            ServerSession.this.release(this);
+        }
+    }
+
+    /**
+     * A logical mutation.
+     */
+    private final class MutationChannel
+            extends SessionChannel<
+                MutationClientMessage,
+                MutationServerMessage> {
+
+        /**
+         * Create a MutationChannel.
+         *
+         * @param id - the channel id
+         */
+        private MutationChannel(final int id) {
+            super(id);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void send(final MutationServerMessage message) {
+            ServerSession.this.send(SessionMessages
+                    .serverMutation(getChannelId(), message)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendWindow(final int granted) {
+            ServerSession.this.send(SessionMessages
+                    .serverWindow(getChannelId(), granted)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void sendClose(final boolean failed) {
+            ServerSession.this.send(SessionMessages
+                    .serverClose(getChannelId(), failed)
+                    .build());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void release() {
+            ServerSession.this.release(this);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.protobuf.ByteString;
+
+import io.mishmash.common.ipc.proto.SetupCanonicalizer;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+
+/**
+ * A bounded cache of plans built for SETUP messages, keyed by setup
+ * fingerprints.
+ *
+ * Clients may send only the fingerprint of a setup. A
+ * {@link WaitSetupState} that finds a plan for it here skips receiving
+ * and parsing the full setup. Otherwise it asks the client for the full
+ * setup and caches the plan built for it.
+ *
+ * Plans are stored under the fingerprint computed by the server with
+ * {@link #fingerprint(MishmashSetup)}, never under one sent by a client.
+ * Fingerprints are SHA-256 digests, so a client cannot build a setup
+ * whose plan another client's fingerprint-only setup would run. The
+ * least recently used plans are evicted first.
+ *
+ * Instances are thread-safe.
+ *
+ * @param <P> - the plan type, defined by the server
+ */
+public class SetupPlanCache<P> {
+
+    /**
+     * The default maximum number of plans held.
+     */
+    public static final int DEFAULT_MAX_PLANS = 1024;
+
+    /**
+     * The initial capacity of the plans map.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The load factor of the plans map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The maximum number of plans held.
+     */
+    private final int maxPlans;
+
+    /**
+     * Guards the plans.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The plans in access order.
+     */
+    private final LinkedHashMap<ByteString, P> plans;
+
+    /**
+     * Create a cache holding up to {@link #DEFAULT_MAX_PLANS} plans.
+     */
+    public SetupPlanCache() {
+        this(DEFAULT_MAX_PLANS);
+    }
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize - the maximum number of plans to hold
+     */
+    public SetupPlanCache(final int maxSize) {
+        this.maxPlans = maxSize;
+        this.plans = new LinkedHashMap<>(
+                INITIAL_CAPACITY, LOAD_FACTOR, true) {
+
+            /**
+             * Serialization version.
+             */
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * Evict the least recently used plan when full.
+             *
+             * {@inheritDoc}
+             */
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<ByteString, P> eldest) {
+                return size() > maxPlans;
+            }
+        };
+    }
+
+    /**
+     * Get the fingerprint of a setup.
+     *
+     * @param setup - the full setup
+     * @return - the fingerprint
+     */
+    public static ByteString fingerprint(final MishmashSetup setup) {
+        return SetupCanonicalizer.hash(setup);
+    }
+
+    /**
+     * Get the maximum number of plans held.
+     *
+     * @return - the maximum number of plans
+     */
+    public int getMaxPlans() {
+        return maxPlans;
+    }
+
+    /**
+     * Get the number of plans held.
+     *
+     * @return - the number of plans
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return plans.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get a cached plan.
+     *
+     * @param fingerprint - the setup fingerprint
+     * @return - the plan or null if not cached
+     */
+    public P get(final ByteString fingerprint) {
+        lock.lock();
+        try {
+            return plans.get(fingerprint);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cache the plan of a full setup.
+     *
+     * @param setup - the full setup
+     * @param plan - the plan built for it
+     * @return - the fingerprint the plan was stored under
+     */
+    public ByteString put(final MishmashSetup setup, final P plan) {
+        ByteString fingerprint = fingerprint(setup);
+
+        lock.lock();
+        try {
+            plans.put(fingerprint, plan);
+        } finally {
+            lock.unlock();
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Remove a cached plan.
+     *
+     * @param fingerprint - the setup fingerprint
+     */
+    public void invalidate(final ByteString fingerprint) {
+        lock.lock();
+        try {
+            plans.remove(fingerprint);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all cached plans.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            plans.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
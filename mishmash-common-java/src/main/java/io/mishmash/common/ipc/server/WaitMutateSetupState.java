@@ -22,6 +22,8 @@ import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Mishmash;
 import io.mishmash.common.data.MishmashBuilder;
 import io.mishmash.common.data.Value;
+import io.mishmash.common.ipc.ProtocolTimeouts;
+import io.mishmash.common.ipc.proto.MutationMessages;
 import io.mishmash.common.ipc.proto.Proto;
 import io.mishmash.common.rpc.MishmashRpc.MutationClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.MutationServerMessage;
@@ -54,24 +56,62 @@ public abstract class WaitMutateSetupState<MT extends Mishmash<Key, Value>>
     }
 
     /**
-     * Make sure this is a SETUP message.
+     * Create a new WaitMutateSetupState.
+     *
+     * @param targetBuilderSupplier - the {@link MishmashBuilder} Supplier
+     * @param timeouts - the timeouts of the stream
+     */
+    public WaitMutateSetupState(
+            final Supplier<MishmashBuilder<MT>> targetBuilderSupplier,
+            final ProtocolTimeouts timeouts) {
+        super(targetBuilderSupplier, timeouts);
+    }
+
+    /**
+     * Make sure this is a SETUP message, or its continuation, or data
+     * pipelined after the SETUP.
      *
      * @param input - the incoming message.
      */
     @Override
     public void validateInput(final MutationClientMessage input)
             throws Exception {
-        Proto.ensureSetup(input);
+        if (input.getAltCase()
+                == MutationClientMessage.AltCase.YIELD_DATA) {
+            ensurePipelined();
+        } else if (isAwaitingContinuation()) {
+            Proto.ensureSetupContinuation(input);
+        } else {
+            Proto.ensureSetup(input);
+        }
     }
 
     /**
-     * Handle the already verified incoming SETUP message.
+     * Handle the already verified incoming SETUP, continuation or
+     * pipelined data.
      *
      * @param input - the input message.
      */
     @Override
     public void input(final MutationClientMessage input) throws Exception {
-        input(input.getSetup());
+        if (input.getAltCase()
+                == MutationClientMessage.AltCase.YIELD_DATA) {
+            inputPipelined(input);
+        } else if (input.getAltCase()
+                == MutationClientMessage.AltCase.SETUP_CONTINUATION) {
+            input(input.getSetupContinuation());
+        } else {
+            input(input.getSetup());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MutationServerMessage getSendFullSetupMessage(
+            final int serverSeqNo) {
+        return MutationMessages.serverSendFullSetup(serverSeqNo).build();
     }
 
 }
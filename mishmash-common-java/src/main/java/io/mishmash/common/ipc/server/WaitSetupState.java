@@ -16,18 +16,29 @@
  */
 package io.mishmash.common.ipc.server;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
+import com.google.protobuf.ByteString;
+
 import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Mishmash;
 import io.mishmash.common.data.MishmashBuilder;
 import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashNotSupportedException;
+import io.mishmash.common.exception.MishmashProtocolException;
 import io.mishmash.common.exception.MishmashTimeoutException;
 import io.mishmash.common.ipc.GrpcStreamState;
+import io.mishmash.common.ipc.HashedWheelTimer;
+import io.mishmash.common.ipc.ProtocolTimeouts;
+import io.mishmash.common.ipc.proto.IncrementalSetup;
+import io.mishmash.common.ipc.proto.MutationMessages;
 import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
+import io.mishmash.common.rpc.MishmashRpc.MishmashSetupContinuation;
 
 /**
  * A base {@link GrpcStreamState} that waits for the SETUP on a GRPC stream.
@@ -36,6 +47,24 @@ import io.mishmash.common.rpc.MishmashRpc.MishmashSetup;
  * to avoid expensive operations on stores before a SETUP message is actually
  * received (it can time out too).
  *
+ * A client may first send a SETUP that carries only the fingerprint of
+ * the full setup. Subclasses that keep a {@link SetupPlanCache} resolve
+ * it in {@link #prepareNext(ByteString)}. When it is not known, this
+ * state asks the client for the full SETUP and waits for it.
+ *
+ * A large target set may follow the SETUP in continuation messages. The
+ * chunks are built into the {@link MishmashBuilder} as they arrive,
+ * through an {@link IncrementalSetup}. After the last one
+ * {@link #prepareNextBuilt(MishmashSetup, MishmashBuilder)} is called.
+ * The SETUP timeout starts again on every chunk received, so it limits
+ * the wait for each chunk rather than the whole upload.
+ *
+ * A SETUP may allow the client to pipeline messages, such as the data
+ * of a mutation, right after it instead of waiting for the SetupAck.
+ * They are kept, up to {@link #MAX_PIPELINED}, and given to the next
+ * state through a {@link PipelinedState}. If the SETUP fails they are
+ * dropped with it.
+ *
  * @param <I> - the GRPC input message type
  * @param <O> - the GRPC output message type
  * @param <MT> - the type of {@link Mishmash} built by the
@@ -47,7 +76,13 @@ public abstract class WaitSetupState<I, O, MT extends Mishmash<Key, Value>>
     /**
      * Default number of milliseconds to wait for the SETUP message.
      */
-    public static final int SETUP_TIMEOUT_MSEC = 1500;
+    public static final int SETUP_TIMEOUT_MSEC =
+            ProtocolTimeouts.DEFAULT_SETUP_MSEC;
+
+    /**
+     * The most pipelined messages kept, whatever the SETUP allows.
+     */
+    public static final int MAX_PIPELINED = MutationMessages.MAX_PIPELINED;
 
     /**
      * The {@link MishmashBuilder} supplier.
@@ -64,11 +99,66 @@ public abstract class WaitSetupState<I, O, MT extends Mishmash<Key, Value>>
      */
     private CompletableFuture<Void> waitingFuture;
 
+    /**
+     * The timeouts of the stream.
+     */
+    private final ProtocolTimeouts timeouts;
+
+    /**
+     * Times out the current wait for the SETUP or its next chunk.
+     */
+    private HashedWheelTimer.Timeout timeout;
+
+    /**
+     * The wait timed out by {@link #timeout}.
+     */
+    private CompletableFuture<Void> timedWait;
+
     /**
      * The next state that should be provided back to the GRPC Observer.
      */
     private GrpcStreamState<I, O> nextState;
 
+    /**
+     * If the full SETUP was asked for, after an unknown fingerprint.
+     */
+    private boolean isFullSetupRequested;
+
+    /**
+     * If the request for the full SETUP is yet to be sent.
+     */
+    private boolean isRequestPending;
+
+    /**
+     * Builds a SETUP received in chunks, if any.
+     */
+    private IncrementalSetup<MT> incrementalSetup;
+
+    /**
+     * The SETUP message that began a chunked SETUP.
+     */
+    private MishmashSetup firstChunk;
+
+    /**
+     * Guards the pipelined messages and the timeout.
+     */
+    private final ReentrantLock pipelineLock = new ReentrantLock();
+
+    /**
+     * The number of pipelined messages the SETUP allows.
+     */
+    private int maxPipelined;
+
+    /**
+     * The pipelined messages received while waiting.
+     */
+    private final List<I> pipelined = new ArrayList<>();
+
+    /**
+     * The state pipelined messages are passed to, once left.
+     */
+    private PipelinedState<I, O> pipelinedState;
+
     /**
      * Init the state.
      *
@@ -76,7 +166,20 @@ public abstract class WaitSetupState<I, O, MT extends Mishmash<Key, Value>>
      */
     public WaitSetupState(
             final Supplier<MishmashBuilder<MT>> targetBuilderSupplier) {
+        this(targetBuilderSupplier, ProtocolTimeouts.DEFAULT);
+    }
+
+    /**
+     * Init the state.
+     *
+     * @param targetBuilderSupplier - a supplier of a {@link MishmashBuilder}
+     * @param protocolTimeouts - the timeouts of the stream
+     */
+    public WaitSetupState(
+            final Supplier<MishmashBuilder<MT>> targetBuilderSupplier,
+            final ProtocolTimeouts protocolTimeouts) {
         this.builderSupplier = targetBuilderSupplier;
+        this.timeouts = protocolTimeouts;
     }
 
     /**
@@ -95,24 +198,83 @@ public abstract class WaitSetupState<I, O, MT extends Mishmash<Key, Value>>
      * complete when SETUP is received or complete exceptionally
      * with a {@link MishmashTimeoutException}.
      *
+     * When entered again to wait for the full SETUP, the returned
+     * Future may already be complete.
+     *
      * @return - a Future that will complete or throw
      *          {@link MishmashTimeoutException}
      */
     @Override
     public CompletableFuture<Void> enter() {
-        waitingFuture = new CompletableFuture<>();
+        if (waitingFuture == null) {
+            waitingFuture = newWaitingFuture();
+        }
 
-        CompletableFuture<Void> timeoutFuture =
-                new CompletableFuture<Void>()
-                    .orTimeout(SETUP_TIMEOUT_MSEC, TimeUnit.MILLISECONDS)
-                    .exceptionally(t -> {
-                        waitingFuture.completeExceptionally(
-                                new MishmashTimeoutException());
+        return waitingFuture;
+    }
 
-                        return (Void) null;
-                    });
+    /**
+     * Create a Future that waits for a SETUP message, with a timeout.
+     *
+     * @return - the Future
+     */
+    private CompletableFuture<Void> newWaitingFuture() {
+        CompletableFuture<Void> res = new CompletableFuture<>();
 
-        return waitingFuture;
+        restartTimeout(res);
+
+        // stop the timeout as soon as the wait is over
+        res.whenComplete((v, e) -> stopTimeout(res));
+
+        return res;
+    }
+
+    /**
+     * Start the timeout of a wait again, cancelling the previous one.
+     *
+     * @param res - the wait
+     */
+    private void restartTimeout(final CompletableFuture<Void> res) {
+        HashedWheelTimer.Timeout t = timeouts.schedule(
+                () -> res.completeExceptionally(
+                        new MishmashTimeoutException()),
+                timeouts.getSetupMsec());
+
+        pipelineLock.lock();
+        try {
+            if (timeout != null) {
+                timeout.cancel();
+            }
+
+            if (res.isDone()) {
+                t.cancel();
+                timeout = null;
+                timedWait = null;
+            } else {
+                timeout = t;
+                timedWait = res;
+            }
+        } finally {
+            pipelineLock.unlock();
+        }
+    }
+
+    /**
+     * Cancel the timeout of a wait, unless a newer wait replaced it.
+     *
+     * @param res - the wait, or null for any
+     */
+    private void stopTimeout(final CompletableFuture<Void> res) {
+        pipelineLock.lock();
+        try {
+            if (timeout != null && (res == null || res == timedWait)) {
+                timeout.cancel();
+                timeout = null;
+                timedWait = null;
+            }
+        } finally {
+            pipelineLock.unlock();
+        }
     }
 
     /**
@@ -124,6 +286,101 @@ public abstract class WaitSetupState<I, O, MT extends Mishmash<Key, Value>>
      */
     public abstract GrpcStreamState<I, O> prepareNext(MishmashSetup setup);
 
+    /**
+     * Prepare the next state from a cached plan, when a SETUP with only
+     * a fingerprint has been received.
+     *
+     * The default implementation does not cache plans.
+     *
+     * @param fingerprint - the fingerprint of the setup
+     * @return - the next state to enter or null to ask for the full setup
+     * @throws Exception - if an error is encountered
+     */
+    public GrpcStreamState<I, O> prepareNext(final ByteString fingerprint)
+            throws Exception {
+        return null;
+    }
+
+    /**
+     * Build the message that asks the client for the full SETUP.
+     *
+     * @param serverSeqNo - the server sequence number
+     * @return - the message
+     */
+    public abstract O getSendFullSetupMessage(int serverSeqNo);
+
+    /**
+     * Prepare the next state after a SETUP received in chunks has been
+     * built into the {@link MishmashBuilder}.
+     *
+     * The default implementation does not support chunked SETUPs.
+     *
+     * @param setup - the SETUP message that began the chunked SETUP,
+     *          holding the client options and the first chunk
+     * @param built - the builder returned after building the last chunk
+     * @return - the next state to enter
+     * @throws Exception - if an error is encountered
+     */
+    public GrpcStreamState<I, O> prepareNextBuilt(
+            final MishmashSetup setup,
+            final MishmashBuilder<MT> built)
+                    throws Exception {
+        throw new MishmashNotSupportedException();
+    }
+
+    /**
+     * Check if the rest of a chunked SETUP is expected.
+     *
+     * @return - true if waiting for continuations
+     */
+    public boolean isAwaitingContinuation() {
+        return incrementalSetup != null && !incrementalSetup.isComplete();
+    }
+
+    /**
+     * Ensure that one more message may be pipelined.
+     *
+     * @throws MishmashProtocolException - if the SETUP does not allow
+     *          more pipelined messages
+     */
+    public void ensurePipelined() throws MishmashProtocolException {
+        pipelineLock.lock();
+        try {
+            if (pipelinedState == null
+                    && pipelined.size() >= maxPipelined) {
+                throw new MishmashProtocolException();
+            }
+        } finally {
+            pipelineLock.unlock();
+        }
+    }
+
+    /**
+     * Handle a message pipelined after the SETUP. It is kept until the
+     * next state is entered.
+     *
+     * @param input - the message, already checked with
+     *          {@link #ensurePipelined()}
+     * @throws Exception - if an error is encountered
+     */
+    public void inputPipelined(final I input) throws Exception {
+        PipelinedState<I, O> next;
+
+        pipelineLock.lock();
+        try {
+            next = pipelinedState;
+            if (next == null) {
+                pipelined.add(input);
+                return;
+            }
+        } finally {
+            pipelineLock.unlock();
+        }
+
+        // this state was left already, but is still the current one
+        next.input(input);
+    }
+
     /**
      * Handle the SETUP received.
      *
@@ -134,14 +391,82 @@ public abstract class WaitSetupState<I, O, MT extends Mishmash<Key, Value>>
      * @throws Exception - if an error is encountered
      */
     public void input(final MishmashSetup setup) throws Exception {
-        // stop the timeout
-        waitingFuture.complete(null);
-        waitingFuture = null;
+        boolean isFingerprintOnly = !setup.hasTargetSet()
+                && !setup.getFingerprint().isEmpty();
+
+        if (isAwaitingContinuation()
+                || isFingerprintOnly && isFullSetupRequested) {
+            // not expected: a fingerprint again, or a SETUP during
+            // a chunked SETUP
+            throw new MishmashProtocolException();
+        }
+
+        pipelineLock.lock();
+        try {
+            maxPipelined = (int) Math.min(MAX_PIPELINED,
+                    Integer.toUnsignedLong(setup.getPipelined()));
+        } finally {
+            pipelineLock.unlock();
+        }
 
         // request the target builder
-        targetBuilder = builderSupplier.get();
+        if (targetBuilder == null) {
+            targetBuilder = builderSupplier.get();
+        }
+
         // request the next state
-        nextState = prepareNext(setup);
+        if (isFingerprintOnly) {
+            nextState = prepareNext(setup.getFingerprint());
+            isFullSetupRequested = nextState == null;
+            isRequestPending = isFullSetupRequested;
+        } else if (setup.getHasContinuation()) {
+            isFullSetupRequested = false;
+            incrementalSetup = new IncrementalSetup<>(targetBuilder);
+            incrementalSetup.begin(setup);
+            firstChunk = setup;
+
+            // keep waiting for the rest, with a fresh timeout
+            restartTimeout(waitingFuture);
+            return;
+        } else {
+            isFullSetupRequested = false;
+            nextState = prepareNext(setup);
+        }
+
+        // stop the timeout, the full setup may arrive before this
+        // state is entered again, so wait for it right away
+        CompletableFuture<Void> received = waitingFuture;
+        if (isRequestPending) {
+            waitingFuture = newWaitingFuture();
+        }
+
+        received.complete(null);
+    }
+
+    /**
+     * Handle the next chunk of a SETUP.
+     *
+     * @param continuation - the received continuation
+     * @throws Exception - if an error is encountered
+     */
+    public void input(final MishmashSetupContinuation continuation)
+            throws Exception {
+        if (!isAwaitingContinuation()) {
+            throw new MishmashProtocolException();
+        }
+
+        incrementalSetup.append(continuation);
+
+        if (incrementalSetup.isComplete()) {
+            nextState = prepareNextBuilt(firstChunk,
+                    incrementalSetup.getBuilder());
+            firstChunk = null;
+
+            // stop the timeout
+            waitingFuture.complete(null);
+        } else {
+            restartTimeout(waitingFuture);
+        }
     }
 
     /**
@@ -149,29 +474,58 @@ public abstract class WaitSetupState<I, O, MT extends Mishmash<Key, Value>>
      */
     @Override
     public GrpcStreamState<I, O> leave() {
+        if (nextState == null && isFullSetupRequested) {
+            // wait again, for the full setup
+            return this;
+        }
+
+        pipelineLock.lock();
+        try {
+            if (nextState != null && maxPipelined > 0) {
+                // later pipelined messages may still arrive here
+                pipelinedState = new PipelinedState<>(nextState, pipelined);
+                pipelined.clear();
+
+                return pipelinedState;
+            }
+        } finally {
+            pipelineLock.unlock();
+        }
+
         return nextState;
     }
 
     /**
      * Return a completed Future with null message so that we can
-     * immediately request a change of states.
+     * immediately request a change of states, after asking for the full
+     * SETUP if needed.
      *
      * @param currentSeqNo - the local-end sequence number
-     * @return - a Future completed with null value
+     * @return - a Future completed with null value or the request
+     *          for the full SETUP
      */
     @Override
     public CompletableFuture<O> output(final AtomicInteger currentSeqNo) {
+        if (isRequestPending) {
+            isRequestPending = false;
+
+            return CompletableFuture.completedFuture(
+                    getSendFullSetupMessage(currentSeqNo.getAndIncrement()));
+        }
+
         return CompletableFuture.completedFuture(null);
     }
 
     /**
-     * Close the underlying builder if it is open.
+     * Stop the timeout and close the underlying builder if it is open.
      *
      * Overwrite this method to add logging, as it ignores
      * exceptions thrown during close()
      */
     @Override
     public void close() throws Exception {
+        stopTimeout(null);
+
         if (targetBuilder != null) {
             targetBuilder.close();
         }
@@ -22,6 +22,8 @@ import io.mishmash.common.data.Key;
 import io.mishmash.common.data.Mishmash;
 import io.mishmash.common.data.MishmashBuilder;
 import io.mishmash.common.data.Value;
+import io.mishmash.common.ipc.ProtocolTimeouts;
+import io.mishmash.common.ipc.proto.StreamMessages;
 import io.mishmash.common.ipc.proto.Proto;
 import io.mishmash.common.rpc.MishmashRpc.StreamClientMessage;
 import io.mishmash.common.rpc.MishmashRpc.StreamServerMessage;
@@ -50,7 +52,19 @@ public abstract class WaitStreamSetupState<MT extends Mishmash<Key, Value>>
     }
 
     /**
-     * Validate the incoming message is a SETUP.
+     * Create a new WaitStreamSetupState.
+     *
+     * @param targetBuilderSupplier - the {@link MishmashBuilder} Supplier
+     * @param timeouts - the timeouts of the stream
+     */
+    public WaitStreamSetupState(
+            final Supplier<MishmashBuilder<MT>> targetBuilderSupplier,
+            final ProtocolTimeouts timeouts) {
+        super(targetBuilderSupplier, timeouts);
+    }
+
+    /**
+     * Validate the incoming message is a SETUP, or its continuation.
      *
      * @param input - the incoming message
      */
@@ -58,17 +72,34 @@ public abstract class WaitStreamSetupState<MT extends Mishmash<Key, Value>>
     public void
             validateInput(final StreamClientMessage input)
                     throws Exception {
-        Proto.ensureSetup(input);
+        if (isAwaitingContinuation()) {
+            Proto.ensureSetupContinuation(input);
+        } else {
+            Proto.ensureSetup(input);
+        }
     }
 
     /**
-     * Process an incoming SETUP message.
+     * Process an incoming SETUP or SETUP continuation message.
      *
      * @param input - the incoming message
      */
     @Override
     public void input(final StreamClientMessage input) throws Exception {
-        input(input.getSetup());
+        if (input.getAltCase()
+                == StreamClientMessage.AltCase.SETUP_CONTINUATION) {
+            input(input.getSetupContinuation());
+        } else {
+            input(input.getSetup());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamServerMessage getSendFullSetupMessage(final int serverSeqNo) {
+        return StreamMessages.serverSendFullSetup(serverSeqNo).build();
     }
 
 }
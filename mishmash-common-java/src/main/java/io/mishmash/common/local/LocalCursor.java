@@ -0,0 +1,246 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.local;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.KeyComparator;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+
+/**
+ * A {@link Mishmash} view over part of a {@link LocalMishmash}.
+ *
+ * Walks the index depth first, every get() resumes the walk until the
+ * next data point in range is found.
+ */
+final class LocalCursor implements Mishmash<Key, Value> {
+
+    /**
+     * A visited node and the position in its children.
+     */
+    private static final class Frame {
+
+        /**
+         * The children of the node.
+         */
+        private final List<TrieNode> children;
+
+        /**
+         * The next child to visit.
+         */
+        private int pos;
+
+        /**
+         * Create a frame.
+         *
+         * @param node - the visited node
+         */
+        Frame(final TrieNode node) {
+            this.children = node.children();
+        }
+    }
+
+    /**
+     * The store.
+     */
+    private final LocalMishmash store;
+
+    /**
+     * The hierarchy of the node to start at, or null for the root.
+     */
+    private final List<Key> start;
+
+    /**
+     * The node to start at, if known.
+     */
+    private final TrieNode startNode;
+
+    /**
+     * The lower bound, inclusive, or null.
+     */
+    private final Iterable<Key> from;
+
+    /**
+     * The upper bound, exclusive, or null.
+     */
+    private final Iterable<Key> to;
+
+    /**
+     * Guards the walk state.
+     */
+    private final Lock cursorLock = new ReentrantLock();
+
+    /**
+     * The nodes being visited.
+     */
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    /**
+     * The next node to enter, if any.
+     */
+    private TrieNode pending;
+
+    /**
+     * Set once the walk has begun.
+     */
+    private boolean isStarted;
+
+    /**
+     * Create a cursor.
+     *
+     * @param localStore - the store
+     * @param startKeys - the hierarchy to start at or null for the root
+     * @param lower - the lower bound, inclusive, or null
+     * @param upper - the upper bound, exclusive, or null
+     */
+    LocalCursor(final LocalMishmash localStore, final List<Key> startKeys,
+            final Iterable<Key> lower, final Iterable<Key> upper) {
+        this.store = localStore;
+        this.start = startKeys;
+        this.startNode = null;
+        this.from = lower;
+        this.to = upper;
+    }
+
+    /**
+     * Create a cursor over the subtree of a node.
+     *
+     * @param localStore - the store
+     * @param node - the node to start at
+     */
+    LocalCursor(final LocalMishmash localStore, final TrieNode node) {
+        this.store = localStore;
+        this.start = null;
+        this.startNode = node;
+        this.from = null;
+        this.to = null;
+    }
+
+    /**
+     * Does nothing, the view is always open.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<DataPoint> get() {
+        cursorLock.lock();
+        store.readLock().lock();
+        try {
+            return CompletableFuture.completedFuture(next());
+        } finally {
+            store.readLock().unlock();
+            cursorLock.unlock();
+        }
+    }
+
+    /**
+     * Puts the data point into the underlying {@link LocalMishmash}.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        return store.put(dataPoint);
+    }
+
+    /**
+     * Does nothing.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    /**
+     * Continue the walk to the next data point in range.
+     *
+     * Must be called with the read lock of the store held.
+     *
+     * @return - the data point or null at the end
+     */
+    DataPoint next() {
+        if (!isStarted) {
+            isStarted = true;
+
+            if (startNode != null) {
+                pending = startNode;
+            } else {
+                pending = start == null
+                        ? store.getRoot()
+                        : store.find(start);
+            }
+        }
+
+        while (true) {
+            if (pending != null) {
+                TrieNode node = pending;
+                pending = null;
+
+                List<Key> path = node.path();
+                if (to != null
+                        && KeyComparator.INSTANCE.compare(path, to) >= 0) {
+                    // all nodes left are after the upper bound
+                    stack.clear();
+
+                    return null;
+                }
+
+                boolean isBeforeFrom = from != null
+                        && KeyComparator.INSTANCE.compare(path, from) < 0;
+                if (isBeforeFrom && !KeyComparator.startsWith(from, path)) {
+                    // the whole subtree is before the lower bound
+                    continue;
+                }
+
+                stack.push(new Frame(node));
+
+                if (node.getPoint() != null && !isBeforeFrom) {
+                    return node.getPoint();
+                }
+            } else {
+                Frame f = stack.peek();
+                if (f == null) {
+                    return null;
+                } else if (f.pos < f.children.size()) {
+                    pending = f.children.get(f.pos++);
+                } else {
+                    stack.pop();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,719 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.local;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.MishmashBuilder;
+import io.mishmash.common.data.PredefinedSetType;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashException;
+import io.mishmash.common.exception.MishmashInvalidStateException;
+import io.mishmash.common.exception.MishmashUnimplementedException;
+
+/**
+ * A {@link MishmashBuilder} that evaluates a mishmash set descriptor
+ * against a {@link LocalMishmash}, for example when walked by
+ * {@link io.mishmash.common.ipc.proto.ProtoSetup#fromSetup}.
+ *
+ * The descriptors of a list select nodes of the index step by step,
+ * starting from the root:
+ * <ul>
+ * <li>a string literal selects the children of the current nodes with
+ * that member name, an integer literal those with that index and an
+ * instance literal those with that key instance ID. Other literals
+ * select nothing, as keys are only members or indexes</li>
+ * <li>a union or an intersection selects the union or intersection of
+ * what each of its descriptors selects from the current nodes</li>
+ * <li>a predefined set selects the parents, children, siblings,
+ * ancestors or descendants of the current nodes</li>
+ * </ul>
+ * The built {@link Mishmash} returns the data points at the selected
+ * nodes and below them.
+ *
+ * Sets are combined lazily and literals are resolved through the
+ * lookup lists of the store, so unions and intersections are never
+ * materialized. Only predefined set results are computed in full.
+ * Transformations, functions and lambdas are not supported.
+ */
+public class LocalEvaluator implements MishmashBuilder<Mishmash<Key, Value>> {
+
+    /**
+     * The kinds of descriptor lists being built.
+     */
+    private enum Scope {
+        /**
+         * The top level list, each descriptor narrows the selection.
+         */
+        PATH,
+        /**
+         * A union.
+         */
+        UNION,
+        /**
+         * An intersection.
+         */
+        INTERSECTION
+    }
+
+    /**
+     * A descriptor list being built.
+     */
+    private static final class Frame {
+
+        /**
+         * The kind of list.
+         */
+        private final Scope scope;
+
+        /**
+         * The selection the descriptors of this list apply to.
+         */
+        private NodeSet base;
+
+        /**
+         * The sets selected by a union or intersection.
+         */
+        private final List<NodeSet> parts = new ArrayList<>();
+
+        /**
+         * Create a frame.
+         *
+         * @param listScope - the kind of list
+         * @param current - the current selection
+         */
+        Frame(final Scope listScope, final NodeSet current) {
+            this.scope = listScope;
+            this.base = current;
+        }
+    }
+
+    /**
+     * The number of bits in an unsigned index.
+     */
+    private static final int INDEX_BITS = Long.SIZE;
+
+    /**
+     * The store.
+     */
+    private final LocalMishmash store;
+
+    /**
+     * The lists being built.
+     */
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    /**
+     * The client options.
+     */
+    private Map<String, String> clientOptions = new HashMap<>();
+
+    /**
+     * The mutation type.
+     */
+    private int mutationType;
+
+    /**
+     * Create an evaluator.
+     *
+     * @param localStore - the store to evaluate against
+     */
+    public LocalEvaluator(final LocalMishmash localStore) {
+        this.store = localStore;
+        frames.push(new Frame(Scope.PATH,
+                NodeSets.of(localStore.getRoot())));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getClientOptions() {
+        return clientOptions;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator setClientOptions(final Map<String, String> opts) {
+        this.clientOptions = opts;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMutationType() {
+        return mutationType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator setMutationType(final int mt) {
+        this.mutationType = mt;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addInstance(final String instance) {
+        return select(base -> NodeSets.children(base,
+                () -> store.instanceNodes(instance),
+                k -> instance.equals(k.getInstance()),
+                null));
+    }
+
+    /**
+     * Selects nothing, keys cannot be booleans.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addBoolean(final boolean bool) {
+        return select(base -> NodeSets.EMPTY);
+    }
+
+    /**
+     * Selects nothing, keys cannot be dates.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addDate(final ZonedDateTime dt) {
+        return select(base -> NodeSets.EMPTY);
+    }
+
+    /**
+     * Selects nothing, keys cannot be null.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addNull() {
+        return select(base -> NodeSets.EMPTY);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addString(final String str) {
+        Key key = Key.of(str, null);
+
+        return select(base -> NodeSets.children(base,
+                () -> store.memberNodes(str),
+                k -> k.isMember() && str.equals(k.getMember()),
+                key));
+    }
+
+    /**
+     * Selects an index if the decimal is a whole, unsigned 64 bit number.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addBigDecimal(final BigDecimal decimal) {
+        BigInteger i;
+        try {
+            i = decimal.toBigIntegerExact();
+        } catch (ArithmeticException e) {
+            return select(base -> NodeSets.EMPTY);
+        }
+
+        if (i.signum() < 0 || i.bitLength() > INDEX_BITS) {
+            return select(base -> NodeSets.EMPTY);
+        }
+
+        return addIndex(i.longValue());
+    }
+
+    /**
+     * Selects an index if the decimal is a whole, unsigned 64 bit number.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addDouble(final double decimal) {
+        if (Double.isNaN(decimal) || Double.isInfinite(decimal)) {
+            return select(base -> NodeSets.EMPTY);
+        }
+
+        return addBigDecimal(BigDecimal.valueOf(decimal));
+    }
+
+    /**
+     * Selects an index if the decimal is a whole, unsigned 64 bit number.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addDecimalString(final String decimal) {
+        BigDecimal d;
+        try {
+            d = new BigDecimal(decimal);
+        } catch (NumberFormatException e) {
+            return select(base -> NodeSets.EMPTY);
+        }
+
+        return addBigDecimal(d);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addInteger(final int decimal,
+            final boolean isSigned) {
+        if (isSigned && decimal < 0) {
+            return select(base -> NodeSets.EMPTY);
+        }
+
+        return addIndex(Integer.toUnsignedLong(decimal));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addLong(final long decimal,
+            final boolean isSigned) {
+        if (isSigned && decimal < 0) {
+            return select(base -> NodeSets.EMPTY);
+        }
+
+        return addIndex(decimal);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterUnion() {
+        frames.push(new Frame(Scope.UNION, frames.peek().base));
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leaveUnion() throws MishmashException {
+        Frame f = leave(Scope.UNION);
+
+        return select(base -> NodeSets.union(f.parts));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterIntersection() {
+        frames.push(new Frame(Scope.INTERSECTION, frames.peek().base));
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leaveIntersection() throws MishmashException {
+        Frame f = leave(Scope.INTERSECTION);
+
+        return select(base -> NodeSets.intersection(f.parts));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addPredefinedSet(final PredefinedSetType setType) {
+        return select(base -> NodeSets.related(base, setType));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterTransformation()
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leaveTransformation()
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterTransformationLeft()
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leaveTransformationLeft()
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterTransformationRight()
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leaveTransformationRight()
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterPredefinedFunction(final String name)
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leavePredefinedFunction(final String name)
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterPredefinedFunctionArgument(
+            final int argumentNo) throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leavePredefinedFunctionArgument(
+            final int argumentNo) throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterNewLambdaScope(final String runtime,
+            final String lambdaName, final String scopeId)
+                    throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator addSource(final String clientEnv,
+            final String lambdaName, final String source)
+                    throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leaveNewLambdaScope(final String runtime,
+            final String lambdaName, final String scopeId)
+                    throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator enterExistingLambdaScope(final String scopeId)
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LocalEvaluator leaveExistingLambdaScope(final String scopeId)
+            throws MishmashException {
+        throw new MishmashUnimplementedException();
+    }
+
+    /**
+     * Get a {@link Mishmash} with the data points selected.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Mishmash<Key, Value> build() throws MishmashException {
+        if (frames.size() != 1) {
+            throw new MishmashInvalidStateException();
+        }
+
+        return new ResultCursor(store, frames.peek().base);
+    }
+
+    /**
+     * Does nothing.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    /**
+     * Select the children with an index.
+     *
+     * @param index - the index
+     * @return - this evaluator
+     */
+    private LocalEvaluator addIndex(final long index) {
+        Key key = Key.of(index, null);
+
+        return select(base -> NodeSets.children(base,
+                () -> store.indexNodes(index),
+                k -> k.isIndex() && k.getIndex() == index,
+                key));
+    }
+
+    /**
+     * Apply a descriptor to the current list.
+     *
+     * @param step - computes the set selected by the descriptor from the
+     *          current selection
+     * @return - this evaluator
+     */
+    private LocalEvaluator select(
+            final UnaryOperator<NodeSet> step) {
+        Frame f = frames.peek();
+        NodeSet selected = step.apply(f.base);
+
+        if (f.scope == Scope.PATH) {
+            f.base = selected;
+        } else {
+            f.parts.add(selected);
+        }
+
+        return this;
+    }
+
+    /**
+     * Leave a union or an intersection.
+     *
+     * @param scope - the expected kind of list
+     * @return - the frame of the list
+     * @throws MishmashInvalidStateException - if not in such a list
+     */
+    private Frame leave(final Scope scope)
+            throws MishmashInvalidStateException {
+        if (frames.peek().scope != scope) {
+            throw new MishmashInvalidStateException();
+        }
+
+        return frames.pop();
+    }
+
+    /**
+     * Returns the data points at and below the selected nodes.
+     */
+    private static final class ResultCursor implements Mishmash<Key, Value> {
+
+        /**
+         * The store.
+         */
+        private final LocalMishmash store;
+
+        /**
+         * The selected nodes.
+         */
+        private final NodeSet selected;
+
+        /**
+         * Guards the cursor state.
+         */
+        private final Lock cursorLock = new ReentrantLock();
+
+        /**
+         * The selected nodes not visited yet.
+         */
+        private Iterator<TrieNode> nodes;
+
+        /**
+         * Walks the subtree of the current node.
+         */
+        private LocalCursor subtree;
+
+        /**
+         * Create a cursor.
+         *
+         * @param localStore - the store
+         * @param nodeSet - the selected nodes
+         */
+        ResultCursor(final LocalMishmash localStore, final NodeSet nodeSet) {
+            this.store = localStore;
+            this.selected = nodeSet;
+        }
+
+        /**
+         * Does nothing, the cursor is always open.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletableFuture<Void> open() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletableFuture<DataPoint> get() {
+            cursorLock.lock();
+            store.readLock().lock();
+            try {
+                return CompletableFuture.completedFuture(next());
+            } finally {
+                store.readLock().unlock();
+                cursorLock.unlock();
+            }
+        }
+
+        /**
+         * Puts the data point into the underlying {@link LocalMishmash}.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public CompletableFuture<Void> put(
+                final BaseDataPoint<Key, Value> dataPoint) {
+            return store.put(dataPoint);
+        }
+
+        /**
+         * Does nothing.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // nothing to release
+        }
+
+        /**
+         * Find the next data point.
+         *
+         * @return - the data point or null at the end
+         */
+        private DataPoint next() {
+            if (nodes == null) {
+                nodes = selected.iterator();
+            }
+
+            while (true) {
+                if (subtree != null) {
+                    DataPoint dp = subtree.next();
+                    if (dp != null) {
+                        return dp;
+                    }
+
+                    subtree = null;
+                }
+
+                if (!nodes.hasNext()) {
+                    return null;
+                }
+
+                TrieNode node = nodes.next();
+                if (!isBelowSelected(node)) {
+                    subtree = new LocalCursor(store, node);
+                }
+            }
+        }
+
+        /**
+         * Check if a node is in the subtree of another selected node.
+         *
+         * @param node - the node
+         * @return - true if an ancestor of the node is selected
+         */
+        private boolean isBelowSelected(final TrieNode node) {
+            for (TrieNode p = node.getParent(); p != null;
+                    p = p.getParent()) {
+                if (selected.contains(p)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
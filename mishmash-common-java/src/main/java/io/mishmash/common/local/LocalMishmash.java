@@ -0,0 +1,327 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidArgumentException;
+
+/**
+ * An embedded, in-memory {@link Mishmash}.
+ *
+ * Data points are kept in a trie over their {@link Key} hierarchies, a
+ * data point put at an existing hierarchy replaces the previous one.
+ * All futures returned by a LocalMishmash are already complete.
+ *
+ * Instances are thread-safe. {@link #get()}, as well as the views
+ * returned by {@link #prefix(Iterable)} and
+ * {@link #range(Iterable, Iterable)}, are cursors that return data
+ * points ordered as by {@link io.mishmash.common.data.KeyComparator}.
+ * Cursors are weakly consistent: data points put while a cursor is being
+ * read may or may not be returned by it.
+ */
+public class LocalMishmash implements Mishmash<Key, Value> {
+
+    /**
+     * Guards the index.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The root of the index.
+     */
+    private final TrieNode root = new TrieNode();
+
+    /**
+     * The number of data points stored.
+     */
+    private long size;
+
+    /**
+     * The id of the next node added.
+     */
+    private long nextNodeId = 1;
+
+    /**
+     * Nodes by member name, in order of creation.
+     */
+    private final Map<String, List<TrieNode>> memberNodes = new HashMap<>();
+
+    /**
+     * Nodes by index, in order of creation.
+     */
+    private final LongObjectMap<List<TrieNode>> indexNodes =
+            new LongObjectMap<>();
+
+    /**
+     * Nodes by key instance ID, in order of creation.
+     */
+    private final Map<String, List<TrieNode>> instanceNodes =
+            new HashMap<>();
+
+    /**
+     * The cursor used by {@link #get()}.
+     */
+    private final LocalCursor all;
+
+    /**
+     * Create an empty LocalMishmash.
+     */
+    public LocalMishmash() {
+        all = new LocalCursor(this, null, null, null);
+    }
+
+    /**
+     * Does nothing, a LocalMishmash is always open.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> open() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Get the next data point of all data points stored.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<DataPoint> get() {
+        return all.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> put(
+            final BaseDataPoint<Key, Value> dataPoint) {
+        List<Key> keys = new ArrayList<>();
+        dataPoint.keys().forEach(keys::add);
+
+        if (keys.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new MishmashInvalidArgumentException());
+        }
+
+        DataPoint dp = new DataPoint(keys, dataPoint.value());
+
+        lock.writeLock().lock();
+        try {
+            TrieNode node = root;
+            for (Key k : keys) {
+                node = node.addChild(k, nextNodeId);
+
+                if (node.getId() == nextNodeId) {
+                    nextNodeId++;
+                    addPostings(node);
+                }
+            }
+
+            if (node.setPoint(dp) == null) {
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Put all data points, for example all data points read from a
+     * {@link io.mishmash.common.snapshot.SnapshotReader}.
+     *
+     * @param dataPoints - the data points
+     * @return - a future that completes when all data points are stored
+     *          or on error
+     */
+    public CompletableFuture<Void> putAll(
+            final Iterable<? extends BaseDataPoint<Key, Value>> dataPoints) {
+        for (BaseDataPoint<Key, Value> dp : dataPoints) {
+            CompletableFuture<Void> res = put(dp);
+            if (res.isCompletedExceptionally()) {
+                return res;
+            }
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Get the number of data points stored.
+     *
+     * @return - the number of data points
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a view of the data points whose keys start with a prefix.
+     *
+     * @param prefix - the key prefix
+     * @return - a new cursor
+     */
+    public Mishmash<Key, Value> prefix(final Iterable<Key> prefix) {
+        List<Key> keys = new ArrayList<>();
+        prefix.forEach(keys::add);
+
+        return new LocalCursor(this, keys, null, null);
+    }
+
+    /**
+     * Get a view of the data points with keys in a range.
+     *
+     * @param from - the first keys, inclusive, or null for no lower bound
+     * @param to - the last keys, exclusive, or null for no upper bound
+     * @return - a new cursor
+     */
+    public Mishmash<Key, Value> range(final Iterable<Key> from,
+            final Iterable<Key> to) {
+        return new LocalCursor(this, null, from, to);
+    }
+
+    /**
+     * Does nothing.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    /**
+     * Get the root of the index.
+     *
+     * @return - the root node
+     */
+    TrieNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Get the lock that must be held while reading the index.
+     *
+     * @return - the read lock
+     */
+    Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Get the nodes with a member key.
+     *
+     * Must be called with the read lock held.
+     *
+     * @param member - the member name
+     * @return - the nodes, in order of creation
+     */
+    List<TrieNode> memberNodes(final String member) {
+        return memberNodes.getOrDefault(member, Collections.emptyList());
+    }
+
+    /**
+     * Get the nodes with an index key.
+     *
+     * Must be called with the read lock held.
+     *
+     * @param index - the index
+     * @return - the nodes, in order of creation
+     */
+    List<TrieNode> indexNodes(final long index) {
+        List<TrieNode> res = indexNodes.get(index);
+
+        return res == null ? Collections.emptyList() : res;
+    }
+
+    /**
+     * Get the nodes with a key instance ID.
+     *
+     * Must be called with the read lock held.
+     *
+     * @param instanceId - the instance ID
+     * @return - the nodes, in order of creation
+     */
+    List<TrieNode> instanceNodes(final String instanceId) {
+        return instanceNodes.getOrDefault(instanceId,
+                Collections.emptyList());
+    }
+
+    /**
+     * Add a new node to the lookup lists.
+     *
+     * @param node - the new node
+     */
+    private void addPostings(final TrieNode node) {
+        Key k = node.getKey();
+
+        if (k.isIndex()) {
+            indexNodes.computeIfAbsent(k.getIndex(), i -> new ArrayList<>())
+                .add(node);
+        } else {
+            memberNodes.computeIfAbsent(k.getMember(), m -> new ArrayList<>())
+                .add(node);
+        }
+
+        if (k.getInstance() != null) {
+            instanceNodes.computeIfAbsent(k.getInstance(),
+                    i -> new ArrayList<>())
+                .add(node);
+        }
+    }
+
+    /**
+     * Find the node at a hierarchy.
+     *
+     * Must be called with the read lock held.
+     *
+     * @param keys - the key hierarchy
+     * @return - the node or null
+     */
+    TrieNode find(final Iterable<Key> keys) {
+        TrieNode node = root;
+        for (Key k : keys) {
+            node = node.child(k);
+            if (node == null) {
+                return null;
+            }
+        }
+
+        return node;
+    }
+}
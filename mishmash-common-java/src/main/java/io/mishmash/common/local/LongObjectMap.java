@@ -0,0 +1,186 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.local;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * An open addressing hash map with primitive long keys.
+ *
+ * Instances are not thread-safe.
+ *
+ * @param <T> - the value type
+ */
+final class LongObjectMap<T> {
+
+    /**
+     * The initial capacity, a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The maximum load is 1 / 2 ^ LOAD_SHIFT of the capacity.
+     */
+    private static final int LOAD_SHIFT = 1;
+
+    /**
+     * Spreads the bits of the keys.
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The keys.
+     */
+    private long[] keys;
+
+    /**
+     * The values, null for empty slots.
+     */
+    private Object[] values;
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * Create an empty map.
+     */
+    LongObjectMap() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return - the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key - the key
+     * @return - the value or null
+     */
+    @SuppressWarnings("unchecked")
+    T get(final long key) {
+        int mask = keys.length - 1;
+
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (values[i] == null) {
+                return null;
+            } else if (keys[i] == key) {
+                return (T) values[i];
+            }
+        }
+    }
+
+    /**
+     * Get the value of a key, adding a new one if missing.
+     *
+     * @param key - the key
+     * @param factory - creates a new value
+     * @return - the value
+     */
+    @SuppressWarnings("unchecked")
+    T computeIfAbsent(final long key, final LongFunction<T> factory) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                return (T) values[i];
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        T value = factory.apply(key);
+        keys[i] = key;
+        values[i] = value;
+
+        if (++size > keys.length >>> LOAD_SHIFT) {
+            grow();
+        }
+
+        return value;
+    }
+
+    /**
+     * Get all keys, sorted as unsigned numbers.
+     *
+     * @return - a new array with the keys
+     */
+    long[] sortedKeys() {
+        long[] res = new long[size];
+        int n = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                // flip the sign bit to sort as unsigned
+                res[n++] = keys[i] ^ Long.MIN_VALUE;
+            }
+        }
+
+        Arrays.sort(res);
+        for (int i = 0; i < n; i++) {
+            res[i] ^= Long.MIN_VALUE;
+        }
+
+        return res;
+    }
+
+    /**
+     * Double the capacity.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[oldKeys.length << 1];
+        values = new Object[oldValues.length << 1];
+        int mask = keys.length - 1;
+
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Get the first slot of a key.
+     *
+     * @param key - the key
+     * @param mask - the capacity mask
+     * @return - the slot
+     */
+    private static int slot(final long key, final int mask) {
+        return (int) ((key * HASH_MULTIPLIER) >>> Integer.SIZE) & mask;
+    }
+}
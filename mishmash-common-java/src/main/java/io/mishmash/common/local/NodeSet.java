@@ -0,0 +1,51 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.local;
+
+import java.util.Iterator;
+
+/**
+ * A set of {@link TrieNode}s, the result of evaluating a part of a
+ * mishmash set descriptor by a {@link LocalEvaluator}.
+ *
+ * Node sets are lazy, their nodes are looked up when iterated or tested
+ * and both must be done with the read lock of the store held.
+ */
+interface NodeSet {
+
+    /**
+     * Iterate the nodes of this set in ascending node id order.
+     *
+     * @return - the iterator
+     */
+    Iterator<TrieNode> iterator();
+
+    /**
+     * Test if a node is in this set, without iterating it.
+     *
+     * @param node - the node
+     * @return - true if the node is in this set
+     */
+    boolean contains(TrieNode node);
+
+    /**
+     * Estimate the number of nodes in this set.
+     *
+     * @return - an upper bound of the set size
+     */
+    long estimateSize();
+}
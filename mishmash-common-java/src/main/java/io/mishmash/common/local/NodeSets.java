@@ -0,0 +1,556 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.PredefinedSetType;
+
+/**
+ * Factory methods for {@link NodeSet}s.
+ */
+final class NodeSets {
+
+    /**
+     * Orders nodes by id.
+     */
+    static final Comparator<TrieNode> BY_ID =
+            Comparator.comparingLong(TrieNode::getId);
+
+    /**
+     * A set without nodes.
+     */
+    static final NodeSet EMPTY = new NodeSet() {
+
+        @Override
+        public Iterator<TrieNode> iterator() {
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public boolean contains(final TrieNode node) {
+            return false;
+        }
+
+        @Override
+        public long estimateSize() {
+            return 0;
+        }
+    };
+
+    /**
+     * Instances of NodeSets are not needed.
+     */
+    private NodeSets() {
+        // Hide the constructor
+    }
+
+    /**
+     * Get a set with a single node.
+     *
+     * @param single - the node
+     * @return - the set
+     */
+    static NodeSet of(final TrieNode single) {
+        return new NodeSet() {
+
+            @Override
+            public Iterator<TrieNode> iterator() {
+                return Iterators.singletonIterator(single);
+            }
+
+            @Override
+            public boolean contains(final TrieNode node) {
+                return node == single;
+            }
+
+            @Override
+            public long estimateSize() {
+                return 1;
+            }
+        };
+    }
+
+    /**
+     * Get the set of children of a set's nodes that match a literal.
+     *
+     * When the parent set is small the children are looked up by key,
+     * otherwise the list of all nodes that match the literal is scanned.
+     *
+     * @param parents - the parent nodes
+     * @param candidates - supplies all nodes that match the literal
+     * @param match - tests if a key matches the literal
+     * @param lookupKey - a key to look children up with, or null if
+     *          they cannot be looked up by key
+     * @return - the set
+     */
+    static NodeSet children(final NodeSet parents,
+            final Supplier<List<TrieNode>> candidates,
+            final Predicate<Key> match, final Key lookupKey) {
+        return new NodeSet() {
+
+            @Override
+            public Iterator<TrieNode> iterator() {
+                List<TrieNode> all = candidates.get();
+
+                if (lookupKey != null
+                        && parents.estimateSize() < all.size()) {
+                    List<TrieNode> res = new ArrayList<>();
+                    parents.iterator().forEachRemaining(p -> {
+                        TrieNode c = p.child(lookupKey);
+                        if (c != null) {
+                            res.add(c);
+                        }
+                    });
+
+                    res.sort(BY_ID);
+
+                    return res.iterator();
+                }
+
+                // lists only grow, iterate the nodes present now
+                return Iterators.filter(
+                        IntStream.range(0, all.size())
+                            .mapToObj(all::get)
+                            .iterator(),
+                        n -> parents.contains(n.getParent()));
+            }
+
+            @Override
+            public boolean contains(final TrieNode node) {
+                return node.getKey() != null
+                        && match.test(node.getKey())
+                        && parents.contains(node.getParent());
+            }
+
+            @Override
+            public long estimateSize() {
+                return candidates.get().size();
+            }
+        };
+    }
+
+    /**
+     * Get the union of sets.
+     *
+     * @param sets - the sets
+     * @return - the union
+     */
+    static NodeSet union(final List<NodeSet> sets) {
+        if (sets.isEmpty()) {
+            return EMPTY;
+        } else if (sets.size() == 1) {
+            return sets.get(0);
+        }
+
+        return new NodeSet() {
+
+            @Override
+            public Iterator<TrieNode> iterator() {
+                List<Iterator<TrieNode>> iters = new ArrayList<>();
+                for (NodeSet s : sets) {
+                    iters.add(s.iterator());
+                }
+
+                return distinct(Iterators.mergeSorted(iters, BY_ID));
+            }
+
+            @Override
+            public boolean contains(final TrieNode node) {
+                for (NodeSet s : sets) {
+                    if (s.contains(node)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+            @Override
+            public long estimateSize() {
+                long res = 0;
+                for (NodeSet s : sets) {
+                    res += s.estimateSize();
+                }
+
+                return res;
+            }
+        };
+    }
+
+    /**
+     * Get the intersection of sets.
+     *
+     * The smallest set is iterated and its nodes are tested against
+     * the other sets.
+     *
+     * @param sets - the sets
+     * @return - the intersection
+     */
+    static NodeSet intersection(final List<NodeSet> sets) {
+        if (sets.isEmpty()) {
+            return EMPTY;
+        } else if (sets.size() == 1) {
+            return sets.get(0);
+        }
+
+        return new NodeSet() {
+
+            @Override
+            public Iterator<TrieNode> iterator() {
+                NodeSet smallest = sets.get(0);
+                for (NodeSet s : sets) {
+                    if (s.estimateSize() < smallest.estimateSize()) {
+                        smallest = s;
+                    }
+                }
+
+                NodeSet driver = smallest;
+
+                return Iterators.filter(driver.iterator(), n -> {
+                    for (NodeSet s : sets) {
+                        if (s != driver && !s.contains(n)) {
+                            return false;
+                        }
+                    }
+
+                    return true;
+                });
+            }
+
+            @Override
+            public boolean contains(final TrieNode node) {
+                for (NodeSet s : sets) {
+                    if (!s.contains(node)) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            @Override
+            public long estimateSize() {
+                long res = Long.MAX_VALUE;
+                for (NodeSet s : sets) {
+                    res = Math.min(res, s.estimateSize());
+                }
+
+                return res;
+            }
+        };
+    }
+
+    /**
+     * Get the set of nodes related to the nodes of another set.
+     *
+     * Children, descendants and siblings are iterated lazily, walking
+     * down from the base nodes in id order. Parents and ancestors are
+     * collected on first use, walking up the chains of the base nodes,
+     * so that only the chains are held and never whole subtrees. The
+     * root node is never part of a relation.
+     *
+     * @param base - the set
+     * @param type - the relation
+     * @return - the related nodes
+     */
+    static NodeSet related(final NodeSet base, final PredefinedSetType type) {
+        switch (type) {
+        case parent:
+            return above(base, false);
+        case ancestors:
+            return above(base, true);
+        case child:
+            return below(base, false);
+        case descendants:
+            return below(base, true);
+        case siblings:
+            return siblings(base);
+        default:
+            throw new IllegalArgumentException(
+                    "Unknown predefined set " + type);
+        }
+    }
+
+    /**
+     * Get the set of parents or ancestors of a set's nodes.
+     *
+     * @param base - the set
+     * @param isDeep - true for all ancestors, false for parents
+     * @return - the set
+     */
+    private static NodeSet above(final NodeSet base, final boolean isDeep) {
+        return new NodeSet() {
+
+            /**
+             * The related nodes, in id order, once collected.
+             */
+            private List<TrieNode> nodes;
+
+            /**
+             * The related nodes, once collected.
+             */
+            private Set<TrieNode> lookup;
+
+            @Override
+            public Iterator<TrieNode> iterator() {
+                collect();
+
+                return nodes.iterator();
+            }
+
+            @Override
+            public boolean contains(final TrieNode node) {
+                collect();
+
+                return lookup.contains(node);
+            }
+
+            @Override
+            public long estimateSize() {
+                return nodes == null ? base.estimateSize() : nodes.size();
+            }
+
+            /**
+             * Walk up from every base node, stopping at nodes reached
+             * from an earlier one.
+             */
+            private void collect() {
+                if (nodes != null) {
+                    return;
+                }
+
+                Set<TrieNode> seen = new HashSet<>();
+                base.iterator().forEachRemaining(n -> {
+                    for (TrieNode p = n.getParent();
+                            p != null && p.getParent() != null
+                                    && seen.add(p);
+                            p = p.getParent()) {
+                        if (!isDeep) {
+                            break;
+                        }
+                    }
+                });
+
+                nodes = new ArrayList<>(seen);
+                nodes.sort(BY_ID);
+                lookup = seen;
+            }
+        };
+    }
+
+    /**
+     * Get the set of children or descendants of a set's nodes.
+     *
+     * @param base - the set
+     * @param isDeep - true for all descendants, false for children
+     * @return - the set
+     */
+    private static NodeSet below(final NodeSet base, final boolean isDeep) {
+        return new NodeSet() {
+
+            @Override
+            public Iterator<TrieNode> iterator() {
+                return walkDown(base.iterator(), isDeep);
+            }
+
+            @Override
+            public boolean contains(final TrieNode node) {
+                if (!isDeep) {
+                    return node.getParent() != null
+                            && base.contains(node.getParent());
+                }
+
+                for (TrieNode p = node.getParent(); p != null;
+                        p = p.getParent()) {
+                    if (base.contains(p)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+            @Override
+            public long estimateSize() {
+                return base.estimateSize();
+            }
+        };
+    }
+
+    /**
+     * Get the set of siblings of a set's nodes. The children of the
+     * parents of the base nodes are iterated lazily, keeping those
+     * with a sibling in the base set.
+     *
+     * The base nodes are grouped by parent once per iteration, so wide
+     * parents do not have their children listed again for each node.
+     *
+     * @param base - the set
+     * @return - the set
+     */
+    private static NodeSet siblings(final NodeSet base) {
+        return new NodeSet() {
+
+            @Override
+            public Iterator<TrieNode> iterator() {
+                // the base nodes by parent, including the root
+                Map<TrieNode, Set<TrieNode>> byParent = new HashMap<>();
+                base.iterator().forEachRemaining(n -> {
+                    if (n.getParent() != null) {
+                        byParent.computeIfAbsent(n.getParent(),
+                                p -> new HashSet<>()).add(n);
+                    }
+                });
+
+                List<TrieNode> sorted = new ArrayList<>(byParent.keySet());
+                sorted.sort(BY_ID);
+
+                return Iterators.filter(
+                        walkDown(sorted.iterator(), false),
+                        n -> {
+                            Set<TrieNode> s = byParent.get(n.getParent());
+
+                            return s.size() > 1 || !s.contains(n);
+                        });
+            }
+
+            @Override
+            public boolean contains(final TrieNode node) {
+                TrieNode parent = node.getParent();
+
+                if (parent == null) {
+                    return false;
+                }
+
+                Iterator<TrieNode> it = base.iterator();
+                while (it.hasNext()) {
+                    TrieNode s = it.next();
+
+                    if (s != node && s.getParent() == parent) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+            @Override
+            public long estimateSize() {
+                return base.estimateSize();
+            }
+        };
+    }
+
+    /**
+     * Iterate the children or descendants of nodes in id order, pulling
+     * the nodes lazily.
+     *
+     * A node always has a higher id than its parent, so a node taken
+     * from the heap has the lowest id of all nodes not returned yet
+     * once every start node with a lower id was expanded.
+     *
+     * @param starts - the nodes to walk down from, in id order
+     * @param isDeep - true for all descendants, false for children
+     * @return - the iterator, without repeated nodes
+     */
+    private static Iterator<TrieNode> walkDown(
+            final Iterator<TrieNode> starts,
+            final boolean isDeep) {
+        PeekingIterator<TrieNode> from = Iterators.peekingIterator(starts);
+        PriorityQueue<TrieNode> heap = new PriorityQueue<>(BY_ID);
+
+        return new AbstractIterator<TrieNode>() {
+
+            /**
+             * The node returned last.
+             */
+            private TrieNode last;
+
+            @Override
+            protected TrieNode computeNext() {
+                while (true) {
+                    while (from.hasNext() && (heap.isEmpty()
+                            || from.peek().getId() < heap.peek().getId())) {
+                        heap.addAll(from.next().children());
+                    }
+
+                    TrieNode n = heap.poll();
+                    if (n == null) {
+                        return endOfData();
+                    } else if (n == last) {
+                        // reached from two start nodes
+                        continue;
+                    }
+
+                    if (isDeep) {
+                        heap.addAll(n.children());
+                    }
+
+                    last = n;
+
+                    return n;
+                }
+            }
+        };
+    }
+
+    /**
+     * Skip repeated nodes of an iterator in id order.
+     *
+     * @param it - the iterator
+     * @return - an iterator without repeated nodes
+     */
+    private static Iterator<TrieNode> distinct(final Iterator<TrieNode> it) {
+        PeekingIterator<TrieNode> peeking = Iterators.peekingIterator(it);
+
+        return new Iterator<TrieNode>() {
+
+            @Override
+            public boolean hasNext() {
+                return peeking.hasNext();
+            }
+
+            @Override
+            public TrieNode next() {
+                TrieNode res = peeking.next();
+                while (peeking.hasNext() && peeking.peek() == res) {
+                    peeking.next();
+                }
+
+                return res;
+            }
+        };
+    }
+}
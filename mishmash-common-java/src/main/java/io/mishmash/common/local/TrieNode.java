@@ -0,0 +1,238 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+
+/**
+ * A node of the {@link LocalMishmash} index. Every node stands for a
+ * single {@link Key} in a hierarchy and may hold the {@link DataPoint}
+ * stored at its path.
+ *
+ * Nodes are guarded by the lock of their {@link LocalMishmash}.
+ */
+final class TrieNode {
+
+    /**
+     * The parent node, null for the root.
+     */
+    private final TrieNode parent;
+
+    /**
+     * The key of this node, null for the root.
+     */
+    private final Key key;
+
+    /**
+     * The depth of this node, 0 for the root.
+     */
+    private final int depth;
+
+    /**
+     * The node id, ids grow in order of node creation.
+     */
+    private final long id;
+
+    /**
+     * Child nodes of member keys, or null if none.
+     */
+    private TreeMap<String, TrieNode> members;
+
+    /**
+     * Child nodes of index keys, or null if none.
+     */
+    private LongObjectMap<TrieNode> indexes;
+
+    /**
+     * The data point at this node, if any.
+     */
+    private DataPoint point;
+
+    /**
+     * Create a root node.
+     */
+    TrieNode() {
+        this(null, null, 0);
+    }
+
+    /**
+     * Create a node.
+     *
+     * @param parentNode - the parent node
+     * @param nodeKey - the key of this node
+     * @param nodeId - the node id
+     */
+    private TrieNode(final TrieNode parentNode, final Key nodeKey,
+            final long nodeId) {
+        this.parent = parentNode;
+        this.key = nodeKey;
+        this.depth = parentNode == null ? 0 : parentNode.depth + 1;
+        this.id = nodeId;
+    }
+
+    /**
+     * Get the parent node.
+     *
+     * @return - the parent or null for the root
+     */
+    TrieNode getParent() {
+        return parent;
+    }
+
+    /**
+     * Get the key of this node.
+     *
+     * @return - the key or null for the root
+     */
+    Key getKey() {
+        return key;
+    }
+
+    /**
+     * Get the node id.
+     *
+     * @return - the id
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Get the depth of this node.
+     *
+     * @return - the number of keys in the path of this node
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the data point at this node.
+     *
+     * @return - the data point or null
+     */
+    DataPoint getPoint() {
+        return point;
+    }
+
+    /**
+     * Set the data point at this node.
+     *
+     * @param dataPoint - the data point
+     * @return - the previous data point or null
+     */
+    DataPoint setPoint(final DataPoint dataPoint) {
+        DataPoint prev = point;
+        point = dataPoint;
+
+        return prev;
+    }
+
+    /**
+     * Get the keys from the root to this node.
+     *
+     * @return - the path
+     */
+    List<Key> path() {
+        Key[] keys = new Key[depth];
+        for (TrieNode n = this; n.parent != null; n = n.parent) {
+            keys[n.depth - 1] = n.key;
+        }
+
+        return List.of(keys);
+    }
+
+    /**
+     * Find a child node.
+     *
+     * @param childKey - the key of the child
+     * @return - the child or null
+     */
+    TrieNode child(final Key childKey) {
+        if (childKey.isIndex()) {
+            return indexes == null ? null : indexes.get(childKey.getIndex());
+        }
+
+        return members == null ? null : members.get(childKey.getMember());
+    }
+
+    /**
+     * Find a child node, adding it if missing.
+     *
+     * @param childKey - the key of the child
+     * @param newId - the id of the child, if added
+     * @return - the child
+     */
+    TrieNode addChild(final Key childKey, final long newId) {
+        if (childKey.isIndex()) {
+            if (indexes == null) {
+                indexes = new LongObjectMap<>();
+            }
+
+            return indexes.computeIfAbsent(childKey.getIndex(),
+                    i -> new TrieNode(this, childKey, newId));
+        }
+
+        if (members == null) {
+            members = new TreeMap<>();
+        }
+
+        return members.computeIfAbsent(childKey.getMember(),
+                m -> new TrieNode(this, childKey, newId));
+    }
+
+    /**
+     * Get the number of child nodes.
+     *
+     * @return - the number of children
+     */
+    int childCount() {
+        return (indexes == null ? 0 : indexes.size())
+                + (members == null ? 0 : members.size());
+    }
+
+    /**
+     * Get the child nodes, ordered as by
+     * {@link io.mishmash.common.data.KeyComparator}.
+     *
+     * @return - a new list with the children
+     */
+    List<TrieNode> children() {
+        if (childCount() == 0) {
+            return Collections.emptyList();
+        }
+
+        List<TrieNode> res = new ArrayList<>(childCount());
+        if (indexes != null) {
+            for (long i : indexes.sortedKeys()) {
+                res.add(indexes.get(i));
+            }
+        }
+
+        if (members != null) {
+            res.addAll(members.values());
+        }
+
+        return res;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.mishmash.common.rpc.MishmashRpc.SnapshotBlockIndex;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotFooter;
+
+/**
+ * A {@link SnapshotReader} that memory-maps the blocks of a snapshot file.
+ *
+ * The file is mapped in windows of up to {@link #MAX_WINDOW_SIZE} bytes,
+ * each holding whole blocks. Opening a file only reads its footer and
+ * pages are loaded by the operating system when blocks are accessed.
+ * Uncompressed blocks are decoded directly from the mapped memory and
+ * buffer values of the returned data points refer to it without copying.
+ */
+public class MappedSnapshotReader extends SnapshotReader {
+
+    /**
+     * The maximum size of a single mapped window.
+     */
+    public static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * The mapped windows.
+     */
+    private final List<MappedByteBuffer> windows;
+
+    /**
+     * The file offset of each window.
+     */
+    private final long[] windowOffsets;
+
+    /**
+     * The window of each block.
+     */
+    private final int[] blockWindows;
+
+    /**
+     * Open and map a snapshot file.
+     *
+     * @param path - the file
+     * @throws IOException - if the file cannot be read or is corrupt
+     */
+    public MappedSnapshotReader(final Path path) throws IOException {
+        super(path);
+
+        SnapshotFooter footer = getFooter();
+        FileChannel channel = getChannel();
+
+        windows = new ArrayList<>();
+        blockWindows = new int[footer.getBlocksCount()];
+
+        List<Long> offsets = new ArrayList<>();
+        long start = -1;
+        long end = -1;
+
+        try {
+            for (int i = 0; i < footer.getBlocksCount(); i++) {
+                SnapshotBlockIndex idx = footer.getBlocks(i);
+                long blockEnd = idx.getOffset() + idx.getStoredLength();
+
+                if (start < 0 || blockEnd - start > MAX_WINDOW_SIZE) {
+                    if (start >= 0) {
+                        windows.add(channel.map(FileChannel.MapMode.READ_ONLY,
+                                start, end - start));
+                    }
+
+                    start = idx.getOffset();
+                    offsets.add(start);
+                }
+
+                end = blockEnd;
+                blockWindows[i] = offsets.size() - 1;
+            }
+
+            if (start >= 0) {
+                windows.add(channel.map(FileChannel.MapMode.READ_ONLY,
+                        start, end - start));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        windowOffsets = offsets.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Get the number of mapped windows.
+     *
+     * @return - the number of windows
+     */
+    public int getWindowCount() {
+        return windows.size();
+    }
+
+    /**
+     * Returns a slice of the mapped window holding the block.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    protected ByteBuffer storedBlock(final int block) {
+        SnapshotBlockIndex index = getFooter().getBlocks(block);
+        int window = blockWindows[block];
+
+        return windows.get(window).slice(
+                (int) (index.getOffset() - windowOffsets[window]),
+                index.getStoredLength());
+    }
+}
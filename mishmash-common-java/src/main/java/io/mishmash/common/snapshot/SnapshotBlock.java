@@ -0,0 +1,174 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.ipc.proto.Members;
+import io.mishmash.common.ipc.proto.Values;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotBlockHeader;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotBlockIndex;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+import io.mishmash.common.rpc.MishmashRpc.YieldMember;
+import io.mishmash.common.rpc.MishmashRpc.YieldValue;
+
+/**
+ * Decodes the records of a single, uncompressed snapshot block.
+ */
+final class SnapshotBlock {
+
+    /**
+     * The block input.
+     */
+    private final CodedInputStream in;
+
+    /**
+     * The instance ID dictionary of this block.
+     */
+    private final List<String> dictionary;
+
+    /**
+     * The number of records not read yet.
+     */
+    private int remaining;
+
+    /**
+     * Start decoding a block.
+     *
+     * Bytes values of the decoded records refer to the given buffer
+     * instead of being copied.
+     *
+     * @param raw - the uncompressed block bytes
+     * @throws IOException - if the block header is corrupt
+     */
+    SnapshotBlock(final ByteBuffer raw) throws IOException {
+        in = CodedInputStream.newInstance(raw);
+        in.enableAliasing(true);
+
+        SnapshotBlockHeader.Builder header = SnapshotBlockHeader.newBuilder();
+        in.readMessage(header, ExtensionRegistryLite.getEmptyRegistry());
+
+        dictionary = header.getInstanceIdsList();
+        remaining = header.getRecordCount();
+    }
+
+    /**
+     * Open a block as stored in a snapshot file.
+     *
+     * @param index - the block index entry
+     * @param stored - the stored block bytes
+     * @return - the block
+     * @throws IOException - if the block is corrupt
+     */
+    static SnapshotBlock open(final SnapshotBlockIndex index,
+            final ByteBuffer stored) throws IOException {
+        switch (index.getCompression()) {
+        case NONE:
+            return new SnapshotBlock(stored);
+        case DEFLATE:
+            return new SnapshotBlock(ByteBuffer.wrap(
+                    SnapshotFormat.inflate(stored, index.getRawLength())));
+        default:
+            throw new IOException("Unknown snapshot block compression: "
+                    + index.getCompression());
+        }
+    }
+
+    /**
+     * Check if there are more records.
+     *
+     * @return - true if there are more records
+     */
+    boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return - the next record
+     * @throws IOException - if the record is corrupt
+     */
+    YieldData nextYield() throws IOException {
+        YieldData.Builder yield = YieldData.newBuilder();
+        in.readMessage(yield, ExtensionRegistryLite.getEmptyRegistry());
+        remaining--;
+
+        return yield.build();
+    }
+
+    /**
+     * Read the next record as a {@link DataPoint}.
+     *
+     * @return - the next data point
+     * @throws IOException - if the record is corrupt
+     */
+    DataPoint next() throws IOException {
+        return decode(nextYield(), dictionary);
+    }
+
+    /**
+     * Get the instance ID dictionary of this block.
+     *
+     * @return - the dictionary
+     */
+    List<String> getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Decode the keys of a record.
+     *
+     * @param yield - the record
+     * @param dict - the instance ID dictionary
+     * @return - the keys
+     */
+    static List<Key> decodeKeys(final YieldData yield,
+            final List<String> dict) {
+        List<Key> keys = new ArrayList<>(yield.getHierarchyCount());
+        for (YieldMember m : yield.getHierarchyList()) {
+            keys.add(Members.fromMember(m.getMember(),
+                    Members.resolve(m.getInstanceId(), dict)));
+        }
+
+        return keys;
+    }
+
+    /**
+     * Decode a record into a {@link DataPoint}.
+     *
+     * @param yield - the record
+     * @param dict - the instance ID dictionary
+     * @return - the data point
+     */
+    static DataPoint decode(final YieldData yield, final List<String> dict) {
+        YieldValue yv = yield.getValue();
+        Value value = Values.fromValue(yv.getValue(),
+                Members.resolve(yv.getInstanceId(), dict));
+
+        return new DataPoint(decodeKeys(yield, dict), value);
+    }
+}
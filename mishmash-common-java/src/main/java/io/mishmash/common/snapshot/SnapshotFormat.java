@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Constants and helpers describing the snapshot file layout.
+ *
+ * A snapshot file starts with {@link #MAGIC}, followed by data blocks,
+ * a SnapshotFooter message and a fixed size trailer. Every block holds a
+ * length-delimited SnapshotBlockHeader (with the instance ID dictionary
+ * of the block) and length-delimited YieldData records that refer to the
+ * dictionary. Blocks can be stored deflated. The footer keeps a sparse
+ * index with the first key of every block.
+ *
+ * The trailer is the footer offset (8 bytes), the footer length
+ * (4 bytes) and {@link #MAGIC} again.
+ */
+public final class SnapshotFormat {
+
+    /**
+     * The magic bytes at the start and the end of a snapshot file.
+     */
+    static final byte[] MAGIC =
+            "MMSNAP01".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The size of the trailer at the end of a file.
+     */
+    static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES
+            + MAGIC.length;
+
+    /**
+     * The default (uncompressed) size of a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Instances of SnapshotFormat are not needed.
+     */
+    private SnapshotFormat() {
+        // Hide the constructor
+    }
+
+    /**
+     * Build the trailer bytes.
+     *
+     * @param footerOffset - the offset of the footer in the file
+     * @param footerLength - the length of the footer
+     * @return - the trailer
+     */
+    static byte[] trailer(final long footerOffset, final int footerLength) {
+        return ByteBuffer.allocate(TRAILER_SIZE)
+                .putLong(footerOffset)
+                .putInt(footerLength)
+                .put(MAGIC)
+                .array();
+    }
+
+    /**
+     * Check the magic bytes at the current position of a buffer.
+     *
+     * @param buf - the buffer
+     * @throws IOException - if the magic bytes do not match
+     */
+    static void checkMagic(final ByteBuffer buf) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buf.get(magic);
+
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Not a mishmash snapshot file");
+        }
+    }
+
+    /**
+     * Decompress a deflated block.
+     *
+     * @param stored - the buffer holding the deflated block
+     * @param rawLength - the uncompressed block length
+     * @return - the uncompressed block
+     * @throws IOException - if the block is corrupt
+     */
+    static byte[] inflate(final ByteBuffer stored, final int rawLength)
+            throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            byte[] raw = new byte[rawLength];
+            inflater.setInput(stored);
+
+            int len = 0;
+            while (len < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, len, rawLength - len);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+
+                len += n;
+            }
+
+            if (len != rawLength) {
+                throw new IOException("Truncated snapshot block");
+            }
+
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt snapshot block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.snapshot;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.KeyComparator;
+import io.mishmash.common.ipc.proto.Members;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotBlockIndex;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotFooter;
+import io.mishmash.common.rpc.MishmashRpc.YieldMember;
+
+/**
+ * Reads {@link DataPoint}s from a snapshot file written by a
+ * {@link SnapshotWriter}.
+ *
+ * Blocks are read on demand with positional reads, so a single reader
+ * can be shared by multiple iterators and threads. Iterators are
+ * not thread-safe and throw {@link UncheckedIOException} if the file
+ * cannot be read.
+ */
+public class SnapshotReader implements Iterable<DataPoint>, AutoCloseable {
+
+    /**
+     * The file channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The file footer.
+     */
+    private final SnapshotFooter footer;
+
+    /**
+     * The decoded first keys of all blocks.
+     */
+    private final List<List<Key>> firstKeys;
+
+    /**
+     * Open a snapshot file.
+     *
+     * @param path - the file
+     * @throws IOException - if the file cannot be read or is corrupt
+     */
+    public SnapshotReader(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            this.footer = readFooter();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        this.firstKeys = new ArrayList<>(footer.getBlocksCount());
+        for (SnapshotBlockIndex idx : footer.getBlocksList()) {
+            firstKeys.add(decodeFirstKey(idx));
+        }
+    }
+
+    /**
+     * Get the number of data points in the file.
+     *
+     * @return - the number of data points
+     */
+    public long getRecordCount() {
+        return footer.getRecordCount();
+    }
+
+    /**
+     * Check if the data points in the file are ordered by their keys.
+     *
+     * @return - true if the file is sorted
+     */
+    public boolean isSorted() {
+        return footer.getSorted();
+    }
+
+    /**
+     * Get the number of blocks in the file.
+     *
+     * @return - the number of blocks
+     */
+    public int getBlockCount() {
+        return footer.getBlocksCount();
+    }
+
+    /**
+     * Get the file channel.
+     *
+     * @return - the channel
+     */
+    protected FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Get the file footer.
+     *
+     * @return - the footer
+     */
+    protected SnapshotFooter getFooter() {
+        return footer;
+    }
+
+    /**
+     * Iterate all data points of the file, in the order they were written.
+     *
+     * @return - the iterator
+     */
+    @Override
+    public Iterator<DataPoint> iterator() {
+        return new SnapshotIterator(0, Collections.emptyList());
+    }
+
+    /**
+     * Iterate the data points whose keys start with a given prefix.
+     *
+     * If the file is sorted, only the blocks that may contain
+     * such data points are read, otherwise the whole file is scanned.
+     *
+     * @param prefix - the key prefix
+     * @return - the iterator
+     */
+    public Iterator<DataPoint> seek(final Iterable<Key> prefix) {
+        return new SnapshotIterator(
+                isSorted() ? findBlock(prefix) : 0,
+                prefix);
+    }
+
+    /**
+     * Find the first block that may contain keys starting with a prefix.
+     *
+     * @param prefix - the key prefix
+     * @return - the block number
+     */
+    protected int findBlock(final Iterable<Key> prefix) {
+        /*
+         * The last block with a first key strictly less than the prefix,
+         * equal keys may also be at the end of the previous block.
+         */
+        int lo = 0;
+        int hi = firstKeys.size() - 1;
+        int res = 0;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (KeyComparator.INSTANCE.compare(
+                    firstKeys.get(mid), prefix) < 0) {
+                res = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Get the stored bytes of a block.
+     *
+     * @param block - the block number
+     * @return - a buffer with the stored block
+     * @throws IOException - if reading fails
+     */
+    protected ByteBuffer storedBlock(final int block) throws IOException {
+        SnapshotBlockIndex index = footer.getBlocks(block);
+
+        return read(index.getOffset(), index.getStoredLength());
+    }
+
+    /**
+     * Read bytes from the file.
+     *
+     * @param position - the file position
+     * @param length - the number of bytes
+     * @return - a buffer with the bytes, ready to be read
+     * @throws IOException - if reading fails
+     */
+    private ByteBuffer read(final long position, final int length)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("Truncated snapshot file");
+            }
+        }
+
+        return buf.flip();
+    }
+
+    /**
+     * Read and check the trailer and the footer.
+     *
+     * @return - the footer
+     * @throws IOException - if reading fails or the file is corrupt
+     */
+    private SnapshotFooter readFooter() throws IOException {
+        long size = channel.size();
+        if (size < SnapshotFormat.MAGIC.length + SnapshotFormat.TRAILER_SIZE) {
+            throw new IOException("Not a mishmash snapshot file");
+        }
+
+        SnapshotFormat.checkMagic(read(0, SnapshotFormat.MAGIC.length));
+
+        ByteBuffer trailer = read(size - SnapshotFormat.TRAILER_SIZE,
+                SnapshotFormat.TRAILER_SIZE);
+        long footerOffset = trailer.getLong();
+        int footerLength = trailer.getInt();
+        SnapshotFormat.checkMagic(trailer);
+
+        if (footerOffset < SnapshotFormat.MAGIC.length || footerLength < 0
+                || footerOffset + footerLength
+                    > size - SnapshotFormat.TRAILER_SIZE) {
+            throw new IOException("Corrupt snapshot file trailer");
+        }
+
+        return SnapshotFooter.parseFrom(read(footerOffset, footerLength));
+    }
+
+    /**
+     * Decode the first key of a block.
+     *
+     * @param index - the block index entry
+     * @return - the keys
+     */
+    private static List<Key> decodeFirstKey(final SnapshotBlockIndex index) {
+        List<Key> keys = new ArrayList<>(index.getFirstKeyCount());
+        for (YieldMember m : index.getFirstKeyList()) {
+            keys.add(Members.fromMember(m));
+        }
+
+        return keys;
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException - if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Iterates the blocks of the file, starting at a given block, and
+     * returns the data points that start with a prefix.
+     */
+    private final class SnapshotIterator implements Iterator<DataPoint> {
+
+        /**
+         * The next block to open.
+         */
+        private int nextBlock;
+
+        /**
+         * The key prefix.
+         */
+        private final Iterable<Key> prefix;
+
+        /**
+         * The block being read.
+         */
+        private SnapshotBlock block;
+
+        /**
+         * The next data point, or null if not read yet.
+         */
+        private DataPoint next;
+
+        /**
+         * Set when no more data points will match.
+         */
+        private boolean done;
+
+        /**
+         * Create the iterator.
+         *
+         * @param firstBlock - the first block to read
+         * @param keyPrefix - the key prefix
+         */
+        SnapshotIterator(final int firstBlock,
+                final Iterable<Key> keyPrefix) {
+            this.nextBlock = firstBlock;
+            this.prefix = keyPrefix;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && !done) {
+                    if (block == null || !block.hasNext()) {
+                        if (nextBlock >= footer.getBlocksCount()) {
+                            done = true;
+                            break;
+                        }
+
+                        block = SnapshotBlock.open(
+                                footer.getBlocks(nextBlock),
+                                storedBlock(nextBlock));
+                        nextBlock++;
+                        continue;
+                    }
+
+                    DataPoint dp = block.next();
+                    if (KeyComparator.startsWith(dp.keys(), prefix)) {
+                        next = dp;
+                    } else if (isSorted() && KeyComparator.INSTANCE
+                            .compare(dp.keys(), prefix) > 0) {
+                        done = true;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return next != null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public DataPoint next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            DataPoint res = next;
+            next = null;
+
+            return res;
+        }
+    }
+}
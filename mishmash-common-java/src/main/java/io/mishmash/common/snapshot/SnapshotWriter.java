@@ -0,0 +1,394 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.Deflater;
+
+import com.google.protobuf.CodedOutputStream;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.DataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.KeyComparator;
+import io.mishmash.common.data.Mishmash;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashException;
+import io.mishmash.common.ipc.proto.Members;
+import io.mishmash.common.ipc.proto.Yields;
+import io.mishmash.common.rpc.MishmashRpc.Id;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotBlockHeader;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotBlockIndex;
+import io.mishmash.common.rpc.MishmashRpc.SnapshotFooter;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+import io.mishmash.common.rpc.MishmashRpc.YieldMember;
+
+/**
+ * Writes {@link BaseDataPoint}s to a snapshot file.
+ *
+ * See {@link SnapshotFormat} for the file layout. Writing data points in
+ * key order (as defined by {@link KeyComparator}) makes prefix seeks on
+ * the resulting file efficient, but it is not required.
+ *
+ * Instances are not thread-safe.
+ */
+public class SnapshotWriter implements AutoCloseable {
+
+    /**
+     * The file output.
+     */
+    private final OutputStream out;
+
+    /**
+     * The target uncompressed size of a block.
+     */
+    private final int blockSize;
+
+    /**
+     * Deflates blocks, or null if compression is disabled.
+     */
+    private final Deflater deflater;
+
+    /**
+     * The footer being built.
+     */
+    private final SnapshotFooter.Builder footer;
+
+    /**
+     * The records of the current block.
+     */
+    private final ByteArrayOutputStream records;
+
+    /**
+     * The protobuf output of the current block records.
+     */
+    private CodedOutputStream recordsOut;
+
+    /**
+     * The instance ID dictionary of the current block.
+     */
+    private final Map<String, Integer> dictionary;
+
+    /**
+     * The instance IDs of the current block, in dictionary order.
+     */
+    private final List<String> dictionaryIds;
+
+    /**
+     * The number of records in the current block.
+     */
+    private int blockRecords;
+
+    /**
+     * The first key of the current block.
+     */
+    private final List<YieldMember> firstKey;
+
+    /**
+     * The keys of the last data point written.
+     */
+    private List<Key> lastKeys;
+
+    /**
+     * The current offset in the file.
+     */
+    private long offset;
+
+    /**
+     * Create a writer with default block size and compression.
+     *
+     * @param path - the file to write
+     * @throws IOException - if the file cannot be created
+     */
+    public SnapshotWriter(final Path path) throws IOException {
+        this(Files.newOutputStream(path),
+                SnapshotFormat.DEFAULT_BLOCK_SIZE, true);
+    }
+
+    /**
+     * Create a writer.
+     *
+     * @param output - the output, closed when this writer is closed
+     * @param targetBlockSize - the target uncompressed size of a block
+     * @param compress - true to deflate blocks
+     * @throws IOException - if the file header cannot be written
+     */
+    public SnapshotWriter(final OutputStream output, final int targetBlockSize,
+            final boolean compress) throws IOException {
+        this.out = new BufferedOutputStream(output);
+        this.blockSize = targetBlockSize;
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.footer = SnapshotFooter.newBuilder().setSorted(true);
+        this.records = new ByteArrayOutputStream(targetBlockSize);
+        this.recordsOut = CodedOutputStream.newInstance(records);
+        this.dictionary = new HashMap<>();
+        this.dictionaryIds = new ArrayList<>();
+        this.firstKey = new ArrayList<>();
+
+        out.write(SnapshotFormat.MAGIC);
+        offset = SnapshotFormat.MAGIC.length;
+    }
+
+    /**
+     * Write a data point.
+     *
+     * @param dataPoint - the data point
+     * @throws IOException - if writing fails
+     * @throws MishmashException - if the data point cannot be encoded
+     */
+    public void write(final BaseDataPoint<Key, Value> dataPoint)
+            throws IOException, MishmashException {
+        DataPoint dp = DataPoint.copyOf(dataPoint);
+        List<Key> keys = new ArrayList<>();
+        dp.keys().forEach(keys::add);
+
+        if (lastKeys != null && footer.getSorted()
+                && KeyComparator.INSTANCE.compare(lastKeys, keys) > 0) {
+            footer.setSorted(false);
+        }
+        lastKeys = keys;
+
+        YieldData.Builder yield = Yields.yield(dp);
+        if (blockRecords == 0) {
+            for (YieldMember m : yield.getHierarchyList()) {
+                firstKey.add(YieldMember.newBuilder()
+                        .setMember(m.getMember())
+                        .build());
+            }
+        }
+
+        for (YieldMember.Builder m : yield.getHierarchyBuilderList()) {
+            if (m.hasInstanceId()) {
+                m.setInstanceId(toRef(m.getInstanceId()));
+            }
+        }
+
+        if (yield.getValue().hasInstanceId()) {
+            yield.getValueBuilder().setInstanceId(
+                    toRef(yield.getValue().getInstanceId()));
+        }
+
+        recordsOut.writeMessageNoTag(yield.build());
+        blockRecords++;
+        footer.setRecordCount(footer.getRecordCount() + 1);
+
+        if (recordsOut.getTotalBytesWritten() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Write all data points.
+     *
+     * @param dataPoints - the data points
+     * @throws IOException - if writing fails
+     * @throws MishmashException - if a data point cannot be encoded
+     */
+    public void writeAll(
+            final Iterable<? extends BaseDataPoint<Key, Value>> dataPoints)
+                    throws IOException, MishmashException {
+        for (BaseDataPoint<Key, Value> dp : dataPoints) {
+            write(dp);
+        }
+    }
+
+    /**
+     * Write all data points of a {@link Mishmash}, like a
+     * {@link io.mishmash.common.ipc.client.StreamMishmash}, until its
+     * get() completes with null.
+     *
+     * @param source - an open mishmash
+     * @return - a future that completes with the number of data points
+     *          written or on error
+     */
+    public CompletableFuture<Long> writeAll(final Mishmash<Key, Value> source) {
+        CompletableFuture<Long> res = new CompletableFuture<>();
+        drain(source, res, 0);
+
+        return res;
+    }
+
+    /**
+     * Write data points of a source while they are readily available,
+     * then wait for the next one.
+     *
+     * @param source - the source
+     * @param res - the future to complete at the end
+     * @param written - the count of data points written so far
+     */
+    private void drain(final Mishmash<Key, Value> source,
+            final CompletableFuture<Long> res, final long written) {
+        long count = written;
+
+        try {
+            CompletableFuture<? extends BaseDataPoint<Key, Value>> next =
+                    source.get();
+
+            while (next.isDone()) {
+                BaseDataPoint<Key, Value> dp = next.join();
+                if (dp == null) {
+                    res.complete(count);
+                    return;
+                }
+
+                write(dp);
+                count++;
+                next = source.get();
+            }
+
+            long current = count;
+            next.whenComplete((dp, t) -> {
+                if (t != null) {
+                    res.completeExceptionally(t);
+                } else if (dp == null) {
+                    res.complete(current);
+                } else {
+                    try {
+                        write(dp);
+                        drain(source, res, current + 1);
+                    } catch (Exception e) {
+                        res.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            res.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Replace an instance id with a reference to the block dictionary.
+     *
+     * @param id - the instance id
+     * @return - the reference
+     */
+    private Id.Builder toRef(final Id id) {
+        Integer idx = dictionary.get(id.getId());
+        if (idx == null) {
+            idx = dictionaryIds.size();
+            dictionary.put(id.getId(), idx);
+            dictionaryIds.add(id.getId());
+        }
+
+        return Members.ref(idx);
+    }
+
+    /**
+     * Write the current block to the file.
+     *
+     * @throws IOException - if writing fails
+     */
+    private void flushBlock() throws IOException {
+        recordsOut.flush();
+
+        SnapshotBlockHeader header = SnapshotBlockHeader.newBuilder()
+                .addAllInstanceIds(dictionaryIds)
+                .setRecordCount(blockRecords)
+                .build();
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(
+                records.size() + header.getSerializedSize()
+                + Long.BYTES);
+        header.writeDelimitedTo(raw);
+        records.writeTo(raw);
+
+        byte[] rawBytes = raw.toByteArray();
+        byte[] stored = rawBytes;
+        SnapshotBlockIndex.Compression compression =
+                SnapshotBlockIndex.Compression.NONE;
+
+        if (deflater != null) {
+            byte[] deflated = deflate(rawBytes);
+            if (deflated.length < rawBytes.length) {
+                stored = deflated;
+                compression = SnapshotBlockIndex.Compression.DEFLATE;
+            }
+        }
+
+        out.write(stored);
+        footer.addBlocks(SnapshotBlockIndex.newBuilder()
+                .addAllFirstKey(firstKey)
+                .setOffset(offset)
+                .setStoredLength(stored.length)
+                .setRawLength(rawBytes.length)
+                .setRecordCount(blockRecords)
+                .setCompression(compression));
+        offset += stored.length;
+
+        records.reset();
+        recordsOut = CodedOutputStream.newInstance(records);
+        dictionary.clear();
+        dictionaryIds.clear();
+        firstKey.clear();
+        blockRecords = 0;
+    }
+
+    /**
+     * Deflate a block.
+     *
+     * @param raw - the uncompressed block
+     * @return - the deflated block
+     */
+    private byte[] deflate(final byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+
+        ByteArrayOutputStream res = new ByteArrayOutputStream(raw.length);
+        byte[] buf = new byte[raw.length];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buf);
+            res.write(buf, 0, n);
+        }
+
+        return res.toByteArray();
+    }
+
+    /**
+     * Write the last block, the footer and the trailer and close the file.
+     *
+     * @throws IOException - if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (blockRecords > 0) {
+                flushBlock();
+            }
+
+            byte[] footerBytes = footer.build().toByteArray();
+            out.write(footerBytes);
+            out.write(SnapshotFormat.trailer(offset, footerBytes.length));
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+
+            out.close();
+        }
+    }
+}
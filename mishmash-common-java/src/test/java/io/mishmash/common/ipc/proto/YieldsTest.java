@@ -0,0 +1,209 @@
+/*
+ *    Copyright 2025 Mishmash IO UK Ltd.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package io.mishmash.common.ipc.proto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.mishmash.common.data.BaseDataPoint;
+import io.mishmash.common.data.Key;
+import io.mishmash.common.data.Value;
+import io.mishmash.common.exception.MishmashInvalidArgumentException;
+import io.mishmash.common.rpc.MishmashRpc.DecimalValue;
+import io.mishmash.common.rpc.MishmashRpc.YieldData;
+
+/**
+ * Round-trips decimal values through {@link Yields#yield(BaseDataPoint)}
+ * and {@link Values#fromValue}.
+ */
+class YieldsTest {
+
+    /**
+     * The instance ID of the test values.
+     */
+    private static final String INSTANCE = "test-instance";
+
+    /**
+     * Encode a value in a YieldData.
+     *
+     * @param value - the value
+     * @return - the YieldData
+     * @throws MishmashInvalidArgumentException - on unknown value types
+     */
+    private static YieldData encode(final Value value)
+            throws MishmashInvalidArgumentException {
+        List<Key> keys = List.of(Key.of("member", INSTANCE));
+
+        return Yields.yield(new BaseDataPoint<Key, Value>() {
+
+            @Override
+            public Iterable<Key> keys() {
+                return keys;
+            }
+
+            @Override
+            public Value value() {
+                return value;
+            }
+        }).build();
+    }
+
+    /**
+     * Encode a value and decode it back.
+     *
+     * @param value - the value
+     * @param wireCase - the expected wire encoding
+     * @return - the decoded value
+     * @throws MishmashInvalidArgumentException - on unknown value types
+     */
+    private static Value roundTrip(
+            final Value value,
+            final DecimalValue.AltCase wireCase)
+                    throws MishmashInvalidArgumentException {
+        YieldData yield = encode(value);
+
+        assertEquals(wireCase,
+                yield.getValue().getValue().getDecimal().getAltCase());
+
+        Value res = Values.fromValue(yield.getValue());
+        assertEquals(INSTANCE, res.getInstance());
+
+        return res;
+    }
+
+    @Test
+    void int32() throws Exception {
+        for (int i : new int[] {Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE}) {
+            Value res = roundTrip(Value.ofInt(i, INSTANCE),
+                    DecimalValue.AltCase.S_INT_32);
+
+            assertEquals(Value.DecimalType.int32, res.getDecimalType());
+            assertEquals(i, res.getInt());
+        }
+    }
+
+    @Test
+    void uint32() throws Exception {
+        // -1 and MIN_VALUE are the unsigned 0xffffffff and 0x80000000
+        for (int i : new int[] {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            Value res = roundTrip(Value.ofUnsignedInt(i, INSTANCE),
+                    DecimalValue.AltCase.U_INT_32);
+
+            assertEquals(Value.DecimalType.uint32, res.getDecimalType());
+            assertEquals(i, res.getInt());
+        }
+    }
+
+    @Test
+    void int64() throws Exception {
+        for (long l : new long[] {Long.MIN_VALUE, -1, 0, Long.MAX_VALUE}) {
+            Value res = roundTrip(Value.ofLong(l, INSTANCE),
+                    DecimalValue.AltCase.S_INT_64);
+
+            assertEquals(Value.DecimalType.int64, res.getDecimalType());
+            assertEquals(l, res.getLong());
+        }
+    }
+
+    @Test
+    void uint64() throws Exception {
+        // -1 and MIN_VALUE are the unsigned 2^64 - 1 and 2^63
+        for (long l : new long[] {0, -1, Long.MIN_VALUE, Long.MAX_VALUE}) {
+            Value res = roundTrip(Value.ofUnsignedLong(l, INSTANCE),
+                    DecimalValue.AltCase.U_INT_64);
+
+            assertEquals(Value.DecimalType.uint64, res.getDecimalType());
+            assertEquals(l, res.getLong());
+        }
+    }
+
+    @Test
+    void sint64Decoding() throws Exception {
+        // values beyond 32 bits of both signs, decoded with getSInt64
+        for (long l : new long[] {
+                Long.MIN_VALUE, -(1L << 40), 1L << 40, Long.MAX_VALUE}) {
+            Value res = Values.fromValue(
+                    Values.decimalValueSigned(l).build(),
+                    Members.id(INSTANCE).build());
+
+            assertEquals(Value.DecimalType.int64, res.getDecimalType());
+            assertEquals(l, res.getLong());
+        }
+    }
+
+    @Test
+    void float64() throws Exception {
+        for (double d : new double[] {
+                0.0, -0.0, 1.5, -Double.MAX_VALUE, Double.MIN_VALUE,
+                Double.NaN,
+                Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY}) {
+            Value res = roundTrip(Value.ofDouble(d, INSTANCE),
+                    DecimalValue.AltCase.FLOATING);
+
+            assertEquals(Value.DecimalType.float64, res.getDecimalType());
+            // compares bits, so -0.0 differs from 0.0 and NaN matches
+            assertEquals(Double.doubleToLongBits(d),
+                    Double.doubleToLongBits(res.getDouble()));
+        }
+
+        assertTrue(roundTrip(Value.ofDouble(Double.NaN, INSTANCE),
+                DecimalValue.AltCase.FLOATING).isNaN());
+        assertTrue(roundTrip(Value.ofDouble(
+                Double.POSITIVE_INFINITY, INSTANCE),
+                DecimalValue.AltCase.FLOATING).isPlusInf());
+        assertTrue(roundTrip(Value.ofDouble(
+                Double.NEGATIVE_INFINITY, INSTANCE),
+                DecimalValue.AltCase.FLOATING).isMinusInf());
+    }
+
+    @Test
+    void bigInteger() throws Exception {
+        BigInteger big = BigInteger.TWO.pow(200).negate()
+                .subtract(BigInteger.ONE);
+
+        for (BigInteger i : new BigInteger[] {
+                big,
+                big.negate(),
+                BigInteger.TWO.pow(64)}) {
+            Value res = roundTrip(Value.ofBigInteger(i, INSTANCE),
+                    DecimalValue.AltCase.STRING_SEQUENCE);
+
+            // big numbers travel as decimal strings
+            assertEquals(i, res.getBigDecimal().toBigIntegerExact());
+        }
+    }
+
+    @Test
+    void bigDecimal() throws Exception {
+        for (BigDecimal d : new BigDecimal[] {
+                new BigDecimal("-123456789012345678901234567890.0000000001"),
+                new BigDecimal("1E+400"),
+                new BigDecimal("1E-400")}) {
+            Value res = roundTrip(Value.ofBigDecimal(d, INSTANCE),
+                    DecimalValue.AltCase.STRING_SEQUENCE);
+
+            assertEquals(0, d.compareTo(res.getBigDecimal()));
+        }
+    }
+}